@@ -0,0 +1,285 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.core.databinding.observable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.databinding.observable.list.IObservableList;
+import org.eclipse.core.databinding.observable.list.ListChangeEvent;
+import org.eclipse.core.databinding.observable.list.ListDiffEntry;
+import org.eclipse.core.databinding.observable.map.IObservableMap;
+import org.eclipse.core.databinding.observable.map.MapChangeEvent;
+import org.eclipse.core.databinding.observable.map.MapDiff;
+import org.eclipse.core.databinding.observable.set.IObservableSet;
+import org.eclipse.core.databinding.observable.set.SetChangeEvent;
+import org.eclipse.core.databinding.observable.value.IObservableValue;
+import org.eclipse.core.databinding.observable.value.ValueChangeEvent;
+import org.eclipse.core.databinding.observable.value.ValueDiff;
+import org.eclipse.core.internal.databinding.identity.IdentityMap;
+import org.eclipse.core.internal.databinding.observable.Util;
+
+/**
+ * The change events deferred while running a runnable with
+ * {@link Realm#runBatched(Runnable)}. The list, set, map and value change
+ * events of every observable are merged into one event, fired when the batch
+ * ends.
+ * <p>
+ * The diffs of the deferred events are read when the observables fire them,
+ * as the listeners would have done, so lazily computed diffs describe the
+ * change at the time it happened. Generic change events are not deferred, so
+ * the observables depending on the changed ones, such as
+ * <code>ComputedValue</code>, are made dirty right away and stay consistent
+ * when read within the batch. Stale, dispose and value changing events are not
+ * deferred either.
+ * </p>
+ */
+/* package */final class ChangeBatch {
+
+	/**
+	 * The changes of an observable during the batch.
+	 */
+	private static final class Changes {
+		final ChangeManager changeManager;
+		final IObservable observable;
+		ObservableEvent event;
+
+		// list changes
+		List entries;
+
+		// set changes
+		Set additions;
+		Set removals;
+
+		// map changes, the keys absent before or after the batch being
+		// recorded separately as their values may be null
+		Map oldValues;
+		Set oldAbsentKeys;
+		Map newValues;
+
+		// value changes
+		Object oldValue;
+		ValueDiff lastValueDiff;
+
+		Changes(ChangeManager changeManager, IObservable observable) {
+			this.changeManager = changeManager;
+			this.observable = observable;
+		}
+	}
+
+	private final Thread thread = Thread.currentThread();
+
+	private final Map changesByManager = new IdentityMap();
+
+	private final List changes = new ArrayList();
+
+	/**
+	 * Defers the given event if it can be merged with the other events of its
+	 * observable.
+	 *
+	 * @return <code>true</code> if the event was deferred, <code>false</code>
+	 *         if it must be fired right away
+	 */
+	boolean defer(ChangeManager changeManager, ObservableEvent event) {
+		if (Thread.currentThread() != thread) {
+			return false;
+		}
+		if (event instanceof ListChangeEvent) {
+			addListChange(getChanges(changeManager, event),
+					(ListChangeEvent) event);
+		} else if (event instanceof SetChangeEvent) {
+			addSetChange(getChanges(changeManager, event),
+					(SetChangeEvent) event);
+		} else if (event instanceof MapChangeEvent) {
+			addMapChange(getChanges(changeManager, event),
+					(MapChangeEvent) event);
+		} else if (event instanceof ValueChangeEvent) {
+			addValueChange(getChanges(changeManager, event),
+					(ValueChangeEvent) event);
+		} else {
+			return false;
+		}
+		return true;
+	}
+
+	private Changes getChanges(ChangeManager changeManager,
+			ObservableEvent event) {
+		Changes observableChanges = (Changes) changesByManager
+				.get(changeManager);
+		if (observableChanges == null) {
+			observableChanges = new Changes(changeManager, event
+					.getObservable());
+			changesByManager.put(changeManager, observableChanges);
+			changes.add(observableChanges);
+		}
+		return observableChanges;
+	}
+
+	private static void addListChange(Changes observableChanges,
+			ListChangeEvent event) {
+		if (observableChanges.entries == null) {
+			observableChanges.event = event;
+			observableChanges.entries = new ArrayList();
+		}
+		observableChanges.entries.addAll(Arrays.asList(event.diff
+				.getDifferences()));
+	}
+
+	private static void addSetChange(Changes observableChanges,
+			SetChangeEvent event) {
+		if (observableChanges.additions == null) {
+			observableChanges.event = event;
+			observableChanges.additions = new HashSet();
+			observableChanges.removals = new HashSet();
+		}
+		// an element added then removed, or removed then added, is unchanged
+		for (Iterator it = event.diff.getRemovals().iterator(); it.hasNext();) {
+			Object element = it.next();
+			if (!observableChanges.additions.remove(element)) {
+				observableChanges.removals.add(element);
+			}
+		}
+		for (Iterator it = event.diff.getAdditions().iterator(); it.hasNext();) {
+			Object element = it.next();
+			if (!observableChanges.removals.remove(element)) {
+				observableChanges.additions.add(element);
+			}
+		}
+	}
+
+	private static void addMapChange(Changes observableChanges,
+			MapChangeEvent event) {
+		if (observableChanges.oldValues == null) {
+			observableChanges.event = event;
+			observableChanges.oldValues = new HashMap();
+			observableChanges.oldAbsentKeys = new HashSet();
+			observableChanges.newValues = new HashMap();
+		}
+		MapDiff diff = event.diff;
+		for (Iterator it = diff.getAddedKeys().iterator(); it.hasNext();) {
+			Object key = it.next();
+			if (!observableChanges.oldValues.containsKey(key)) {
+				observableChanges.oldAbsentKeys.add(key);
+			}
+			observableChanges.newValues.put(key, diff.getNewValue(key));
+		}
+		for (Iterator it = diff.getChangedKeys().iterator(); it.hasNext();) {
+			Object key = it.next();
+			if (!observableChanges.oldAbsentKeys.contains(key)
+					&& !observableChanges.oldValues.containsKey(key)) {
+				observableChanges.oldValues.put(key, diff.getOldValue(key));
+			}
+			observableChanges.newValues.put(key, diff.getNewValue(key));
+		}
+		for (Iterator it = diff.getRemovedKeys().iterator(); it.hasNext();) {
+			Object key = it.next();
+			if (!observableChanges.oldAbsentKeys.contains(key)
+					&& !observableChanges.oldValues.containsKey(key)) {
+				observableChanges.oldValues.put(key, diff.getOldValue(key));
+			}
+			observableChanges.newValues.remove(key);
+		}
+	}
+
+	private static void addValueChange(Changes observableChanges,
+			ValueChangeEvent event) {
+		if (observableChanges.lastValueDiff == null) {
+			observableChanges.event = event;
+			observableChanges.oldValue = event.diff.getOldValue();
+		}
+		// the new value is read when the merged event is fired
+		observableChanges.lastValueDiff = event.diff;
+	}
+
+	/**
+	 * Fires the merged events of the observables, in the order they first
+	 * changed. The batch must no longer be the one of the realm, so the events
+	 * fired by the listeners are not deferred.
+	 */
+	void fireEvents() {
+		for (Iterator it = changes.iterator(); it.hasNext();) {
+			Changes observableChanges = (Changes) it.next();
+			if (observableChanges.observable.isDisposed()) {
+				continue;
+			}
+			ObservableEvent event = createEvent(observableChanges);
+			if (event != null) {
+				observableChanges.changeManager.fireEvent(event);
+			}
+		}
+	}
+
+	private static ObservableEvent createEvent(final Changes observableChanges) {
+		ObservableEvent event = observableChanges.event;
+		if (event instanceof ListChangeEvent) {
+			List entries = observableChanges.entries;
+			return new ListChangeEvent((IObservableList) event
+					.getObservable(), Diffs
+					.createListDiff((ListDiffEntry[]) entries
+							.toArray(new ListDiffEntry[entries.size()])));
+		}
+		if (event instanceof SetChangeEvent) {
+			return new SetChangeEvent((IObservableSet) event.getObservable(),
+					Diffs.createSetDiff(observableChanges.additions,
+							observableChanges.removals));
+		}
+		if (event instanceof MapChangeEvent) {
+			return new MapChangeEvent((IObservableMap) event.getObservable(),
+					createMapDiff(observableChanges));
+		}
+		if (event instanceof ValueChangeEvent) {
+			return new ValueChangeEvent((IObservableValue) event
+					.getObservable(), new ValueDiff() {
+				public Object getOldValue() {
+					return observableChanges.oldValue;
+				}
+
+				public Object getNewValue() {
+					return observableChanges.lastValueDiff.getNewValue();
+				}
+			});
+		}
+		return null;
+	}
+
+	private static MapDiff createMapDiff(Changes observableChanges) {
+		Set addedKeys = new HashSet();
+		Set removedKeys = new HashSet();
+		Set changedKeys = new HashSet();
+		Map newValues = observableChanges.newValues;
+		for (Iterator it = observableChanges.oldAbsentKeys.iterator(); it
+				.hasNext();) {
+			Object key = it.next();
+			if (newValues.containsKey(key)) {
+				addedKeys.add(key);
+			}
+		}
+		for (Iterator it = observableChanges.oldValues.entrySet().iterator(); it
+				.hasNext();) {
+			Map.Entry entry = (Map.Entry) it.next();
+			Object key = entry.getKey();
+			if (!newValues.containsKey(key)) {
+				removedKeys.add(key);
+			} else if (!Util.equals(entry.getValue(), newValues.get(key))) {
+				changedKeys.add(key);
+			}
+		}
+		return Diffs.createMapDiff(addedKeys, removedKeys, changedKeys,
+				observableChanges.oldValues, newValues);
+	}
+}
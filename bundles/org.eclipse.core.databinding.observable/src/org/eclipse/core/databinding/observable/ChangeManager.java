@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2009 IBM Corporation and others.
+ * Copyright (c) 2006, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -25,6 +25,8 @@ import org.eclipse.core.runtime.ListenerList;
  */
 /* package */class ChangeManager {
 
+	private static final Object[] NO_LISTENERS = new Object[0];
+
 	ListenerList[] listenerLists = null;
 	Object listenerTypes[] = null;
 	private final Realm realm;
@@ -110,15 +112,39 @@ import org.eclipse.core.runtime.ListenerList;
 	}
 
 	protected void fireEvent(ObservableEvent event) {
-		Object listenerType = event.getListenerType();
+		ChangeBatch batch = realm.batch;
+		if (batch != null && batch.defer(this, event)) {
+			return;
+		}
+		PropagationScheduler scheduler = realm.scheduler;
+		if (scheduler != null && scheduler.fireEvent(this, event)) {
+			return;
+		}
+		dispatch(event);
+	}
+
+	/**
+	 * Notifies the listeners of the given event.
+	 * 
+	 * @param event
+	 */
+	/* package */void dispatch(ObservableEvent event) {
+		Object[] listeners = getListeners(event.getListenerType());
+		for (int i = 0; i < listeners.length; i++) {
+			event.dispatch((IObservablesListener) listeners[i]);
+		}
+	}
+
+	/**
+	 * @param listenerType
+	 * @return the listeners of the given type
+	 */
+	/* package */Object[] getListeners(Object listenerType) {
 		int listenerTypeIndex = findListenerTypeIndex(listenerType);
-		if (listenerTypeIndex != -1) {
-			Object[] listeners = listenerLists[listenerTypeIndex]
-					.getListeners();
-			for (int i = 0; i < listeners.length; i++) {
-				event.dispatch((IObservablesListener) listeners[i]);
-			}
+		if (listenerTypeIndex == -1) {
+			return NO_LISTENERS;
 		}
+		return listenerLists[listenerTypeIndex].getListeners();
 	}
 
 	/**
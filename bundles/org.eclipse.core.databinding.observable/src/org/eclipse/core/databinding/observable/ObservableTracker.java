@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2009 IBM Corporation and others.
+ * Copyright (c) 2005, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,10 +11,7 @@
  *******************************************************************************/
 package org.eclipse.core.databinding.observable;
 
-import java.util.Set;
-
 import org.eclipse.core.databinding.util.Policy;
-import org.eclipse.core.internal.databinding.identity.IdentitySet;
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
@@ -59,21 +56,176 @@ import org.eclipse.core.runtime.Status;
  */
 public class ObservableTracker {
 
+	private static final IObservable[] NO_OBSERVABLES = new IObservable[0];
+
+	/**
+	 * A set of observables compared by identity, kept in the order they were
+	 * added. The set is reused by the frame owning it, so tracking the
+	 * observables read by a computed observable does not allocate once the
+	 * set has grown to the number of its dependencies.
+	 */
+	private static final class ObservableSet {
+		/**
+		 * The size above which the observables are indexed by a hash table
+		 * instead of being searched linearly.
+		 */
+		private static final int LINEAR_SEARCH_SIZE = 8;
+
+		IObservable[] elements = new IObservable[LINEAR_SEARCH_SIZE];
+
+		int size;
+
+		private IObservable[] table;
+
+		boolean add(IObservable observable) {
+			if (size <= LINEAR_SEARCH_SIZE) {
+				for (int i = 0; i < size; i++) {
+					if (elements[i] == observable) {
+						return false;
+					}
+				}
+			} else if (!addToTable(observable)) {
+				return false;
+			}
+			if (size == elements.length) {
+				IObservable[] newElements = new IObservable[size * 2];
+				System.arraycopy(elements, 0, newElements, 0, size);
+				elements = newElements;
+			}
+			elements[size++] = observable;
+			if (size == LINEAR_SEARCH_SIZE + 1) {
+				rehash(table == null ? LINEAR_SEARCH_SIZE * 4 : table.length);
+			} else if (size > LINEAR_SEARCH_SIZE && size * 2 > table.length) {
+				rehash(table.length * 2);
+			}
+			return true;
+		}
+
+		private boolean addToTable(IObservable observable) {
+			int mask = table.length - 1;
+			int i = System.identityHashCode(observable) & mask;
+			while (table[i] != null) {
+				if (table[i] == observable) {
+					return false;
+				}
+				i = (i + 1) & mask;
+			}
+			table[i] = observable;
+			return true;
+		}
+
+		private void rehash(int length) {
+			if (table == null || table.length != length) {
+				table = new IObservable[length];
+			} else {
+				clearTable();
+			}
+			for (int i = 0; i < size; i++) {
+				addToTable(elements[i]);
+			}
+		}
+
+		private void clearTable() {
+			for (int i = 0; i < table.length; i++) {
+				table[i] = null;
+			}
+		}
+
+		IObservable[] toArray() {
+			if (size == 0) {
+				return NO_OBSERVABLES;
+			}
+			IObservable[] result = new IObservable[size];
+			System.arraycopy(elements, 0, result, 0, size);
+			return result;
+		}
+
+		void clear() {
+			if (size > LINEAR_SEARCH_SIZE) {
+				// the table is kept to index the observables of the next use
+				clearTable();
+			}
+			for (int i = 0; i < size; i++) {
+				elements[i] = null;
+			}
+			size = 0;
+		}
+	}
+
+	/**
+	 * The tracking state of a call to {@link #runAndMonitor} or
+	 * {@link #runAndCollect(Runnable)}. The frames of a thread are reused,
+	 * together with their sets, by the following calls made at the same
+	 * depth.
+	 */
+	private static final class Frame {
+		final ObservableSet ownSet = new ObservableSet();
+
+		ObservableSet getterCalledSet;
+
+		IChangeListener changeListener;
+
+		IStaleListener staleListener;
+
+		ObservableSet observableCreatedSet;
+
+		int ignoreCount;
+	}
+
 	/**
-	 * Threadlocal storage pointing to the current Set of IObservables, or null
-	 * if none. Note that this is actually the top of a stack. Whenever a method
-	 * changes the current value, it remembers the old value as a local variable
-	 * and restores the old value when the method exits.
+	 * The stack of the frames of a thread. The frame at the bottom of the
+	 * stack records the ignore count of the code running outside of any
+	 * tracking call.
 	 */
-	private static ThreadLocal currentChangeListener = new ThreadLocal();
+	private static final class FrameStack {
+		Frame[] frames = new Frame[] { new Frame() };
 
-	private static ThreadLocal currentStaleListener = new ThreadLocal();
+		int depth;
 
-	private static ThreadLocal currentGetterCalledSet = new ThreadLocal();
+		Frame top() {
+			return frames[depth];
+		}
+
+		Frame push() {
+			Frame parent = frames[depth];
+			if (++depth == frames.length) {
+				Frame[] newFrames = new Frame[depth * 2];
+				System.arraycopy(frames, 0, newFrames, 0, depth);
+				frames = newFrames;
+			}
+			Frame frame = frames[depth];
+			if (frame == null) {
+				frame = frames[depth] = new Frame();
+			}
+			frame.getterCalledSet = parent.getterCalledSet;
+			frame.changeListener = parent.changeListener;
+			frame.staleListener = parent.staleListener;
+			frame.observableCreatedSet = parent.observableCreatedSet;
+			frame.ignoreCount = 0;
+			return frame;
+		}
 
-	private static ThreadLocal currentObservableCreatedSet = new ThreadLocal();
+		void pop() {
+			Frame frame = frames[depth--];
+			frame.ownSet.clear();
+			frame.getterCalledSet = null;
+			frame.changeListener = null;
+			frame.staleListener = null;
+			frame.observableCreatedSet = null;
+		}
+	}
 
-	private static ThreadLocal currentIgnoreCount = new ThreadLocal();
+	/**
+	 * Threadlocal storage pointing to the frame stack of the current thread.
+	 * Each call to {@link #runAndMonitor} or {@link #runAndCollect(Runnable)}
+	 * pushes a frame inheriting the state of the enclosing one, and pops it
+	 * when it exits.
+	 */
+	private static ThreadLocal currentFrames = new ThreadLocal() {
+		protected Object initialValue() {
+			return new FrameStack();
+		}
+	};
 
 	/**
 	 * Invokes the given runnable, and returns the set of IObservables that were
@@ -92,34 +244,22 @@ public class ObservableTracker {
 	 */
 	public static IObservable[] runAndMonitor(Runnable runnable,
 			IChangeListener changeListener, IStaleListener staleListener) {
-		// Remember the previous value in the listener stack
-		Set lastObservableSet = (Set) currentGetterCalledSet.get();
-		IChangeListener lastChangeListener = (IChangeListener) currentChangeListener
-				.get();
-		IStaleListener lastStaleListener = (IStaleListener) currentStaleListener
-				.get();
-		Integer lastIgnore = (Integer) currentIgnoreCount.get();
-
-		Set observableSet = new IdentitySet();
+		FrameStack frameStack = (FrameStack) currentFrames.get();
 		// Push the new listeners to the top of the stack
-		currentGetterCalledSet.set(observableSet);
-		currentChangeListener.set(changeListener);
-		currentStaleListener.set(staleListener);
-		currentIgnoreCount.set(null);
+		Frame frame = frameStack.push();
+		frame.getterCalledSet = frame.ownSet;
+		frame.changeListener = changeListener;
+		frame.staleListener = staleListener;
+		IObservable[] result;
 		try {
 			runnable.run();
 		} finally {
-			// Pop the new listener off the top of the stack (by restoring the
-			// previous listener)
-			currentGetterCalledSet.set(lastObservableSet);
-			currentChangeListener.set(lastChangeListener);
-			currentStaleListener.set(lastStaleListener);
-			checkUnmatchedIgnore(runnable);
-			currentIgnoreCount.set(lastIgnore);
+			// Pop the new listeners off the top of the stack
+			checkUnmatchedIgnore(frame, runnable);
+			result = frame.ownSet.toArray();
+			frameStack.pop();
 		}
-
-		return (IObservable[]) observableSet
-				.toArray(new IObservable[observableSet.size()]);
+		return result;
 	}
 
 	/**
@@ -139,29 +279,24 @@ public class ObservableTracker {
 	 * @since 1.2
 	 */
 	public static IObservable[] runAndCollect(Runnable runnable) {
-		Set lastObservableCreatedSet = (Set) currentObservableCreatedSet.get();
-		Integer lastIgnore = (Integer) currentIgnoreCount.get();
-
-		Set observableSet = new IdentitySet();
-		// Push the new listeners to the top of the stack
-		currentObservableCreatedSet.set(observableSet);
-		currentIgnoreCount.set(null);
+		FrameStack frameStack = (FrameStack) currentFrames.get();
+		// Push the new set to the top of the stack
+		Frame frame = frameStack.push();
+		frame.observableCreatedSet = frame.ownSet;
+		IObservable[] result;
 		try {
 			runnable.run();
 		} finally {
-			// Pop the new listener off the top of the stack (by restoring the
-			// previous listener)
-			currentObservableCreatedSet.set(lastObservableCreatedSet);
-			checkUnmatchedIgnore(runnable);
-			currentIgnoreCount.set(lastIgnore);
+			// Pop the new set off the top of the stack
+			checkUnmatchedIgnore(frame, runnable);
+			result = frame.ownSet.toArray();
+			frameStack.pop();
 		}
-
-		return (IObservable[]) observableSet
-				.toArray(new IObservable[observableSet.size()]);
+		return result;
 	}
 
-	private static void checkUnmatchedIgnore(Runnable runnable) {
-		if (isIgnore()) {
+	private static void checkUnmatchedIgnore(Frame frame, Runnable runnable) {
+		if (frame.ignoreCount > 0) {
 			Policy
 					.getLog()
 					.log(
@@ -169,7 +304,7 @@ public class ObservableTracker {
 									IStatus.ERROR,
 									Policy.JFACE_DATABINDING,
 									"There were " //$NON-NLS-1$
-											+ currentIgnoreCount.get()
+											+ frame.ignoreCount
 											+ " unmatched setIgnore(true) invocations in runnable " //$NON-NLS-1$
 											+ runnable));
 		}
@@ -196,15 +331,14 @@ public class ObservableTracker {
 	 * @since 1.3
 	 */
 	public static void setIgnore(boolean ignore) {
-		Integer lastCount = (Integer) currentIgnoreCount.get();
-
-		int newCount = (lastCount == null ? 0 : lastCount.intValue())
-				+ (ignore ? 1 : -1);
-
-		if (newCount < 0)
+		Frame frame = ((FrameStack) currentFrames.get()).top();
+		if (ignore) {
+			frame.ignoreCount++;
+		} else if (frame.ignoreCount == 0) {
 			throw new IllegalStateException("Ignore count is already zero"); //$NON-NLS-1$
-
-		currentIgnoreCount.set(newCount == 0 ? null : new Integer(newCount));
+		} else {
+			frame.ignoreCount--;
+		}
 	}
 
 	/**
@@ -233,10 +367,6 @@ public class ObservableTracker {
 				+ Integer.toHexString(System.identityHashCode(observable));
 	}
 
-	private static boolean isIgnore() {
-		return currentIgnoreCount.get() != null;
-	}
-
 	/**
 	 * Notifies the ObservableTracker that an observable was read from. The
 	 * JavaDoc for methods that invoke this method should include the following
@@ -256,20 +386,17 @@ public class ObservableTracker {
 			Assert.isTrue(false, "Getter called outside realm of observable " //$NON-NLS-1$
 					+ toString(observable));
 
-		if (isIgnore())
+		Frame frame = ((FrameStack) currentFrames.get()).top();
+		if (frame.ignoreCount > 0)
 			return;
 
-		Set getterCalledSet = (Set) currentGetterCalledSet.get();
-		if (getterCalledSet != null && getterCalledSet.add(observable)) {
+		if (frame.getterCalledSet != null
+				&& frame.getterCalledSet.add(observable)) {
 			// If anyone is listening for observable usage...
-			IChangeListener changeListener = (IChangeListener) currentChangeListener
-					.get();
-			if (changeListener != null)
-				observable.addChangeListener(changeListener);
-			IStaleListener staleListener = (IStaleListener) currentStaleListener
-					.get();
-			if (staleListener != null)
-				observable.addStaleListener(staleListener);
+			if (frame.changeListener != null)
+				observable.addChangeListener(frame.changeListener);
+			if (frame.staleListener != null)
+				observable.addStaleListener(frame.staleListener);
 		}
 	}
 
@@ -281,11 +408,11 @@ public class ObservableTracker {
 	 * @since 1.2
 	 */
 	public static void observableCreated(IObservable observable) {
-		if (isIgnore())
+		Frame frame = ((FrameStack) currentFrames.get()).top();
+		if (frame.ignoreCount > 0)
 			return;
-		Set observableCreatedSet = (Set) currentObservableCreatedSet.get();
-		if (observableCreatedSet != null) {
-			observableCreatedSet.add(observable);
+		if (frame.observableCreatedSet != null) {
+			frame.observableCreatedSet.add(observable);
 		}
 	}
 }
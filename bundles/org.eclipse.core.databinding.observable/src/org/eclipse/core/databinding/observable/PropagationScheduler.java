@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.core.databinding.observable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.internal.databinding.identity.IdentityMap;
+import org.eclipse.core.internal.databinding.observable.IDependencyListener;
+
+/**
+ * Propagates the changes of the observables of a realm to the computed
+ * observables depending on them in two phases, see
+ * {@link Realm#setGlitchFreePropagation(boolean)}.
+ * <p>
+ * When an observable fires a change event, the computed observables depending
+ * on it are notified first, through their {@link IDependencyListener}. They
+ * become dirty and notify the computed observables depending on them in turn,
+ * while the events they fire are held back. Once the outermost event was
+ * fired, every computed observable affected by the change is dirty, and the
+ * events held back are fired in the topological order of the dependencies:
+ * the listeners reading a computed observable recompute it once, from
+ * dependencies which are all up to date.
+ * </p>
+ */
+/* package */final class PropagationScheduler {
+
+	/**
+	 * A computed observable affected by the change being propagated.
+	 */
+	private static final class Node {
+		final IObservable observable;
+
+		/**
+		 * The nodes depending on this one.
+		 */
+		List dependents;
+
+		/**
+		 * The number of affected nodes this one depends on, which have not
+		 * fired their events yet.
+		 */
+		int dependencies;
+
+		ChangeManager changeManager;
+
+		List events;
+
+		Node(IObservable observable) {
+			this.observable = observable;
+		}
+	}
+
+	private final Realm realm;
+
+	/**
+	 * The thread propagating a change, <code>null</code> if there is none.
+	 */
+	private Thread thread;
+
+	private Map nodesByObservable;
+
+	private List nodes;
+
+	PropagationScheduler(Realm realm) {
+		this.realm = realm;
+	}
+
+	/**
+	 * Fires the given event, or holds it back if it was fired by an affected
+	 * computed observable.
+	 *
+	 * @return <code>false</code> if the event must be fired as usual
+	 */
+	boolean fireEvent(ChangeManager changeManager, ObservableEvent event) {
+		if (thread == null) {
+			if (!realm.isCurrent()) {
+				return false;
+			}
+			thread = Thread.currentThread();
+			try {
+				dispatch(changeManager, event);
+			} finally {
+				thread = null;
+				fireHeldEvents();
+			}
+			return true;
+		}
+		if (Thread.currentThread() != thread) {
+			return false;
+		}
+		dispatch(changeManager, event);
+		return true;
+	}
+
+	private void dispatch(ChangeManager changeManager, ObservableEvent event) {
+		Node node = nodesByObservable == null ? null : (Node) nodesByObservable
+				.get(event.getObservable());
+		if (event instanceof ChangeEvent) {
+			// mark the dependent computed observables dirty first, so the
+			// other listeners find them all dirty
+			Object[] listeners = changeManager.getListeners(event
+					.getListenerType());
+			boolean hasOtherListeners = false;
+			for (int i = 0; i < listeners.length; i++) {
+				if (listeners[i] instanceof IDependencyListener) {
+					IDependencyListener listener = (IDependencyListener) listeners[i];
+					addDependency(node, listener.getDependent());
+					event.dispatch(listener);
+				} else {
+					hasOtherListeners = true;
+				}
+			}
+			if (!hasOtherListeners) {
+				return;
+			}
+			if (node == null) {
+				for (int i = 0; i < listeners.length; i++) {
+					if (!(listeners[i] instanceof IDependencyListener)) {
+						event.dispatch((IObservablesListener) listeners[i]);
+					}
+				}
+				return;
+			}
+		} else if (node == null) {
+			changeManager.dispatch(event);
+			return;
+		}
+		node.changeManager = changeManager;
+		if (node.events == null) {
+			node.events = new ArrayList(3);
+		}
+		node.events.add(event);
+	}
+
+	private void addDependency(Node node, IObservable dependent) {
+		if (nodesByObservable == null) {
+			nodesByObservable = new IdentityMap();
+			nodes = new ArrayList();
+		}
+		Node dependentNode = (Node) nodesByObservable.get(dependent);
+		if (dependentNode == null) {
+			dependentNode = new Node(dependent);
+			nodesByObservable.put(dependent, dependentNode);
+			nodes.add(dependentNode);
+		}
+		if (node != null) {
+			if (node.dependents == null) {
+				node.dependents = new ArrayList(2);
+			}
+			node.dependents.add(dependentNode);
+			dependentNode.dependencies++;
+		}
+	}
+
+	/**
+	 * Fires the events held back, the events of every node being fired after
+	 * the ones of the nodes it depends on. The listeners may change
+	 * observables, which starts the propagation of another change.
+	 */
+	private void fireHeldEvents() {
+		if (nodes == null) {
+			return;
+		}
+		List affectedNodes = nodes;
+		nodesByObservable = null;
+		nodes = null;
+
+		Node[] queue = new Node[affectedNodes.size()];
+		int tail = 0;
+		for (int i = 0; i < queue.length; i++) {
+			Node node = (Node) affectedNodes.get(i);
+			if (node.dependencies == 0) {
+				queue[tail++] = node;
+			}
+		}
+		for (int head = 0; head < queue.length; head++) {
+			if (head == tail) {
+				// the dependencies have a cycle, fire the events of the
+				// remaining nodes in the order they were affected
+				for (int i = 0; i < queue.length; i++) {
+					Node node = (Node) affectedNodes.get(i);
+					if (node.dependencies > 0) {
+						// never reaches zero again
+						node.dependencies = -1;
+						queue[tail++] = node;
+					}
+				}
+			}
+			Node node = queue[head];
+			if (node.dependents != null) {
+				for (int i = 0; i < node.dependents.size(); i++) {
+					Node dependent = (Node) node.dependents.get(i);
+					if (--dependent.dependencies == 0) {
+						queue[tail++] = dependent;
+					}
+				}
+			}
+			fireEvents(node);
+		}
+	}
+
+	private static void fireEvents(Node node) {
+		if (node.events == null || node.observable.isDisposed()) {
+			return;
+		}
+		for (int i = 0; i < node.events.size(); i++) {
+			ObservableEvent event = (ObservableEvent) node.events.get(i);
+			Object[] listeners = node.changeManager.getListeners(event
+					.getListenerType());
+			for (int j = 0; j < listeners.length; j++) {
+				// the dependent computed observables were already notified
+				if (!(event instanceof ChangeEvent && listeners[j] instanceof IDependencyListener)) {
+					event.dispatch((IObservablesListener) listeners[j]);
+				}
+			}
+		}
+	}
+}
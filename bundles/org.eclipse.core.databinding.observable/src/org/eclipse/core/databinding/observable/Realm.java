@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2009 IBM Corporation and others.
+ * Copyright (c) 2006, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -18,6 +18,7 @@ import java.util.TimerTask;
 
 import org.eclipse.core.databinding.util.Policy;
 import org.eclipse.core.internal.databinding.observable.Queue;
+import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.ISafeRunnable;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.SafeRunner;
@@ -119,6 +120,19 @@ public abstract class Realm {
 	private volatile Timer timer;
 
 	Queue workQueue = new Queue();
+
+	/**
+	 * The events deferred by {@link #runBatched(Runnable)}, <code>null</code>
+	 * outside of a batch.
+	 */
+	ChangeBatch batch;
+
+	/**
+	 * The scheduler propagating the changes to the computed observables,
+	 * <code>null</code> unless {@link #setGlitchFreePropagation(boolean)} was
+	 * called.
+	 */
+	PropagationScheduler scheduler;
 	
 	/**
 	 * Runs the given runnable. If an exception occurs within the runnable, it
@@ -317,6 +331,94 @@ public abstract class Realm {
 		}
 	}
 
+	/**
+	 * Runs the given runnable, merging the change events of every observable
+	 * of this realm into one event fired when the runnable completes. This
+	 * method must be called from within this realm.
+	 * <p>
+	 * The list, set, map and value change events fired by an observable during
+	 * the batch are merged into a single event, whose diff describes all the
+	 * changes, so the listeners updating a viewer or a model do it once for a
+	 * bulk update. The merged events are fired in the order the observables
+	 * first changed, after the runnable completed, even if it threw an
+	 * exception.
+	 * </p>
+	 * <p>
+	 * Generic change events are fired right away, so the observables computed
+	 * from the changed ones, such as <code>ComputedValue</code>, return current
+	 * values within the batch. Stale events, dispose events and value changing
+	 * events are fired right away too. Calls to this method made within a batch
+	 * run the runnable as part of the enclosing batch.
+	 * </p>
+	 * 
+	 * @param runnable
+	 *            the runnable changing observables of this realm
+	 * @since 1.5
+	 */
+	public void runBatched(Runnable runnable) {
+		Assert.isTrue(isCurrent(),
+				"This operation must be run within the realm"); //$NON-NLS-1$
+		if (batch != null) {
+			runnable.run();
+			return;
+		}
+		ChangeBatch newBatch = new ChangeBatch();
+		batch = newBatch;
+		try {
+			runnable.run();
+		} finally {
+			batch = null;
+			newBatch.fireEvents();
+		}
+	}
+
+	/**
+	 * Sets whether the changes of the observables of this realm are propagated
+	 * to the computed observables depending on them before any other listener
+	 * is notified. This method should be called from within this realm.
+	 * <p>
+	 * By default, a computed observable such as <code>ComputedValue</code>
+	 * fires its change event as soon as one of its dependencies changes. When
+	 * several computed observables depend on the same observable, directly or
+	 * not, a listener may read one of them before the others know about the
+	 * change: it recomputes from outdated values, and is recomputed and fires
+	 * again when the change reaches the other dependencies.
+	 * </p>
+	 * <p>
+	 * With glitch free propagation, every computed observable affected by a
+	 * change is marked dirty before any other listener is notified, and the
+	 * events of the computed observables are fired after the ones of the
+	 * computed observables they depend on. A computed observable is then
+	 * recomputed at most once per change, when it is first read, and fires a
+	 * single event. The events of the observables which are not computed are
+	 * fired as usual.
+	 * </p>
+	 * 
+	 * @param glitchFree
+	 *            <code>true</code> to propagate the changes in topological
+	 *            order, <code>false</code> to fire the events right away
+	 * @since 1.5
+	 */
+	public void setGlitchFreePropagation(boolean glitchFree) {
+		if (glitchFree) {
+			if (scheduler == null) {
+				scheduler = new PropagationScheduler(this);
+			}
+		} else {
+			scheduler = null;
+		}
+	}
+
+	/**
+	 * @return whether the changes are propagated to the computed observables
+	 *         before any other listener is notified
+	 * @see #setGlitchFreePropagation(boolean)
+	 * @since 1.5
+	 */
+	public boolean isGlitchFreePropagation() {
+		return scheduler != null;
+	}
+
 	/**
 	 * Sets the provided <code>realm</code> as the default for the duration of
 	 * {@link Runnable#run()} and resets the previous realm after completion.
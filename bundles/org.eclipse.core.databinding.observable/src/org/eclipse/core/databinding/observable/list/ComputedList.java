@@ -1,5 +1,5 @@
 /************************************************************************************************************
- * Copyright (c) 2007, 2009 Matthew Hall and others.
+ * Copyright (c) 2007, 2014 Matthew Hall and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -26,6 +26,8 @@ import org.eclipse.core.databinding.observable.ObservableTracker;
 import org.eclipse.core.databinding.observable.Realm;
 import org.eclipse.core.databinding.observable.StaleEvent;
 import org.eclipse.core.databinding.observable.value.IObservableValue;
+import org.eclipse.core.internal.databinding.observable.Dependencies;
+import org.eclipse.core.internal.databinding.observable.IDependencyListener;
 
 /**
  * A lazily calculated list that automatically computes and registers listeners
@@ -149,7 +151,7 @@ public abstract class ComputedList extends AbstractObservableList {
 	 * </p>
 	 * 
 	 */
-	private class PrivateInterface implements Runnable, IChangeListener,
+	private class PrivateInterface implements Runnable, IDependencyListener,
 			IStaleListener {
 		public void run() {
 			cachedList = calculate();
@@ -165,6 +167,10 @@ public abstract class ComputedList extends AbstractObservableList {
 		public void handleChange(ChangeEvent event) {
 			makeDirty();
 		}
+
+		public IObservable getDependent() {
+			return ComputedList.this;
+		}
 	}
 
 	private PrivateInterface privateInterface = new PrivateInterface();
@@ -192,7 +198,11 @@ public abstract class ComputedList extends AbstractObservableList {
 			// - While doing so, add any observable that is touched to the
 			// dependencies list
 			IObservable[] newDependencies = ObservableTracker.runAndMonitor(
-					privateInterface, privateInterface, null);
+					privateInterface, null, null);
+			// Only add and remove the listeners of the dependencies which
+			// changed since the last computation
+			Dependencies.update(dependencies, newDependencies,
+					privateInterface, privateInterface);
 
 			// If any dependencies are stale, a stale event will be fired here
 			// even if we were already stale before recomputing. This is in case
@@ -205,12 +215,6 @@ public abstract class ComputedList extends AbstractObservableList {
 				}
 			}
 
-			if (!stale) {
-				for (int i = 0; i < newDependencies.length; i++) {
-					newDependencies[i].addStaleListener(privateInterface);
-				}
-			}
-
 			dependencies = newDependencies;
 
 			dirty = false;
@@ -239,7 +243,12 @@ public abstract class ComputedList extends AbstractObservableList {
 
 			makeStale();
 
-			stopListening();
+			// The listeners stay registered while someone is interested in
+			// the new value, so the next computation only updates the
+			// listeners of the dependencies which changed
+			if (!hasListeners()) {
+				stopListening();
+			}
 
 			// copy the old list
 			final List oldList = new ArrayList(cachedList);
@@ -259,15 +268,9 @@ public abstract class ComputedList extends AbstractObservableList {
 	}
 
 	private void stopListening() {
-		if (dependencies != null) {
-			for (int i = 0; i < dependencies.length; i++) {
-				IObservable observable = dependencies[i];
-
-				observable.removeChangeListener(privateInterface);
-				observable.removeStaleListener(privateInterface);
-			}
-			dependencies = null;
-		}
+		Dependencies.removeAll(dependencies, privateInterface,
+				privateInterface);
+		dependencies = null;
 	}
 
 	private void makeStale() {
@@ -312,8 +315,8 @@ public abstract class ComputedList extends AbstractObservableList {
 		// notifications.
 		getRealm().exec(new Runnable() {
 			public void run() {
-				if (dependencies == null) {
-					// We are not currently listening.
+				if (dirty) {
+					// We are not up to date with our dependencies.
 					// But someone is listening for changes. Call getValue()
 					// to make sure we start listening to the observables we
 					// depend on.
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2009 IBM Corporation and others.
+ * Copyright (c) 2005, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -20,6 +20,8 @@ import org.eclipse.core.databinding.observable.ObservableTracker;
 import org.eclipse.core.databinding.observable.Realm;
 import org.eclipse.core.databinding.observable.StaleEvent;
 import org.eclipse.core.databinding.observable.list.IObservableList;
+import org.eclipse.core.internal.databinding.observable.Dependencies;
+import org.eclipse.core.internal.databinding.observable.IDependencyListener;
 
 /**
  * A Lazily calculated value that automatically computes and registers listeners
@@ -128,7 +130,7 @@ public abstract class ComputedValue extends AbstractObservableValue {
 	 * </p>
 	 * 
 	 */
-	private class PrivateInterface implements Runnable, IChangeListener,
+	private class PrivateInterface implements Runnable, IDependencyListener,
 			IStaleListener {
 		public void run() {
 			cachedValue = calculate();
@@ -144,6 +146,10 @@ public abstract class ComputedValue extends AbstractObservableValue {
 		public void handleChange(ChangeEvent event) {
 			makeDirty();
 		}
+
+		public IObservable getDependent() {
+			return ComputedValue.this;
+		}
 	}
 
 	private PrivateInterface privateInterface = new PrivateInterface();
@@ -157,16 +163,17 @@ public abstract class ComputedValue extends AbstractObservableValue {
 			// - While doing so, add any observable that is touched to the
 			// dependencies list
 			IObservable[] newDependencies = ObservableTracker.runAndMonitor(
-					privateInterface, privateInterface, null);
+					privateInterface, null, null);
+			// Only add and remove the listeners of the dependencies which
+			// changed since the last computation
+			Dependencies.update(dependencies, newDependencies,
+					privateInterface, privateInterface);
 
 			stale = false;
 			for (int i = 0; i < newDependencies.length; i++) {
-				IObservable observable = newDependencies[i];
-				// Add a change listener to the new dependency.
-				if (observable.isStale()) {
+				if (newDependencies[i].isStale()) {
 					stale = true;
-				} else {
-					observable.addStaleListener(privateInterface);
+					break;
 				}
 			}
 
@@ -192,7 +199,12 @@ public abstract class ComputedValue extends AbstractObservableValue {
 		if (!dirty) {
 			dirty = true;
 
-			stopListening();
+			// The listeners stay registered while someone is interested in
+			// the new value, so the next computation only updates the
+			// listeners of the dependencies which changed
+			if (!hasListeners()) {
+				stopListening();
+			}
 
 			// copy the old value
 			final Object oldValue = cachedValue;
@@ -215,16 +227,9 @@ public abstract class ComputedValue extends AbstractObservableValue {
 	 * 
 	 */
 	private void stopListening() {
-		// Stop listening for dependency changes.
-		if (dependencies != null) {
-			for (int i = 0; i < dependencies.length; i++) {
-				IObservable observable = dependencies[i];
-
-				observable.removeChangeListener(privateInterface);
-				observable.removeStaleListener(privateInterface);
-			}
-			dependencies = null;
-		}
+		Dependencies.removeAll(dependencies, privateInterface,
+				privateInterface);
+		dependencies = null;
 	}
 
 	public boolean isStale() {
@@ -264,8 +269,8 @@ public abstract class ComputedValue extends AbstractObservableValue {
 	private void computeValueForListeners() {
 		getRealm().exec(new Runnable() {
 			public void run() {
-				if (dependencies == null) {
-					// We are not currently listening.
+				if (dirty) {
+					// We are not up to date with our dependencies.
 					if (hasListeners()) {
 						// But someone is listening for changes. Call getValue()
 						// to make sure we start listening to the observables we
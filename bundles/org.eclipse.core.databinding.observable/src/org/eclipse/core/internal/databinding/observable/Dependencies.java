@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.core.internal.databinding.observable;
+
+import java.util.Set;
+
+import org.eclipse.core.databinding.observable.IChangeListener;
+import org.eclipse.core.databinding.observable.IObservable;
+import org.eclipse.core.databinding.observable.IStaleListener;
+import org.eclipse.core.internal.databinding.identity.IdentitySet;
+
+/**
+ * Updates the listeners registered by a computed observable on its
+ * dependencies. The dependencies of a computed observable seldom change from
+ * one computation to the next, so only the listeners of the observables it no
+ * longer or newly depends on are removed or added.
+ */
+public final class Dependencies {
+
+	/**
+	 * The number of dependencies above which the dependencies are compared
+	 * through an identity set rather than by searching the other array.
+	 */
+	private static final int LINEAR_SEARCH_SIZE = 8;
+
+	private Dependencies() {
+	}
+
+	/**
+	 * Moves the given listeners from the old dependencies to the new ones. The
+	 * listeners are removed from the observables only found in the old
+	 * dependencies, and added to the observables only found in the new ones.
+	 *
+	 * @param oldDependencies
+	 *            the dependencies the listeners are registered on, or
+	 *            <code>null</code> if there are none
+	 * @param newDependencies
+	 *            the dependencies to register the listeners on
+	 * @param changeListener
+	 *            the change listener
+	 * @param staleListener
+	 *            the stale listener
+	 */
+	public static void update(IObservable[] oldDependencies,
+			IObservable[] newDependencies, IChangeListener changeListener,
+			IStaleListener staleListener) {
+		if (oldDependencies == null) {
+			oldDependencies = new IObservable[0];
+		}
+		if (oldDependencies.length > LINEAR_SEARCH_SIZE
+				|| newDependencies.length > LINEAR_SEARCH_SIZE) {
+			Set oldSet = toSet(oldDependencies);
+			Set newSet = toSet(newDependencies);
+			for (int i = 0; i < oldDependencies.length; i++) {
+				if (!newSet.contains(oldDependencies[i])) {
+					removeListeners(oldDependencies[i], changeListener,
+							staleListener);
+				}
+			}
+			for (int i = 0; i < newDependencies.length; i++) {
+				if (!oldSet.contains(newDependencies[i])) {
+					addListeners(newDependencies[i], changeListener,
+							staleListener);
+				}
+			}
+		} else {
+			for (int i = 0; i < oldDependencies.length; i++) {
+				if (!contains(newDependencies, oldDependencies[i])) {
+					removeListeners(oldDependencies[i], changeListener,
+							staleListener);
+				}
+			}
+			for (int i = 0; i < newDependencies.length; i++) {
+				if (!contains(oldDependencies, newDependencies[i])) {
+					addListeners(newDependencies[i], changeListener,
+							staleListener);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes the given listeners from the dependencies.
+	 *
+	 * @param dependencies
+	 *            the dependencies, or <code>null</code> if there are none
+	 * @param changeListener
+	 *            the change listener
+	 * @param staleListener
+	 *            the stale listener
+	 */
+	public static void removeAll(IObservable[] dependencies,
+			IChangeListener changeListener, IStaleListener staleListener) {
+		if (dependencies != null) {
+			for (int i = 0; i < dependencies.length; i++) {
+				removeListeners(dependencies[i], changeListener, staleListener);
+			}
+		}
+	}
+
+	private static void addListeners(IObservable observable,
+			IChangeListener changeListener, IStaleListener staleListener) {
+		observable.addChangeListener(changeListener);
+		observable.addStaleListener(staleListener);
+	}
+
+	private static void removeListeners(IObservable observable,
+			IChangeListener changeListener, IStaleListener staleListener) {
+		observable.removeChangeListener(changeListener);
+		observable.removeStaleListener(staleListener);
+	}
+
+	private static Set toSet(IObservable[] observables) {
+		Set set = new IdentitySet();
+		for (int i = 0; i < observables.length; i++) {
+			set.add(observables[i]);
+		}
+		return set;
+	}
+
+	private static boolean contains(IObservable[] observables,
+			IObservable observable) {
+		for (int i = 0; i < observables.length; i++) {
+			if (observables[i] == observable) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,29 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.core.internal.databinding.observable;
+
+import org.eclipse.core.databinding.observable.IChangeListener;
+import org.eclipse.core.databinding.observable.IObservable;
+
+/**
+ * The change listener registered by a computed observable on the observables
+ * it depends on. The listener only marks the computed observable dirty, so it
+ * is notified before the other listeners when propagation is scheduled, see
+ * <code>Realm.setGlitchFreePropagation(boolean)</code>.
+ */
+public interface IDependencyListener extends IChangeListener {
+
+	/**
+	 * @return the computed observable the listener belongs to
+	 */
+	public IObservable getDependent();
+}
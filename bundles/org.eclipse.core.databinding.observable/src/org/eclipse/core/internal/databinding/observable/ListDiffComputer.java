@@ -0,0 +1,273 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.core.internal.databinding.observable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.databinding.observable.Diffs;
+import org.eclipse.core.databinding.observable.list.ListDiffEntry;
+
+/**
+ * Computes the entries of the diff between two list states. Applying the
+ * entries in order to the old list yields the new list; an element moved to
+ * another position is removed and added again.
+ * <p>
+ * The elements common to both lists are found through a hash index of the old
+ * list: the n-th occurrence of an element in the new list is paired with its
+ * n-th occurrence in the old list, and the longest sequence of pairs in the
+ * same order in both lists is kept in place. The other pairs are moves. The
+ * diff is computed in O(N log N) time, N being the size of the lists, and is
+ * minimal when the elements of the lists are unique. The elements must have
+ * hash codes consistent with <code>equals</code>.
+ * </p>
+ */
+public final class ListDiffComputer {
+
+	private static final int REMOVED = 0;
+
+	private static final int KEPT = 1;
+
+	private static final int MOVED = 2;
+
+	private ListDiffComputer() {
+	}
+
+	/**
+	 * Returns the entries of the diff between the given list states.
+	 *
+	 * @param oldList
+	 *            the old list state
+	 * @param newList
+	 *            the new list state
+	 * @return the entries, to be applied in order
+	 */
+	public static ListDiffEntry[] computeDifferences(List oldList, List newList) {
+		Object[] oldElements = oldList.toArray();
+		Object[] newElements = newList.toArray();
+
+		// skip the common prefix and suffix, the whole list for most updates
+		int start = 0;
+		while (start < oldElements.length && start < newElements.length
+				&& Util.equals(oldElements[start], newElements[start])) {
+			start++;
+		}
+		int oldEnd = oldElements.length;
+		int newEnd = newElements.length;
+		while (oldEnd > start && newEnd > start
+				&& Util.equals(oldElements[oldEnd - 1], newElements[newEnd - 1])) {
+			oldEnd--;
+			newEnd--;
+		}
+
+		int oldSize = oldEnd - start;
+		int newSize = newEnd - start;
+		List entries = new ArrayList();
+		if (oldSize == 0) {
+			for (int i = start; i < newEnd; i++) {
+				entries.add(Diffs.createListDiffEntry(i, true, newElements[i]));
+			}
+		} else if (newSize == 0) {
+			for (int i = oldEnd - 1; i >= start; i--) {
+				entries.add(Diffs.createListDiffEntry(i, false, oldElements[i]));
+			}
+		} else {
+			int[] sources = pairElements(oldElements, newElements, start,
+					oldSize, newSize);
+			int[] states = new int[oldSize];
+			boolean[] kept = keepLongestSequence(sources, states);
+			createEntries(oldElements, newElements, start, sources, kept,
+					states, entries);
+		}
+		return (ListDiffEntry[]) entries.toArray(new ListDiffEntry[entries
+				.size()]);
+	}
+
+	/**
+	 * Pairs the n-th occurrence of every new element with the n-th occurrence
+	 * of the element in the old list.
+	 *
+	 * @return the index in the old list, relative to <code>start</code>, of
+	 *         every new element, or <code>-1</code> for added elements
+	 */
+	private static int[] pairElements(Object[] oldElements,
+			Object[] newElements, int start, int oldSize, int newSize) {
+		// the first occurrence of every element, the next ones being chained
+		Map firstOccurrences = new HashMap();
+		int[] nextOccurrences = new int[oldSize];
+		for (int i = oldSize - 1; i >= 0; i--) {
+			Integer next = (Integer) firstOccurrences.put(oldElements[start
+					+ i], new Integer(i));
+			nextOccurrences[i] = next == null ? -1 : next.intValue();
+		}
+
+		int[] sources = new int[newSize];
+		for (int j = 0; j < newSize; j++) {
+			Object element = newElements[start + j];
+			Integer occurrence = (Integer) firstOccurrences.get(element);
+			if (occurrence == null) {
+				sources[j] = -1;
+			} else {
+				int i = occurrence.intValue();
+				sources[j] = i;
+				if (nextOccurrences[i] == -1) {
+					firstOccurrences.remove(element);
+				} else {
+					firstOccurrences.put(element, new Integer(
+							nextOccurrences[i]));
+				}
+			}
+		}
+		return sources;
+	}
+
+	/**
+	 * Finds the longest sequence of paired elements in the same order in both
+	 * lists, by patience sorting of their old indexes.
+	 *
+	 * @param sources
+	 *            the old index of every new element
+	 * @param states
+	 *            receives the state of every old element
+	 * @return whether every new element is kept in place
+	 */
+	private static boolean[] keepLongestSequence(int[] sources, int[] states) {
+		// the last new element of the best sequence of every length
+		int[] tails = new int[sources.length];
+		int[] predecessors = new int[sources.length];
+		int length = 0;
+		for (int j = 0; j < sources.length; j++) {
+			int source = sources[j];
+			if (source == -1) {
+				continue;
+			}
+			states[source] = MOVED;
+			int low = 0;
+			int high = length;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (sources[tails[middle]] < source) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			predecessors[j] = low == 0 ? -1 : tails[low - 1];
+			tails[low] = j;
+			if (low == length) {
+				length++;
+			}
+		}
+
+		boolean[] kept = new boolean[sources.length];
+		for (int j = length == 0 ? -1 : tails[length - 1]; j != -1; j = predecessors[j]) {
+			kept[j] = true;
+			states[sources[j]] = KEPT;
+		}
+		return kept;
+	}
+
+	/**
+	 * Creates the entries turning the old list into the new one, visiting the
+	 * new elements in order. The positions of the old elements in the list
+	 * being modified are tracked with a binary indexed tree counting the old
+	 * elements still present.
+	 */
+	private static void createEntries(Object[] oldElements,
+			Object[] newElements, int start, int[] sources, boolean[] kept,
+			int[] states, List entries) {
+		int oldSize = states.length;
+		int[] present = new int[oldSize + 1];
+		for (int i = 1; i <= oldSize; i++) {
+			present[i] = i & -i;
+		}
+
+		// the first old element which was not visited yet
+		int head = 0;
+		int index = start;
+		for (int j = 0; j < sources.length; j++) {
+			Object newElement = newElements[start + j];
+			int source = sources[j];
+			if (kept[j]) {
+				// the old elements before the kept one are removed, the moved
+				// ones being added again at their new position
+				for (; head < source; head++) {
+					if (isPresent(present, head)) {
+						entries.add(Diffs.createListDiffEntry(index, false,
+								oldElements[start + head]));
+						remove(present, head);
+					}
+				}
+				remove(present, source);
+				head = source + 1;
+			} else if (source != -1 && isPresent(present, source)) {
+				// like the old algorithm, the removed elements in front of the
+				// list are removed before moving an element
+				for (; head < oldSize
+						&& (!isPresent(present, head) || states[head] == REMOVED); head++) {
+					if (isPresent(present, head)) {
+						entries.add(Diffs.createListDiffEntry(index, false,
+								oldElements[start + head]));
+						remove(present, head);
+					}
+				}
+				if (head == source) {
+					remove(present, source);
+					head++;
+				} else {
+					int position = index + count(present, source)
+							- count(present, head);
+					entries.add(Diffs.createListDiffEntry(position, false,
+							oldElements[start + source]));
+					remove(present, source);
+					entries.add(Diffs.createListDiffEntry(index, true,
+							newElement));
+				}
+			} else {
+				entries.add(Diffs.createListDiffEntry(index, true, newElement));
+			}
+			index++;
+		}
+
+		// remove the old elements left, from the end of the list
+		int position = index + count(present, oldSize) - count(present, head);
+		for (int i = oldSize - 1; i >= head; i--) {
+			if (isPresent(present, i)) {
+				entries.add(Diffs.createListDiffEntry(--position, false,
+						oldElements[start + i]));
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of old elements present before the given one.
+	 */
+	private static int count(int[] present, int i) {
+		int count = 0;
+		for (; i > 0; i -= i & -i) {
+			count += present[i];
+		}
+		return count;
+	}
+
+	private static boolean isPresent(int[] present, int i) {
+		return count(present, i + 1) - count(present, i) == 1;
+	}
+
+	private static void remove(int[] present, int i) {
+		for (i++; i < present.length; i += i & -i) {
+			present[i]--;
+		}
+	}
+}
@@ -0,0 +1,226 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.e4.ui.bindings.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.core.commands.ParameterizedCommand;
+import org.eclipse.jface.bindings.Binding;
+import org.eclipse.jface.bindings.TriggerSequence;
+
+/**
+ * The active bindings of the tables of a {@link ContextSet}, indexed by trigger sequence. The
+ * perfect and partial matches of a sequence are found with a single hash lookup, whatever the
+ * number of tables: every bound sequence and each of its prefixes has a {@link Match}.
+ * <p>
+ * The index also remembers the sequences of the commands it was asked for, sorted with
+ * {@link BindingTable#BEST_SEQUENCE}, so showing the accelerators of a menu does not collect and
+ * sort the bindings of each item again.
+ * </p>
+ * <p>
+ * An index is a snapshot of the tables it was built from; {@link #isCurrent()} tells whether one
+ * of them changed since.
+ * </p>
+ */
+class BindingIndex {
+
+	/**
+	 * The bindings of a sequence and of the sequences it is a prefix of.
+	 */
+	static final class Match {
+		private boolean partialMatch;
+		private Binding perfectMatch;
+		private List<Binding> candidates;
+
+		/**
+		 * @return the binding of the sequence, <code>null</code> if there is none
+		 */
+		Binding getPerfectMatch() {
+			return perfectMatch;
+		}
+
+		/**
+		 * @return whether the sequence is the prefix of a longer bound sequence
+		 */
+		boolean isPartialMatch() {
+			return partialMatch;
+		}
+	}
+
+	private final Map<TriggerSequence, Match> matches = new HashMap<TriggerSequence, Match>();
+
+	private final Map<TriggerSequence, List<Binding>> conflicts = new HashMap<TriggerSequence, List<Binding>>();
+
+	private final BindingTable[] tables;
+
+	private final int[] revisions;
+
+	private final Map<ParameterizedCommand, List<Binding>> sequencesByCommand = new HashMap<ParameterizedCommand, List<Binding>>();
+
+	/**
+	 * The sum of the revisions of the tables when the index was last found out of date.
+	 */
+	private int staleRevision;
+
+	/**
+	 * @param tables
+	 *            the tables the index is built from, in the order the contexts are searched;
+	 *            <code>null</code> for contexts without a table
+	 */
+	BindingIndex(BindingTable[] tables) {
+		this.tables = tables;
+		this.revisions = new int[tables.length];
+		for (int i = 0; i < tables.length; i++) {
+			if (tables[i] != null) {
+				revisions[i] = tables[i].getRevision();
+			}
+		}
+	}
+
+	/**
+	 * Adds a candidate binding for its sequence. The candidates are resolved to the perfect match
+	 * by {@link #resolve(BindingTableManager)}.
+	 */
+	void add(Binding binding) {
+		TriggerSequence sequence = binding.getTriggerSequence();
+		if (sequence.isEmpty()) {
+			return;
+		}
+		TriggerSequence[] prefixes = sequence.getPrefixes();
+		// the first prefix is the empty sequence
+		for (int i = 1; i < prefixes.length; i++) {
+			getMatch(prefixes[i]).partialMatch = true;
+		}
+		Match match = getMatch(sequence);
+		if (match.candidates == null) {
+			match.candidates = new ArrayList<Binding>(2);
+		}
+		match.candidates.add(binding);
+	}
+
+	/**
+	 * Adds a binding in conflict with others for its sequence.
+	 */
+	void addConflict(Binding binding) {
+		List<Binding> bindings = conflicts.get(binding.getTriggerSequence());
+		if (bindings == null) {
+			bindings = new ArrayList<Binding>(2);
+			conflicts.put(binding.getTriggerSequence(), bindings);
+		}
+		bindings.add(binding);
+	}
+
+	private Match getMatch(TriggerSequence sequence) {
+		Match match = matches.get(sequence);
+		if (match == null) {
+			match = new Match();
+			matches.put(sequence, match);
+		}
+		return match;
+	}
+
+	void resolve(BindingTableManager manager) {
+		for (Match match : matches.values()) {
+			if (match.candidates != null) {
+				match.perfectMatch = manager.resolvePerfectMatch(match.candidates);
+				match.candidates = null;
+			}
+		}
+		for (Map.Entry<TriggerSequence, List<Binding>> entry : conflicts.entrySet()) {
+			entry.setValue(Collections.unmodifiableList(entry.getValue()));
+		}
+	}
+
+	/**
+	 * @param command
+	 *            the command
+	 * @return the bindings of the command in the tables, best sequence first; the list must not be
+	 *         modified
+	 */
+	List<Binding> getSequencesFor(ParameterizedCommand command) {
+		List<Binding> sequences = sequencesByCommand.get(command);
+		if (sequences == null) {
+			ArrayList<Binding> bindings = new ArrayList<Binding>();
+			for (BindingTable table : tables) {
+				if (table != null) {
+					Collection<Binding> tableSequences = table.getSequencesFor(command);
+					if (tableSequences != null) {
+						bindings.addAll(tableSequences);
+					}
+				}
+			}
+			if (bindings.isEmpty()) {
+				sequences = Collections.emptyList();
+			} else {
+				Collections.sort(bindings, BindingTable.BEST_SEQUENCE);
+				sequences = Collections.unmodifiableList(bindings);
+			}
+			sequencesByCommand.put(command, sequences);
+		}
+		return sequences;
+	}
+
+	/**
+	 * @return whether none of the tables changed since the index was built
+	 */
+	boolean isCurrent() {
+		for (int i = 0; i < tables.length; i++) {
+			if (tables[i] != null && tables[i].getRevision() != revisions[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Tells whether the tables did not change since the last call, for an index which is not
+	 * current.
+	 * 
+	 * @return <code>true</code> if the tables did not change since the last call
+	 */
+	boolean isSettled() {
+		int revision = 0;
+		for (BindingTable table : tables) {
+			if (table != null) {
+				revision += table.getRevision();
+			}
+		}
+		if (revision == staleRevision) {
+			return true;
+		}
+		staleRevision = revision;
+		return false;
+	}
+
+	/**
+	 * @param sequence
+	 *            the sequence to look up
+	 * @return the match of the sequence, <code>null</code> if it is neither bound nor the prefix
+	 *         of a bound sequence
+	 */
+	Match find(TriggerSequence sequence) {
+		return matches.get(sequence);
+	}
+
+	/**
+	 * @param sequence
+	 *            the sequence to look up
+	 * @return the bindings in conflict for the sequence, <code>null</code> if there are none
+	 */
+	List<Binding> getConflictsFor(TriggerSequence sequence) {
+		return conflicts.get(sequence);
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010, 2013 IBM Corporation and others.
+ * Copyright (c) 2010, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -129,6 +129,7 @@ public class BindingTable {
 	private Map<TriggerSequence, ArrayList<Binding>> bindingsByPrefix = new HashMap<TriggerSequence, ArrayList<Binding>>();
 	private Map<TriggerSequence, ArrayList<Binding>> conflicts = new HashMap<TriggerSequence, ArrayList<Binding>>();
 	private Map<TriggerSequence, ArrayList<Binding>> orderedBindingsByTrigger = new HashMap<TriggerSequence, ArrayList<Binding>>();
+	private int revision;
 
 	/**
 	 * @param context
@@ -166,6 +167,7 @@ public class BindingTable {
 			throw new IllegalArgumentException("Binding context " + binding.getContextId() //$NON-NLS-1$
 					+ " does not match " + getId()); //$NON-NLS-1$
 		}
+		revision++;
 		ArrayList<Binding> bindingList = orderedBindingsByTrigger.get(binding.getTriggerSequence());
 		Binding possibleConflict = bindingsByTrigger.get(binding.getTriggerSequence());
 		if (bindingList == null || bindingList.isEmpty()) {
@@ -228,6 +230,10 @@ public class BindingTable {
 			ArrayList<Binding> bindings = bindingsByPrefix.get(prefs[i]);
 			if (bindings != null) {
 				bindings.remove(binding);
+				if (bindings.isEmpty()) {
+					// no longer a partial match
+					bindingsByPrefix.remove(prefs[i]);
+				}
 			}
 		}
 	}
@@ -237,6 +243,7 @@ public class BindingTable {
 			throw new IllegalArgumentException("Binding context " + binding.getContextId() //$NON-NLS-1$
 					+ " does not match " + getId()); //$NON-NLS-1$
 		}
+		revision++;
 		ArrayList<Binding> bindingList = orderedBindingsByTrigger.get(binding.getTriggerSequence());
 		Binding possibleConflict = bindingsByTrigger.get(binding.getTriggerSequence());
 		if (possibleConflict == binding) {
@@ -344,4 +351,11 @@ public class BindingTable {
 		return Collections.unmodifiableCollection(bindings);
 	}
 
+	/**
+	 * @return a number that changes whenever the bindings or the conflicts of the table change
+	 */
+	int getRevision() {
+		return revision;
+	}
+
 }
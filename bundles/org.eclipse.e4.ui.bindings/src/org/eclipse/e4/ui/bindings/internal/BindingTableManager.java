@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010, 2012 IBM Corporation and others.
+ * Copyright (c) 2010, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,8 +14,10 @@ package org.eclipse.e4.ui.bindings.internal;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import javax.inject.Inject;
 import org.eclipse.core.commands.ParameterizedCommand;
 import org.eclipse.core.commands.contexts.Context;
@@ -36,6 +38,38 @@ public class BindingTableManager {
 
 	private String[] activeSchemeIds;
 
+	private static final int MAX_CACHED_INDEXES = 32;
+
+	/**
+	 * The indexes of the most recently used context sets.
+	 */
+	private Map<ContextSet, BindingIndex> indexes = new LinkedHashMap<ContextSet, BindingIndex>(16,
+			0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<ContextSet, BindingIndex> eldest) {
+			return size() > MAX_CACHED_INDEXES;
+		}
+	};
+
+	private ContextSet lastContextSet;
+
+	private BindingIndex lastIndex;
+
+	private BindingIndex lastMatchIndex;
+
+	private TriggerSequence lastMatchSequence;
+
+	private BindingIndex.Match lastMatch;
+
+	/**
+	 * The bindings of the defined tables, <code>null</code> when they have to be collected again.
+	 */
+	private Collection<Binding> activeBindings;
+
+	private int activeBindingsRevision;
+
 	public void addTable(BindingTable table) {
 		String contextId = getTableId(table.getId());
 		if (eclipseContext.containsKey(contextId)) {
@@ -43,6 +77,7 @@ public class BindingTableManager {
 			//			throw new IllegalArgumentException("Already contains table " + contextId); //$NON-NLS-1$
 		}
 		eclipseContext.set(contextId, table);
+		clearIndexes();
 		final List<Context> contexts = definedTables.getContexts();
 		if (!contexts.contains(table.getTableId())) {
 			// this is only valid because I'm throwing away the old definedTables contextSet
@@ -61,6 +96,7 @@ public class BindingTableManager {
 			throw new IllegalArgumentException("Does not contains table " + contextId); //$NON-NLS-1$
 		}
 		eclipseContext.remove(contextId);
+		clearIndexes();
 		final List<Context> contexts = definedTables.getContexts();
 		if (contexts.contains(table.getTableId())) {
 			// this is only valid because I'm throwing away the old definedTables contextSet
@@ -76,6 +112,17 @@ public class BindingTableManager {
 	// we're just going through each binding table, and returning a
 	// flat list of bindings here
 	public Collection<Binding> getActiveBindings() {
+		// the revisions only grow, so their sum changes whenever one of the tables changes
+		int revision = 0;
+		for (Context ctx : definedTables.getContexts()) {
+			BindingTable table = getTable(ctx.getId());
+			if (table != null) {
+				revision += table.getRevision();
+			}
+		}
+		if (activeBindings != null && revision == activeBindingsRevision) {
+			return activeBindings;
+		}
 		ArrayList<Binding> bindings = new ArrayList<Binding>();
 		for (Context ctx : definedTables.getContexts()) {
 			BindingTable table = getTable(ctx.getId());
@@ -83,7 +130,9 @@ public class BindingTableManager {
 				bindings.addAll(table.getBindings());
 			}
 		}
-		return bindings;
+		activeBindings = Collections.unmodifiableList(bindings);
+		activeBindingsRevision = revision;
+		return activeBindings;
 	}
 
 	public ContextSet createContextSet(Collection<Context> contexts) {
@@ -92,6 +141,11 @@ public class BindingTableManager {
 
 	public Collection<Binding> getConflictsFor(ContextSet contextSet,
 			TriggerSequence triggerSequence) {
+		BindingIndex index = getBindingIndex(contextSet);
+		if (index != null) {
+			return index.getConflictsFor(triggerSequence);
+		}
+
 		Collection<Binding> matches = new ArrayList<Binding>();
 		for (Context ctx : contextSet.getContexts()) {
 			BindingTable table = getTable(ctx.getId());
@@ -120,6 +174,12 @@ public class BindingTableManager {
 	}
 
 	public Binding getPerfectMatch(ContextSet contextSet, TriggerSequence triggerSequence) {
+		BindingIndex index = getBindingIndex(contextSet);
+		if (index != null) {
+			BindingIndex.Match match = findMatch(index, triggerSequence);
+			return match == null ? null : match.getPerfectMatch();
+		}
+
 		Binding result = null;
 		Binding currentResult = null;
 		List<Context> contexts = contextSet.getContexts();
@@ -147,6 +207,105 @@ public class BindingTableManager {
 		return result;
 	}
 
+	/**
+	 * Returns the index of the active bindings of the given context set. The index is built when the
+	 * context set is first used and rebuilt when its tables or the active schemes changed, except
+	 * while the tables keep changing between lookups: the tables are searched directly then.
+	 * 
+	 * @param contextSet
+	 *            the context set
+	 * @return the index, or <code>null</code> if the tables have to be searched
+	 */
+	private BindingIndex getBindingIndex(ContextSet contextSet) {
+		BindingIndex index = contextSet == lastContextSet ? lastIndex : indexes.get(contextSet);
+		if (index != null && !index.isCurrent()) {
+			// bindings are often changed in bulk, avoid rebuilding the index for each change
+			if (!index.isSettled()) {
+				return null;
+			}
+			index = null;
+		}
+		if (index == null) {
+			index = createBindingIndex(contextSet);
+			indexes.put(contextSet, index);
+		}
+		lastContextSet = contextSet;
+		lastIndex = index;
+		return index;
+	}
+
+	private BindingIndex.Match findMatch(BindingIndex index, TriggerSequence sequence) {
+		// the dispatcher checks for a partial match, then for a perfect match
+		if (index != lastMatchIndex || sequence != lastMatchSequence) {
+			lastMatch = index.find(sequence);
+			lastMatchIndex = index;
+			lastMatchSequence = sequence;
+		}
+		return lastMatch;
+	}
+
+	private BindingIndex createBindingIndex(ContextSet contextSet) {
+		List<Context> contexts = contextSet.getContexts();
+		BindingTable[] tables = new BindingTable[contexts.size()];
+		// the most specific contexts are searched first
+		for (int i = 0; i < tables.length; i++) {
+			tables[i] = getTable(contexts.get(tables.length - 1 - i).getId());
+		}
+		BindingIndex index = new BindingIndex(tables);
+		for (BindingTable table : tables) {
+			if (table != null) {
+				for (Binding binding : table.getBindings()) {
+					index.add(binding);
+				}
+			}
+		}
+		// conflicts are reported in the order of the contexts
+		for (int i = tables.length - 1; i >= 0; i--) {
+			if (tables[i] != null) {
+				for (Binding binding : tables[i].getConflicts()) {
+					index.addConflict(binding);
+				}
+			}
+		}
+		index.resolve(this);
+		return index;
+	}
+
+	private void clearIndexes() {
+		indexes.clear();
+		lastContextSet = null;
+		lastIndex = null;
+		lastMatchIndex = null;
+		lastMatchSequence = null;
+		lastMatch = null;
+		activeBindings = null;
+	}
+
+	/**
+	 * Chooses the perfect match among the bindings of a sequence in the tables of a context set.
+	 * 
+	 * @param candidates
+	 *            the bindings, in the order the contexts are searched
+	 * @return the binding of the most active scheme
+	 */
+	Binding resolvePerfectMatch(List<Binding> candidates) {
+		Binding result = null;
+		for (Binding currentResult : candidates) {
+			if (isMostActiveScheme(currentResult)) {
+				return currentResult;
+			}
+			if (result == null) {
+				result = currentResult;
+			} else {
+				int rc = compareSchemes(result.getSchemeId(), currentResult.getSchemeId());
+				if (rc < 0) {
+					result = currentResult;
+				}
+			}
+		}
+		return result;
+	}
+
 	/**
 	 * @param currentResult
 	 * @return
@@ -161,7 +320,7 @@ public class BindingTableManager {
 
 	public Binding getBestSequenceFor(ContextSet contextSet,
 			ParameterizedCommand parameterizedCommand) {
-		ArrayList<Binding> bindings = (ArrayList<Binding>) getSequencesFor(contextSet,
+		List<Binding> bindings = (List<Binding>) getSequencesFor(contextSet,
 				parameterizedCommand);
 		if (bindings.size() == 0) {
 			return null;
@@ -171,6 +330,11 @@ public class BindingTableManager {
 
 	public Collection<Binding> getSequencesFor(ContextSet contextSet,
 			ParameterizedCommand parameterizedCommand) {
+		BindingIndex index = getBindingIndex(contextSet);
+		if (index != null) {
+			return index.getSequencesFor(parameterizedCommand);
+		}
+
 		ArrayList<Binding> bindings = new ArrayList<Binding>();
 		List<Context> contexts = contextSet.getContexts();
 		ListIterator<Context> it = contexts.listIterator(contexts.size());
@@ -203,6 +367,12 @@ public class BindingTableManager {
 	}
 
 	public boolean isPartialMatch(ContextSet contextSet, TriggerSequence sequence) {
+		BindingIndex index = getBindingIndex(contextSet);
+		if (index != null) {
+			BindingIndex.Match match = findMatch(index, sequence);
+			return match != null && match.isPartialMatch();
+		}
+
 		List<Context> contexts = contextSet.getContexts();
 		ListIterator<Context> it = contexts.listIterator(contexts.size());
 		while (it.hasPrevious()) {
@@ -240,6 +410,7 @@ public class BindingTableManager {
 	public void setActiveSchemes(String[] activeSchemeIds) {
 		this.activeSchemeIds = activeSchemeIds;
 		BindingTable.BEST_SEQUENCE.setActiveSchemes(activeSchemeIds);
+		clearIndexes();
 	}
 
 	/*
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2013 IBM Corporation and others.
+ * Copyright (c) 2009, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,7 +13,6 @@ package org.eclipse.e4.ui.bindings.keys;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.List;
 import javax.inject.Inject;
 import org.eclipse.core.commands.Command;
@@ -109,6 +108,9 @@ public class KeyBindingDispatcher {
 	/** The collection of keys that are to be processed out-of-order. */
 	static KeySequence outOfOrderKeys;
 
+	/** The key strokes of {@link #outOfOrderKeys}. */
+	private static KeyStroke[] outOfOrderKeyStrokes;
+
 	static {
 
 		try {
@@ -118,6 +120,7 @@ public class KeyBindingDispatcher {
 			// String message = "Could not parse out-of-order keys definition: 'ESC DEL'.  Continuing with no out-of-order keys."; //$NON-NLS-1$
 			// TODO we need to do some logging here
 		}
+		outOfOrderKeyStrokes = outOfOrderKeys.getKeyStrokes();
 	}
 
 	/**
@@ -132,13 +135,27 @@ public class KeyBindingDispatcher {
 	 */
 	public static List<KeyStroke> generatePossibleKeyStrokes(Event event) {
 		final List<KeyStroke> keyStrokes = new ArrayList<KeyStroke>(3);
+		generatePossibleKeyStrokes(event, keyStrokes);
+		return keyStrokes;
+	}
 
+	/**
+	 * Adds the key strokes that are near matches to the given event to the given list, the exactly
+	 * matching key stroke first.
+	 * 
+	 * @param event
+	 *            The event from which the key strokes should be generated; must not be
+	 *            <code>null</code>.
+	 * @param keyStrokes
+	 *            The list to add the key strokes to; must not be <code>null</code>.
+	 */
+	private static void generatePossibleKeyStrokes(Event event, List<KeyStroke> keyStrokes) {
 		/*
 		 * If this is not a keyboard event, then there are no key strokes. This can happen if we are
 		 * listening to focus traversal events.
 		 */
 		if ((event.stateMask == 0) && (event.keyCode == 0) && (event.character == 0)) {
-			return keyStrokes;
+			return;
 		}
 
 		// Add each unique key stroke to the list for consideration.
@@ -147,7 +164,7 @@ public class KeyBindingDispatcher {
 
 		// We shouldn't allow delete to undergo shift resolution.
 		if (event.character == SWT.DEL) {
-			return keyStrokes;
+			return;
 		}
 
 		final int secondAccelerator = SWTKeySupport
@@ -160,8 +177,6 @@ public class KeyBindingDispatcher {
 		if ((thirdAccelerator != secondAccelerator) && (thirdAccelerator != firstAccelerator)) {
 			keyStrokes.add(SWTKeySupport.convertAcceleratorToKeyStroke(thirdAccelerator));
 		}
-
-		return keyStrokes;
 	}
 
 	/**
@@ -182,7 +197,6 @@ public class KeyBindingDispatcher {
 	 */
 	private static boolean isOutOfOrderKey(List<KeyStroke> keyStrokes) {
 		// Compare to see if one of the possible key strokes is out of order.
-		final KeyStroke[] outOfOrderKeyStrokes = outOfOrderKeys.getKeyStrokes();
 		final int outOfOrderKeyStrokesLength = outOfOrderKeyStrokes.length;
 		for (int i = 0; i < outOfOrderKeyStrokesLength; i++) {
 			if (keyStrokes.contains(outOfOrderKeyStrokes[i])) {
@@ -237,6 +251,26 @@ public class KeyBindingDispatcher {
 
 	private long startTime;
 
+	/**
+	 * Opens the key assist dialog for the current state, scheduled whenever the state is
+	 * incremented. Rescheduling it cancels the previous run.
+	 */
+	private final Runnable keyAssistTimer = new Runnable() {
+		@Override
+		public void run() {
+			if ((startTime != Long.MAX_VALUE) && !state.isEmpty()) {
+				Collection<Binding> partialMatches = getBindingService().getPartialMatches(state);
+				openKeyAssistShell(partialMatches);
+			}
+		}
+	};
+
+	/**
+	 * The list reused to hold the key strokes of the events, <code>null</code> while an event is
+	 * being processed.
+	 */
+	private List<KeyStroke> possibleKeyStrokes = new ArrayList<KeyStroke>(3);
+
 	@Inject
 	@Optional
 	private Logger logger;
@@ -330,7 +364,23 @@ public class KeyBindingDispatcher {
 		}
 
 		// Allow special key out-of-order processing.
-		List<KeyStroke> keyStrokes = generatePossibleKeyStrokes(event);
+		List<KeyStroke> keyStrokes = possibleKeyStrokes;
+		if (keyStrokes == null) {
+			// a command run by the previous event is processing events
+			keyStrokes = new ArrayList<KeyStroke>(3);
+		} else {
+			possibleKeyStrokes = null;
+			keyStrokes.clear();
+		}
+		try {
+			filterKeySequenceBindings(event, keyStrokes);
+		} finally {
+			possibleKeyStrokes = keyStrokes;
+		}
+	}
+
+	private void filterKeySequenceBindings(Event event, List<KeyStroke> keyStrokes) {
+		generatePossibleKeyStrokes(event, keyStrokes);
 		if (isOutOfOrderKey(keyStrokes)) {
 			Widget widget = event.widget;
 			if ((event.character == SWT.DEL)
@@ -432,19 +482,7 @@ public class KeyBindingDispatcher {
 		state = sequence;
 		// Record the starting time.
 		startTime = System.currentTimeMillis();
-		final long myStartTime = startTime;
-		final Display display = getDisplay();
-		display.timerExec(DELAY, new Runnable() {
-			@Override
-			public void run() {
-				if ((System.currentTimeMillis() > (myStartTime - DELAY))
-						&& (startTime == myStartTime)) {
-					Collection<Binding> partialMatches = bindingService.getPartialMatches(sequence);
-					openKeyAssistShell(partialMatches);
-				}
-			}
-		});
-
+		getDisplay().timerExec(DELAY, keyAssistTimer);
 	}
 
 	/**
@@ -494,9 +532,9 @@ public class KeyBindingDispatcher {
 		Collection<Binding> errorMatch = null;
 
 		KeySequence sequenceBeforeKeyStroke = state;
-		for (Iterator<KeyStroke> iterator = potentialKeyStrokes.iterator(); iterator.hasNext();) {
+		for (int i = 0; i < potentialKeyStrokes.size(); i++) {
 			KeySequence sequenceAfterKeyStroke = KeySequence.getInstance(sequenceBeforeKeyStroke,
-					iterator.next());
+					potentialKeyStrokes.get(i));
 			if (isPartialMatch(sequenceAfterKeyStroke)) {
 				incrementState(sequenceAfterKeyStroke);
 				return true;
@@ -52,7 +52,9 @@ public interface ICSSPropertyHandlerProvider {
 
 	/**
 	 * Return list of {@link ICSSPropertyHandler} linked to the CSS Property
-	 * <code>property</code> for the provided element.
+	 * <code>property</code> for the provided element. The handlers must only
+	 * depend on the class of the element, as engines cache them per element
+	 * class and property.
 	 *
 	 * @param element
 	 *            the DOM element
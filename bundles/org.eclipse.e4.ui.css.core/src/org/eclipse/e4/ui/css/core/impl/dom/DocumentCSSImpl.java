@@ -43,6 +43,12 @@ public class DocumentCSSImpl implements ExtendedDocumentCSS {
 	 */
 	private Map styleDeclarationMap = null;
 
+	/**
+	 * Rule indexes of the style sheets, in style sheet order; built lazily
+	 * and discarded when the style sheets change.
+	 */
+	private StyleRuleIndex[] styleRuleIndexes = null;
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.w3c.dom.stylesheets.DocumentStyle#getStyleSheets()
@@ -68,6 +74,7 @@ public class DocumentCSSImpl implements ExtendedDocumentCSS {
 	@Override
 	public void addStyleSheet(StyleSheet styleSheet) {
 		styleSheetList.addStyleSheet(styleSheet);
+		this.styleRuleIndexes = null;
 	}
 
 	/*
@@ -78,6 +85,24 @@ public class DocumentCSSImpl implements ExtendedDocumentCSS {
 	public void removeAllStyleSheets() {
 		styleSheetList.removeAllStyleSheets();
 		this.styleDeclarationMap = null;
+		this.styleRuleIndexes = null;
+	}
+
+	/**
+	 * Returns the rule index of the style sheet at the given position in
+	 * {@link #getStyleSheets()}.
+	 */
+	StyleRuleIndex getStyleRuleIndex(int index) {
+		if (styleRuleIndexes == null) {
+			styleRuleIndexes = new StyleRuleIndex[styleSheetList.getLength()];
+		}
+		StyleRuleIndex ruleIndex = styleRuleIndexes[index];
+		if (ruleIndex == null) {
+			ruleIndex = new StyleRuleIndex(
+					(CSSStyleSheet) styleSheetList.item(index));
+			styleRuleIndexes[index] = ruleIndex;
+		}
+		return ruleIndex;
 	}
 
 	@Override
@@ -0,0 +1,295 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.ui.css.core.impl.dom;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.e4.ui.css.core.dom.CSSStylableElement;
+import org.eclipse.e4.ui.css.core.dom.ExtendedCSSRule;
+import org.eclipse.e4.ui.css.core.impl.sac.CSSClassConditionImpl;
+import org.eclipse.e4.ui.css.core.impl.sac.ExtendedSelector;
+import org.w3c.css.sac.AttributeCondition;
+import org.w3c.css.sac.CombinatorCondition;
+import org.w3c.css.sac.Condition;
+import org.w3c.css.sac.ConditionalSelector;
+import org.w3c.css.sac.DescendantSelector;
+import org.w3c.css.sac.ElementSelector;
+import org.w3c.css.sac.Selector;
+import org.w3c.css.sac.SelectorList;
+import org.w3c.css.sac.SiblingSelector;
+import org.w3c.dom.Element;
+import org.w3c.dom.css.CSSRule;
+import org.w3c.dom.css.CSSRuleList;
+import org.w3c.dom.css.CSSStyleDeclaration;
+import org.w3c.dom.css.CSSStyleRule;
+import org.w3c.dom.css.CSSStyleSheet;
+
+/**
+ * Index of the style rules of a single {@link CSSStyleSheet}. Every selector
+ * of every style rule is stored in exactly one bucket, chosen from the
+ * rightmost simple selector: its id, one of its classes, its element name, or
+ * one of its pseudo-classes (in that order of preference). Selectors that
+ * cannot be bucketed are kept in a universal list.
+ * <p>
+ * Looking up an element only visits the buckets that can possibly match it,
+ * so {@link ViewCSSImpl#getComputedStyle(Element, String)} no longer needs to
+ * test every selector of the style sheet. Candidates are returned in style
+ * sheet order, so the cascade computed from them is identical to the one
+ * computed by a linear scan.
+ * </p>
+ * <p>
+ * The index is a snapshot of the rule list: it is built by
+ * {@link DocumentCSSImpl} and discarded whenever its style sheets change.
+ * </p>
+ */
+final class StyleRuleIndex {
+
+	/**
+	 * A selector of a style rule, together with its position in the style
+	 * sheet.
+	 */
+	static final class Entry {
+		final ExtendedSelector selector;
+		final CSSStyleDeclaration style;
+		final int order;
+
+		Entry(ExtendedSelector selector, CSSStyleDeclaration style, int order) {
+			this.selector = selector;
+			this.style = style;
+			this.order = order;
+		}
+	}
+
+	private static final Comparator<Entry> ORDER_COMPARATOR = new Comparator<Entry>() {
+		@Override
+		public int compare(Entry entry1, Entry entry2) {
+			return entry1.order < entry2.order ? -1
+					: (entry1.order == entry2.order ? 0 : 1);
+		}
+	};
+
+	private final Map<String, List<Entry>> idRules = new HashMap<String, List<Entry>>();
+	private final Map<String, List<Entry>> classRules = new HashMap<String, List<Entry>>();
+	private final Map<String, List<Entry>> elementRules = new HashMap<String, List<Entry>>();
+	private final Map<String, List<Entry>> pseudoClassRules = new HashMap<String, List<Entry>>();
+	private final List<Entry> universalRules = new ArrayList<Entry>();
+
+	private int size = 0;
+
+	StyleRuleIndex(CSSStyleSheet styleSheet) {
+		CSSRuleList ruleList = styleSheet.getCssRules();
+		int length = ruleList == null ? 0 : ruleList.getLength();
+		for (int i = 0; i < length; i++) {
+			CSSRule rule = ruleList.item(i);
+			if (rule.getType() != CSSRule.STYLE_RULE
+					|| !(rule instanceof ExtendedCSSRule)) {
+				continue;
+			}
+			CSSStyleDeclaration style = ((CSSStyleRule) rule).getStyle();
+			SelectorList selectorList = ((ExtendedCSSRule) rule)
+					.getSelectorList();
+			int l = selectorList.getLength();
+			for (int j = 0; j < l; j++) {
+				Selector selector = selectorList.item(j);
+				if (selector instanceof ExtendedSelector) {
+					add(new Entry((ExtendedSelector) selector, style, size++));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of indexed selectors.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the selectors which may match the given element, in style sheet
+	 * order. The returned selectors still have to be matched against the
+	 * element.
+	 */
+	List<Entry> getCandidates(Element element, String pseudoE) {
+		List<Entry> candidates = new ArrayList<Entry>(universalRules);
+		int buckets = universalRules.isEmpty() ? 0 : 1;
+
+		String id;
+		String cssClass;
+		if (element instanceof CSSStylableElement) {
+			CSSStylableElement stylableElement = (CSSStylableElement) element;
+			id = stylableElement.getCSSId();
+			cssClass = stylableElement.getCSSClass();
+		} else {
+			id = element.getAttribute("id");
+			cssClass = element.getAttribute("class");
+		}
+		if (id != null) {
+			buckets += addAll(candidates, idRules.get(id));
+		}
+		if (cssClass != null && cssClass.length() > 0) {
+			buckets += addClassCandidates(candidates, cssClass);
+		}
+		String name = element.getPrefix() == null ? element.getNodeName()
+				: element.getLocalName();
+		if (name != null) {
+			buckets += addAll(candidates, elementRules.get(name));
+		}
+		if (!pseudoClassRules.isEmpty()) {
+			if (pseudoE != null) {
+				buckets += addAll(candidates, pseudoClassRules.get(pseudoE));
+			} else if (element instanceof CSSStylableElement) {
+				CSSStylableElement stylableElement = (CSSStylableElement) element;
+				for (Map.Entry<String, List<Entry>> entry : pseudoClassRules
+						.entrySet()) {
+					if (stylableElement.isPseudoInstanceOf(entry.getKey())) {
+						buckets += addAll(candidates, entry.getValue());
+					}
+				}
+			}
+		}
+		if (buckets > 1) {
+			// each bucket is in style sheet order, restore the global order
+			Collections.sort(candidates, ORDER_COMPARATOR);
+		}
+		return candidates;
+	}
+
+	private int addClassCandidates(List<Entry> candidates, String cssClass) {
+		int buckets = 0;
+		List<String> seen = null;
+		int length = cssClass.length();
+		int start = 0;
+		while (start < length) {
+			while (start < length && Character.isSpaceChar(cssClass.charAt(start))) {
+				start++;
+			}
+			int end = start;
+			while (end < length && !Character.isSpaceChar(cssClass.charAt(end))) {
+				end++;
+			}
+			if (end > start) {
+				String className = cssClass.substring(start, end);
+				List<Entry> entries = classRules.get(className);
+				if (entries != null) {
+					if (seen == null) {
+						seen = new ArrayList<String>(2);
+					}
+					// the same class may be listed more than once
+					if (!seen.contains(className)) {
+						seen.add(className);
+						buckets += addAll(candidates, entries);
+					}
+				}
+			}
+			start = end;
+		}
+		return buckets;
+	}
+
+	private static int addAll(List<Entry> candidates, List<Entry> entries) {
+		if (entries == null) {
+			return 0;
+		}
+		candidates.addAll(entries);
+		return 1;
+	}
+
+	private void add(Entry entry) {
+		Selector selector = getRightmostSimpleSelector(entry.selector);
+		if (selector instanceof ConditionalSelector) {
+			ConditionalSelector conditionalSelector = (ConditionalSelector) selector;
+			Condition condition = conditionalSelector.getCondition();
+			if (addToBucket(entry, condition, Condition.SAC_ID_CONDITION, idRules)
+					|| addToBucket(entry, condition, Condition.SAC_CLASS_CONDITION, classRules)) {
+				return;
+			}
+			if (addToElementBucket(entry, conditionalSelector.getSimpleSelector())) {
+				return;
+			}
+			if (addToBucket(entry, condition, Condition.SAC_PSEUDO_CLASS_CONDITION,
+					pseudoClassRules)) {
+				return;
+			}
+		} else if (addToElementBucket(entry, selector)) {
+			return;
+		}
+		universalRules.add(entry);
+	}
+
+	private boolean addToElementBucket(Entry entry, Selector selector) {
+		if (selector instanceof ElementSelector
+				&& selector.getSelectorType() == Selector.SAC_ELEMENT_NODE_SELECTOR) {
+			String name = ((ElementSelector) selector).getLocalName();
+			if (name != null) {
+				getBucket(elementRules, name).add(entry);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Adds the entry to the given bucket map if the condition, or one of the
+	 * operands of an "and" condition, is of the given type.
+	 */
+	private static boolean addToBucket(Entry entry, Condition condition,
+			short conditionType, Map<String, List<Entry>> buckets) {
+		if (condition.getConditionType() == Condition.SAC_AND_CONDITION) {
+			CombinatorCondition combinatorCondition = (CombinatorCondition) condition;
+			return addToBucket(entry, combinatorCondition.getFirstCondition(),
+					conditionType, buckets)
+					|| addToBucket(entry, combinatorCondition.getSecondCondition(),
+							conditionType, buckets);
+		}
+		// class conditions are reported as attribute conditions
+		short type = condition instanceof CSSClassConditionImpl ? Condition.SAC_CLASS_CONDITION
+				: condition.getConditionType();
+		if (type == conditionType && condition instanceof AttributeCondition) {
+			String value = ((AttributeCondition) condition).getValue();
+			if (value != null) {
+				getBucket(buckets, value).add(entry);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static List<Entry> getBucket(Map<String, List<Entry>> buckets,
+			String key) {
+		List<Entry> bucket = buckets.get(key);
+		if (bucket == null) {
+			bucket = new ArrayList<Entry>(2);
+			buckets.put(key, bucket);
+		}
+		return bucket;
+	}
+
+	/**
+	 * Returns the simple selector which has to match the element itself, that
+	 * is the rightmost compound of a descendant, child or sibling selector.
+	 */
+	private static Selector getRightmostSimpleSelector(Selector selector) {
+		while (true) {
+			if (selector instanceof DescendantSelector) {
+				selector = ((DescendantSelector) selector).getSimpleSelector();
+			} else if (selector instanceof SiblingSelector) {
+				selector = ((SiblingSelector) selector).getSiblingSelector();
+			} else {
+				return selector;
+			}
+		}
+	}
+}
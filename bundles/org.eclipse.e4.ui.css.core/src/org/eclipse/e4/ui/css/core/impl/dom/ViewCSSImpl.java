@@ -63,9 +63,15 @@ public class ViewCSSImpl implements ViewCSS {
 		StyleSheetList styleSheetList = documentCSS.getStyleSheets();
 		int l = styleSheetList.getLength();
 		for (int i = 0; i < l; i++) {
-			CSSStyleSheet styleSheet = (CSSStyleSheet) styleSheetList.item(i);
-			CSSStyleDeclaration styleDeclaration = getComputedStyle(styleSheet,
-					elt, pseudoElt);
+			CSSStyleDeclaration styleDeclaration;
+			if (documentCSS instanceof DocumentCSSImpl) {
+				StyleRuleIndex ruleIndex = ((DocumentCSSImpl) documentCSS)
+						.getStyleRuleIndex(i);
+				styleDeclaration = getComputedStyle(ruleIndex, elt, pseudoElt);
+			} else {
+				CSSStyleSheet styleSheet = (CSSStyleSheet) styleSheetList.item(i);
+				styleDeclaration = getComputedStyle(styleSheet, elt, pseudoElt);
+			}
 			if (styleDeclaration != null) {
 				return styleDeclaration;
 			}
@@ -73,6 +79,45 @@ public class ViewCSSImpl implements ViewCSS {
 		return null;
 	}
 
+	/**
+	 * Computes the style of the element by only matching the candidate
+	 * selectors of the rule index, see {@link StyleRuleIndex}.
+	 */
+	private CSSStyleDeclaration getComputedStyle(StyleRuleIndex ruleIndex,
+			Element elt, String pseudoElt) {
+		List<StyleWrapper> styleDeclarations = null;
+		StyleWrapper firstStyleDeclaration = null;
+		List<StyleRuleIndex.Entry> candidates = ruleIndex.getCandidates(elt,
+				pseudoElt);
+		int position = 0;
+		for (StyleRuleIndex.Entry candidate : candidates) {
+			if (candidate.selector.match(elt, pseudoElt)) {
+				StyleWrapper wrapper = new StyleWrapper(candidate.style,
+						candidate.selector.getSpecificity(), position++);
+				if (firstStyleDeclaration == null) {
+					firstStyleDeclaration = wrapper;
+				} else {
+					if (styleDeclarations == null) {
+						styleDeclarations = new ArrayList<StyleWrapper>();
+						styleDeclarations.add(firstStyleDeclaration);
+					}
+					styleDeclarations.add(wrapper);
+				}
+			}
+		}
+		if (styleDeclarations != null) {
+			return new CSSComputedStyleImpl(styleDeclarations);
+		}
+		if (firstStyleDeclaration != null) {
+			return firstStyleDeclaration.style;
+		}
+		return null;
+	}
+
+	/**
+	 * Computes the style of the element by matching every selector of the
+	 * style sheet.
+	 */
 	public CSSStyleDeclaration getComputedStyle(CSSStyleSheet styleSheet, Element elt, String pseudoElt) {
 		List styleDeclarations = null;
 		StyleWrapper firstStyleDeclaration = null;
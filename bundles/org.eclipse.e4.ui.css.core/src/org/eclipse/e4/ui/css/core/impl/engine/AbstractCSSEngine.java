@@ -140,6 +140,26 @@ public abstract class AbstractCSSEngine implements CSSEngine {
 
 	private ResourceRegistryKeyFactory keyFactory;
 
+	/**
+	 * Cache of computed styles shared by elements with the same signature,
+	 * <code>null</code> unless enabled.
+	 */
+	private ComputedStyleCache computedStyleCache;
+
+	private static final ICSSPropertyHandler[] NO_HANDLERS = new ICSSPropertyHandler[0];
+
+	/**
+	 * Dispatch table from element class and property name to the handlers of
+	 * all the providers, in provider order.
+	 */
+	private final Map<Class<?>, Map<String, ICSSPropertyHandler[]>> propertyHandlerTable = new HashMap<Class<?>, Map<String, ICSSPropertyHandler[]>>();
+
+	/**
+	 * Number of providers the dispatch table was built from;
+	 * {@link #propertyHandlerProviders} may be modified directly by subclasses.
+	 */
+	private int propertyHandlerTableProviders;
+
 	public AbstractCSSEngine() {
 		this(new DocumentCSSImpl());
 	}
@@ -234,6 +254,9 @@ public abstract class AbstractCSSEngine implements CSSEngine {
 		s.setRuleList(masterList);
 		if (!parseImport) {
 			documentCSS.addStyleSheet(s);
+			if (computedStyleCache != null) {
+				computedStyleCache.clear();
+			}
 		}
 		return s;
 	}
@@ -366,7 +389,7 @@ public abstract class AbstractCSSEngine implements CSSEngine {
 			/*
 			 * Compute new Style to apply.
 			 */
-			CSSStyleDeclaration style = viewCSS.getComputedStyle(elt, null);
+			CSSStyleDeclaration style = getComputedStyle(elt, null);
 			if (computeDefaultStyle) {
 				if (applyStylesToChildNodes) {
 					this.computeDefaultStyle = computeDefaultStyle;
@@ -385,8 +408,8 @@ public abstract class AbstractCSSEngine implements CSSEngine {
 				// there are static pseudo instances definied, loop for it and
 				// apply styles for each pseudo instance.
 				for (String pseudoInstance : pseudoInstances) {
-					CSSStyleDeclaration styleWithPseudoInstance = viewCSS
-							.getComputedStyle(elt, pseudoInstance);
+					CSSStyleDeclaration styleWithPseudoInstance = getComputedStyle(
+							elt, pseudoInstance);
 					if (computeDefaultStyle) {
 						/*
 						 * Apply default style for the current pseudo instance.
@@ -436,6 +459,45 @@ public abstract class AbstractCSSEngine implements CSSEngine {
 
 	}
 
+	/**
+	 * Returns the style computed for the element, from the computed style
+	 * cache when it is enabled.
+	 */
+	private CSSStyleDeclaration getComputedStyle(Element elt, String pseudoE) {
+		if (computedStyleCache != null) {
+			return computedStyleCache.getComputedStyle(elt, pseudoE);
+		}
+		return viewCSS.getComputedStyle(elt, pseudoE);
+	}
+
+	/**
+	 * Enables or disables the sharing of computed styles between elements
+	 * with the same structural signature (local name, CSS class, attributes,
+	 * pseudo-class state and parent signature). This avoids computing the
+	 * cascade again for each of many similar siblings, like tool items. The
+	 * cache is disabled by default.
+	 *
+	 * @param enabled
+	 *            <code>true</code> to cache computed styles
+	 */
+	public void setComputedStyleCacheEnabled(boolean enabled) {
+		if (enabled && computedStyleCache == null) {
+			computedStyleCache = new ComputedStyleCache(documentCSS, viewCSS);
+		} else if (!enabled) {
+			computedStyleCache = null;
+		}
+	}
+
+	/**
+	 * Returns whether computed styles are shared between elements with the
+	 * same structural signature.
+	 *
+	 * @see #setComputedStyleCacheEnabled(boolean)
+	 */
+	public boolean isComputedStyleCacheEnabled() {
+		return computedStyleCache != null;
+	}
+
 	/**
 	 * Allow the CSS engine to skip particular elements if they are not visible.
 	 * Elements need to be restyled when they become visible.
@@ -711,30 +773,23 @@ public abstract class AbstractCSSEngine implements CSSEngine {
 		}
 
 		element = getElement(element); // in case we're passed a node
-		for (ICSSPropertyHandlerProvider provider : propertyHandlerProviders) {
-			Collection<ICSSPropertyHandler> handlers = provider
-					.getCSSPropertyHandlers(element, property);
-			if (handlers == null) {
-				continue;
-			}
-			for (ICSSPropertyHandler handler : handlers) {
-				try {
-					boolean result = handler.applyCSSProperty(element,
-							property,
-							value, pseudo, this);
-					if (result) {
-						// Add CSS Property to flag that this CSS Property was
-						// applied.
-						if (currentCSSPropertiesApplyed != null) {
-							currentCSSPropertiesApplyed.put(property, property);
-						}
-						return handler;
-					}
-				} catch (Exception e) {
-					if (throwError
-							|| (!throwError && !(e instanceof UnsupportedPropertyException))) {
-						handleExceptions(e);
+		for (ICSSPropertyHandler handler : getCSSPropertyHandlers(element,
+				property)) {
+			try {
+				boolean result = handler.applyCSSProperty(element, property,
+						value, pseudo, this);
+				if (result) {
+					// Add CSS Property to flag that this CSS Property was
+					// applied.
+					if (currentCSSPropertiesApplyed != null) {
+						currentCSSPropertiesApplyed.put(property, property);
 					}
+					return handler;
+				}
+			} catch (Exception e) {
+				if (throwError
+						|| (!throwError && !(e instanceof UnsupportedPropertyException))) {
+					handleExceptions(e);
 				}
 			}
 		}
@@ -747,18 +802,12 @@ public abstract class AbstractCSSEngine implements CSSEngine {
 			String pseudo) {
 		try {
 			element = getElement(element); // in case we're passed a node
-			for (ICSSPropertyHandlerProvider provider : propertyHandlerProviders) {
-				Collection<ICSSPropertyHandler> handlers = provider
-						.getCSSPropertyHandlers(element, property);
-				if (handlers == null) {
-					continue;
-				}
-				for (ICSSPropertyHandler handler : handlers) {
-					String value = handler.retrieveCSSProperty(element,
-							property, pseudo, this);
-					if (!StringUtils.isEmpty(value)) {
-						return value;
-					}
+			for (ICSSPropertyHandler handler : getCSSPropertyHandlers(element,
+					property)) {
+				String value = handler.retrieveCSSProperty(element, property,
+						pseudo, this);
+				if (!StringUtils.isEmpty(value)) {
+					return value;
 				}
 			}
 		} catch (Exception e) {
@@ -804,6 +853,53 @@ public abstract class AbstractCSSEngine implements CSSEngine {
 		return handlers;
 	}
 
+	/**
+	 * Returns the handlers of all the providers for the given property of the
+	 * element, in provider order. The handlers are resolved once per element
+	 * class and property name and kept in a dispatch table until the
+	 * providers change, so providers must resolve handlers from the class of
+	 * the element only.
+	 *
+	 * @param element
+	 *            the element, as returned by {@link #getElement(Object)}
+	 * @param property
+	 *            the CSS property name
+	 * @return the handlers, never <code>null</code>
+	 */
+	protected ICSSPropertyHandler[] getCSSPropertyHandlers(Object element,
+			String property) throws Exception {
+		if (propertyHandlerTableProviders != propertyHandlerProviders.size()) {
+			propertyHandlerTable.clear();
+			propertyHandlerTableProviders = propertyHandlerProviders.size();
+		}
+		Class<?> clazz = element != null ? element.getClass() : null;
+		Map<String, ICSSPropertyHandler[]> classHandlers = propertyHandlerTable
+				.get(clazz);
+		if (classHandlers == null) {
+			classHandlers = new HashMap<String, ICSSPropertyHandler[]>();
+			propertyHandlerTable.put(clazz, classHandlers);
+		}
+		ICSSPropertyHandler[] handlers = classHandlers.get(property);
+		if (handlers == null) {
+			List<ICSSPropertyHandler> list = null;
+			for (ICSSPropertyHandlerProvider provider : propertyHandlerProviders) {
+				Collection<ICSSPropertyHandler> h = provider
+						.getCSSPropertyHandlers(element, property);
+				if (h != null && !h.isEmpty()) {
+					if (list == null) {
+						list = new ArrayList<ICSSPropertyHandler>(h);
+					} else {
+						list.addAll(h);
+					}
+				}
+			}
+			handlers = list == null ? NO_HANDLERS : list
+					.toArray(new ICSSPropertyHandler[list.size()]);
+			classHandlers.put(property, handlers);
+		}
+		return handlers;
+	}
+
 	/**
 	 * Return the set of property names and handlers for the provided node.
 	 *
@@ -1015,6 +1111,9 @@ public abstract class AbstractCSSEngine implements CSSEngine {
 	public void reset() {
 		// Remove All Style Sheets
 		documentCSS.removeAllStyleSheets();
+		if (computedStyleCache != null) {
+			computedStyleCache.clear();
+		}
 	}
 
 	/*--------------- Resources Registry -----------------*/
@@ -1032,11 +1131,13 @@ public abstract class AbstractCSSEngine implements CSSEngine {
 	public void registerCSSPropertyHandlerProvider(
 			ICSSPropertyHandlerProvider handlerProvider) {
 		propertyHandlerProviders.add(handlerProvider);
+		propertyHandlerTable.clear();
 	}
 
 	public void unregisterCSSPropertyHandlerProvider(
 			ICSSPropertyHandlerProvider handlerProvider) {
 		propertyHandlerProviders.remove(handlerProvider);
+		propertyHandlerTable.clear();
 	}
 
 	/*--------------- CSS Value Converter -----------------*/
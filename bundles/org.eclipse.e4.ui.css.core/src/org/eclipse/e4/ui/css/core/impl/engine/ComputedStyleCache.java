@@ -0,0 +1,302 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.ui.css.core.impl.engine;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import org.eclipse.e4.ui.css.core.dom.CSSStylableElement;
+import org.eclipse.e4.ui.css.core.dom.ExtendedCSSRule;
+import org.w3c.css.sac.AttributeCondition;
+import org.w3c.css.sac.CombinatorCondition;
+import org.w3c.css.sac.Condition;
+import org.w3c.css.sac.ConditionalSelector;
+import org.w3c.css.sac.DescendantSelector;
+import org.w3c.css.sac.Selector;
+import org.w3c.css.sac.SelectorList;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.css.CSSRule;
+import org.w3c.dom.css.CSSRuleList;
+import org.w3c.dom.css.CSSStyleDeclaration;
+import org.w3c.dom.css.CSSStyleSheet;
+import org.w3c.dom.css.DocumentCSS;
+import org.w3c.dom.css.ViewCSS;
+import org.w3c.dom.stylesheets.StyleSheetList;
+
+/**
+ * Cache of the {@link CSSStyleDeclaration}s computed by a {@link ViewCSS},
+ * shared between elements with the same structural signature.
+ * <p>
+ * The signature of an element is made of its local name, namespace, CSS
+ * class and id, the values of the attributes and the states of the
+ * pseudo-classes used by the selectors of the style sheets, and the signature
+ * of its parent. Elements with equal signatures are matched by exactly the
+ * same selectors, so siblings such as tool items or tree items share a single
+ * cascade.
+ * </p>
+ * <p>
+ * As the CSS class and id are part of the signature, changing them on an
+ * element simply leads to another cache entry. The cache must be cleared
+ * when the style sheets change. When the style sheets contain sibling
+ * selectors, the style of an element also depends on its siblings and the
+ * cache is bypassed.
+ * </p>
+ */
+final class ComputedStyleCache {
+
+	/**
+	 * Maximum number of cached styles; the cache is cleared when reached.
+	 */
+	private static final int MAX_SIZE = 4096;
+
+	/**
+	 * Marker for signatures which do not match any rule.
+	 */
+	private static final Object NO_STYLE = new Object();
+
+	private final DocumentCSS documentCSS;
+
+	private final ViewCSS viewCSS;
+
+	private final Map<Signature, Object> styles = new HashMap<Signature, Object>();
+
+	/**
+	 * Names of the attributes used by attribute conditions, or
+	 * <code>null</code> if the style sheets were not analyzed yet.
+	 */
+	private String[] attributeNames;
+
+	/**
+	 * Names of the pseudo-classes used by the style sheets.
+	 */
+	private String[] pseudoClassNames;
+
+	/**
+	 * Whether the style sheets can be evaluated from signatures.
+	 */
+	private boolean cacheable;
+
+	ComputedStyleCache(DocumentCSS documentCSS, ViewCSS viewCSS) {
+		this.documentCSS = documentCSS;
+		this.viewCSS = viewCSS;
+	}
+
+	/**
+	 * Returns the computed style of the element, from the cache when an
+	 * element with the same signature was computed before.
+	 */
+	CSSStyleDeclaration getComputedStyle(Element element, String pseudoE) {
+		if (attributeNames == null) {
+			analyzeStyleSheets();
+		}
+		if (!cacheable || hasId(element)) {
+			return viewCSS.getComputedStyle(element, pseudoE);
+		}
+		Signature signature = new Signature(element, pseudoE, createSignature(
+				element.getParentNode()));
+		Object style = styles.get(signature);
+		if (style == null) {
+			style = viewCSS.getComputedStyle(element, pseudoE);
+			if (styles.size() >= MAX_SIZE) {
+				styles.clear();
+			}
+			styles.put(signature, style != null ? style : NO_STYLE);
+		}
+		return style == NO_STYLE ? null : (CSSStyleDeclaration) style;
+	}
+
+	/**
+	 * Discards all cached styles. Must be called when the style sheets
+	 * change.
+	 */
+	void clear() {
+		styles.clear();
+		attributeNames = null;
+		pseudoClassNames = null;
+	}
+
+	private Signature createSignature(Node node) {
+		if (!(node instanceof Element)) {
+			return null;
+		}
+		return new Signature((Element) node, null,
+				createSignature(node.getParentNode()));
+	}
+
+	private static boolean hasId(Element element) {
+		String id = element instanceof CSSStylableElement ? ((CSSStylableElement) element)
+				.getCSSId() : element.getAttribute("id");
+		return id != null && id.length() > 0;
+	}
+
+	private void analyzeStyleSheets() {
+		Set<String> attributes = new LinkedHashSet<String>();
+		Set<String> pseudoClasses = new LinkedHashSet<String>();
+		cacheable = true;
+		StyleSheetList styleSheetList = documentCSS.getStyleSheets();
+		int length = styleSheetList.getLength();
+		for (int i = 0; i < length && cacheable; i++) {
+			CSSRuleList ruleList = ((CSSStyleSheet) styleSheetList.item(i))
+					.getCssRules();
+			int l = ruleList == null ? 0 : ruleList.getLength();
+			for (int j = 0; j < l && cacheable; j++) {
+				CSSRule rule = ruleList.item(j);
+				if (rule.getType() == CSSRule.STYLE_RULE
+						&& rule instanceof ExtendedCSSRule) {
+					SelectorList selectorList = ((ExtendedCSSRule) rule)
+							.getSelectorList();
+					for (int k = 0; k < selectorList.getLength(); k++) {
+						analyzeSelector(selectorList.item(k), attributes,
+								pseudoClasses);
+					}
+				}
+			}
+		}
+		attributeNames = attributes.toArray(new String[attributes.size()]);
+		pseudoClassNames = pseudoClasses.toArray(new String[pseudoClasses
+				.size()]);
+	}
+
+	private void analyzeSelector(Selector selector, Set<String> attributes,
+			Set<String> pseudoClasses) {
+		switch (selector.getSelectorType()) {
+		case Selector.SAC_CONDITIONAL_SELECTOR:
+			ConditionalSelector conditionalSelector = (ConditionalSelector) selector;
+			analyzeSelector(conditionalSelector.getSimpleSelector(),
+					attributes, pseudoClasses);
+			analyzeCondition(conditionalSelector.getCondition(), attributes,
+					pseudoClasses);
+			break;
+		case Selector.SAC_DESCENDANT_SELECTOR:
+		case Selector.SAC_CHILD_SELECTOR:
+			DescendantSelector descendantSelector = (DescendantSelector) selector;
+			analyzeSelector(descendantSelector.getAncestorSelector(),
+					attributes, pseudoClasses);
+			analyzeSelector(descendantSelector.getSimpleSelector(), attributes,
+					pseudoClasses);
+			break;
+		case Selector.SAC_ELEMENT_NODE_SELECTOR:
+		case Selector.SAC_PSEUDO_ELEMENT_SELECTOR:
+			break;
+		default:
+			// sibling selectors depend on the position of the element
+			cacheable = false;
+		}
+	}
+
+	private void analyzeCondition(Condition condition, Set<String> attributes,
+			Set<String> pseudoClasses) {
+		switch (condition.getConditionType()) {
+		case Condition.SAC_AND_CONDITION:
+			CombinatorCondition combinatorCondition = (CombinatorCondition) condition;
+			analyzeCondition(combinatorCondition.getFirstCondition(),
+					attributes, pseudoClasses);
+			analyzeCondition(combinatorCondition.getSecondCondition(),
+					attributes, pseudoClasses);
+			break;
+		case Condition.SAC_ID_CONDITION:
+		case Condition.SAC_CLASS_CONDITION:
+			break;
+		case Condition.SAC_PSEUDO_CLASS_CONDITION:
+			pseudoClasses.add(((AttributeCondition) condition).getValue());
+			break;
+		case Condition.SAC_ATTRIBUTE_CONDITION:
+		case Condition.SAC_ONE_OF_ATTRIBUTE_CONDITION:
+		case Condition.SAC_BEGIN_HYPHEN_ATTRIBUTE_CONDITION:
+			attributes.add(((AttributeCondition) condition).getLocalName());
+			break;
+		case Condition.SAC_LANG_CONDITION:
+			attributes.add("lang");
+			break;
+		default:
+			cacheable = false;
+		}
+	}
+
+	/**
+	 * Structural signature of an element, see {@link ComputedStyleCache}.
+	 */
+	private final class Signature {
+
+		private final String[] values;
+
+		private final Signature parent;
+
+		private final int hashCode;
+
+		Signature(Element element, String pseudoE, Signature parent) {
+			this.parent = parent;
+			String[] attributes = attributeNames;
+			String[] pseudoClasses = pseudoClassNames;
+			values = new String[6 + attributes.length];
+			values[0] = pseudoE;
+			values[1] = element.getPrefix() == null ? element.getNodeName()
+					: element.getLocalName();
+			values[2] = element.getNamespaceURI();
+			if (element instanceof CSSStylableElement) {
+				CSSStylableElement stylableElement = (CSSStylableElement) element;
+				values[3] = stylableElement.getCSSClass();
+				values[4] = stylableElement.getCSSId();
+				if (pseudoClasses.length > 0) {
+					char[] states = new char[pseudoClasses.length];
+					for (int i = 0; i < pseudoClasses.length; i++) {
+						String pseudoClass = pseudoClasses[i];
+						int state = 0;
+						if (stylableElement.isPseudoInstanceOf(pseudoClass)) {
+							state |= 1;
+						}
+						if (stylableElement.isStaticPseudoInstance(pseudoClass)) {
+							state |= 2;
+						}
+						states[i] = (char) ('0' + state);
+					}
+					values[5] = new String(states);
+				}
+			} else {
+				values[3] = element.getAttribute("class");
+				values[4] = element.getAttribute("id");
+			}
+			for (int i = 0; i < attributes.length; i++) {
+				values[6 + i] = element.getAttribute(attributes[i]);
+			}
+			int hash = Arrays.hashCode(values);
+			if (parent != null) {
+				hash = 31 * hash + parent.hashCode;
+			}
+			hashCode = hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Signature)) {
+				return false;
+			}
+			Signature other = (Signature) obj;
+			if (hashCode != other.hashCode
+					|| !Arrays.equals(values, other.values)) {
+				return false;
+			}
+			return parent == null ? other.parent == null : parent
+					.equals(other.parent);
+		}
+	}
+}
@@ -0,0 +1,330 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.ui.css.core.impl.engine;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.eclipse.e4.ui.css.core.dom.ExtendedCSSRule;
+import org.eclipse.e4.ui.css.core.impl.sac.CSSClassConditionImpl;
+import org.w3c.css.sac.AttributeCondition;
+import org.w3c.css.sac.CombinatorCondition;
+import org.w3c.css.sac.Condition;
+import org.w3c.css.sac.ConditionalSelector;
+import org.w3c.css.sac.DescendantSelector;
+import org.w3c.css.sac.Selector;
+import org.w3c.css.sac.SelectorList;
+import org.w3c.css.sac.SiblingSelector;
+import org.w3c.dom.css.CSSRule;
+import org.w3c.dom.css.CSSRuleList;
+import org.w3c.dom.css.CSSStyleSheet;
+import org.w3c.dom.css.DocumentCSS;
+import org.w3c.dom.stylesheets.StyleSheetList;
+
+/**
+ * Summary of the element features the selectors of a {@link DocumentCSS}
+ * depend on, used to restyle only the part of a tree which can be affected
+ * when the CSS class, id, an attribute or the state of a pseudo-class of an
+ * element changes.
+ * <p>
+ * For every feature, the analysis records how many levels below the changed
+ * element a selector testing it can match: a feature tested by the rightmost
+ * compound of a selector only affects the element itself (depth 0), one
+ * tested on the left of a child combinator affects the children (depth 1 per
+ * combinator), and one tested on the left of a descendant combinator affects
+ * the whole subtree ({@link #UNBOUNDED}). Features no selector tests do not
+ * require any restyling ({@link #UNUSED}).
+ * </p>
+ * <p>
+ * The compounds on the left of a sibling combinator are also recorded
+ * separately, as they affect the siblings following the changed element and
+ * their subtrees, see {@link #getSiblingClassDepth(String)}. The analysis is
+ * a snapshot of the style sheets and must be recreated when they change.
+ * </p>
+ */
+public final class SelectorDependencies {
+
+	/**
+	 * Depth returned for features which are not tested by any selector.
+	 */
+	public static final int UNUSED = -1;
+
+	/**
+	 * Depth returned for features which may affect the whole subtree.
+	 */
+	public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+	/**
+	 * Depths of the features tested on the element or its ancestors.
+	 */
+	private final Features self = new Features();
+
+	/**
+	 * Depths of the features tested on the preceding siblings of the element
+	 * or of its ancestors.
+	 */
+	private final Features siblings = new Features();
+
+	public SelectorDependencies(DocumentCSS documentCSS) {
+		StyleSheetList styleSheetList = documentCSS.getStyleSheets();
+		int length = styleSheetList.getLength();
+		for (int i = 0; i < length; i++) {
+			CSSRuleList ruleList = ((CSSStyleSheet) styleSheetList.item(i))
+					.getCssRules();
+			int l = ruleList == null ? 0 : ruleList.getLength();
+			for (int j = 0; j < l; j++) {
+				CSSRule rule = ruleList.item(j);
+				if (rule.getType() == CSSRule.STYLE_RULE
+						&& rule instanceof ExtendedCSSRule) {
+					SelectorList selectorList = ((ExtendedCSSRule) rule)
+							.getSelectorList();
+					for (int k = 0; k < selectorList.getLength(); k++) {
+						analyzeSelector(selectorList.item(k), 0, self);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns how many levels of the subtree of an element have to be
+	 * restyled when the given class is added to or removed from it.
+	 *
+	 * @param className
+	 *            the class name
+	 * @return the depth, {@link #UNUSED} or {@link #UNBOUNDED}
+	 */
+	public int getClassDepth(String className) {
+		return self.getClassDepth(className);
+	}
+
+	/**
+	 * Returns how many levels of the subtree of an element have to be
+	 * restyled when its id is set to or changed from the given value.
+	 *
+	 * @param id
+	 *            the id
+	 * @return the depth, {@link #UNUSED} or {@link #UNBOUNDED}
+	 */
+	public int getIdDepth(String id) {
+		return self.getIdDepth(id);
+	}
+
+	/**
+	 * Returns how many levels of the subtree of an element have to be
+	 * restyled when the state of the given pseudo-class changes on it.
+	 *
+	 * @param pseudoClass
+	 *            the pseudo-class, for instance "hover"
+	 * @return the depth, {@link #UNUSED} or {@link #UNBOUNDED}
+	 */
+	public int getPseudoClassDepth(String pseudoClass) {
+		return self.getDepth(self.pseudoClassDepths, pseudoClass);
+	}
+
+	/**
+	 * Returns how many levels of the subtree of an element have to be
+	 * restyled when the value of the given attribute changes on it.
+	 *
+	 * @param attribute
+	 *            the attribute name
+	 * @return the depth, {@link #UNUSED} or {@link #UNBOUNDED}
+	 */
+	public int getAttributeDepth(String attribute) {
+		return self.getDepth(self.attributeDepths, attribute);
+	}
+
+	/**
+	 * Returns how many levels of the subtrees of the siblings following an
+	 * element have to be restyled when the given class is added to or
+	 * removed from it, because of the selectors using a sibling combinator.
+	 *
+	 * @param className
+	 *            the class name
+	 * @return the depth, {@link #UNUSED} or {@link #UNBOUNDED}
+	 */
+	public int getSiblingClassDepth(String className) {
+		return siblings.getClassDepth(className);
+	}
+
+	/**
+	 * Returns how many levels of the subtrees of the siblings following an
+	 * element have to be restyled when its id is set to or changed from the
+	 * given value.
+	 *
+	 * @param id
+	 *            the id
+	 * @return the depth, {@link #UNUSED} or {@link #UNBOUNDED}
+	 */
+	public int getSiblingIdDepth(String id) {
+		return siblings.getIdDepth(id);
+	}
+
+	/**
+	 * Returns how many levels of the subtrees of the siblings following an
+	 * element have to be restyled when the state of the given pseudo-class
+	 * changes on it.
+	 *
+	 * @param pseudoClass
+	 *            the pseudo-class, for instance "hover"
+	 * @return the depth, {@link #UNUSED} or {@link #UNBOUNDED}
+	 */
+	public int getSiblingPseudoClassDepth(String pseudoClass) {
+		return siblings.getDepth(siblings.pseudoClassDepths, pseudoClass);
+	}
+
+	/**
+	 * Returns how many levels of the subtrees of the siblings following an
+	 * element have to be restyled when the value of the given attribute
+	 * changes on it.
+	 *
+	 * @param attribute
+	 *            the attribute name
+	 * @return the depth, {@link #UNUSED} or {@link #UNBOUNDED}
+	 */
+	public int getSiblingAttributeDepth(String attribute) {
+		return siblings.getDepth(siblings.attributeDepths, attribute);
+	}
+
+	private static int max(int depth1, int depth2) {
+		return depth1 > depth2 ? depth1 : depth2;
+	}
+
+	/**
+	 * Records the features tested by the selector, which is matched against
+	 * the ancestor <code>depth</code> levels above the styled element, or
+	 * against a preceding sibling of that ancestor.
+	 */
+	private void analyzeSelector(Selector selector, int depth, Features features) {
+		switch (selector.getSelectorType()) {
+		case Selector.SAC_CONDITIONAL_SELECTOR:
+			ConditionalSelector conditionalSelector = (ConditionalSelector) selector;
+			analyzeSelector(conditionalSelector.getSimpleSelector(), depth,
+					features);
+			analyzeCondition(conditionalSelector.getCondition(), depth,
+					features);
+			break;
+		case Selector.SAC_DESCENDANT_SELECTOR:
+			DescendantSelector descendantSelector = (DescendantSelector) selector;
+			analyzeSelector(descendantSelector.getSimpleSelector(), depth,
+					features);
+			analyzeSelector(descendantSelector.getAncestorSelector(),
+					UNBOUNDED, self);
+			break;
+		case Selector.SAC_CHILD_SELECTOR:
+			DescendantSelector childSelector = (DescendantSelector) selector;
+			analyzeSelector(childSelector.getSimpleSelector(), depth, features);
+			analyzeSelector(childSelector.getAncestorSelector(),
+					depth == UNBOUNDED ? UNBOUNDED : depth + 1, self);
+			break;
+		case Selector.SAC_DIRECT_ADJACENT_SELECTOR:
+			SiblingSelector siblingSelector = (SiblingSelector) selector;
+			// the sibling selector matches the element, the selector its
+			// preceding sibling
+			analyzeSelector(siblingSelector.getSiblingSelector(), depth,
+					features);
+			analyzeSelector(siblingSelector.getSelector(), depth, siblings);
+			break;
+		default:
+			// element names never change, other selectors test nothing
+			break;
+		}
+	}
+
+	private void analyzeCondition(Condition condition, int depth,
+			Features features) {
+		switch (condition.getConditionType()) {
+		case Condition.SAC_AND_CONDITION:
+		case Condition.SAC_OR_CONDITION:
+			CombinatorCondition combinatorCondition = (CombinatorCondition) condition;
+			analyzeCondition(combinatorCondition.getFirstCondition(), depth,
+					features);
+			analyzeCondition(combinatorCondition.getSecondCondition(), depth,
+					features);
+			break;
+		case Condition.SAC_CLASS_CONDITION:
+			record(features.classDepths,
+					((AttributeCondition) condition).getValue(), depth);
+			break;
+		case Condition.SAC_ID_CONDITION:
+			record(features.idDepths,
+					((AttributeCondition) condition).getValue(), depth);
+			break;
+		case Condition.SAC_PSEUDO_CLASS_CONDITION:
+			record(features.pseudoClassDepths,
+					((AttributeCondition) condition).getValue(), depth);
+			break;
+		case Condition.SAC_ATTRIBUTE_CONDITION:
+			if (condition instanceof CSSClassConditionImpl) {
+				// class conditions are reported as attribute conditions
+				record(features.classDepths,
+						((AttributeCondition) condition).getValue(), depth);
+				break;
+			}
+			//$FALL-THROUGH$
+		case Condition.SAC_ONE_OF_ATTRIBUTE_CONDITION:
+		case Condition.SAC_BEGIN_HYPHEN_ATTRIBUTE_CONDITION:
+			record(features.attributeDepths,
+					((AttributeCondition) condition).getLocalName(), depth);
+			break;
+		case Condition.SAC_LANG_CONDITION:
+			record(features.attributeDepths, "lang", depth);
+			break;
+		default:
+			features.unknownDepth = max(features.unknownDepth, depth);
+		}
+	}
+
+	private static void record(Map<String, Integer> depths, String key,
+			int depth) {
+		if (key == null) {
+			return;
+		}
+		Integer current = depths.get(key);
+		if (current == null || current.intValue() < depth) {
+			depths.put(key, Integer.valueOf(depth));
+		}
+	}
+
+	/**
+	 * Depths of the classes, ids, pseudo-classes and attributes tested by the
+	 * selectors.
+	 */
+	private static final class Features {
+
+		final Map<String, Integer> classDepths = new HashMap<String, Integer>();
+
+		final Map<String, Integer> idDepths = new HashMap<String, Integer>();
+
+		final Map<String, Integer> pseudoClassDepths = new HashMap<String, Integer>();
+
+		final Map<String, Integer> attributeDepths = new HashMap<String, Integer>();
+
+		/**
+		 * Depth of the conditions which cannot be attributed to a feature,
+		 * such as negative conditions; it applies to every feature.
+		 */
+		int unknownDepth = UNUSED;
+
+		int getClassDepth(String className) {
+			return max(getDepth(classDepths, className),
+					getDepth(attributeDepths, "class"));
+		}
+
+		int getIdDepth(String id) {
+			return max(getDepth(idDepths, id), getDepth(attributeDepths, "id"));
+		}
+
+		int getDepth(Map<String, Integer> depths, String key) {
+			Integer depth = key == null ? null : depths.get(key);
+			return max(depth == null ? UNUSED : depth.intValue(), unknownDepth);
+		}
+	}
+}
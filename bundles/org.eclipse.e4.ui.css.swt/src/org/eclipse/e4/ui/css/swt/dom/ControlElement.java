@@ -43,13 +43,13 @@ public class ControlElement extends WidgetElement {
 		@Override
 		public void focusGained(FocusEvent e) {
 			ControlElement.this.hasFocus = true;
-			doApplyStyles();
+			pseudoClassChanged("focus");
 		}
 
 		@Override
 		public void focusLost(FocusEvent e) {
 			ControlElement.this.hasFocus = false;
-			doApplyStyles();
+			pseudoClassChanged("focus");
 		}
 	};
 
@@ -60,14 +60,14 @@ public class ControlElement extends WidgetElement {
 			// mouse hover, apply styles
 			// into the SWT control
 			ControlElement.this.hasMouseHover = true;
-			doApplyStyles();
+			pseudoClassChanged("hover");
 		}
 
 		@Override
 		public void mouseExit(MouseEvent e) {
 			// mouse hover, apply styles
 			ControlElement.this.hasMouseHover = false;
-			doApplyStyles();
+			pseudoClassChanged("hover");
 
 		}
 	};
@@ -139,6 +139,21 @@ public class ControlElement extends WidgetElement {
 		return null;
 	}
 
+	@Override
+	public Node getPreviousSibling() {
+		Control control = getControl();
+		Composite parent = control.getParent();
+		if (parent != null) {
+			Control[] children = parent.getChildren();
+			for (int i = 1; i < children.length; i++) {
+				if (children[i] == control) {
+					return getElement(children[i - 1]);
+				}
+			}
+		}
+		return null;
+	}
+
 	protected Control getControl() {
 		return (Control) getNativeWidget();
 	}
@@ -34,13 +34,13 @@ public class ShellElement extends CompositeElement {
 		@Override
 		public void shellActivated(ShellEvent e) {
 			ShellElement.this.isActive = true;
-			doApplyStyles();
+			pseudoClassChanged("active");
 		}
 
 		@Override
 		public void shellDeactivated(ShellEvent e) {
 			ShellElement.this.isActive = false;
-			doApplyStyles();
+			pseudoClassChanged("active");
 		}
 
 		@Override
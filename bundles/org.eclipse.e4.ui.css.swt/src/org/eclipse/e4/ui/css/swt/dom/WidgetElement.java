@@ -16,6 +16,7 @@ import org.eclipse.e4.ui.css.core.dom.ElementAdapter;
 import org.eclipse.e4.ui.css.core.engine.CSSEngine;
 import org.eclipse.e4.ui.css.core.utils.ClassUtils;
 import org.eclipse.e4.ui.css.swt.CSSSWTConstants;
+import org.eclipse.e4.ui.css.swt.engine.AbstractCSSSWTEngineImpl;
 import org.eclipse.e4.ui.css.swt.helpers.SWTStyleHelpers;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Widget;
@@ -313,6 +314,24 @@ public class WidgetElement extends ElementAdapter implements NodeList {
 		return null;
 	}
 
+	/**
+	 * Restyles the widget after the state of the given pseudo-class changed.
+	 * SWT engines only restyle the widget, and the descendants whose rules
+	 * may depend on it, on the next event loop tick and only if a selector
+	 * tests the pseudo-class.
+	 *
+	 * @param pseudoClass
+	 *            the name of the pseudo-class, for instance "hover"
+	 */
+	protected void pseudoClassChanged(String pseudoClass) {
+		if (engine instanceof AbstractCSSSWTEngineImpl) {
+			((AbstractCSSSWTEngineImpl) engine).pseudoClassChanged(getWidget(),
+					pseudoClass);
+		} else {
+			doApplyStyles();
+		}
+	}
+
 	public void reset() {
 	}
 
@@ -11,9 +11,14 @@
  *******************************************************************************/
 package org.eclipse.e4.ui.css.swt.engine;
 
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.eclipse.e4.ui.css.core.dom.CSSStylableElement;
+import org.eclipse.e4.ui.css.core.dom.ChildVisibilityAwareElement;
 import org.eclipse.e4.ui.css.core.engine.CSSElementContext;
 import org.eclipse.e4.ui.css.core.impl.engine.CSSEngineImpl;
+import org.eclipse.e4.ui.css.core.impl.engine.SelectorDependencies;
 import org.eclipse.e4.ui.css.core.resources.IResourcesRegistry;
 import org.eclipse.e4.ui.css.swt.dom.WidgetElement;
 import org.eclipse.e4.ui.css.swt.properties.converters.CSSValueSWTColorConverterImpl;
@@ -27,7 +32,11 @@ import org.eclipse.e4.ui.css.swt.resources.SWTResourceRegistryKeyFactory;
 import org.eclipse.e4.ui.css.swt.resources.SWTResourcesRegistry;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Widget;
+import org.w3c.css.sac.InputSource;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.stylesheets.StyleSheet;
 
 /**
  * CSS SWT Engine implementation which configure CSSEngineImpl to apply styles
@@ -37,6 +46,27 @@ public abstract class AbstractCSSSWTEngineImpl extends CSSEngineImpl {
 
 	protected Display display;
 
+	/**
+	 * Widgets to restyle on the next event loop tick, mapped to the number of
+	 * levels of their subtree to restyle.
+	 */
+	private final Map<Widget, Integer> dirtyWidgets = new LinkedHashMap<Widget, Integer>();
+
+	private boolean flushScheduled;
+
+	private final Runnable flushRunnable = new Runnable() {
+		@Override
+		public void run() {
+			flushDirtyStyles();
+		}
+	};
+
+	/**
+	 * Analysis of the selectors of the style sheets, or <code>null</code> if
+	 * the style sheets changed since it was created.
+	 */
+	private SelectorDependencies selectorDependencies;
+
 	public AbstractCSSSWTEngineImpl(Display display) {
 		this(display, false);
 	}
@@ -118,6 +148,268 @@ public abstract class AbstractCSSSWTEngineImpl extends CSSEngineImpl {
 				.getData("org.eclipse.e4.ui.css.disabled")); //$NON-NLS-1$
 	}
 
+	@Override
+	public StyleSheet parseStyleSheet(InputSource source) throws IOException {
+		try {
+			return super.parseStyleSheet(source);
+		} finally {
+			selectorDependencies = null;
+		}
+	}
+
+	/**
+	 * Returns the features of the elements the selectors of the style sheets
+	 * depend on.
+	 *
+	 * @return the selector dependencies, never <code>null</code>
+	 */
+	protected SelectorDependencies getSelectorDependencies() {
+		if (selectorDependencies == null) {
+			selectorDependencies = new SelectorDependencies(getDocumentCSS());
+		}
+		return selectorDependencies;
+	}
+
+	/**
+	 * Marks a widget as needing to be restyled after its CSS class changed.
+	 * Only the part of its subtree that selectors testing the added or
+	 * removed class names can match is restyled, on the next event loop tick,
+	 * together with the following siblings when a sibling combinator tests
+	 * them.
+	 *
+	 * @param widget
+	 *            the widget whose CSS class changed
+	 * @param oldClassName
+	 *            the former CSS class, may be <code>null</code>
+	 * @param newClassName
+	 *            the new CSS class, may be <code>null</code>
+	 * @since 0.12
+	 */
+	public void classChanged(Widget widget, String oldClassName,
+			String newClassName) {
+		SelectorDependencies dependencies = getSelectorDependencies();
+		String[] oldClasses = splitClassNames(oldClassName);
+		String[] newClasses = splitClassNames(newClassName);
+		int depth = SelectorDependencies.UNUSED;
+		int siblingDepth = SelectorDependencies.UNUSED;
+		for (String className : oldClasses) {
+			if (!contains(newClasses, className)) {
+				depth = Math.max(depth, dependencies.getClassDepth(className));
+				siblingDepth = Math.max(siblingDepth,
+						dependencies.getSiblingClassDepth(className));
+			}
+		}
+		for (String className : newClasses) {
+			if (!contains(oldClasses, className)) {
+				depth = Math.max(depth, dependencies.getClassDepth(className));
+				siblingDepth = Math.max(siblingDepth,
+						dependencies.getSiblingClassDepth(className));
+			}
+		}
+		markDirty(widget, depth);
+		markFollowingSiblingsDirty(widget, siblingDepth);
+	}
+
+	/**
+	 * Marks a widget as needing to be restyled after its CSS id changed. Only
+	 * the part of its subtree that selectors testing the old or new id can
+	 * match is restyled, on the next event loop tick.
+	 *
+	 * @param widget
+	 *            the widget whose CSS id changed
+	 * @param oldId
+	 *            the former CSS id, may be <code>null</code>
+	 * @param newId
+	 *            the new CSS id, may be <code>null</code>
+	 * @since 0.12
+	 */
+	public void idChanged(Widget widget, String oldId, String newId) {
+		if (oldId == null ? newId == null : oldId.equals(newId)) {
+			return;
+		}
+		SelectorDependencies dependencies = getSelectorDependencies();
+		markDirty(widget, Math.max(dependencies.getIdDepth(oldId),
+				dependencies.getIdDepth(newId)));
+		markFollowingSiblingsDirty(widget, Math.max(
+				dependencies.getSiblingIdDepth(oldId),
+				dependencies.getSiblingIdDepth(newId)));
+	}
+
+	/**
+	 * Marks a widget as needing to be restyled after the state of a
+	 * pseudo-class, such as "hover" or "focus", changed. Nothing is restyled
+	 * if no selector tests the pseudo-class.
+	 *
+	 * @param widget
+	 *            the widget whose state changed
+	 * @param pseudoClass
+	 *            the name of the pseudo-class
+	 * @since 0.12
+	 */
+	public void pseudoClassChanged(Widget widget, String pseudoClass) {
+		SelectorDependencies dependencies = getSelectorDependencies();
+		markDirty(widget, dependencies.getPseudoClassDepth(pseudoClass));
+		markFollowingSiblingsDirty(widget,
+				dependencies.getSiblingPseudoClassDepth(pseudoClass));
+	}
+
+	/**
+	 * Marks a widget as needing to be restyled after the value of an
+	 * attribute changed. Nothing is restyled if no selector tests the
+	 * attribute.
+	 *
+	 * @param widget
+	 *            the widget whose attribute changed
+	 * @param attribute
+	 *            the name of the attribute
+	 * @since 0.12
+	 */
+	public void attributeChanged(Widget widget, String attribute) {
+		SelectorDependencies dependencies = getSelectorDependencies();
+		markDirty(widget, dependencies.getAttributeDepth(attribute));
+		markFollowingSiblingsDirty(widget,
+				dependencies.getSiblingAttributeDepth(attribute));
+	}
+
+	/**
+	 * Marks a widget and the given number of levels of its subtree as needing
+	 * to be restyled. The dirty widgets are restyled together on the next
+	 * event loop tick, see {@link #flushDirtyStyles()}.
+	 *
+	 * @param widget
+	 *            the widget to restyle
+	 * @param depth
+	 *            the number of levels of the subtree to restyle,
+	 *            {@link SelectorDependencies#UNBOUNDED} for the whole subtree
+	 *            or {@link SelectorDependencies#UNUSED} for none
+	 * @since 0.12
+	 */
+	public void markDirty(Widget widget, int depth) {
+		if (depth < 0 || widget.isDisposed()) {
+			return;
+		}
+		Integer current = dirtyWidgets.get(widget);
+		if (current == null || current.intValue() < depth) {
+			dirtyWidgets.put(widget, Integer.valueOf(depth));
+		}
+		if (!flushScheduled && !display.isDisposed()) {
+			flushScheduled = true;
+			display.asyncExec(flushRunnable);
+		}
+	}
+
+	/**
+	 * Restyles the widgets marked as dirty since the last flush. Widgets
+	 * already covered by the restyling of a dirty ancestor are skipped. This
+	 * method is called once per event loop tick and may be called earlier
+	 * when the styles are needed right away.
+	 *
+	 * @since 0.12
+	 */
+	public void flushDirtyStyles() {
+		flushScheduled = false;
+		if (dirtyWidgets.isEmpty()) {
+			return;
+		}
+		Map<Widget, Integer> dirty = new LinkedHashMap<Widget, Integer>(
+				dirtyWidgets);
+		dirtyWidgets.clear();
+		for (Map.Entry<Widget, Integer> entry : dirty.entrySet()) {
+			Widget widget = entry.getKey();
+			if (widget.isDisposed() || isCoveredByAncestor(widget, dirty)) {
+				continue;
+			}
+			try {
+				applyDirtyStyles(widget, entry.getValue().intValue());
+			} catch (Exception e) {
+				handleExceptions(e);
+			}
+		}
+	}
+
+	/**
+	 * Marks the siblings following a widget, and the given number of levels
+	 * of their subtrees, as needing to be restyled.
+	 */
+	private void markFollowingSiblingsDirty(Widget widget, int depth) {
+		if (depth < 0 || widget.isDisposed()) {
+			return;
+		}
+		Element element = getElement(widget);
+		Node parent = element != null ? element.getParentNode() : null;
+		NodeList nodes = parent != null ? parent.getChildNodes() : null;
+		if (nodes == null) {
+			return;
+		}
+		boolean following = false;
+		for (int k = 0; k < nodes.getLength(); k++) {
+			Node node = nodes.item(k);
+			if (!(node instanceof CSSStylableElement)) {
+				continue;
+			}
+			Object sibling = ((CSSStylableElement) node).getNativeWidget();
+			if (following && sibling instanceof Widget) {
+				markDirty((Widget) sibling, depth);
+			} else if (sibling == widget) {
+				following = true;
+			}
+		}
+	}
+
+	private void applyDirtyStyles(Object node, int depth) {
+		if (depth == SelectorDependencies.UNBOUNDED) {
+			applyStyles(node, true, true);
+			return;
+		}
+		applyStyles(node, false, true);
+		if (depth == 0) {
+			return;
+		}
+		Element element = getElement(node);
+		if (element == null || !isVisible(element)) {
+			return;
+		}
+		NodeList nodes = element instanceof ChildVisibilityAwareElement ? ((ChildVisibilityAwareElement) element)
+				.getVisibleChildNodes() : element.getChildNodes();
+		if (nodes != null) {
+			for (int k = 0; k < nodes.getLength(); k++) {
+				applyDirtyStyles(nodes.item(k), depth - 1);
+			}
+			onStylesAppliedToChildNodes(element, nodes);
+		}
+	}
+
+	private boolean isCoveredByAncestor(Widget widget, Map<Widget, Integer> dirty) {
+		Element element = getElement(widget);
+		Node parent = element != null ? element.getParentNode() : null;
+		for (int distance = 1; parent instanceof CSSStylableElement; distance++) {
+			Integer depth = dirty.get(((CSSStylableElement) parent)
+					.getNativeWidget());
+			if (depth != null && depth.intValue() >= distance) {
+				return true;
+			}
+			parent = parent.getParentNode();
+		}
+		return false;
+	}
+
+	private static String[] splitClassNames(String classNames) {
+		if (classNames == null) {
+			return new String[0];
+		}
+		String trimmed = classNames.trim();
+		return trimmed.length() == 0 ? new String[0] : trimmed.split("\\s+");
+	}
+
+	private static boolean contains(String[] values, String value) {
+		for (String v : values) {
+			if (v.equals(value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	@Override
 	public void reset() {
 		for (CSSElementContext elementContext : getElementsContext().values()) {
@@ -129,7 +421,9 @@ public abstract class AbstractCSSSWTEngineImpl extends CSSEngineImpl {
 		}
 
 		getResourcesRegistry().dispose();
+		dirtyWidgets.clear();
 		super.reset();
+		selectorDependencies = null;
 	}
 
 	private boolean isApplicableToReset(WidgetElement element) {
@@ -28,7 +28,8 @@ import org.eclipse.osgi.util.NLS;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleException;
-import org.osgi.framework.ServiceRegistration;
+import org.osgi.framework.Filter;
+import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 import org.osgi.service.event.EventConstants;
@@ -37,7 +38,7 @@ import org.osgi.service.event.EventHandler;
 public class EventBroker implements IEventBroker {
 	
 	// TBD synchronization
-	private Map<EventHandler, Collection<ServiceRegistration<?>>> registrations = new HashMap<EventHandler, Collection<ServiceRegistration<?>>>();
+	private Map<EventHandler, Collection<EventDispatcher.Subscription>> registrations = new HashMap<EventHandler, Collection<EventDispatcher.Subscription>>();
 
 	@Inject
 	Logger logger;
@@ -73,12 +74,20 @@ public class EventBroker implements IEventBroker {
 	@Override
 	public boolean send(String topic, Object data) {
 		Event event = constructEvent(topic, data);
-		EventAdmin eventAdmin = Activator.getDefault().getEventAdmin();
-		if (eventAdmin == null) {
+		Activator activator = Activator.getDefault();
+		BundleContext bundleContext = activator.getBundleContext();
+		if (bundleContext == null) {
+			// no subscriptions can exist without a bundle context
+			logger.error(NLS.bind(ServiceMessages.NO_EVENT_ADMIN, event.toString()));
+			return false;
+		}
+		// subscriptions receive the event directly, the event admin is only
+		// used for the event handler services subscribing to the topic
+		if (!EventDispatcher.getInstance(bundleContext).send(event,
+				activator.getEventAdmin())) {
 			logger.error(NLS.bind(ServiceMessages.NO_EVENT_ADMIN, event.toString()));
 			return false;
 		}
-		eventAdmin.sendEvent(event);
 		return true;
 	}
 
@@ -123,46 +132,59 @@ public class EventBroker implements IEventBroker {
 			logger.error(NLS.bind(ServiceMessages.NO_BUNDLE_CONTEXT, topic));
 			return false;
 		}
-		String[] topics = new String[] {topic};
-		Dictionary<String, Object> d = new Hashtable<String, Object>();
-		d.put(EventConstants.EVENT_TOPIC, topics);
-		if (filter != null)
-			d.put(EventConstants.EVENT_FILTER, filter);
+		Filter eventFilter = null;
+		if (filter != null) {
+			try {
+				eventFilter = bundleContext.createFilter(filter);
+			} catch (InvalidSyntaxException e) {
+				logger.error(e, topic);
+				return false;
+			}
+		}
 		EventHandler wrappedHandler = new UIEventHandler(eventHandler, headless ? null : uiSync);
-		ServiceRegistration<?> registration = bundleContext.registerService(
-				EventHandler.class.getName(), wrappedHandler, d);
-		Collection<ServiceRegistration<?>> handled = registrations
+		EventDispatcher.Subscription subscription = new EventDispatcher.Subscription(
+				topic, eventFilter, wrappedHandler, logger, eventHandler);
+		EventDispatcher.getInstance(bundleContext).subscribe(subscription);
+		Collection<EventDispatcher.Subscription> handled = registrations
 				.get(eventHandler);
 		if (handled == null) {
 			registrations.put(eventHandler,
-					handled = new ArrayList<ServiceRegistration<?>>());
+					handled = new ArrayList<EventDispatcher.Subscription>());
 		}
-		handled.add(registration);
+		handled.add(subscription);
 		return true;
 	}
 
 	@Override
 	public boolean unsubscribe(EventHandler eventHandler) {
-		Collection<ServiceRegistration<?>> handled = registrations
+		Collection<EventDispatcher.Subscription> handled = registrations
 				.remove(eventHandler);
 		if (handled == null || handled.isEmpty())
 			return false;
-		for (ServiceRegistration<?> r : handled) {
-			r.unregister();
+		BundleContext bundleContext = Activator.getDefault().getBundleContext();
+		if (bundleContext == null)
+			return true;
+		EventDispatcher dispatcher = EventDispatcher.getInstance(bundleContext);
+		for (EventDispatcher.Subscription subscription : handled) {
+			dispatcher.unsubscribe(subscription);
 		}
 		return true;
 	}
 	
 	@PreDestroy
 	void dispose() {
-		Collection<Collection<ServiceRegistration<?>>> values = new ArrayList<Collection<ServiceRegistration<?>>>(
+		Collection<Collection<EventDispatcher.Subscription>> values = new ArrayList<Collection<EventDispatcher.Subscription>>(
 				registrations.values());
 		registrations.clear();
-		for (Collection<ServiceRegistration<?>> handled : values) {
-			for (ServiceRegistration<?> registration : handled) {
-				// System.out.println("EventBroker dispose:" + registration[i] +
-				// ")");
-				registration.unregister();
+		Activator activator = Activator.getDefault();
+		BundleContext bundleContext = activator == null ? null : activator
+				.getBundleContext();
+		if (bundleContext == null)
+			return;
+		EventDispatcher dispatcher = EventDispatcher.getInstance(bundleContext);
+		for (Collection<EventDispatcher.Subscription> handled : values) {
+			for (EventDispatcher.Subscription subscription : handled) {
+				dispatcher.unsubscribe(subscription);
 			}
 		}
 	}
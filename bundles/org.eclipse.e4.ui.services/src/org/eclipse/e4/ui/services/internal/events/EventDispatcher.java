@@ -0,0 +1,356 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.ui.services.internal.events;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import org.eclipse.e4.core.services.log.Logger;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.Filter;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventAdmin;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
+
+/**
+ * In-process dispatcher shared by all the {@link EventBroker}s of a bundle
+ * context.
+ * <p>
+ * The subscriptions made through the brokers are kept in a {@link TopicTrie}
+ * rather than being registered as {@link EventHandler} services, so events
+ * sent through a broker are delivered to them directly, without the handler
+ * lookup of the {@link EventAdmin}. The event admin is only involved when
+ * {@link EventHandler} services registered by other means subscribe to the
+ * topic of the event.
+ * </p>
+ * <p>
+ * The dispatcher registers itself as an {@link EventHandler} service for all
+ * topics, so events posted asynchronously or sent directly to the event admin
+ * still reach the subscriptions.
+ * </p>
+ * <p>
+ * An event listing other events in its {@link #EVENTS} property is a compound
+ * event: the handlers subscribed to its topic receive it once, the other
+ * handlers receive the listed events of the topics they subscribed to.
+ * </p>
+ */
+final class EventDispatcher implements EventHandler {
+
+	/**
+	 * A subscription made through a broker.
+	 */
+	static final class Subscription {
+		final String topic;
+		final Filter filter;
+		final EventHandler handler;
+		final Logger logger;
+		/**
+		 * The handler given to the broker, the same for all the topics it
+		 * subscribed to.
+		 */
+		final Object subscriber;
+
+		Subscription(String topic, Filter filter, EventHandler handler,
+				Logger logger, Object subscriber) {
+			this.topic = topic;
+			this.filter = filter;
+			this.handler = handler;
+			this.logger = logger;
+			this.subscriber = subscriber;
+		}
+	}
+
+	/**
+	 * The property of a compound event listing the events it stands for,
+	 * the same as <code>UIEvents.EventTags.EVENTS</code>.
+	 */
+	static final String EVENTS = "Events"; //$NON-NLS-1$
+
+	private static final Subscription[] NO_SUBSCRIPTIONS = new Subscription[0];
+
+	private static final Object[] NO_HANDLERS = new Object[0];
+
+	private static EventDispatcher instance;
+
+	private final BundleContext bundleContext;
+
+	private final TopicTrie<Subscription> subscriptions = new TopicTrie<Subscription>(
+			NO_SUBSCRIPTIONS);
+
+	/**
+	 * Topic patterns of the {@link EventHandler} services other than this
+	 * dispatcher, <code>null</code> when they have to be collected again.
+	 */
+	private volatile TopicTrie<Object> externalTopics;
+
+	/**
+	 * Incremented whenever an {@link EventHandler} service changes.
+	 */
+	private volatile int externalTopicsStamp;
+
+	private final ServiceListener serviceListener = new ServiceListener() {
+		@Override
+		public void serviceChanged(ServiceEvent event) {
+			externalTopicsStamp++;
+			externalTopics = null;
+		}
+	};
+
+	private final ServiceRegistration<?> registration;
+
+	/**
+	 * The event being sent to the event admin on the current thread, which the
+	 * subscriptions already received.
+	 */
+	private final ThreadLocal<Event> sending = new ThreadLocal<Event>();
+
+	/**
+	 * Returns the dispatcher for the given bundle context. The dispatcher of
+	 * a former bundle context is disposed.
+	 */
+	static synchronized EventDispatcher getInstance(BundleContext bundleContext) {
+		if (instance == null || instance.bundleContext != bundleContext) {
+			if (instance != null) {
+				instance.dispose();
+			}
+			instance = new EventDispatcher(bundleContext);
+		}
+		return instance;
+	}
+
+	private EventDispatcher(BundleContext bundleContext) {
+		this.bundleContext = bundleContext;
+		try {
+			bundleContext.addServiceListener(serviceListener,
+					"(" + Constants.OBJECTCLASS + "=" //$NON-NLS-1$ //$NON-NLS-2$
+							+ EventHandler.class.getName() + ")"); //$NON-NLS-1$
+		} catch (InvalidSyntaxException e) {
+			// the filter is constant
+			throw new IllegalStateException(e);
+		}
+		Dictionary<String, Object> d = new Hashtable<String, Object>();
+		d.put(EventConstants.EVENT_TOPIC, new String[] { "*" }); //$NON-NLS-1$
+		registration = bundleContext.registerService(
+				EventHandler.class.getName(), this, d);
+	}
+
+	/**
+	 * Unregisters the {@link EventHandler} service and the service listener
+	 * of the dispatcher.
+	 */
+	private void dispose() {
+		try {
+			registration.unregister();
+		} catch (IllegalStateException e) {
+			// already unregistered with its bundle
+		}
+		try {
+			bundleContext.removeServiceListener(serviceListener);
+		} catch (IllegalStateException e) {
+			// the bundle context is no longer valid
+		}
+	}
+
+	/**
+	 * Adds a subscription.
+	 */
+	synchronized void subscribe(Subscription subscription) {
+		subscriptions.add(subscription.topic, subscription);
+	}
+
+	/**
+	 * Removes a subscription.
+	 */
+	synchronized void unsubscribe(Subscription subscription) {
+		subscriptions.remove(subscription.topic, subscription);
+	}
+
+	/**
+	 * Delivers the event to the subscriptions of the brokers. The events
+	 * listed by a compound event are delivered first, to the subscribers
+	 * which do not receive the compound event itself.
+	 */
+	void dispatch(Event event) {
+		Subscription[] matches;
+		synchronized (this) {
+			matches = subscriptions.match(event.getTopic());
+		}
+		List<Event> events = getEvents(event);
+		if (!events.isEmpty()) {
+			Set<Object> receivers = Collections
+					.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+			for (Subscription subscription : matches) {
+				if (subscription.filter == null
+						|| event.matches(subscription.filter)) {
+					receivers.add(subscription.subscriber);
+				}
+			}
+			for (Event e : events) {
+				Subscription[] eventMatches;
+				synchronized (this) {
+					eventMatches = subscriptions.match(e.getTopic());
+				}
+				deliver(e, eventMatches, receivers);
+			}
+		}
+		deliver(event, matches, Collections.emptySet());
+	}
+
+	private void deliver(Event event, Subscription[] matches,
+			Set<?> excluded) {
+		for (Subscription subscription : matches) {
+			if (excluded.contains(subscription.subscriber)
+					|| (subscription.filter != null && !event
+							.matches(subscription.filter))) {
+				continue;
+			}
+			try {
+				subscription.handler.handleEvent(event);
+			} catch (RuntimeException e) {
+				// like the event admin, do not let a handler break delivery
+				if (subscription.logger != null) {
+					subscription.logger.error(e, event.toString());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the events listed by a compound event, an empty list for other
+	 * events.
+	 */
+	private static List<Event> getEvents(Event event) {
+		Object events = event.getProperty(EVENTS);
+		if (!(events instanceof List<?>)) {
+			return Collections.emptyList();
+		}
+		for (Object e : (List<?>) events) {
+			if (!(e instanceof Event)) {
+				return Collections.emptyList();
+			}
+		}
+		@SuppressWarnings("unchecked")
+		List<Event> result = (List<Event>) events;
+		return result;
+	}
+
+	/**
+	 * Sends the event synchronously: the subscriptions of the brokers
+	 * receive it directly, then the other {@link EventHandler} services
+	 * through the event admin if some of them subscribe to its topic.
+	 *
+	 * @return <code>false</code> if the event had to be delivered through the
+	 *         event admin and none is available
+	 */
+	boolean send(Event event, EventAdmin eventAdmin) {
+		dispatch(event);
+		boolean sent = true;
+		// the event handler services cannot tell compound events apart
+		for (Event e : getEvents(event)) {
+			sent &= sendExternal(e, eventAdmin);
+		}
+		return sendExternal(event, eventAdmin) && sent;
+	}
+
+	/**
+	 * Sends the event to the {@link EventHandler} services other than this
+	 * dispatcher subscribing to its topic, if any.
+	 */
+	private boolean sendExternal(Event event, EventAdmin eventAdmin) {
+		if (!hasExternalHandlers(event.getTopic())) {
+			return true;
+		}
+		if (eventAdmin == null) {
+			return false;
+		}
+		Event previous = sending.get();
+		sending.set(event);
+		try {
+			eventAdmin.sendEvent(event);
+		} finally {
+			sending.set(previous);
+		}
+		return true;
+	}
+
+	/**
+	 * Delivers the events which were not sent through
+	 * {@link #send(Event, EventAdmin)}.
+	 */
+	@Override
+	public void handleEvent(Event event) {
+		if (sending.get() != event) {
+			dispatch(event);
+		}
+	}
+
+	private boolean hasExternalHandlers(String topic) {
+		TopicTrie<Object> topics = externalTopics;
+		if (topics == null) {
+			int stamp = externalTopicsStamp;
+			topics = collectExternalTopics();
+			if (stamp == externalTopicsStamp) {
+				externalTopics = topics;
+			}
+		}
+		return !topics.isEmpty() && topics.match(topic).length > 0;
+	}
+
+	private TopicTrie<Object> collectExternalTopics() {
+		TopicTrie<Object> topics = new TopicTrie<Object>(NO_HANDLERS);
+		ServiceReference<?>[] references;
+		try {
+			references = bundleContext.getServiceReferences(
+					EventHandler.class.getName(), null);
+		} catch (InvalidSyntaxException e) {
+			// no filter
+			references = null;
+		} catch (IllegalStateException e) {
+			// the bundle context is no longer valid
+			references = null;
+		}
+		if (references == null) {
+			return topics;
+		}
+		for (ServiceReference<?> reference : references) {
+			if (registration != null
+					&& reference.equals(registration.getReference())) {
+				continue;
+			}
+			Object topic = reference.getProperty(EventConstants.EVENT_TOPIC);
+			if (topic instanceof String) {
+				topics.add((String) topic, reference);
+			} else if (topic instanceof String[]) {
+				for (String t : (String[]) topic) {
+					topics.add(t, reference);
+				}
+			} else if (topic instanceof Collection<?>) {
+				for (Object t : (Collection<?>) topic) {
+					if (t instanceof String) {
+						topics.add((String) t, reference);
+					}
+				}
+			}
+		}
+		return topics;
+	}
+}
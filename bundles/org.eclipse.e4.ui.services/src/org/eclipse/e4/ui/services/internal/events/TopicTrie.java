@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.ui.services.internal.events;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trie of values keyed by event topic patterns, using the syntax of the
+ * <code>event.topics</code> property of the OSGi Event Admin: a pattern is
+ * either a topic such as <code>org/eclipse/e4/ui/model/ui/UIElement/visible</code>,
+ * a topic prefix followed by <code>/*</code> which matches all the topics
+ * below the prefix, or <code>*</code> which matches every topic.
+ * <p>
+ * The values of a node are kept in arrays that are replaced, never modified,
+ * so the arrays returned by {@link #match(String)} can be iterated safely
+ * while the trie is modified. This class is not thread safe.
+ * </p>
+ */
+final class TopicTrie<T> {
+
+	private static final String WILDCARD = "*"; //$NON-NLS-1$
+
+	private final class Node {
+		Map<String, Node> children;
+		T[] values = empty;
+		T[] wildcardValues = empty;
+
+		boolean isEmpty() {
+			return children == null && values.length == 0
+					&& wildcardValues.length == 0;
+		}
+	}
+
+	private final T[] empty;
+
+	private final Node root;
+
+	private int size;
+
+	/**
+	 * @param empty
+	 *            an empty array of the value type, returned when no value
+	 *            matches a topic
+	 */
+	TopicTrie(T[] empty) {
+		this.empty = empty;
+		this.root = new Node();
+	}
+
+	/**
+	 * Adds a value for the given topic pattern.
+	 */
+	void add(String pattern, T value) {
+		Node node = root;
+		boolean wildcard = false;
+		int start = 0;
+		while (start <= pattern.length()) {
+			int end = pattern.indexOf('/', start);
+			if (end == -1) {
+				end = pattern.length();
+			}
+			String segment = pattern.substring(start, end);
+			if (end == pattern.length() && WILDCARD.equals(segment)) {
+				wildcard = true;
+				break;
+			}
+			if (node.children == null) {
+				node.children = new HashMap<String, Node>();
+			}
+			Node child = node.children.get(segment);
+			if (child == null) {
+				child = new Node();
+				node.children.put(segment, child);
+			}
+			node = child;
+			start = end + 1;
+		}
+		if (wildcard) {
+			node.wildcardValues = append(node.wildcardValues, value);
+		} else {
+			node.values = append(node.values, value);
+		}
+		size++;
+	}
+
+	/**
+	 * Removes a value added for the given topic pattern. The nodes left
+	 * without values and children are removed as well.
+	 *
+	 * @return <code>true</code> if the value was found
+	 */
+	boolean remove(String pattern, T value) {
+		// the nodes and segments from the root to the node of the pattern
+		List<Node> path = new ArrayList<Node>();
+		List<String> segments = new ArrayList<String>();
+		Node node = root;
+		boolean wildcard = false;
+		int start = 0;
+		while (start <= pattern.length()) {
+			int end = pattern.indexOf('/', start);
+			if (end == -1) {
+				end = pattern.length();
+			}
+			String segment = pattern.substring(start, end);
+			if (end == pattern.length() && WILDCARD.equals(segment)) {
+				wildcard = true;
+				break;
+			}
+			path.add(node);
+			segments.add(segment);
+			node = node.children == null ? null : node.children.get(segment);
+			if (node == null) {
+				return false;
+			}
+			start = end + 1;
+		}
+		T[] values = wildcard ? node.wildcardValues : node.values;
+		T[] newValues = remove(values, value);
+		if (newValues == values) {
+			return false;
+		}
+		if (wildcard) {
+			node.wildcardValues = newValues;
+		} else {
+			node.values = newValues;
+		}
+		size--;
+		for (int i = path.size() - 1; i >= 0 && node.isEmpty(); i--) {
+			Node parent = path.get(i);
+			parent.children.remove(segments.get(i));
+			if (parent.children.isEmpty()) {
+				parent.children = null;
+			}
+			node = parent;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether the trie has no values.
+	 */
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the values whose patterns match the given topic. The returned
+	 * array must not be modified.
+	 */
+	T[] match(String topic) {
+		T[] result = root.wildcardValues;
+		Node node = root;
+		int start = 0;
+		while (true) {
+			int end = topic.indexOf('/', start);
+			if (end == -1) {
+				end = topic.length();
+			}
+			node = node.children == null ? null : node.children.get(topic
+					.substring(start, end));
+			if (node == null) {
+				return result;
+			}
+			if (end == topic.length()) {
+				return concat(result, node.values);
+			}
+			// wildcard patterns only match topics below their prefix
+			result = concat(result, node.wildcardValues);
+			start = end + 1;
+		}
+	}
+
+	private T[] concat(T[] values1, T[] values2) {
+		if (values2.length == 0) {
+			return values1;
+		}
+		if (values1.length == 0) {
+			return values2;
+		}
+		T[] result = Arrays.copyOf(values1, values1.length + values2.length);
+		System.arraycopy(values2, 0, result, values1.length, values2.length);
+		return result;
+	}
+
+	private T[] append(T[] values, T value) {
+		T[] result = Arrays.copyOf(values, values.length + 1);
+		result[values.length] = value;
+		return result;
+	}
+
+	private T[] remove(T[] values, T value) {
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] == value) {
+				if (values.length == 1) {
+					return empty;
+				}
+				T[] result = Arrays.copyOf(values, values.length - 1);
+				System.arraycopy(values, i + 1, result, i, values.length - i
+						- 1);
+				return result;
+			}
+		}
+		return values;
+	}
+}
@@ -12,6 +12,7 @@
 package org.eclipse.e4.ui.workbench.renderers.swt;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -122,6 +123,10 @@ public class StackRenderer extends LazyStackRenderer {
 	private static final String SHELL_CLOSE_EDITORS_MENU = "shell_close_editors_menu"; //$NON-NLS-1$
 	private static final String STACK_SELECTED_PART = "stack_selected_part"; //$NON-NLS-1$
 
+	// the prefix of the topics of the label events
+	private static final String UILABEL_TOPIC_PREFIX = UIEvents.UILabel.TOPIC_ALL
+			.substring(0, UIEvents.UILabel.TOPIC_ALL.length() - 1);
+
 	/**
 	 * Add this tag to prevent the next tab's activation from granting focus
 	 * toac the part. This is used to keep the focus on the CTF when traversing
@@ -301,54 +306,24 @@ public class StackRenderer extends LazyStackRenderer {
 		itemUpdater = new EventHandler() {
 			@Override
 			public void handleEvent(Event event) {
-				MUIElement element = (MUIElement) event
-						.getProperty(UIEvents.EventTags.ELEMENT);
-				if (!(element instanceof MPart))
-					return;
-
-				MPart part = (MPart) element;
-
-				String attName = (String) event
-						.getProperty(UIEvents.EventTags.ATTNAME);
-				Object newValue = event
-						.getProperty(UIEvents.EventTags.NEW_VALUE);
-
-				// is this a direct child of the stack?
-				if (element.getParent() != null
-						&& element.getParent().getRenderer() == StackRenderer.this) {
-					CTabItem cti = findItemForPart(element, element.getParent());
-					if (cti != null) {
-						updateTab(cti, part, attName, newValue);
-					}
+				if (!UIEvents.UILifeCycle.CHANGE_BATCH.equals(event.getTopic())) {
+					updateItem(event, null);
 					return;
 				}
-
-				// Do we have any stacks with place holders for the element
-				// that's changed?
-				MWindow win = modelService.getTopLevelWindowFor(part);
-				List<MPlaceholder> refs = modelService.findElements(win, null,
-						MPlaceholder.class, null);
-				if (refs != null) {
-					for (MPlaceholder ref : refs) {
-						if (ref.getRef() != part)
-							continue;
-
-						MElementContainer<MUIElement> refParent = ref
-								.getParent();
-						// can be null, see bug 328296
-						if (refParent != null
-								&& refParent.getRenderer() instanceof StackRenderer) {
-							CTabItem cti = findItemForPart(ref, refParent);
-							if (cti != null) {
-								updateTab(cti, part, attName, newValue);
-							}
-						}
+				// look the place holders of a window up once per batch
+				Map<MWindow, List<MPlaceholder>> placeholders = new HashMap<MWindow, List<MPlaceholder>>();
+				for (Object batched : UIEvents.asIterable(event,
+						UIEvents.EventTags.EVENTS)) {
+					Event e = (Event) batched;
+					if (e.getTopic().startsWith(UILABEL_TOPIC_PREFIX)) {
+						updateItem(e, placeholders);
 					}
 				}
 			}
 		};
 
 		eventBroker.subscribe(UIEvents.UILabel.TOPIC_ALL, itemUpdater);
+		eventBroker.subscribe(UIEvents.UILifeCycle.CHANGE_BATCH, itemUpdater);
 
 		// TODO: Refactor using findItemForPart(MPart) method
 		dirtyUpdater = new EventHandler() {
@@ -534,6 +509,65 @@ public class StackRenderer extends LazyStackRenderer {
 				tabStateHandler);
 	}
 
+	/**
+	 * Updates the tabs of the part whose label changed.
+	 * 
+	 * @param placeholders
+	 *            the place holders of the windows already looked up, or
+	 *            <code>null</code>
+	 */
+	private void updateItem(Event event,
+			Map<MWindow, List<MPlaceholder>> placeholders) {
+		MUIElement element = (MUIElement) event
+				.getProperty(UIEvents.EventTags.ELEMENT);
+		if (!(element instanceof MPart))
+			return;
+
+		MPart part = (MPart) element;
+
+		String attName = (String) event.getProperty(UIEvents.EventTags.ATTNAME);
+		Object newValue = event.getProperty(UIEvents.EventTags.NEW_VALUE);
+
+		// is this a direct child of the stack?
+		if (element.getParent() != null
+				&& element.getParent().getRenderer() == StackRenderer.this) {
+			CTabItem cti = findItemForPart(element, element.getParent());
+			if (cti != null) {
+				updateTab(cti, part, attName, newValue);
+			}
+			return;
+		}
+
+		// Do we have any stacks with place holders for the element
+		// that's changed?
+		MWindow win = modelService.getTopLevelWindowFor(part);
+		List<MPlaceholder> refs = placeholders == null ? null : placeholders
+				.get(win);
+		if (refs == null) {
+			refs = modelService.findElements(win, null, MPlaceholder.class,
+					null);
+			if (placeholders != null && refs != null) {
+				placeholders.put(win, refs);
+			}
+		}
+		if (refs != null) {
+			for (MPlaceholder ref : refs) {
+				if (ref.getRef() != part)
+					continue;
+
+				MElementContainer<MUIElement> refParent = ref.getParent();
+				// can be null, see bug 328296
+				if (refParent != null
+						&& refParent.getRenderer() instanceof StackRenderer) {
+					CTabItem cti = findItemForPart(ref, refParent);
+					if (cti != null) {
+						updateTab(cti, part, attName, newValue);
+					}
+				}
+			}
+		}
+	}
+
 	protected void updateTab(CTabItem cti, MPart part, String attName,
 			Object newValue) {
 		if (UIEvents.UILabel.LABEL.equals(attName)
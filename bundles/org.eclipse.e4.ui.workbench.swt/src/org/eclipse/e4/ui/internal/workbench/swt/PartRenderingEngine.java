@@ -39,8 +39,10 @@ import org.eclipse.e4.core.services.events.IEventBroker;
 import org.eclipse.e4.core.services.log.Logger;
 import org.eclipse.e4.core.services.statusreporter.StatusReporter;
 import org.eclipse.e4.ui.bindings.keys.KeyBindingDispatcher;
+import org.eclipse.e4.ui.css.core.engine.CSSEngine;
 import org.eclipse.e4.ui.css.core.util.impl.resources.OSGiResourceLocator;
 import org.eclipse.e4.ui.css.swt.dom.WidgetElement;
+import org.eclipse.e4.ui.css.swt.engine.AbstractCSSSWTEngineImpl;
 import org.eclipse.e4.ui.css.swt.engine.CSSSWTEngineImpl;
 import org.eclipse.e4.ui.css.swt.helpers.EclipsePreferencesHelper;
 import org.eclipse.e4.ui.css.swt.theme.IThemeEngine;
@@ -1293,14 +1295,23 @@ public class PartRenderingEngine implements IPresentationEngine {
 			appContext.set(IStylingEngine.SERVICE_NAME, new IStylingEngine() {
 				@Override
 				public void setClassname(Object widget, String classname) {
+					String oldClassname = WidgetElement
+							.getCSSClass((Widget) widget);
 					WidgetElement.setCSSClass((Widget) widget, classname);
-					themeEngine.applyStyles(widget, true);
+					if (!invalidateStyles((Widget) widget, oldClassname,
+							WidgetElement.getID((Widget) widget))) {
+						themeEngine.applyStyles(widget, true);
+					}
 				}
 
 				@Override
 				public void setId(Object widget, String id) {
+					String oldId = WidgetElement.getID((Widget) widget);
 					WidgetElement.setID((Widget) widget, id);
-					themeEngine.applyStyles(widget, true);
+					if (!invalidateStyles((Widget) widget,
+							WidgetElement.getCSSClass((Widget) widget), oldId)) {
+						themeEngine.applyStyles(widget, true);
+					}
 				}
 
 				@Override
@@ -1316,9 +1327,14 @@ public class PartRenderingEngine implements IPresentationEngine {
 				@Override
 				public void setClassnameAndId(Object widget, String classname,
 						String id) {
+					String oldClassname = WidgetElement
+							.getCSSClass((Widget) widget);
+					String oldId = WidgetElement.getID((Widget) widget);
 					WidgetElement.setCSSClass((Widget) widget, classname);
 					WidgetElement.setID((Widget) widget, id);
-					themeEngine.applyStyles(widget, true);
+					if (!invalidateStyles((Widget) widget, oldClassname, oldId)) {
+						themeEngine.applyStyles(widget, true);
+					}
 				}
 			});
 
@@ -1339,14 +1355,23 @@ public class PartRenderingEngine implements IPresentationEngine {
 			appContext.set(IStylingEngine.SERVICE_NAME, new IStylingEngine() {
 				@Override
 				public void setClassname(Object widget, String classname) {
+					String oldClassname = WidgetElement
+							.getCSSClass((Widget) widget);
 					WidgetElement.setCSSClass((Widget) widget, classname);
-					cssEngine.applyStyles(widget, true);
+					if (!invalidateStyles((Widget) widget, oldClassname,
+							WidgetElement.getID((Widget) widget))) {
+						cssEngine.applyStyles(widget, true);
+					}
 				}
 
 				@Override
 				public void setId(Object widget, String id) {
+					String oldId = WidgetElement.getID((Widget) widget);
 					WidgetElement.setID((Widget) widget, id);
-					cssEngine.applyStyles(widget, true);
+					if (!invalidateStyles((Widget) widget,
+							WidgetElement.getCSSClass((Widget) widget), oldId)) {
+						cssEngine.applyStyles(widget, true);
+					}
 				}
 
 				@Override
@@ -1367,9 +1392,14 @@ public class PartRenderingEngine implements IPresentationEngine {
 				@Override
 				public void setClassnameAndId(Object widget, String classname,
 						String id) {
+					String oldClassname = WidgetElement
+							.getCSSClass((Widget) widget);
+					String oldId = WidgetElement.getID((Widget) widget);
 					WidgetElement.setCSSClass((Widget) widget, classname);
 					WidgetElement.setID((Widget) widget, id);
-					cssEngine.applyStyles(widget, true);
+					if (!invalidateStyles((Widget) widget, oldClassname, oldId)) {
+						cssEngine.applyStyles(widget, true);
+					}
 				}
 			});
 
@@ -1416,6 +1446,30 @@ public class PartRenderingEngine implements IPresentationEngine {
 		appContext.set(CSSRenderingUtils.class, cssUtils);
 	}
 
+	/**
+	 * Restyles a widget whose CSS class or id changed. When the engine of the
+	 * widget tracks dirty widgets, only the widget, its following siblings and
+	 * the descendants whose rules may depend on the changed class names or id
+	 * are restyled. They are restyled before returning, as the callers of
+	 * {@link IStylingEngine} expect the new styles right away.
+	 *
+	 * @return <code>false</code> if the engine cannot restyle the widget
+	 *         incrementally and the caller has to restyle its subtree
+	 */
+	private static boolean invalidateStyles(Widget widget,
+			String oldClassname, String oldId) {
+		CSSEngine engine = WidgetElement.getEngine(widget);
+		if (!(engine instanceof AbstractCSSSWTEngineImpl)) {
+			return false;
+		}
+		AbstractCSSSWTEngineImpl swtEngine = (AbstractCSSSWTEngineImpl) engine;
+		swtEngine.classChanged(widget, oldClassname,
+				WidgetElement.getCSSClass(widget));
+		swtEngine.idChanged(widget, oldId, WidgetElement.getID(widget));
+		swtEngine.flushDirtyStyles();
+		return true;
+	}
+
 	private static IThemeEngine createThemeEngine(Display display, IEclipseContext appContext) {
 		// Store the app context
 		IContributionFactory contribution = (IContributionFactory) appContext
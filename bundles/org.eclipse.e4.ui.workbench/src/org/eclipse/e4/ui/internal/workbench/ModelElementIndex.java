@@ -0,0 +1,237 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.ui.internal.workbench;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.eclipse.e4.ui.model.application.MApplicationElement;
+import org.eclipse.e4.ui.model.application.impl.ApplicationPackageImpl;
+import org.eclipse.e4.ui.model.application.ui.MUIElement;
+import org.eclipse.e4.ui.model.application.ui.advanced.MPlaceholder;
+import org.eclipse.e4.ui.model.application.ui.advanced.impl.AdvancedPackageImpl;
+import org.eclipse.emf.common.notify.Adapter;
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.common.notify.Notifier;
+import org.eclipse.emf.common.util.EList;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.util.EContentAdapter;
+
+/**
+ * Index of the elements of an application model by element id, tag and model class, kept current
+ * by adapting every element of the model.
+ * <p>
+ * The index also records the placeholders referencing every element, so the elements shared
+ * between perspectives can be related to the places they are shown in. It only answers which
+ * elements have a given id, tag or class; whether they are found by a search depends on the
+ * search and is decided by {@link ModelServiceImpl}.
+ * </p>
+ * <p>
+ * The index is the first adapter of every element, so it is already current when the other
+ * adapters, such as the {@link UIEventPublisher}, are notified of a change. Like the model, it
+ * must only be accessed from the thread changing the model.
+ * </p>
+ */
+final class ModelElementIndex extends EContentAdapter {
+
+	private final Map<String, Set<MApplicationElement>> elementsById = new HashMap<String, Set<MApplicationElement>>();
+
+	private final Map<String, Set<MApplicationElement>> elementsByTag = new HashMap<String, Set<MApplicationElement>>();
+
+	private final Map<EClass, Set<MApplicationElement>> elementsByClass = new HashMap<EClass, Set<MApplicationElement>>();
+
+	private final Map<MUIElement, Set<MPlaceholder>> placeholdersByRef = new HashMap<MUIElement, Set<MPlaceholder>>();
+
+	/**
+	 * Returns the elements having the given id, tags and class, or <code>null</code> if more than
+	 * <code>limit</code> elements could match or if no criteria can be looked up. The returned
+	 * elements may not match all the criteria and must be filtered by the caller.
+	 *
+	 * @param id
+	 *            the id of the elements, may be <code>null</code>
+	 * @param clazz
+	 *            the class of the elements, may be <code>null</code>
+	 * @param tags
+	 *            tags that all the elements must have, may be <code>null</code>
+	 * @param limit
+	 *            the maximum number of elements to return
+	 * @return the candidate elements, or <code>null</code>
+	 */
+	Collection<MApplicationElement> getCandidates(String id, Class<?> clazz, List<String> tags,
+			int limit) {
+		Collection<MApplicationElement> candidates = null;
+		if (id != null) {
+			candidates = getElements(elementsById, id);
+		}
+		if (tags != null) {
+			for (String tag : tags) {
+				Collection<MApplicationElement> elements = getElements(elementsByTag, tag);
+				if (candidates == null || elements.size() < candidates.size()) {
+					candidates = elements;
+				}
+			}
+		}
+		if (candidates == null && clazz != null) {
+			candidates = new ArrayList<MApplicationElement>();
+			for (Map.Entry<EClass, Set<MApplicationElement>> entry : elementsByClass.entrySet()) {
+				Class<?> instanceClass = entry.getKey().getInstanceClass();
+				if (instanceClass == null) {
+					// dynamic classes cannot be related to the searched class
+					return null;
+				}
+				if (clazz.isAssignableFrom(instanceClass)) {
+					candidates.addAll(entry.getValue());
+					if (candidates.size() > limit) {
+						return null;
+					}
+				}
+			}
+		}
+		return candidates == null || candidates.size() > limit ? null : candidates;
+	}
+
+	/**
+	 * Returns the placeholders referencing the given element.
+	 */
+	Collection<MPlaceholder> getPlaceholders(MUIElement element) {
+		Set<MPlaceholder> placeholders = placeholdersByRef.get(element);
+		if (placeholders == null) {
+			return Collections.emptySet();
+		}
+		return placeholders;
+	}
+
+	/**
+	 * Attaches the index to the given element and its contents.
+	 */
+	void attach(Notifier notifier) {
+		addAdapter(notifier);
+	}
+
+	@Override
+	protected void addAdapter(Notifier notifier) {
+		EList<Adapter> adapters = notifier.eAdapters();
+		if (!adapters.contains(this)) {
+			adapters.add(0, this);
+		}
+	}
+
+	@Override
+	protected void setTarget(EObject target) {
+		super.setTarget(target);
+		if (target instanceof MApplicationElement) {
+			MApplicationElement element = (MApplicationElement) target;
+			add(elementsById, element.getElementId(), element);
+			for (String tag : element.getTags()) {
+				add(elementsByTag, tag, element);
+			}
+			add(elementsByClass, target.eClass(), element);
+			if (element instanceof MPlaceholder) {
+				MPlaceholder placeholder = (MPlaceholder) element;
+				add(placeholdersByRef, placeholder.getRef(), placeholder);
+			}
+		}
+	}
+
+	@Override
+	protected void unsetTarget(EObject target) {
+		super.unsetTarget(target);
+		if (target instanceof MApplicationElement) {
+			MApplicationElement element = (MApplicationElement) target;
+			remove(elementsById, element.getElementId(), element);
+			for (String tag : element.getTags()) {
+				remove(elementsByTag, tag, element);
+			}
+			remove(elementsByClass, target.eClass(), element);
+			if (element instanceof MPlaceholder) {
+				MPlaceholder placeholder = (MPlaceholder) element;
+				remove(placeholdersByRef, placeholder.getRef(), placeholder);
+			}
+		}
+	}
+
+	@Override
+	public void notifyChanged(Notification notification) {
+		super.notifyChanged(notification);
+		if (notification.isTouch() || !(notification.getNotifier() instanceof MApplicationElement)) {
+			return;
+		}
+
+		MApplicationElement element = (MApplicationElement) notification.getNotifier();
+		Object feature = notification.getFeature();
+		if (feature == ApplicationPackageImpl.Literals.APPLICATION_ELEMENT__ELEMENT_ID) {
+			remove(elementsById, (String) notification.getOldValue(), element);
+			add(elementsById, (String) notification.getNewValue(), element);
+		} else if (feature == ApplicationPackageImpl.Literals.APPLICATION_ELEMENT__TAGS) {
+			// a tag may be present more than once
+			for (Object tag : getValues(notification.getOldValue())) {
+				if (!element.getTags().contains(tag)) {
+					remove(elementsByTag, (String) tag, element);
+				}
+			}
+			for (Object tag : getValues(notification.getNewValue())) {
+				add(elementsByTag, (String) tag, element);
+			}
+		} else if (feature == AdvancedPackageImpl.Literals.PLACEHOLDER__REF) {
+			MPlaceholder placeholder = (MPlaceholder) element;
+			remove(placeholdersByRef, (MUIElement) notification.getOldValue(), placeholder);
+			add(placeholdersByRef, (MUIElement) notification.getNewValue(), placeholder);
+		}
+	}
+
+	private static Collection<?> getValues(Object value) {
+		if (value instanceof Collection<?>) {
+			return (Collection<?>) value;
+		}
+		if (value instanceof String) {
+			return Collections.singleton(value);
+		}
+		// such as the positions held by REMOVE_MANY notifications
+		return Collections.emptySet();
+	}
+
+	private static Collection<MApplicationElement> getElements(
+			Map<String, Set<MApplicationElement>> map, String key) {
+		Set<MApplicationElement> elements = map.get(key);
+		if (elements == null) {
+			return Collections.emptySet();
+		}
+		return elements;
+	}
+
+	private static <K, V> void add(Map<K, Set<V>> map, K key, V value) {
+		if (key == null) {
+			return;
+		}
+		Set<V> values = map.get(key);
+		if (values == null) {
+			values = new LinkedHashSet<V>(4);
+			map.put(key, values);
+		}
+		values.add(value);
+	}
+
+	private static <K, V> void remove(Map<K, Set<V>> map, K key, V value) {
+		if (key == null) {
+			return;
+		}
+		Set<V> values = map.get(key);
+		if (values != null && values.remove(value) && values.isEmpty()) {
+			map.remove(key);
+		}
+	}
+}
@@ -13,13 +13,18 @@
 package org.eclipse.e4.ui.internal.workbench;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IExtensionRegistry;
 import org.eclipse.e4.core.contexts.IEclipseContext;
 import org.eclipse.e4.core.services.events.IEventBroker;
 import org.eclipse.e4.ui.model.application.MApplication;
 import org.eclipse.e4.ui.model.application.MApplicationElement;
+import org.eclipse.e4.ui.model.application.commands.impl.CommandsPackageImpl;
+import org.eclipse.e4.ui.model.application.impl.ApplicationPackageImpl;
 import org.eclipse.e4.ui.model.application.commands.MBindingContext;
 import org.eclipse.e4.ui.model.application.commands.MBindingTable;
 import org.eclipse.e4.ui.model.application.commands.MCommand;
@@ -35,6 +40,7 @@ import org.eclipse.e4.ui.model.application.ui.advanced.MArea;
 import org.eclipse.e4.ui.model.application.ui.advanced.MPerspective;
 import org.eclipse.e4.ui.model.application.ui.advanced.MPerspectiveStack;
 import org.eclipse.e4.ui.model.application.ui.advanced.MPlaceholder;
+import org.eclipse.e4.ui.model.application.ui.advanced.impl.AdvancedPackageImpl;
 import org.eclipse.e4.ui.model.application.ui.basic.MBasicFactory;
 import org.eclipse.e4.ui.model.application.ui.basic.MPart;
 import org.eclipse.e4.ui.model.application.ui.basic.MPartSashContainer;
@@ -45,6 +51,8 @@ import org.eclipse.e4.ui.model.application.ui.basic.MTrimmedWindow;
 import org.eclipse.e4.ui.model.application.ui.basic.MWindow;
 import org.eclipse.e4.ui.model.application.ui.basic.MWindowElement;
 import org.eclipse.e4.ui.model.application.ui.basic.impl.BasicFactoryImpl;
+import org.eclipse.e4.ui.model.application.ui.basic.impl.BasicPackageImpl;
+import org.eclipse.e4.ui.model.application.ui.impl.UiPackageImpl;
 import org.eclipse.e4.ui.model.application.ui.menu.MMenu;
 import org.eclipse.e4.ui.model.application.ui.menu.MToolBar;
 import org.eclipse.e4.ui.model.application.ui.menu.MToolControl;
@@ -58,6 +66,7 @@ import org.eclipse.e4.ui.workbench.modeling.EPartService;
 import org.eclipse.e4.ui.workbench.modeling.EPlaceholderResolver;
 import org.eclipse.e4.ui.workbench.modeling.ElementMatcher;
 import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EStructuralFeature;
 import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventHandler;
@@ -68,8 +77,18 @@ import org.osgi.service.event.EventHandler;
 public class ModelServiceImpl implements EModelService {
 	private static String HOSTED_ELEMENT = "HostedElement"; //$NON-NLS-1$
 
+	/**
+	 * The maximum number of indexed candidates checked before falling back to walking the model.
+	 */
+	private static final int MAX_INDEX_CANDIDATES = 64;
+
 	private IEclipseContext appContext;
 
+	/** The application indexed by {@link #elementIndex}. */
+	private MApplication indexedApplication;
+
+	private ModelElementIndex elementIndex;
+
 	/** Factory which is able to create {@link MApplicationElement}s in a generic way. */
 	private GenericMApplicationElementFactoryImpl mApplicationElementFactory;
 
@@ -288,17 +307,205 @@ public class ModelServiceImpl implements EModelService {
 		}
 	}
 
+	/**
+	 * Finds the elements matching the given criteria using the element index. This only succeeds
+	 * when the index narrows the search down to a few candidates and at most one of them is found
+	 * by the search, since the order of several matches is the order of the model walk.
+	 * 
+	 * @return the matching elements, or <code>null</code> if the model has to be walked
+	 */
+	private <T> List<T> findIndexedElements(MApplicationElement searchRoot, String id,
+			Class<T> clazz, List<String> tagsToMatch, int searchFlags, Selector matcher) {
+		if (searchFlags == 0) {
+			return null;
+		}
+		ModelElementIndex index = getElementIndex(searchRoot);
+		if (index == null) {
+			return null;
+		}
+		Collection<MApplicationElement> candidates = index.getCandidates(id, clazz, tagsToMatch,
+				MAX_INDEX_CANDIDATES);
+		if (candidates == null) {
+			return null;
+		}
+
+		MApplicationElement match = null;
+		for (MApplicationElement candidate : candidates) {
+			if ((clazz != null && !clazz.isInstance(candidate)) || !matcher.select(candidate)) {
+				continue;
+			}
+			Boolean found = isFound(index, searchRoot, candidate, clazz, searchFlags, null);
+			if (found == null || (found.booleanValue() && match != null)) {
+				return null;
+			}
+			if (found.booleanValue()) {
+				match = candidate;
+			}
+		}
+
+		List<T> elements = new ArrayList<T>(1);
+		if (match != null) {
+			elements.add((T) match);
+		}
+		return elements;
+	}
+
+	/**
+	 * Returns the index of the application containing the given element, or <code>null</code> if
+	 * the element is not part of an application.
+	 */
+	private ModelElementIndex getElementIndex(MApplicationElement element) {
+		EObject root = (EObject) element;
+		while (root.eContainer() != null) {
+			root = root.eContainer();
+		}
+		if (!(root instanceof MApplication)) {
+			return null;
+		}
+		if (root != indexedApplication) {
+			if (indexedApplication != null) {
+				((EObject) indexedApplication).eAdapters().remove(elementIndex);
+			}
+			indexedApplication = (MApplication) root;
+			elementIndex = new ModelElementIndex();
+			elementIndex.attach(root);
+		}
+		return elementIndex;
+	}
+
+	/**
+	 * Returns whether {@link #findElementsRecursive} reaches the given element when searching from
+	 * the given root, checking the containers of the element and the placeholders referencing them
+	 * against the branches the walk follows.
+	 * 
+	 * @return whether the element is found, or <code>null</code> if this cannot be decided without
+	 *         walking the model
+	 */
+	private Boolean isFound(ModelElementIndex index, MApplicationElement searchRoot,
+			MApplicationElement element, Class<?> clazz, int searchFlags,
+			Set<MPlaceholder> visited) {
+		if (element == searchRoot) {
+			return Boolean.TRUE;
+		}
+		Boolean found = Boolean.FALSE;
+
+		// shared elements are reached through their placeholders
+		if (element instanceof MUIElement) {
+			for (MPlaceholder ph : index.getPlaceholders((MUIElement) element)) {
+				if (element instanceof MArea && (searchFlags & IN_SHARED_AREA) == 0) {
+					continue;
+				}
+				if (visited == null) {
+					visited = new HashSet<MPlaceholder>();
+				}
+				if (!visited.add(ph)) {
+					continue;
+				}
+				Boolean phFound = isFound(index, searchRoot, ph, clazz, searchFlags, visited);
+				if (phFound == null) {
+					found = null;
+				} else if (phFound.booleanValue()) {
+					return Boolean.TRUE;
+				}
+			}
+		}
+
+		EObject container = ((EObject) element).eContainer();
+		if (!(container instanceof MApplicationElement)) {
+			return found;
+		}
+		Boolean followed = isFollowed((MApplicationElement) container,
+				((EObject) element).eContainingFeature(), element, clazz, searchFlags);
+		if (followed == null) {
+			return null;
+		}
+		if (!followed.booleanValue()) {
+			return found;
+		}
+		Boolean containerFound = isFound(index, searchRoot, (MApplicationElement) container,
+				clazz, searchFlags, visited);
+		if (containerFound == null || containerFound.booleanValue()) {
+			return containerFound;
+		}
+		return found;
+	}
+
+	/**
+	 * Returns whether {@link #findElementsRecursive} follows the given containment feature from
+	 * the container to the element.
+	 * 
+	 * @return whether the feature is followed, or <code>null</code> if this cannot be decided
+	 */
+	private Boolean isFollowed(MApplicationElement container, EStructuralFeature feature,
+			MApplicationElement element, Class<?> clazz, int searchFlags) {
+		boolean followed;
+		if (feature == UiPackageImpl.Literals.ELEMENT_CONTAINER__CHILDREN) {
+			if (container instanceof MPerspectiveStack) {
+				if ((searchFlags & IN_ANY_PERSPECTIVE) != 0) {
+					followed = true;
+				} else if ((searchFlags & IN_ACTIVE_PERSPECTIVE) != 0) {
+					followed = element == ((MPerspectiveStack) container).getSelectedElement();
+				} else if ((searchFlags & IN_SHARED_AREA) != 0) {
+					// the walk only searches the shared areas of the perspectives
+					return null;
+				} else {
+					followed = false;
+				}
+			} else {
+				followed = true;
+			}
+		} else if (feature == BasicPackageImpl.Literals.WINDOW__WINDOWS
+				|| feature == AdvancedPackageImpl.Literals.PERSPECTIVE__WINDOWS
+				|| feature == CommandsPackageImpl.Literals.BINDING_TABLE__BINDINGS) {
+			followed = true;
+		} else if (feature == BasicPackageImpl.Literals.TRIMMED_WINDOW__TRIM_BARS) {
+			followed = (searchFlags & IN_TRIM) != 0;
+		} else if (feature == BasicPackageImpl.Literals.WINDOW__MAIN_MENU) {
+			followed = (searchFlags & IN_MAIN_MENU) != 0;
+		} else if (feature == BasicPackageImpl.Literals.PART__MENUS
+				|| feature == BasicPackageImpl.Literals.PART__TOOLBAR) {
+			followed = (searchFlags & IN_PART) != 0;
+		} else if (feature == CommandsPackageImpl.Literals.HANDLER_CONTAINER__HANDLERS) {
+			if (container instanceof MPart) {
+				followed = (searchFlags & IN_PART) != 0 && MHandler.class.equals(clazz);
+			} else {
+				followed = (container instanceof MApplication || container instanceof MWindow)
+						&& searchFlags == ANYWHERE && MHandler.class.equals(clazz);
+			}
+		} else if (feature == CommandsPackageImpl.Literals.BINDING_CONTEXT__CHILDREN) {
+			followed = searchFlags == ANYWHERE;
+		} else if (container instanceof MApplication && searchFlags == ANYWHERE) {
+			if (feature == ApplicationPackageImpl.Literals.APPLICATION__COMMANDS) {
+				followed = MCommand.class.equals(clazz);
+			} else if (feature == CommandsPackageImpl.Literals.BINDINGS__BINDING_CONTEXTS) {
+				followed = MBindingContext.class.equals(clazz);
+			} else if (feature == CommandsPackageImpl.Literals.BINDING_TABLE_CONTAINER__BINDING_TABLES) {
+				followed = MBindingTable.class.equals(clazz) || MKeyBinding.class.equals(clazz);
+			} else {
+				followed = false;
+			}
+		} else {
+			// snippets, descriptors, the shared elements of windows...
+			followed = false;
+		}
+		return Boolean.valueOf(followed);
+	}
+
 	@Override
 	public <T> List<T> findElements(MUIElement searchRoot, String id, Class<T> clazz,
 			List<String> tagsToMatch) {
-		ElementMatcher matcher = new ElementMatcher(id, clazz, tagsToMatch);
-		return findElements(searchRoot, clazz, ANYWHERE, matcher);
+		return findElements(searchRoot, id, clazz, tagsToMatch, ANYWHERE);
 	}
 
 	@Override
 	public <T> List<T> findElements(MUIElement searchRoot, String id, Class<T> clazz,
 			List<String> tagsToMatch, int searchFlags) {
 		ElementMatcher matcher = new ElementMatcher(id, clazz, tagsToMatch);
+		List<T> elements = findIndexedElements(searchRoot, id, clazz, tagsToMatch, searchFlags,
+				matcher);
+		if (elements != null) {
+			return elements;
+		}
 		return findElements(searchRoot, clazz, searchFlags, matcher);
 	}
 
@@ -313,8 +520,13 @@ public class ModelServiceImpl implements EModelService {
 	private <T> List<T> findPerspectiveElements(MUIElement searchRoot, String id,
 			Class<T> clazz,
 			List<String> tagsToMatch) {
-		List<T> elements = new ArrayList<T>();
 		ElementMatcher matcher = new ElementMatcher(id, clazz, tagsToMatch);
+		List<T> elements = findIndexedElements(searchRoot, id, clazz, tagsToMatch, PRESENTATION,
+				matcher);
+		if (elements != null) {
+			return elements;
+		}
+		elements = new ArrayList<T>();
 		findElementsRecursive(searchRoot, clazz, matcher, elements, PRESENTATION);
 		return elements;
 	}
@@ -999,4 +1211,20 @@ public class ModelServiceImpl implements EModelService {
 
 		return hostWindow.getSharedElements().contains(curElement);
 	}
+
+	@Override
+	public void beginChangeBatch() {
+		UIEventPublisher publisher = appContext.get(UIEventPublisher.class);
+		if (publisher != null) {
+			publisher.beginBatch();
+		}
+	}
+
+	@Override
+	public void endChangeBatch() {
+		UIEventPublisher publisher = appContext.get(UIEventPublisher.class);
+		if (publisher != null) {
+			publisher.endBatch();
+		}
+	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2012 IBM Corporation and others.
+ * Copyright (c) 2009, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,7 +10,10 @@
  *******************************************************************************/
 package org.eclipse.e4.ui.internal.workbench;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.e4.core.contexts.IEclipseContext;
@@ -22,18 +25,84 @@ import org.eclipse.e4.ui.model.application.ui.MUIElement;
 import org.eclipse.e4.ui.workbench.UIEvents;
 import org.eclipse.e4.ui.workbench.UIEvents.EventTags;
 import org.eclipse.e4.ui.workbench.UIEvents.EventTypes;
+import org.eclipse.e4.ui.workbench.UIEvents.UILifeCycle;
 import org.eclipse.emf.common.notify.Notification;
 import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EStructuralFeature;
 import org.eclipse.emf.ecore.util.EContentAdapter;
+import org.osgi.service.event.Event;
 
 /**
  * Transforms E4 MPart events into 3.x legacy events.
  */
 public class UIEventPublisher extends EContentAdapter {
 
+	/**
+	 * An event queued by a change batch.
+	 */
+	private static final class PendingEvent {
+		final String topic;
+		final Map<String, Object> argMap;
+		final int eventType;
+		int index;
+
+		PendingEvent(String topic, Map<String, Object> argMap, int eventType) {
+			this.topic = topic;
+			this.argMap = argMap;
+			this.eventType = eventType;
+		}
+	}
+
+	/**
+	 * Identifies the changes of a model element which can be coalesced: the value of a single
+	 * valued attribute, an entry of a map, or a value of a list.
+	 */
+	private static final class ChangeKey {
+		final Object element;
+		final String attributeName;
+		final Object value;
+
+		ChangeKey(Object element, String attributeName, Object value) {
+			this.element = element;
+			this.attributeName = attributeName;
+			this.value = value;
+		}
+
+		@Override
+		public int hashCode() {
+			return (System.identityHashCode(element) * 31 + attributeName.hashCode()) * 31
+					+ (value == null ? 0 : value.hashCode());
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof ChangeKey)) {
+				return false;
+			}
+			ChangeKey other = (ChangeKey) obj;
+			return element == other.element && attributeName.equals(other.attributeName)
+					&& (value == null ? other.value == null : value.equals(other.value));
+		}
+	}
+
 	private IEclipseContext context;
 
+	/**
+	 * The nesting depth of the change batches.
+	 */
+	private int batchDepth;
+
+	/**
+	 * The events queued by the current change batch, in order. The entries of the events which
+	 * were coalesced with a later one are <code>null</code>.
+	 */
+	private List<PendingEvent> pendingEvents;
+
+	/**
+	 * The last queued event of every change which can be coalesced.
+	 */
+	private Map<ChangeKey, PendingEvent> pendingChanges;
+
 	/**
 	 * @param e4Context
 	 */
@@ -55,9 +124,175 @@ public class UIEventPublisher extends EContentAdapter {
 		String topic = formatData(notification, argMap);
 
 		if (topic != null) {
+			if (batchDepth > 0) {
+				queue(notification, topic, argMap);
+			} else {
+				IEventBroker eventManager = context.get(IEventBroker.class);
+				eventManager.send(topic, argMap);
+			}
+		}
+	}
+
+	/**
+	 * Starts a change batch: the events are queued until the matching call to {@link #endBatch()}.
+	 * Must be called from the thread changing the model.
+	 * 
+	 * @see org.eclipse.e4.ui.workbench.modeling.EModelService#beginChangeBatch()
+	 */
+	public void beginBatch() {
+		if (batchDepth++ == 0) {
+			pendingEvents = new ArrayList<PendingEvent>();
+			pendingChanges = new HashMap<ChangeKey, PendingEvent>();
+		}
+	}
+
+	/**
+	 * Ends a change batch. When the outermost batch ends, the queued events are sent as a single
+	 * {@link UILifeCycle#CHANGE_BATCH} event listing them.
+	 * 
+	 * @throws IllegalStateException
+	 *             if no batch was started
+	 */
+	public void endBatch() {
+		if (batchDepth == 0) {
+			throw new IllegalStateException("No change batch was started"); //$NON-NLS-1$
+		}
+		if (--batchDepth > 0) {
+			return;
+		}
+		List<PendingEvent> events = pendingEvents;
+		pendingEvents = null;
+		pendingChanges = null;
+
+		List<Event> batch = new ArrayList<Event>(events.size());
+		for (PendingEvent event : events) {
+			if (event != null) {
+				batch.add(new Event(event.topic, event.argMap));
+			}
+		}
+		if (!batch.isEmpty()) {
+			Map<String, Object> argMap = new HashMap<String, Object>();
+			argMap.put(EventTags.EVENTS, Collections.unmodifiableList(batch));
 			IEventBroker eventManager = context.get(IEventBroker.class);
-			eventManager.send(topic, argMap);
+			eventManager.send(UILifeCycle.CHANGE_BATCH, argMap);
+		}
+	}
+
+	/**
+	 * Queues an event of the current change batch, coalescing it with the queued event of the same
+	 * change if any:
+	 * <ul>
+	 * <li>successive SETs of an attribute or of a map entry become one SET carrying the first old
+	 * value, and are dropped when the value was restored;</li>
+	 * <li>an ADD followed by the REMOVE of the same value cancel out, as do a REMOVE and ADD at the
+	 * same position;</li>
+	 * <li>an ADD or MOVE followed by a MOVE becomes one ADD or MOVE to the last position, and a MOVE
+	 * followed by a REMOVE becomes the REMOVE.</li>
+	 * </ul>
+	 * The resulting event takes the position of the last change so it is delivered after the
+	 * changes it may depend on.
+	 */
+	private void queue(Notification notification, String topic, Map<String, Object> argMap) {
+		PendingEvent event = new PendingEvent(topic, argMap, notification.getEventType());
+		ChangeKey key = getChangeKey(notification, argMap);
+		if (key != null) {
+			PendingEvent previous = pendingChanges.remove(key);
+			if (previous != null) {
+				PendingEvent coalesced = coalesce(previous, event);
+				if (coalesced != previous) {
+					pendingEvents.set(previous.index, null);
+					if (coalesced == null) {
+						return;
+					}
+					event = coalesced;
+				}
+			}
+			pendingChanges.put(key, event);
+		}
+		event.index = pendingEvents.size();
+		pendingEvents.add(event);
+	}
+
+	/**
+	 * Returns the key of the change notified, or <code>null</code> if it cannot be coalesced.
+	 */
+	private ChangeKey getChangeKey(Notification notification, Map<String, Object> argMap) {
+		Object element = argMap.get(EventTags.ELEMENT);
+		String attributeName = (String) argMap.get(EventTags.ATTNAME);
+		switch (notification.getEventType()) {
+		case Notification.SET:
+			if (notification.getNotifier() instanceof MApplicationElement) {
+				return new ChangeKey(element, attributeName, null);
+			}
+			// the entry of a map
+			Object entry = argMap.get(EventTags.NEW_VALUE);
+			return entry instanceof Map.Entry<?, ?> ? new ChangeKey(element, attributeName,
+					((Map.Entry<?, ?>) entry).getKey()) : null;
+		case Notification.ADD:
+		case Notification.MOVE:
+			return new ChangeKey(element, attributeName, notification.getNewValue());
+		case Notification.REMOVE:
+			return new ChangeKey(element, attributeName, notification.getOldValue());
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the event standing for the previous event followed by the next one:
+	 * <code>null</code> if they cancel out, <code>previous</code> if they cannot be coalesced.
+	 */
+	private PendingEvent coalesce(PendingEvent previous, PendingEvent next) {
+		switch (next.eventType) {
+		case Notification.SET:
+			Object oldValue = previous.argMap.get(EventTags.OLD_VALUE);
+			if (equals(oldValue, next.argMap.get(EventTags.NEW_VALUE))) {
+				return null;
+			}
+			if (oldValue == null) {
+				next.argMap.remove(EventTags.OLD_VALUE);
+			} else {
+				next.argMap.put(EventTags.OLD_VALUE, oldValue);
+			}
+			return next;
+		case Notification.REMOVE:
+			if (previous.eventType == Notification.ADD) {
+				return null;
+			}
+			return previous.eventType == Notification.MOVE ? next : previous;
+		case Notification.ADD:
+			if (previous.eventType == Notification.REMOVE
+					&& equals(previous.argMap.get(EventTags.POSITION),
+							next.argMap.get(EventTags.POSITION))) {
+				return null;
+			}
+			return previous;
+		case Notification.MOVE:
+			if (previous.eventType == Notification.ADD) {
+				previous.argMap.put(EventTags.POSITION, next.argMap.get(EventTags.POSITION));
+				return new PendingEvent(previous.topic, previous.argMap, previous.eventType);
+			}
+			if (previous.eventType == Notification.MOVE) {
+				// for MOVE, the old value is the source position
+				Object source = previous.argMap.get(EventTags.OLD_VALUE);
+				if (equals(source, next.argMap.get(EventTags.POSITION))) {
+					return null;
+				}
+				next.argMap.put(EventTags.OLD_VALUE, source);
+				return next;
+			}
+			return previous;
+		default:
+			return previous;
+		}
+	}
+
+	private static boolean equals(Object value1, Object value2) {
+		if (value1 instanceof Map.Entry<?, ?> && value2 instanceof Map.Entry<?, ?>) {
+			value1 = ((Map.Entry<?, ?>) value1).getValue();
+			value2 = ((Map.Entry<?, ?>) value2).getValue();
 		}
+		return value1 == null ? value2 == null : value1.equals(value2);
 	}
 
 	/**
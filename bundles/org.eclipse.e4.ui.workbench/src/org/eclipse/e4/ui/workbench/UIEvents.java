@@ -256,6 +256,15 @@ public class UIEvents {
 		 * The position (if applicable) of the change within the list.
 		 */
 		public static final String POSITION = "Position"; //$NON-NLS-1$
+		/**
+		 * The model events of a change batch, as a list of {@link org.osgi.service.event.Event}s in the
+		 * order they occurred. The event broker delivers each of them to the handlers subscribed to its
+		 * topic which are not subscribed to the topic of the batch.
+		 * 
+		 * @see UILifeCycle#CHANGE_BATCH
+		 * @since 1.2
+		 */
+		public static final String EVENTS = "Events"; //$NON-NLS-1$
 	}
 
 	/**
@@ -320,6 +329,17 @@ public class UIEvents {
 		 */
 		public static final String THEME_DEFINITION_CHANGED = TOPIC + TOPIC_SEP
 				+ "themeDefinitionChanged"; //$NON-NLS-1$
+
+		/**
+		 * Sent when a change batch ends, instead of its model events. The events are provided in
+		 * {@link EventTags#EVENTS}; a handler subscribed to this topic receives the whole batch
+		 * rather than the events of the other topics it subscribed to, while the other handlers
+		 * still receive the events of their topics one by one.
+		 * 
+		 * @see org.eclipse.e4.ui.workbench.modeling.EModelService#beginChangeBatch()
+		 * @since 1.2
+		 */
+		public static final String CHANGE_BATCH = TOPIC + TOPIC_SEP + "changeBatch"; //$NON-NLS-1$
 	}
 
 	/**
@@ -559,4 +559,43 @@ public interface EModelService {
 	 *         hosted in the given MWindow.
 	 */
 	public boolean isHostedElement(MUIElement element, MWindow hostWindow);
+
+	/**
+	 * Starts a change batch. Until the matching call to {@link #endChangeBatch()}, the model events
+	 * are queued rather than delivered. Successive changes of the same attribute, map entry or list
+	 * value of an element are coalesced: SETs into a single event carrying the first old value and
+	 * the last new value, ADDs, REMOVEs and MOVEs of a value into the event of their net effect;
+	 * changes which cancel out are dropped.
+	 * <p>
+	 * When the batch ends the queued events are sent as a single
+	 * {@link org.eclipse.e4.ui.workbench.UIEvents.UILifeCycle#CHANGE_BATCH} event listing them.
+	 * Handlers subscribed to that topic process the whole batch in one pass, the other handlers
+	 * receive the events of the topics they subscribed to one by one, in order.
+	 * </p>
+	 * <p>
+	 * Batches can be nested, the events are delivered when the outermost batch ends. Callers must
+	 * end the batch in a <code>finally</code> block:
+	 * 
+	 * <pre>
+	 * modelService.beginChangeBatch();
+	 * try {
+	 * 	// modify the model
+	 * } finally {
+	 * 	modelService.endChangeBatch();
+	 * }
+	 * </pre>
+	 * 
+	 * </p>
+	 * 
+	 * @since 1.2
+	 */
+	public void beginChangeBatch();
+
+	/**
+	 * Ends a change batch started with {@link #beginChangeBatch()}, delivering the queued model
+	 * events if it is the outermost batch.
+	 * 
+	 * @since 1.2
+	 */
+	public void endChangeBatch();
 }
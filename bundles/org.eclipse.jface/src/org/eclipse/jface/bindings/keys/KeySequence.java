@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2013 IBM Corporation and others.
+ * Copyright (c) 2004, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -15,6 +15,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.StringTokenizer;
 
+import org.eclipse.jface.bindings.Trigger;
 import org.eclipse.jface.bindings.TriggerSequence;
 import org.eclipse.jface.bindings.keys.formatting.KeyFormatterFactory;
 import org.eclipse.jface.util.Util;
@@ -40,7 +41,8 @@ import org.eclipse.jface.util.Util;
  * </p>
  * <p>
  * <code>KeySequence</code> objects are immutable. Clients are not permitted
- * to extend this class.
+ * to extend this class. The instances created by appending a key stroke are
+ * shared, so typing the same keys again does not create new key sequences.
  * </p>
  * 
  * @since 3.1
@@ -67,6 +69,23 @@ public final class KeySequence extends TriggerSequence implements Comparable {
 	public final static String KEY_STROKE_DELIMITERS = KEY_STROKE_DELIMITER
 			+ "\b\r\u007F\u001B\f\n\0\t\u000B"; //$NON-NLS-1$
 
+	/**
+	 * The maximum number of shared key sequences. Once that many are shared,
+	 * new key sequences are no longer shared.
+	 */
+	private static final int MAX_INSTANCES = 4096;
+
+	/**
+	 * The shared key sequences, in an open addressing table indexed by the
+	 * hash codes of their key strokes. Access is synchronized on the class.
+	 */
+	private static KeySequence[] instances = new KeySequence[64];
+
+	/**
+	 * The number of shared key sequences.
+	 */
+	private static int instanceCount = 0;
+
 	/**
 	 * Gets an instance of <code>KeySequence</code>.
 	 * 
@@ -95,14 +114,7 @@ public final class KeySequence extends TriggerSequence implements Comparable {
 			throw new NullPointerException();
 		}
 
-		final KeyStroke[] oldKeyStrokes = keySequence.getKeyStrokes();
-		final int oldKeyStrokeLength = oldKeyStrokes.length;
-		final KeyStroke[] newKeyStrokes = new KeyStroke[oldKeyStrokeLength + 1];
-		System
-				.arraycopy(oldKeyStrokes, 0, newKeyStrokes, 0,
-						oldKeyStrokeLength);
-		newKeyStrokes[oldKeyStrokeLength] = keyStroke;
-		return new KeySequence(newKeyStrokes);
+		return getSharedInstance(keySequence.triggers, keyStroke);
 	}
 
 	/**
@@ -114,7 +126,83 @@ public final class KeySequence extends TriggerSequence implements Comparable {
 	 * @return a key sequence. Guaranteed not to be <code>null</code>.
 	 */
 	public static final KeySequence getInstance(final KeyStroke keyStroke) {
-		return new KeySequence(new KeyStroke[] { keyStroke });
+		if (keyStroke == null) {
+			// let the constructor report the invalid key stroke
+			return new KeySequence(new KeyStroke[] { keyStroke });
+		}
+
+		return getSharedInstance(EMPTY_KEY_SEQUENCE.triggers, keyStroke);
+	}
+
+	/**
+	 * Returns the shared key sequence made of the given key strokes followed
+	 * by the given key stroke, creating it if needed.
+	 * 
+	 * @param prefix
+	 *            the leading key strokes. Must not be <code>null</code>.
+	 * @param keyStroke
+	 *            the last key stroke. Must not be <code>null</code>.
+	 * @return a key sequence. Guaranteed not to be <code>null</code>.
+	 */
+	private static final KeySequence getSharedInstance(final Trigger[] prefix,
+			final KeyStroke keyStroke) {
+		int hashCode = keyStroke.hashCode();
+		for (int i = 0; i < prefix.length; i++) {
+			hashCode = hashCode * 31 + prefix[i].hashCode();
+		}
+
+		synchronized (KeySequence.class) {
+			final int mask = instances.length - 1;
+			int index = indexFor(hashCode, mask);
+			KeySequence keySequence;
+			while ((keySequence = instances[index]) != null) {
+				if (keySequence.consistsOf(prefix, keyStroke)) {
+					return keySequence;
+				}
+				index = (index + 1) & mask;
+			}
+
+			final KeyStroke[] keyStrokes = new KeyStroke[prefix.length + 1];
+			System.arraycopy(prefix, 0, keyStrokes, 0, prefix.length);
+			keyStrokes[prefix.length] = keyStroke;
+			keySequence = new KeySequence(keyStrokes);
+			if (instanceCount < MAX_INSTANCES) {
+				instances[index] = keySequence;
+				if (++instanceCount * 2 > instances.length) {
+					rehash();
+				}
+			}
+			return keySequence;
+		}
+	}
+
+	/**
+	 * Doubles the size of the table of shared key sequences. Must be called
+	 * while holding the lock of the class.
+	 */
+	private static final void rehash() {
+		final KeySequence[] oldInstances = instances;
+		instances = new KeySequence[oldInstances.length * 2];
+		final int mask = instances.length - 1;
+		for (int i = 0; i < oldInstances.length; i++) {
+			final KeySequence keySequence = oldInstances[i];
+			if (keySequence != null) {
+				final Trigger[] triggers = keySequence.triggers;
+				int hashCode = triggers[triggers.length - 1].hashCode();
+				for (int j = 0; j < triggers.length - 1; j++) {
+					hashCode = hashCode * 31 + triggers[j].hashCode();
+				}
+				int index = indexFor(hashCode, mask);
+				while (instances[index] != null) {
+					index = (index + 1) & mask;
+				}
+				instances[index] = keySequence;
+			}
+		}
+	}
+
+	private static final int indexFor(final int hashCode, final int mask) {
+		return (hashCode ^ (hashCode >>> 16)) & mask;
 	}
 
 	/**
@@ -219,6 +307,24 @@ public final class KeySequence extends TriggerSequence implements Comparable {
 		return Util.compare(triggers, castedObject.triggers);
 	}
 
+	/**
+	 * Returns whether this key sequence is made of the given key strokes
+	 * followed by the given key stroke.
+	 */
+	private final boolean consistsOf(final Trigger[] prefix,
+			final KeyStroke keyStroke) {
+		if (triggers.length != prefix.length + 1
+				|| !triggers[prefix.length].equals(keyStroke)) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length; i++) {
+			if (!triggers[i].equals(prefix[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * Formats this key sequence into the current default look.
 	 * 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2013 IBM Corporation and others.
+ * Copyright (c) 2004, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -39,7 +39,8 @@ import org.eclipse.jface.util.Util;
  * </p>
  * <p>
  * <code>KeyStroke</code> objects are immutable. Clients are not permitted to
- * extend this class.
+ * extend this class. The instances created from keys are shared, so the key
+ * strokes of the events of a keyboard are only created once.
  * </p>
  * 
  * @since 3.1
@@ -64,6 +65,23 @@ public final class KeyStroke extends Trigger implements Comparable {
 	 */
 	public static final int NO_KEY = 0;
 
+	/**
+	 * The maximum number of shared key strokes. Once that many are shared, new
+	 * key strokes are no longer shared.
+	 */
+	private static final int MAX_INSTANCES = 4096;
+
+	/**
+	 * The shared key strokes, in an open addressing table indexed by their
+	 * hash code. Access is synchronized on the class.
+	 */
+	private static KeyStroke[] instances = new KeyStroke[64];
+
+	/**
+	 * The number of shared key strokes.
+	 */
+	private static int instanceCount = 0;
+
 	/**
 	 * Creates an instance of <code>KeyStroke</code> given a natural key.
 	 * 
@@ -76,7 +94,7 @@ public final class KeyStroke extends Trigger implements Comparable {
 	 * @see SWTKeySupport
 	 */
 	public static final KeyStroke getInstance(final int naturalKey) {
-		return new KeyStroke(NO_KEY, naturalKey);
+		return getInstance(NO_KEY, naturalKey);
 	}
 
 	/**
@@ -96,7 +114,27 @@ public final class KeyStroke extends Trigger implements Comparable {
 	 */
 	public static final KeyStroke getInstance(final int modifierKeys,
 			final int naturalKey) {
-		return new KeyStroke(modifierKeys, naturalKey);
+		synchronized (KeyStroke.class) {
+			int mask = instances.length - 1;
+			int index = indexFor(computeHashCode(modifierKeys, naturalKey), mask);
+			KeyStroke keyStroke;
+			while ((keyStroke = instances[index]) != null) {
+				if (keyStroke.modifierKeys == modifierKeys
+						&& keyStroke.naturalKey == naturalKey) {
+					return keyStroke;
+				}
+				index = (index + 1) & mask;
+			}
+
+			keyStroke = new KeyStroke(modifierKeys, naturalKey);
+			if (instanceCount < MAX_INSTANCES) {
+				instances[index] = keyStroke;
+				if (++instanceCount * 2 > instances.length) {
+					rehash();
+				}
+			}
+			return keyStroke;
+		}
 	}
 
 	/**
@@ -150,7 +188,37 @@ public final class KeyStroke extends Trigger implements Comparable {
 			i++;
 		}
 
-		return new KeyStroke(modifierKeys, naturalKey);
+		return getInstance(modifierKeys, naturalKey);
+	}
+
+	/**
+	 * Doubles the size of the table of shared key strokes. Must be called
+	 * while holding the lock of the class.
+	 */
+	private static final void rehash() {
+		final KeyStroke[] oldInstances = instances;
+		instances = new KeyStroke[oldInstances.length * 2];
+		final int mask = instances.length - 1;
+		for (int i = 0; i < oldInstances.length; i++) {
+			final KeyStroke keyStroke = oldInstances[i];
+			if (keyStroke != null) {
+				int index = indexFor(keyStroke.hashCode, mask);
+				while (instances[index] != null) {
+					index = (index + 1) & mask;
+				}
+				instances[index] = keyStroke;
+			}
+		}
+	}
+
+	private static final int indexFor(final int hashCode, final int mask) {
+		// the modifier keys are high bits
+		return (hashCode ^ (hashCode >>> 16)) & mask;
+	}
+
+	private static final int computeHashCode(final int modifierKeys,
+			final int naturalKey) {
+		return (modifierKeys << 4) + naturalKey;
 	}
 
 	/**
@@ -165,6 +233,12 @@ public final class KeyStroke extends Trigger implements Comparable {
 	 */
 	private final int naturalKey;
 
+	/**
+	 * The hash code of this key stroke, computed once since key strokes are
+	 * used as keys when looking up bindings.
+	 */
+	private final int hashCode;
+
 	/**
 	 * Constructs an instance of <code>KeyStroke</code> given a set of
 	 * modifier keys and a natural key.
@@ -182,6 +256,7 @@ public final class KeyStroke extends Trigger implements Comparable {
 	private KeyStroke(final int modifierKeys, final int naturalKey) {
 		this.modifierKeys = modifierKeys;
 		this.naturalKey = naturalKey;
+		this.hashCode = computeHashCode(modifierKeys, naturalKey);
 	}
 
     /*
@@ -258,7 +333,7 @@ public final class KeyStroke extends Trigger implements Comparable {
 	 */
 	@Override
 	public final int hashCode() {
-		return modifierKeys << 4 + naturalKey;
+		return hashCode;
 	}
 
 	/**
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2013 IBM Corporation and others.
+ * Copyright (c) 2000, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -254,6 +254,7 @@ public abstract class AbstractTableViewer extends ColumnViewer {
 		assertElementsNotNull(elements);
 		if (checkBusy())
 			return;
+		finishPopulation();
 		Object[] filtered = filter(elements);
 
 		for (int i = 0; i < filtered.length; i++) {
@@ -430,6 +431,7 @@ public abstract class AbstractTableViewer extends ColumnViewer {
 	 *         index is out of range
 	 */
 	public Object getElementAt(int index) {
+		finishPopulation();
 		if (index >= 0 && index < doGetItemCount()) {
 			Item i = doGetItem(index);
 			if (i != null) {
@@ -590,6 +592,7 @@ public abstract class AbstractTableViewer extends ColumnViewer {
 	 */
 	public void insert(Object element, int position) {
 		applyEditorValue();
+		finishPopulation();
 		if (getComparator() != null || hasFilters()) {
 			add(element);
 			return;
@@ -664,12 +667,29 @@ public abstract class AbstractTableViewer extends ColumnViewer {
 		// item 1 could undo
 		// the associate of b to item 0.
 
-		Object[] children = getSortedChildren(getRoot());
-		Item[] items = doGetItems();
-		int min = Math.min(children.length, items.length);
-		for (int i = 0; i < min; ++i) {
+		// the items still to create are replaced too
+		cancelPopulation(null);
+		final Object[] children = getSortedChildren(getRoot());
+		final Item[] items = doGetItems();
+		Object[] oldElements = new Object[items.length];
+		for (int i = 0; i < items.length; ++i) {
+			oldElements[i] = items[i].getData();
+		}
+		// the items of the elements which are still children keep their
+		// labels, see ItemReconciler
+		final int[] itemIndexes = ItemReconciler.match(this, oldElements,
+				children);
+		boolean[] reused = new boolean[items.length];
+		int removedCount = items.length;
+		for (int i = 0; i < children.length; ++i) {
+			int index = itemIndexes[i];
+			if (index < 0) {
+				continue;
+			}
+			reused[index] = true;
+			removedCount--;
 
-			Item item = items[i];
+			Item item = items[index];
 
 			// if the element is unchanged, update its label if appropriate
 			if (equals(children[i], item.getData())) {
@@ -691,37 +711,39 @@ public abstract class AbstractTableViewer extends ColumnViewer {
 				// we also need to reset the item (set its text,images etc. to
 				// default values) because the label decorators rely on this
 				disassociate(item);
-				doClear(i);
+				doClear(index);
 			}
 		}
-		// dispose of all items beyond the end of the current elements
-		if (min < items.length) {
-			for (int i = items.length; --i >= min;) {
-
-				disassociate(items[i]);
-			}
-			if (virtualManager != null) {
-				virtualManager.removeIndicesFromTo(min, items.length - 1);
+		// dispose of the items of the removed elements
+		if (removedCount > 0) {
+			int[] indices = new int[removedCount];
+			for (int i = 0, j = 0; i < items.length; ++i) {
+				if (!reused[i]) {
+					disassociate(items[i]);
+					indices[j++] = i;
+				}
 			}
-			doRemove(min, items.length - 1);
+			doRemove(indices);
 		}
 		// Workaround for 1GDGN4Q: ITPUI:WIN2000 - TableViewer icons get
 		// scrunched
 		if (doGetItemCount() == 0) {
 			doRemoveAll();
 		}
-		// Update items which were disassociated above
-		for (int i = 0; i < min; ++i) {
-
-			Item item = items[i];
-			if (item.getData() == null) {
-				updateItem(item, children[i]);
+		// Update items which were disassociated above, and create the items
+		// of the added elements at their position, in time slices if
+		// requested
+		populate(new IncrementalPopulation.Task(getControl(), children.length) {
+			@Override
+			void populate(int i) {
+				int index = itemIndexes[i];
+				if (index < 0) {
+					createItem(children[i], i);
+				} else if (items[index].getData() == null) {
+					updateItem(items[index], children[i]);
+				}
 			}
-		}
-		// add any remaining elements
-		for (int i = min; i < children.length; ++i) {
-			createItem(children[i], i);
-		}
+		});
 	}
 
 	/**
@@ -792,6 +814,7 @@ public abstract class AbstractTableViewer extends ColumnViewer {
 		assertElementsNotNull(elements);
 		if (checkBusy())
 			return;
+		finishPopulation();
 		if (elements.length == 0) {
 			return;
 		}
@@ -827,6 +850,10 @@ public abstract class AbstractTableViewer extends ColumnViewer {
 	public void reveal(Object element) {
 		Assert.isNotNull(element);
 		Widget w = findItem(element);
+		if (w == null && isPopulating()) {
+			finishPopulation();
+			w = findItem(element);
+		}
 		if (w instanceof Item) {
 			doShowItem((Item) w);
 		}
@@ -844,6 +871,16 @@ public abstract class AbstractTableViewer extends ColumnViewer {
 			return;
 		}
 
+		// the selected elements must have their items
+		if (isPopulating()) {
+			for (int i = 0; i < list.size(); i++) {
+				if (findItem(list.get(i)) == null) {
+					finishPopulation();
+					break;
+				}
+			}
+		}
+
 		// This is vital to use doSetSelection because on SWT-Table on Win32 this will also
 		// move the focus to this row (See bug https://bugs.eclipse.org/bugs/show_bug.cgi?id=198665)
 		if (reveal) {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2013 IBM Corporation and others.
+ * Copyright (c) 2000, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -96,6 +96,15 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 	 */
 	private boolean isExpandableCheckFilters = false;
 
+	/**
+	 * Indicates if the children being created may be created in time slices,
+	 * which is only the case when the input is set or an item is expanded by
+	 * the user.
+	 *
+	 * @see #setPopulationTimeSlice(int)
+	 */
+	private boolean populatingInSlices = false;
+
 	/**
 	 * Safe runnable used to update an item.
 	 */
@@ -146,6 +155,7 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 		assertElementsNotNull(childElements);
 		if (checkBusy())
 			return;
+		finishPopulation();
 		Widget[] widgets = internalFindItems(parentElementOrTreePath);
 		// If parent hasn't been realized yet, just ignore the add.
 		if (widgets.length == 0) {
@@ -612,6 +622,12 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 		return comparator.compare(this, e1, e2);
 	}
 
+	@Override
+	boolean isBackgroundFilteringSupported() {
+		// the children are sorted by tree path
+		return false;
+	}
+
 	@Override
 	protected Object[] getSortedChildren(Object parentElementOrTreePath) {
 		Object[] result = getFilteredChildren(parentElementOrTreePath);
@@ -777,6 +793,10 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 	 * 			  true if children are expected to be fully materialized
 	 */
 	void createChildren(final Widget widget, boolean materialize) {
+		if (!populatingInSlices) {
+			// the callers expect all the children
+			finishPopulation();
+		}
 		boolean oldBusy = isBusy();
 		setBusy(true);
 		try {
@@ -807,13 +827,23 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 					Object d = widget.getData();
 					if (d != null) {
 						Object parentElement = d;
-						Object[] children;
+						final Object[] children;
 						if (isTreePathContentProvider() && widget instanceof Item) {
 							TreePath path = getTreePathFromItem((Item) widget);
 							children = getSortedChildren(path);
 						} else {
 							children = getSortedChildren(parentElement);
 						}
+						if (populatingInSlices) {
+							populate(new IncrementalPopulation.Task(widget,
+									children.length) {
+								@Override
+								void populate(int i) {
+									createTreeItem(widget, children[i], -1);
+								}
+							});
+							return;
+						}
 						for (int i = 0; i < children.length; i++) {
 							createTreeItem(widget, children[i], -1);
 						}
@@ -826,6 +856,23 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 		}
 	}
 
+	/**
+	 * Creates the children of the given widget, in time slices if requested.
+	 *
+	 * @param widget
+	 *            the widget
+	 * @see #setPopulationTimeSlice(int)
+	 */
+	private void createChildrenInSlices(Widget widget) {
+		boolean oldPopulatingInSlices = populatingInSlices;
+		populatingInSlices = true;
+		try {
+			createChildren(widget);
+		} finally {
+			populatingInSlices = oldPopulatingInSlices;
+		}
+	}
+
 	/**
 	 * Creates a single item for the given parent and synchronizes it with the
 	 * given element.
@@ -1492,7 +1539,7 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 	 *            the SWT tree event
 	 */
 	protected void handleTreeExpand(TreeEvent event) {
-		createChildren(event.item);
+		createChildrenInSlices(event.item);
 		if (event.item.getData() != null) {
 			fireTreeExpanded(new TreeExpansionEvent(this, event.item.getData()));
 		}
@@ -1522,6 +1569,7 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 	            Control tree = getControl();
 	            tree.setRedraw(false);
 	            try {
+	                cancelPopulation(null);
 	                removeAll(tree);
 	                tree.setData(getRoot());
 	                internalInitializeTree(tree);
@@ -1540,7 +1588,7 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 	 * @since 3.3
 	 */
 	protected void internalInitializeTree(Control tree) {
-		createChildren(tree);
+		createChildrenInSlices(tree);
 		internalExpandToLevel(tree, expandToLevel);
 	}
 
@@ -2214,6 +2262,7 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 		}
 		if (checkBusy())
 			return;
+		finishPopulation();
 		preservingSelection(new Runnable() {
 			@Override
 			public void run() {
@@ -2247,6 +2296,7 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 		}
 		if (checkBusy())
 			return;
+		finishPopulation();
 		preservingSelection(new Runnable() {
 			@Override
 			public void run() {
@@ -2605,6 +2655,8 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 	 */
 	private void updateChildren(Widget widget, Object parent,
 			Object[] elementChildren, boolean updateLabels) {
+		// the children still to create are replaced too
+		cancelPopulation(widget);
 		// optimization! prune collapsed subtrees
 		if (widget instanceof Item) {
 			Item ti = (Item) widget;
@@ -2659,63 +2711,55 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 		}
 
 		Item[] items = getChildren(widget);
-		
-		// save the expanded elements
+		Object[] oldElements = new Object[items.length];
+		for (int i = 0; i < items.length; i++) {
+			oldElements[i] = items[i].getData();
+		}
+		// the items of the elements which are still children keep their
+		// labels, expanded state and children, see ItemReconciler
+		int[] itemIndexes = ItemReconciler.match(this, oldElements,
+				elementChildren);
+		boolean[] reused = new boolean[items.length];
+		for (int i = 0; i < elementChildren.length; i++) {
+			if (itemIndexes[i] >= 0) {
+				reused[itemIndexes[i]] = true;
+			}
+		}
+
+		// save the expanded elements of the items disposed or rewritten
 		CustomHashtable expanded = newHashtable(CustomHashtable.DEFAULT_CAPACITY); // assume
 																					// num
 																					// expanded
 																					// is
 																					// small
 		for (int i = 0; i < items.length; ++i) {
-			if (getExpanded(items[i])) {
-				Object element = items[i].getData();
-				if (element != null) {
-					expanded.put(element, element);
-				}
+			if (oldElements[i] != null && getExpanded(items[i])) {
+				expanded.put(oldElements[i], oldElements[i]);
 			}
 		}
 
-		int min = Math.min(elementChildren.length, items.length);
-
-		// dispose of surplus items, optimizing for the case where elements have
-		// been deleted but not reordered, or all elements have been removed.
-		int numItemsToDispose = items.length - min;
-		if (numItemsToDispose > 0) {
-			CustomHashtable children = newHashtable(elementChildren.length * 2);
-			for (int i = 0; i < elementChildren.length; i++) {
-				Object elementChild = elementChildren[i];
-				children.put(elementChild, elementChild);
-			}
-			int i = 0;
-			while (numItemsToDispose > 0 && i < items.length) {
-				Object data = items[i].getData();
-				if (data == null || !children.containsKey(data)) {
-					if (data != null) {
-						disassociate(items[i]);
-					}
-					items[i].dispose();
-					if (i + 1 < items.length) {
-						// The components at positions i+1 through
-						// items.length-1 in the source array are copied into
-						// positions i through items.length-2
-						System.arraycopy(items, i + 1, items, i, items.length - (i+1));
-					}
-					numItemsToDispose--;
-				} else {
-					i++;
+		// dispose of the items of the removed elements
+		for (int i = 0; i < items.length; ++i) {
+			if (!reused[i]) {
+				if (oldElements[i] != null) {
+					disassociate(items[i]);
 				}
+				items[i].dispose();
 			}
 		}
 
-		// compare first min items, and update item if necessary
+		// update the reused items if necessary
 		// need to do it in two passes:
 		// 1: disassociate old items
 		// 2: associate new items
 		// because otherwise a later disassociate can remove a mapping made for
 		// a previous associate,
 		// making the map inconsistent
-		for (int i = 0; i < min; ++i) {
-			Item item = items[i];
+		for (int i = 0; i < elementChildren.length; ++i) {
+			if (itemIndexes[i] < 0) {
+				continue;
+			}
+			Item item = items[itemIndexes[i]];
 			Object oldElement = item.getData();
 			if (oldElement != null) {
 				Object newElement = elementChildren[i];
@@ -2725,10 +2769,7 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 						// although the elements
 						// may be equal, they may still have different labels
 						// or children
-						Object data = item.getData();
-						if (data != null) {
-							unmapElement(data, item);
-						}
+						unmapElement(oldElement, item);
 						item.setData(newElement);
 						mapElement(newElement, item);
 					} else {
@@ -2742,14 +2783,24 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 			}
 		}
 
-		for (int i = 0; i < min; ++i) {
-			Item item = items[i];
+		// create the items of the added elements at their position, the items
+		// before them being the ones of the previous elements
+		boolean[] rewritten = new boolean[elementChildren.length];
+		boolean created = false;
+		for (int i = 0; i < elementChildren.length; ++i) {
 			Object newElement = elementChildren[i];
+			if (itemIndexes[i] < 0) {
+				createTreeItem(widget, newElement, i);
+				created = true;
+				continue;
+			}
+			Item item = items[itemIndexes[i]];
 			if (item.getData() == null) {
 				// old and new elements are not equal
 				associate(newElement, item);
 				updatePlus(item, newElement);
 				updateItem(item, newElement);
+				rewritten[i] = true;
 			} else {
 				// old and new elements are equal
 				updatePlus(item, newElement);
@@ -2759,40 +2810,31 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 			}
 		}
 
-		// Restore expanded state for items that changed position.
+		// Restore expanded state for items that changed element.
 		// Make sure setExpanded is called after updatePlus, since
 		// setExpanded(false) fails if item has no children.
 		// Need to call setExpanded for both expanded and unexpanded
 		// cases since the expanded state can change either way.
 		// This needs to be done in a second loop, see bug 148025.
-		for (int i = 0; i < min; ++i) {
-			Item item = items[i];
-			Object newElement = elementChildren[i];
-			setExpanded(item, expanded.containsKey(newElement));
-		}
-
-		// add any remaining elements
-		if (min < elementChildren.length) {
-			for (int i = min; i < elementChildren.length; ++i) {
-				createTreeItem(widget, elementChildren[i], -1);
-			}
-
-			// Need to restore expanded state in a separate pass
-			// because createTreeItem does not return the new item.
-			// Avoid doing this unless needed.
-			if (expanded.size() > 0) {
-				// get the items again, to include the new items
-				items = getChildren(widget);
-				for (int i = min; i < elementChildren.length; ++i) {
-					// Restore expanded state for items that changed position.
-					// Make sure setExpanded is called after updatePlus (called
-					// in createTreeItem), since
-					// setExpanded(false) fails if item has no children.
-					// Only need to call setExpanded if element was expanded
-					// since new items are initially unexpanded.
-					if (expanded.containsKey(elementChildren[i])) {
-						setExpanded(items[i], true);
-					}
+		for (int i = 0; i < elementChildren.length; ++i) {
+			if (rewritten[i]) {
+				setExpanded(items[itemIndexes[i]],
+						expanded.containsKey(elementChildren[i]));
+			}
+		}
+
+		// Need to restore expanded state of the new items in a separate pass
+		// because createTreeItem does not return the new item.
+		// Avoid doing this unless needed.
+		if (created && expanded.size() > 0) {
+			// get the items again, to include the new items
+			items = getChildren(widget);
+			for (int i = 0; i < elementChildren.length; ++i) {
+				// Only need to call setExpanded if element was expanded
+				// since new items are initially unexpanded.
+				if (itemIndexes[i] < 0
+						&& expanded.containsKey(elementChildren[i])) {
+					setExpanded(items[i], true);
 				}
 			}
 		}
@@ -3037,6 +3079,7 @@ public abstract class AbstractTreeViewer extends ColumnViewer {
 		Assert.isNotNull(element);
 		if (checkBusy())
 			return;
+		finishPopulation();
 		if (getComparator() != null || hasFilters()) {
 			add(parentElementOrTreePath, new Object[] { element });
 			return;
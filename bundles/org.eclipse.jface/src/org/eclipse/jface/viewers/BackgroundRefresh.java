@@ -0,0 +1,266 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.jface.viewers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.swt.widgets.Control;
+
+/**
+ * The filtering and sorting of the root elements of a viewer, running in
+ * background threads for {@link StructuredViewer#setBackgroundFiltering(boolean)}.
+ * <p>
+ * The elements are split into chunks filtered in parallel by the threads of a
+ * shared pool. The thread filtering the last chunk joins the results, sorts
+ * them if the comparator is thread safe, and hands them to the UI thread,
+ * which refreshes the viewer unless the refresh was cancelled meanwhile.
+ * </p>
+ */
+/* package */final class BackgroundRefresh {
+
+	/**
+	 * The minimum number of elements filtered by a thread.
+	 */
+	private static final int MIN_CHUNK_SIZE = 1000;
+
+	/**
+	 * The number of elements passed to the filters at once, the refresh being
+	 * checked for cancellation between two blocks.
+	 */
+	private static final int BLOCK_SIZE = 256;
+
+	private static ExecutorService executor;
+
+	private final StructuredViewer viewer;
+
+	final Object root;
+
+	final Object[] rawChildren;
+
+	private final ViewerFilter[] filters;
+
+	private final ViewerComparator comparator;
+
+	final boolean updateLabels;
+
+	/**
+	 * The number of background refreshes restarted before this one because
+	 * the model changed while they ran.
+	 */
+	final int restarts;
+
+	private final Object[][] chunkResults;
+
+	private final AtomicInteger remainingChunks;
+
+	private volatile boolean cancelled;
+
+	private volatile boolean failed;
+
+	private Object[] result;
+
+	private boolean sorted;
+
+	/**
+	 * @param viewer
+	 *            the viewer to refresh
+	 * @param root
+	 *            the root element of the viewer
+	 * @param rawChildren
+	 *            the elements to filter and sort, not modified
+	 * @param filters
+	 *            the thread safe filters
+	 * @param comparator
+	 *            the comparator to sort the elements with in the background,
+	 *            <code>null</code> to leave them unsorted
+	 * @param updateLabels
+	 *            whether the labels of the existing elements are updated by
+	 *            the refresh
+	 * @param restarts
+	 *            the number of background refreshes restarted before this one
+	 */
+	BackgroundRefresh(StructuredViewer viewer, Object root,
+			Object[] rawChildren, ViewerFilter[] filters,
+			ViewerComparator comparator, boolean updateLabels, int restarts) {
+		this.viewer = viewer;
+		this.root = root;
+		this.rawChildren = rawChildren;
+		this.filters = filters;
+		this.comparator = comparator;
+		this.updateLabels = updateLabels;
+		this.restarts = restarts;
+		int chunks = Math.max(1, Math.min(Runtime.getRuntime()
+				.availableProcessors(), rawChildren.length / MIN_CHUNK_SIZE));
+		this.chunkResults = new Object[chunks][];
+		this.remainingChunks = new AtomicInteger(chunks);
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			int threads = Runtime.getRuntime().availableProcessors();
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+					5, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+					new ThreadFactory() {
+						private final AtomicInteger count = new AtomicInteger();
+
+						@Override
+						public Thread newThread(Runnable runnable) {
+							Thread thread = new Thread(runnable,
+									"Viewer Filtering " + count.incrementAndGet()); //$NON-NLS-1$
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			pool.allowCoreThreadTimeOut(true);
+			executor = pool;
+		}
+		return executor;
+	}
+
+	/**
+	 * Starts filtering and sorting the elements.
+	 */
+	void start() {
+		ExecutorService pool = getExecutor();
+		int chunks = chunkResults.length;
+		for (int i = 0; i < chunks; i++) {
+			final int chunk = i;
+			final int start = (int) ((long) rawChildren.length * i / chunks);
+			final int end = (int) ((long) rawChildren.length * (i + 1) / chunks);
+			pool.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						chunkResults[chunk] = filter(start, end);
+					} catch (RuntimeException e) {
+						// the synchronous refresh reports it
+						failed = true;
+					} catch (Error e) {
+						failed = true;
+						throw e;
+					} finally {
+						if (remainingChunks.decrementAndGet() == 0) {
+							finish();
+						}
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Cancels the refresh; it is not applied to the viewer once done.
+	 */
+	void cancel() {
+		cancelled = true;
+	}
+
+	boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * @return whether the refresh failed, in which case the viewer must be
+	 *         refreshed synchronously
+	 */
+	boolean isFailed() {
+		return failed;
+	}
+
+	/**
+	 * @return the filtered elements, sorted if {@link #isSorted()}
+	 */
+	Object[] getResult() {
+		return result;
+	}
+
+	/**
+	 * @return whether the result was sorted in the background
+	 */
+	boolean isSorted() {
+		return sorted;
+	}
+
+	private Object[] filter(int start, int end) {
+		List<Object> selected = new ArrayList<Object>(end - start);
+		for (int blockStart = start; blockStart < end; blockStart += BLOCK_SIZE) {
+			if (cancelled) {
+				return null;
+			}
+			Object[] block = new Object[Math.min(BLOCK_SIZE, end - blockStart)];
+			System.arraycopy(rawChildren, blockStart, block, 0, block.length);
+			// as in getFilteredChildren, so that overridden filter methods apply
+			for (int i = 0; i < filters.length && block.length > 0; i++) {
+				block = filters[i].filter(viewer, root, block);
+			}
+			selected.addAll(Arrays.asList(block));
+		}
+		return selected.toArray();
+	}
+
+	private void finish() {
+		if (!cancelled && !failed) {
+			try {
+				result = join();
+				if (comparator != null && !cancelled) {
+					comparator.sort(viewer, result);
+					sorted = true;
+				}
+			} catch (RuntimeException e) {
+				failed = true;
+			}
+		}
+		if (cancelled) {
+			return;
+		}
+		Control control = viewer.getControl();
+		if (control == null || control.isDisposed()) {
+			return;
+		}
+		try {
+			control.getDisplay().asyncExec(new Runnable() {
+				@Override
+				public void run() {
+					viewer.applyBackgroundRefresh(BackgroundRefresh.this);
+				}
+			});
+		} catch (RuntimeException e) {
+			// the display was disposed meanwhile
+		}
+	}
+
+	private Object[] join() {
+		if (chunkResults.length == 1) {
+			return chunkResults[0];
+		}
+		int length = 0;
+		for (int i = 0; i < chunkResults.length; i++) {
+			length += chunkResults[i].length;
+		}
+		Object[] joined = new Object[length];
+		int position = 0;
+		for (int i = 0; i < chunkResults.length; i++) {
+			System.arraycopy(chunkResults[i], 0, joined, position,
+					chunkResults[i].length);
+			position += chunkResults[i].length;
+		}
+		return joined;
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2013 IBM Corporation and others.
+ * Copyright (c) 2008, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -47,6 +47,7 @@ public class DecoratingStyledCellLabelProvider extends
 	private ILabelDecorator decorator;
 	private IDecorationContext decorationContext= DecorationContext.DEFAULT_CONTEXT;
 	private ILabelProviderListener labelProviderListener;
+	private ViewportTracker viewportTracker;
 
 	/**
 	 * Creates a {@link DecoratingStyledCellLabelProvider} that delegates the
@@ -106,6 +107,30 @@ public class DecoratingStyledCellLabelProvider extends
 		this.decorationContext = decorationContext;
 	}
 
+	/**
+	 * Reports the viewport of table and tree viewers to the decorator if it is
+	 * an {@link IViewportLabelDecorator}, so it decorates the visible elements
+	 * first.
+	 */
+	@Override
+	public void initialize(ColumnViewer viewer, ViewerColumn column) {
+		super.initialize(viewer, column);
+		trackViewport();
+	}
+
+	private void trackViewport() {
+		if (this.viewportTracker != null) {
+			this.viewportTracker.dispose();
+			this.viewportTracker = null;
+		}
+		ColumnViewer viewer = getViewer();
+		if (viewer != null && this.decorator instanceof IViewportLabelDecorator
+				&& ViewportTracker.canTrack(viewer)) {
+			this.viewportTracker = new ViewportTracker(viewer,
+					(IViewportLabelDecorator) this.decorator);
+		}
+	}
+
 	private boolean waitForPendingDecoration(ViewerCell cell) {
 		if (this.decorator == null)
 			return false;
@@ -263,6 +288,7 @@ public class DecoratingStyledCellLabelProvider extends
 			if (newDecorator != null) {
 				newDecorator.addListener(this.labelProviderListener);
 			}
+			trackViewport();
 		}
 		fireLabelProviderChanged(new LabelProviderChangedEvent(this));
 	}
@@ -294,6 +320,10 @@ public class DecoratingStyledCellLabelProvider extends
 
 	@Override
 	public void dispose() {
+		if (this.viewportTracker != null) {
+			this.viewportTracker.dispose();
+			this.viewportTracker = null;
+		}
 		super.dispose();
 		if (this.decorator != null) {
 			this.decorator.removeListener(this.labelProviderListener);
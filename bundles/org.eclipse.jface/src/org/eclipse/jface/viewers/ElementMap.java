@@ -0,0 +1,468 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.jface.viewers;
+
+import org.eclipse.swt.widgets.Widget;
+
+/**
+ * The map from the elements of a structured viewer to the widgets showing
+ * them, used when hash lookup is enabled.
+ * <p>
+ * The map uses open addressing with linear probing: the elements and their
+ * widgets are stored next to each other in a single array, without an entry
+ * object per element. An element shown by a single widget, the common case,
+ * maps directly to the widget; an element shown by several widgets maps to a
+ * growable list of widgets. Elements are compared with the viewer's
+ * {@link IElementComparer}, if any, after checking for identity.
+ * </p>
+ * <p>
+ * The map resizes incrementally, so adding an element never rehashes all the
+ * elements at once: when the map grows, the elements of the previous table are
+ * moved to the new one a few slots at a time by the following additions and
+ * removals, and the elements are looked up in both tables meanwhile.
+ * </p>
+ */
+/* package */final class ElementMap {
+
+	/**
+	 * The widgets of an element shown by several widgets.
+	 */
+	private static final class Items {
+		Widget[] widgets;
+
+		int count;
+
+		Items(Widget first, Widget second) {
+			widgets = new Widget[] { first, second, null, null };
+			count = 2;
+		}
+
+		void add(Widget widget) {
+			for (int i = 0; i < count; i++) {
+				if (widgets[i] == widget) {
+					return;
+				}
+			}
+			if (count == widgets.length) {
+				Widget[] grown = new Widget[count + (count >> 1)];
+				System.arraycopy(widgets, 0, grown, 0, count);
+				widgets = grown;
+			}
+			widgets[count++] = widget;
+		}
+
+		boolean remove(Widget widget) {
+			for (int i = 0; i < count; i++) {
+				if (widgets[i] == widget) {
+					System.arraycopy(widgets, i + 1, widgets, i, count - i - 1);
+					widgets[--count] = null;
+					return true;
+				}
+			}
+			return false;
+		}
+
+		Widget[] toArray() {
+			Widget[] result = new Widget[count];
+			System.arraycopy(widgets, 0, result, 0, count);
+			return result;
+		}
+
+		Items copy() {
+			Items copy = new Items(widgets[0], widgets[1]);
+			for (int i = 2; i < count; i++) {
+				copy.add(widgets[i]);
+			}
+			return copy;
+		}
+	}
+
+	private static final Widget[] NO_WIDGETS = new Widget[0];
+
+	/**
+	 * The key of the slots whose element was removed, so the elements
+	 * following it in the probe sequence are still found.
+	 */
+	private static final Object REMOVED = new Object();
+
+	private static final int MIN_CAPACITY = 8;
+
+	/**
+	 * The number of slots of the previous table moved to the current one by
+	 * every addition or removal. The current table is at most one third full
+	 * after growing and grows when two thirds full, so at least a third of its
+	 * capacity, and of the capacity of the previous table, is added before it
+	 * grows again: moving three slots per addition would just empty the
+	 * previous table in time, the fourth slot leaves a margin so that growing
+	 * rarely has to move the rest of the previous table at once.
+	 */
+	private static final int MIGRATION_STEP = 4;
+
+	private final IElementComparer comparer;
+
+	/**
+	 * The elements at even indexes, each followed by its widget or
+	 * {@link Items}.
+	 */
+	private Object[] table;
+
+	/**
+	 * The number of elements in the current table.
+	 */
+	private int size;
+
+	/**
+	 * The number of removed slots in the current table.
+	 */
+	private int removed;
+
+	private int threshold;
+
+	/**
+	 * The table being moved to the current one, <code>null</code> if there is
+	 * none. No element is added to it, its moved and removed elements are
+	 * replaced by {@link #REMOVED}.
+	 */
+	private Object[] oldTable;
+
+	/**
+	 * The number of elements left in the previous table.
+	 */
+	private int oldSize;
+
+	/**
+	 * The next slot of the previous table to move to the current one.
+	 */
+	private int migrationIndex;
+
+	/**
+	 * Creates an empty map.
+	 *
+	 * @param comparer
+	 *            the comparer used to compare elements and compute their hash
+	 *            codes, or <code>null</code> to use <code>equals</code> and
+	 *            <code>hashCode</code>
+	 */
+	ElementMap(IElementComparer comparer) {
+		this.comparer = comparer;
+		allocate(MIN_CAPACITY);
+	}
+
+	/**
+	 * Creates a map containing the mappings of the given map, comparing the
+	 * elements with the given comparer.
+	 *
+	 * @param map
+	 *            the map to copy
+	 * @param comparer
+	 *            the comparer used to compare elements and compute their hash
+	 *            codes, or <code>null</code> to use <code>equals</code> and
+	 *            <code>hashCode</code>
+	 */
+	ElementMap(ElementMap map, IElementComparer comparer) {
+		this.comparer = comparer;
+		allocate(capacityFor(map.size(), MIN_CAPACITY));
+		copy(map.table);
+		if (map.oldTable != null) {
+			copy(map.oldTable);
+		}
+	}
+
+	private void allocate(int capacity) {
+		table = new Object[capacity << 1];
+		size = 0;
+		removed = 0;
+		threshold = capacity * 2 / 3;
+	}
+
+	/**
+	 * Returns the smallest capacity, at least the given one, filled at most by
+	 * a third with the given number of elements.
+	 */
+	private static int capacityFor(int elements, int minCapacity) {
+		int capacity = minCapacity;
+		while (elements * 3 > capacity) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	private void copy(Object[] source) {
+		for (int i = 0; i < source.length; i += 2) {
+			Object element = source[i];
+			if (element != null && element != REMOVED) {
+				Object value = source[i + 1];
+				if (value instanceof Items) {
+					value = ((Items) value).copy();
+				}
+				int hash = hash(element);
+				// elements distinct for the previous comparer may be equal
+				int index = indexOf(table, element, hash);
+				if (index < 0) {
+					insert(element, hash, value);
+				} else {
+					table[(index << 1) + 1] = value;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of elements in the map.
+	 *
+	 * @return the number of elements
+	 */
+	int size() {
+		return size + oldSize;
+	}
+
+	/**
+	 * Returns the widgets the given element is mapped to.
+	 *
+	 * @param element
+	 *            the element
+	 * @return the widgets, an empty array if the element is not mapped
+	 */
+	Widget[] getItems(Object element) {
+		Object value = get(element);
+		if (value == null) {
+			return NO_WIDGETS;
+		}
+		if (value instanceof Widget) {
+			return new Widget[] { (Widget) value };
+		}
+		return ((Items) value).toArray();
+	}
+
+	/**
+	 * Returns the first widget the given element is mapped to.
+	 *
+	 * @param element
+	 *            the element
+	 * @return the widget, or <code>null</code> if the element is not mapped
+	 */
+	Widget getItem(Object element) {
+		Object value = get(element);
+		if (value == null || value instanceof Widget) {
+			return (Widget) value;
+		}
+		return ((Items) value).widgets[0];
+	}
+
+	private Object get(Object element) {
+		int hash = hash(element);
+		int index = indexOf(table, element, hash);
+		if (index >= 0) {
+			return table[(index << 1) + 1];
+		}
+		if (oldTable != null) {
+			index = indexOf(oldTable, element, hash);
+			if (index >= 0) {
+				return oldTable[(index << 1) + 1];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Maps the given element to the given widget, in addition to the widgets
+	 * it is already mapped to.
+	 *
+	 * @param element
+	 *            the element
+	 * @param item
+	 *            the widget
+	 */
+	void add(Object element, Widget item) {
+		migrate();
+		int hash = hash(element);
+		int index = find(element, hash);
+		if (index < 0) {
+			if (size + oldSize + removed >= threshold) {
+				grow();
+			}
+			insert(element, hash, item);
+			return;
+		}
+		// avoid hanging onto elements that are equal but "old" -- see bug
+		// 30607
+		table[index << 1] = element;
+		Object value = table[(index << 1) + 1];
+		if (value instanceof Widget) {
+			if (value != item) {
+				table[(index << 1) + 1] = new Items((Widget) value, item);
+			}
+		} else {
+			((Items) value).add(item);
+		}
+	}
+
+	/**
+	 * Removes the given element from the map.
+	 *
+	 * @param element
+	 *            the element
+	 */
+	void remove(Object element) {
+		migrate();
+		int index = find(element, hash(element));
+		if (index >= 0) {
+			delete(index);
+		}
+	}
+
+	/**
+	 * Removes the given widget from the widgets the given element is mapped
+	 * to, and the element from the map if it is not mapped to other widgets.
+	 *
+	 * @param element
+	 *            the element
+	 * @param item
+	 *            the widget
+	 */
+	void remove(Object element, Widget item) {
+		migrate();
+		int index = find(element, hash(element));
+		if (index < 0) {
+			return;
+		}
+		Object value = table[(index << 1) + 1];
+		if (value instanceof Widget) {
+			if (value == item) {
+				delete(index);
+			}
+		} else {
+			Items items = (Items) value;
+			if (items.remove(item) && items.count == 1) {
+				table[(index << 1) + 1] = items.widgets[0];
+			}
+		}
+	}
+
+	private int hash(Object element) {
+		int hash = comparer == null ? element.hashCode() : comparer
+				.hashCode(element);
+		// spread the bits used to index the power of two sized tables
+		hash *= 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+	private boolean elementEquals(Object a, Object b) {
+		if (a == b) {
+			return true;
+		}
+		return comparer == null ? a.equals(b) : comparer.equals(a, b);
+	}
+
+	/**
+	 * Returns the slot of the given element in the given table, or -1 if it is
+	 * not there. The tables are never full, so the probe sequence ends on an
+	 * empty slot.
+	 */
+	private int indexOf(Object[] elements, Object element, int hash) {
+		int mask = (elements.length >> 1) - 1;
+		for (int i = hash & mask;; i = (i + 1) & mask) {
+			Object key = elements[i << 1];
+			if (key == null) {
+				return -1;
+			}
+			if (key != REMOVED && elementEquals(element, key)) {
+				return i;
+			}
+		}
+	}
+
+	/**
+	 * Returns the slot of the given element in the current table, moving it
+	 * from the previous table if it is there, or -1 if it is not mapped.
+	 */
+	private int find(Object element, int hash) {
+		int index = indexOf(table, element, hash);
+		if (index >= 0 || oldTable == null) {
+			return index;
+		}
+		int oldIndex = indexOf(oldTable, element, hash);
+		if (oldIndex < 0) {
+			return -1;
+		}
+		Object value = oldTable[(oldIndex << 1) + 1];
+		oldTable[oldIndex << 1] = REMOVED;
+		oldTable[(oldIndex << 1) + 1] = null;
+		oldSize--;
+		return insert(element, hash, value);
+	}
+
+	/**
+	 * Adds the given element, known not to be in the map, to the current
+	 * table.
+	 */
+	private int insert(Object element, int hash, Object value) {
+		int mask = (table.length >> 1) - 1;
+		int i = hash & mask;
+		while (table[i << 1] != null && table[i << 1] != REMOVED) {
+			i = (i + 1) & mask;
+		}
+		if (table[i << 1] == REMOVED) {
+			removed--;
+		}
+		table[i << 1] = element;
+		table[(i << 1) + 1] = value;
+		size++;
+		return i;
+	}
+
+	private void delete(int index) {
+		table[index << 1] = REMOVED;
+		table[(index << 1) + 1] = null;
+		size--;
+		removed++;
+	}
+
+	/**
+	 * Starts moving the elements to a new table, twice as large as the
+	 * current one unless removed slots make up most of it.
+	 */
+	private void grow() {
+		while (oldTable != null) {
+			migrate();
+		}
+		oldTable = table;
+		oldSize = size;
+		migrationIndex = 0;
+		allocate(capacityFor(size, table.length >> 1));
+	}
+
+	/**
+	 * Moves the next slots of the previous table to the current one.
+	 */
+	private void migrate() {
+		if (oldTable == null) {
+			return;
+		}
+		int capacity = oldTable.length >> 1;
+		int end = Math.min(migrationIndex + MIGRATION_STEP, capacity);
+		for (; migrationIndex < end; migrationIndex++) {
+			int i = migrationIndex << 1;
+			Object element = oldTable[i];
+			if (element != null && element != REMOVED) {
+				insert(element, hash(element), oldTable[i + 1]);
+				// keep the probe sequences of the remaining elements
+				oldTable[i] = REMOVED;
+				oldTable[i + 1] = null;
+				oldSize--;
+			}
+		}
+		if (migrationIndex == capacity || oldSize == 0) {
+			oldTable = null;
+		}
+	}
+}
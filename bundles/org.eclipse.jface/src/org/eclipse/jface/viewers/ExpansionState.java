@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.jface.viewers;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The expanded state of the nodes of a virtual tree whose items have not been
+ * materialized yet, used by {@link TreeViewer} when expansion is deferred.
+ * <p>
+ * The state does not record every expanded node: it records the levels the
+ * subtrees were expanded to, keyed by the tree path of their root, and the
+ * nodes expanded or collapsed since. A node is expanded according to the
+ * nearest recorded path among its own path and the paths of its ancestors, so
+ * expanding all the levels of a tree takes a single entry however large the
+ * tree is.
+ * </p>
+ */
+/* package */final class ExpansionState {
+
+	/**
+	 * The level of the nodes the state does not decide about.
+	 */
+	private static final int UNKNOWN = -2;
+
+	/**
+	 * The levels of the recorded paths, as <code>Integer</code>s.
+	 */
+	private final CustomHashtable levels;
+
+	private final IElementComparer comparer;
+
+	/**
+	 * Creates an empty state.
+	 *
+	 * @param comparer
+	 *            the comparer used to compare the segments of the tree paths,
+	 *            or <code>null</code> to use <code>equals</code> and
+	 *            <code>hashCode</code>
+	 */
+	ExpansionState(final IElementComparer comparer) {
+		this.comparer = comparer;
+		levels = new CustomHashtable(new IElementComparer() {
+
+			@Override
+			public boolean equals(Object a, Object b) {
+				return ((TreePath) a).equals(((TreePath) b), comparer);
+			}
+
+			@Override
+			public int hashCode(Object element) {
+				return ((TreePath) element).hashCode(comparer);
+			}
+		});
+	}
+
+	/**
+	 * Returns whether no path is recorded.
+	 *
+	 * @return <code>true</code> if the state is empty
+	 */
+	boolean isEmpty() {
+		return levels.size() == 0;
+	}
+
+	/**
+	 * Records that the subtree rooted at the given path is expanded to the
+	 * given level, replacing what was recorded for the nodes of the subtree.
+	 *
+	 * @param path
+	 *            the tree path of the root of the subtree
+	 * @param level
+	 *            non-negative level, or <code>ALL_LEVELS</code> to expand all
+	 *            levels of the subtree
+	 */
+	void expandToLevel(TreePath path, int level) {
+		removeSubtree(path);
+		levels.put(path, Integer.valueOf(level));
+	}
+
+	/**
+	 * Forgets what was recorded for the nodes of the subtree rooted at the
+	 * given path, so they are collapsed unless one of their ancestors is
+	 * expanded by the state.
+	 *
+	 * @param path
+	 *            the tree path of the root of the subtree
+	 */
+	void removeSubtree(TreePath path) {
+		List removed = new ArrayList();
+		for (Enumeration e = levels.keys(); e.hasMoreElements();) {
+			TreePath recorded = (TreePath) e.nextElement();
+			if (recorded.startsWith(path, comparer)) {
+				removed.add(recorded);
+			}
+		}
+		for (Iterator it = removed.iterator(); it.hasNext();) {
+			levels.remove(it.next());
+		}
+	}
+
+	/**
+	 * Records that the node with the given path is expanded or collapsed, if
+	 * the state decides whether it is expanded.
+	 *
+	 * @param path
+	 *            the tree path of the node
+	 * @param expanded
+	 *            <code>true</code> if the node is expanded
+	 */
+	void setExpanded(TreePath path, boolean expanded) {
+		int level = getLevel(path);
+		if (level != UNKNOWN && (level != 0) != expanded) {
+			levels.put(path, Integer.valueOf(expanded ? 1 : 0));
+		}
+	}
+
+	/**
+	 * Returns whether the node with the given path is expanded by the state.
+	 *
+	 * @param path
+	 *            the tree path of the node
+	 * @return <code>true</code> if the node is expanded
+	 */
+	boolean isExpanded(TreePath path) {
+		int level = getLevel(path);
+		return level != UNKNOWN && level != 0;
+	}
+
+	/**
+	 * Returns the level the node with the given path is expanded to, or
+	 * {@link #UNKNOWN} if neither its path nor the paths of its ancestors are
+	 * recorded.
+	 */
+	private int getLevel(TreePath path) {
+		if (isEmpty()) {
+			return UNKNOWN;
+		}
+		int depth = 0;
+		for (TreePath ancestor = path; ancestor != null; ancestor = ancestor
+				.getParentPath()) {
+			Integer level = (Integer) levels.get(ancestor);
+			if (level != null) {
+				int value = level.intValue();
+				if (value == AbstractTreeViewer.ALL_LEVELS) {
+					return value;
+				}
+				return Math.max(value - depth, 0);
+			}
+			depth++;
+		}
+		return UNKNOWN;
+	}
+}
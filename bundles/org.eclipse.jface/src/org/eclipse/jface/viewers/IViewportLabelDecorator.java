@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.viewers;
+
+/**
+ * A viewport label decorator is a delayed label decorator that is told which
+ * elements its viewers show, so that it can decorate them before the other
+ * elements waiting for decoration. The viewers report the elements whose
+ * rows are visible and the elements whose rows are about to be scrolled into
+ * view every time they change. The decorator may drop the pending
+ * decorations of the elements a viewer reported before and no longer shows.
+ * <p>
+ * {@link DecoratingStyledCellLabelProvider} reports the viewport of the
+ * table and tree viewers it is installed on when its decorator implements
+ * this interface.
+ * </p>
+ *
+ * @since 3.10
+ */
+public interface IViewportLabelDecorator extends IDelayedLabelDecorator {
+
+	/**
+	 * Sets the elements the given viewer shows.
+	 *
+	 * @param viewer
+	 *            the viewer
+	 * @param visibleElements
+	 *            the elements of the visible rows, from top to bottom
+	 * @param nearElements
+	 *            the elements of the rows about to be scrolled into view
+	 */
+	public void setViewport(Viewer viewer, Object[] visibleElements,
+			Object[] nearElements);
+
+	/**
+	 * Forgets the elements the given viewer shows, since it was disposed or no
+	 * longer reports them.
+	 *
+	 * @param viewer
+	 *            the viewer
+	 */
+	public void clearViewport(Viewer viewer);
+
+}
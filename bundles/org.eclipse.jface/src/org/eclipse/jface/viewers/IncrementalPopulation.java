@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.jface.viewers;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Widget;
+
+/**
+ * The items of a structured viewer being created a few at a time, so the
+ * viewer stays responsive while it is populated with many elements.
+ * <p>
+ * The items are created in time slices: every slice creates items until its
+ * time budget is spent, then the next slice is posted with
+ * <code>Display.asyncExec</code>, so the events queued meanwhile, painting
+ * and user input, are processed between the slices. The first slice runs
+ * right away, so populating a viewer with few elements completes at once.
+ * </p>
+ * <p>
+ * The tasks are run in the order they were started. The viewer cancels the
+ * task of a parent widget before it refreshes its children, and finishes the
+ * population before changing its items otherwise, since the items are
+ * created at positions computed when the population started.
+ * </p>
+ */
+/* package */final class IncrementalPopulation implements Runnable {
+
+	/**
+	 * The creation of the items of some elements under a parent widget.
+	 */
+	static abstract class Task {
+		final Widget parent;
+
+		private final int count;
+
+		private int next;
+
+		/**
+		 * @param parent
+		 *            the widget the items are created under
+		 * @param count
+		 *            the number of steps
+		 */
+		Task(Widget parent, int count) {
+			this.parent = parent;
+			this.count = count;
+		}
+
+		/**
+		 * Creates or updates the item of the given step.
+		 *
+		 * @param index
+		 *            the index of the step, starting at 0
+		 */
+		abstract void populate(int index);
+
+		/**
+		 * Runs the remaining steps.
+		 */
+		void populateAll() {
+			while (!parent.isDisposed() && next < count) {
+				populate(next++);
+			}
+		}
+	}
+
+	private final StructuredViewer viewer;
+
+	private final long timeSlice;
+
+	private final List tasks = new ArrayList();
+
+	private boolean scheduled;
+
+	/**
+	 * @param viewer
+	 *            the viewer being populated
+	 * @param timeSlice
+	 *            the time budget of every slice, in milliseconds
+	 */
+	IncrementalPopulation(StructuredViewer viewer, int timeSlice) {
+		this.viewer = viewer;
+		this.timeSlice = timeSlice * 1000000L;
+	}
+
+	/**
+	 * Adds the given task and runs a slice.
+	 *
+	 * @param task
+	 *            the task
+	 */
+	void start(Task task) {
+		if (task.count > 0) {
+			tasks.add(task);
+		}
+		runSlice();
+	}
+
+	/**
+	 * Returns whether all the items were created.
+	 *
+	 * @return <code>true</code> if no task is left
+	 */
+	boolean isDone() {
+		return tasks.isEmpty();
+	}
+
+	/**
+	 * Creates all the remaining items.
+	 */
+	void finish() {
+		while (!tasks.isEmpty()) {
+			Task task = (Task) tasks.remove(0);
+			task.populateAll();
+		}
+	}
+
+	/**
+	 * Forgets the tasks creating items under the given widget.
+	 *
+	 * @param parent
+	 *            the parent widget, or <code>null</code> for all the tasks
+	 */
+	void cancel(Widget parent) {
+		for (Iterator it = tasks.iterator(); it.hasNext();) {
+			Task task = (Task) it.next();
+			if (parent == null || task.parent == parent) {
+				it.remove();
+			}
+		}
+	}
+
+	@Override
+	public void run() {
+		scheduled = false;
+		Control control = viewer.getControl();
+		if (control == null || control.isDisposed()
+				|| !viewer.isPopulating(this)) {
+			return;
+		}
+		runSlice();
+	}
+
+	private void runSlice() {
+		long deadline = System.nanoTime() + timeSlice;
+		while (!tasks.isEmpty()) {
+			Task task = (Task) tasks.get(0);
+			if (!task.parent.isDisposed()) {
+				task.populate(task.next++);
+			}
+			if (task.parent.isDisposed() || task.next == task.count) {
+				tasks.remove(0);
+			}
+			if (System.nanoTime() - deadline >= 0) {
+				break;
+			}
+		}
+		if (!tasks.isEmpty() && !scheduled) {
+			scheduled = true;
+			viewer.getControl().getDisplay().asyncExec(this);
+		}
+	}
+}
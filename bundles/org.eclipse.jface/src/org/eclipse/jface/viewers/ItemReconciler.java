@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.jface.viewers;
+
+/**
+ * Matches the items showing the old children of an element with its new
+ * children when a viewer is refreshed, so as few items as possible are
+ * rewritten, created or disposed.
+ * <p>
+ * SWT items cannot be moved, so the items kept for their element are the
+ * longest sequence of items whose elements are still children and come in the
+ * same order. The elements are matched with the viewer's comparer, so the
+ * items of the elements preceding or following an inserted or removed element
+ * are kept as they are, with their labels and subtrees. Between two kept
+ * items, the remaining items are reused position by position for the new
+ * elements, as a positional refresh would do; the surplus items are disposed,
+ * and the surplus elements get new items.
+ * </p>
+ */
+/* package */final class ItemReconciler {
+
+	private ItemReconciler() {
+	}
+
+	/**
+	 * Returns, for every new child, the index of the item to show it in, or -1
+	 * if a new item must be created for it. The indexes of the items are in
+	 * increasing order; the items whose index is not returned must be
+	 * disposed. An item shows the same element as before if its element is
+	 * equal to the new child, otherwise it must be rewritten.
+	 *
+	 * @param viewer
+	 *            the viewer comparing the elements
+	 * @param oldElements
+	 *            the elements of the items, <code>null</code> for the items
+	 *            showing no element
+	 * @param newElements
+	 *            the new children
+	 * @return the index of the item of every new child, or -1
+	 */
+	static int[] match(StructuredViewer viewer, Object[] oldElements,
+			Object[] newElements) {
+		int[] itemIndexes = new int[newElements.length];
+		// the common prefix and suffix are kept, which is all it takes for
+		// the usual refreshes
+		int start = 0;
+		int oldEnd = oldElements.length;
+		int newEnd = newElements.length;
+		while (start < oldEnd && start < newEnd
+				&& equals(viewer, oldElements[start], newElements[start])) {
+			itemIndexes[start] = start;
+			start++;
+		}
+		while (oldEnd > start && newEnd > start
+				&& equals(viewer, oldElements[oldEnd - 1],
+						newElements[newEnd - 1])) {
+			itemIndexes[--newEnd] = --oldEnd;
+		}
+		if (start == oldEnd || start == newEnd) {
+			reuse(itemIndexes, start, oldEnd, start, newEnd);
+			return itemIndexes;
+		}
+
+		int[] matches = matchElements(viewer, oldElements, start, oldEnd,
+				newElements, start, newEnd);
+		boolean[] kept = longestIncreasingSequence(matches);
+
+		// reuse the items between the kept ones
+		int oldGapStart = start;
+		int newGapStart = start;
+		for (int i = 0; i < matches.length; i++) {
+			if (kept[i]) {
+				int newIndex = start + i;
+				reuse(itemIndexes, oldGapStart, matches[i], newGapStart,
+						newIndex);
+				itemIndexes[newIndex] = matches[i];
+				oldGapStart = matches[i] + 1;
+				newGapStart = newIndex + 1;
+			}
+		}
+		reuse(itemIndexes, oldGapStart, oldEnd, newGapStart, newEnd);
+		return itemIndexes;
+	}
+
+	private static boolean equals(StructuredViewer viewer, Object oldElement,
+			Object newElement) {
+		return oldElement != null && viewer.equals(oldElement, newElement);
+	}
+
+	/**
+	 * Reuses the items from <code>oldStart</code> to <code>oldEnd</code> for
+	 * the new children from <code>newStart</code> to <code>newEnd</code>
+	 * position by position.
+	 */
+	private static void reuse(int[] itemIndexes, int oldStart, int oldEnd,
+			int newStart, int newEnd) {
+		int reused = Math.min(oldEnd - oldStart, newEnd - newStart);
+		for (int i = 0; i < newEnd - newStart; i++) {
+			itemIndexes[newStart + i] = i < reused ? oldStart + i : -1;
+		}
+	}
+
+	/**
+	 * Returns, for every new child in the given range, the index of an item in
+	 * the given range showing an equal element, or -1. Every item is matched
+	 * at most once, equal children being matched with the items in order.
+	 */
+	private static int[] matchElements(StructuredViewer viewer,
+			Object[] oldElements, int oldStart, int oldEnd,
+			Object[] newElements, int newStart, int newEnd) {
+		// the item indexes of every element, chained through nextItems
+		CustomHashtable firstItems = viewer
+				.newHashtable((oldEnd - oldStart) * 2 + 1);
+		int[] nextItems = new int[oldEnd - oldStart];
+		for (int i = oldEnd; --i >= oldStart;) {
+			Object element = oldElements[i];
+			if (element != null) {
+				Integer next = (Integer) firstItems.put(element,
+						Integer.valueOf(i));
+				nextItems[i - oldStart] = next == null ? -1 : next.intValue();
+			}
+		}
+		int[] matches = new int[newEnd - newStart];
+		for (int i = newStart; i < newEnd; i++) {
+			Object element = newElements[i];
+			Integer first = (Integer) firstItems.get(element);
+			if (first == null) {
+				matches[i - newStart] = -1;
+				continue;
+			}
+			int index = first.intValue();
+			matches[i - newStart] = index;
+			int next = nextItems[index - oldStart];
+			if (next < 0) {
+				firstItems.remove(element);
+			} else {
+				firstItems.put(element, Integer.valueOf(next));
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * Returns which of the given indexes make up the longest strictly
+	 * increasing sequence of non negative indexes, in O(n log n) time.
+	 */
+	private static boolean[] longestIncreasingSequence(int[] indexes) {
+		// tails[k] is the position of the smallest index ending an increasing
+		// sequence of length k + 1
+		int[] tails = new int[indexes.length];
+		int[] predecessors = new int[indexes.length];
+		int length = 0;
+		for (int i = 0; i < indexes.length; i++) {
+			int index = indexes[i];
+			if (index < 0) {
+				continue;
+			}
+			int low = 0;
+			int high = length;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (indexes[tails[middle]] < index) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			predecessors[i] = low > 0 ? tails[low - 1] : -1;
+			tails[low] = i;
+			if (low == length) {
+				length++;
+			}
+		}
+		boolean[] kept = new boolean[indexes.length];
+		if (length > 0) {
+			for (int i = tails[length - 1]; i >= 0; i = predecessors[i]) {
+				kept[i] = true;
+			}
+		}
+		return kept;
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2013 IBM Corporation and others.
+ * Copyright (c) 2000, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,8 +13,10 @@ package org.eclipse.jface.viewers;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IStatus;
@@ -59,11 +61,10 @@ import org.eclipse.swt.widgets.Widget;
 public abstract class StructuredViewer extends ContentViewer implements IPostSelectionProvider {
 
 	/**
-	 * A map from the viewer's model elements to SWT widgets. (key type:
-	 * <code>Object</code>, value type: <code>Widget</code>, or <code>Widget[]</code>).
+	 * A map from the viewer's model elements to the SWT widgets showing them.
 	 * <code>null</code> means that the element map is disabled.
 	 */
-	private CustomHashtable elementMap;
+	private ElementMap elementMap;
 
 	/**
 	 * The comparer to use for comparing elements, or <code>null</code> to use
@@ -151,6 +152,45 @@ public abstract class StructuredViewer extends ContentViewer implements IPostSel
 	 */
 	private static Widget[] NO_WIDGETS = new Widget[0];
 
+	/**
+	 * Whether the root elements are filtered and sorted in background threads.
+	 * 
+	 * @see #setBackgroundFiltering(boolean)
+	 */
+	private boolean backgroundFiltering;
+
+	/**
+	 * The refresh filtering and sorting the root elements in background
+	 * threads, <code>null</code> if there is none.
+	 */
+	private BackgroundRefresh pendingRefresh;
+
+	/**
+	 * The sorted and filtered root elements computed by a background refresh,
+	 * set while the refresh is applied.
+	 */
+	private Object[] backgroundChildren;
+
+	/**
+	 * The number of times a background refresh is restarted because the model
+	 * changed while it ran, before the viewer is refreshed synchronously.
+	 */
+	private static final int MAX_BACKGROUND_RESTARTS = 3;
+
+	/**
+	 * The time budget of the slices creating the items, in milliseconds, 0 if
+	 * the items are created at once.
+	 * 
+	 * @see #setPopulationTimeSlice(int)
+	 */
+	private int populationTimeSlice;
+
+	/**
+	 * The items being created in time slices, <code>null</code> if there are
+	 * none.
+	 */
+	private IncrementalPopulation population;
+
 	/**
 	 * The ColorAndFontCollector is a helper class for viewers
 	 * that have color and font support ad optionally decorators.
@@ -762,6 +802,14 @@ public abstract class StructuredViewer extends ContentViewer implements IPostSel
 	 * @return the corresponding widget, or <code>null</code> if none
 	 */
 	protected final Widget findItem(Object element) {
+		if (usingElementMap()) {
+			Widget result = doFindInputItem(element);
+			if (result != null) {
+				return result;
+			}
+			// avoid allocating an array for the common single widget case
+			return elementMap.getItem(element);
+		}
 		Widget[] result = findItems(element);
 		return result.length == 0 ? null : result[0];
 	}
@@ -798,14 +846,7 @@ public abstract class StructuredViewer extends ContentViewer implements IPostSel
 		}
 		// if we have an element map use it, otherwise search for the item.
 		if (usingElementMap()) {
-			Object widgetOrWidgets = elementMap.get(element);
-			if (widgetOrWidgets==null) {
-				return NO_WIDGETS;
-			} else if (widgetOrWidgets instanceof Widget) {
-				return new Widget[] {(Widget) widgetOrWidgets};
-			} else {
-				return (Widget[])widgetOrWidgets;
-			}
+			return elementMap.getItems(element);
 		}
 		result = doFindItem(element);
 		return result == null ? NO_WIDGETS : new Widget[] { result };
@@ -1054,6 +1095,9 @@ public abstract class StructuredViewer extends ContentViewer implements IPostSel
 	 * @return a sorted and filtered array of child elements
 	 */
 	protected Object[] getSortedChildren(Object parent) {
+		if (backgroundChildren != null && parent == getRoot()) {
+			return backgroundChildren;
+		}
 		Object[] result = getFilteredChildren(parent);
 		if (sorter != null) {
 			// be sure we're not modifying the original array from the model
@@ -1306,25 +1350,7 @@ public abstract class StructuredViewer extends ContentViewer implements IPostSel
 	 */
 	protected void mapElement(Object element, Widget item) {
 		if (elementMap != null) {
-			Object widgetOrWidgets = elementMap.get(element);
-			if (widgetOrWidgets == null) {
-				elementMap.put(element, item);
-			} else if (widgetOrWidgets instanceof Widget) {
-				if (widgetOrWidgets != item) {
-					elementMap.put(element, new Widget[] {
-							(Widget) widgetOrWidgets, item });
-				}
-			} else {
-				Widget[] widgets = (Widget[]) widgetOrWidgets;
-				int indexOfItem = Arrays.asList(widgets).indexOf(item);
-				if (indexOfItem == -1) {
-					int length = widgets.length;
-					System.arraycopy(widgets, 0,
-							widgets = new Widget[length + 1], 0, length);
-					widgets[length] = item;
-					elementMap.put(element, widgets);
-				}
-			}
+			elementMap.add(element, item);
 		}
 	}
 
@@ -1494,6 +1520,9 @@ public abstract class StructuredViewer extends ContentViewer implements IPostSel
 	 *            the element
 	 */
 	public void refresh(final Object element) {
+		if (refreshInBackground(element, true)) {
+			return;
+		}
 		preservingSelection(new Runnable() {
 			@Override
 			public void run() {
@@ -1522,6 +1551,9 @@ public abstract class StructuredViewer extends ContentViewer implements IPostSel
 	 * @since 2.0
 	 */
 	public void refresh(final Object element, final boolean updateLabels) {
+		if (refreshInBackground(element, updateLabels)) {
+			return;
+		}
 		preservingSelection(new Runnable() {
 			@Override
 			public void run() {
@@ -1530,6 +1562,360 @@ public abstract class StructuredViewer extends ContentViewer implements IPostSel
 		});
 	}
 
+	/**
+	 * Sets whether the root elements of this viewer are filtered and sorted
+	 * in background threads when it is refreshed.
+	 * <p>
+	 * When background filtering is enabled and all the filters of this viewer
+	 * are thread safe, refreshing the root element gets the elements from the
+	 * content provider on the UI thread, then filters them in parallel in
+	 * background threads. The comparator sorts them in a background thread
+	 * too if it is thread safe, otherwise on the UI thread. The viewer shows
+	 * its previous contents meanwhile; the items are updated on the UI thread
+	 * once the elements are filtered and sorted. A refresh in progress is
+	 * cancelled by the next refresh, for example when the input or the filters
+	 * change, and is started again if the content provider returns other
+	 * elements by the time it completes.
+	 * </p>
+	 * <p>
+	 * Background filtering is disabled by default. It is not supported by
+	 * tree viewers, nor when a filter is not thread safe.
+	 * </p>
+	 * 
+	 * @param backgroundFiltering
+	 *            <code>true</code> to filter and sort the root elements in
+	 *            background threads, <code>false</code> to do it on the UI
+	 *            thread
+	 * @see ViewerFilter#isThreadSafe()
+	 * @see ViewerComparator#isThreadSafe()
+	 * @since 3.10
+	 */
+	public void setBackgroundFiltering(boolean backgroundFiltering) {
+		this.backgroundFiltering = backgroundFiltering;
+		if (!backgroundFiltering) {
+			cancelBackgroundRefresh();
+		}
+	}
+
+	/**
+	 * Returns whether the root elements of this viewer are filtered and sorted
+	 * in background threads.
+	 * 
+	 * @return <code>true</code> if background filtering is enabled
+	 * @see #setBackgroundFiltering(boolean)
+	 * @since 3.10
+	 */
+	public boolean isBackgroundFiltering() {
+		return backgroundFiltering;
+	}
+
+	/**
+	 * Returns whether this viewer can filter and sort its root elements in
+	 * background threads. Viewers which do not get their root elements from
+	 * {@link #getSortedChildren(Object)} return <code>false</code>.
+	 * 
+	 * @return <code>true</code> if background filtering is supported
+	 */
+	boolean isBackgroundFilteringSupported() {
+		return true;
+	}
+
+	/**
+	 * Cancels the background refresh in progress, if any.
+	 */
+	void cancelBackgroundRefresh() {
+		if (pendingRefresh != null) {
+			pendingRefresh.cancel();
+			pendingRefresh = null;
+		}
+	}
+
+	/**
+	 * Cancels the background refresh in progress, and starts a new one if the
+	 * given element is the root and background filtering applies.
+	 * 
+	 * @return <code>true</code> if the refresh was started, <code>false</code>
+	 *         if the viewer must be refreshed synchronously
+	 */
+	private boolean refreshInBackground(Object element, boolean updateLabels) {
+		return refreshInBackground(element, updateLabels, 0);
+	}
+
+	/**
+	 * Cancels the background refresh in progress, and starts a new one if the
+	 * given element is the root and background filtering applies.
+	 * 
+	 * @param restarts
+	 *            the number of background refreshes restarted before
+	 * @return <code>true</code> if the refresh was started, <code>false</code>
+	 *         if the viewer must be refreshed synchronously
+	 */
+	private boolean refreshInBackground(Object element, boolean updateLabels,
+			int restarts) {
+		cancelBackgroundRefresh();
+		if (!backgroundFiltering || element == null || element != getRoot()
+				|| !isBackgroundFilteringSupported()) {
+			return false;
+		}
+		Control control = getControl();
+		if (control == null || control.isDisposed()) {
+			return false;
+		}
+		ViewerFilter[] viewerFilters = getFilters();
+		for (int i = 0; i < viewerFilters.length; i++) {
+			if (!viewerFilters[i].isThreadSafe()) {
+				return false;
+			}
+		}
+		ViewerComparator comparator = sorter != null && sorter.isThreadSafe() ? sorter
+				: null;
+		if (viewerFilters.length == 0 && comparator == null) {
+			return false;
+		}
+		// the elements may come from the model's internal state
+		Object[] rawChildren = getRawChildren(element).clone();
+		pendingRefresh = new BackgroundRefresh(this, element, rawChildren,
+				viewerFilters, comparator, updateLabels, restarts);
+		pendingRefresh.start();
+		return true;
+	}
+
+	/**
+	 * Refreshes the viewer with the elements filtered and sorted by the given
+	 * background refresh, unless it was cancelled. Called on the UI thread.
+	 * 
+	 * @param refresh
+	 *            the completed background refresh
+	 */
+	void applyBackgroundRefresh(final BackgroundRefresh refresh) {
+		if (refresh != pendingRefresh || refresh.isCancelled()) {
+			return;
+		}
+		pendingRefresh = null;
+		Control control = getControl();
+		if (control == null || control.isDisposed()
+				|| refresh.root != getRoot()) {
+			return;
+		}
+		if (refresh.isFailed()) {
+			// filter and sort on the UI thread to report the failure of a
+			// filter or comparator as usual
+			refreshSynchronously(refresh.root, refresh.updateLabels);
+			return;
+		}
+		Object[] rawChildren = getRawChildren(refresh.root);
+		Object[] result = refresh.getResult();
+		if (!isSame(rawChildren, refresh.rawChildren)) {
+			if (!isEqual(rawChildren, refresh.rawChildren)) {
+				// the model changed while the elements were filtered
+				if (refresh.restarts >= MAX_BACKGROUND_RESTARTS
+						|| !refreshInBackground(refresh.root,
+								refresh.updateLabels, refresh.restarts + 1)) {
+					refreshSynchronously(refresh.root, refresh.updateLabels);
+				}
+				return;
+			}
+			// the content provider returned new instances of the elements
+			result = getCurrentElements(result, refresh.rawChildren,
+					rawChildren);
+		}
+		if (associateListener != null && result.length != rawChildren.length) {
+			notifyFilteredOut(rawChildren, result);
+		}
+		if (sorter != null && !refresh.isSorted()) {
+			sorter.sort(this, result);
+		}
+		backgroundChildren = result;
+		try {
+			preservingSelection(new Runnable() {
+				@Override
+				public void run() {
+					internalRefresh(refresh.root, refresh.updateLabels);
+				}
+			});
+		} finally {
+			backgroundChildren = null;
+		}
+	}
+
+	/**
+	 * Refreshes the viewer starting with the given element on the UI thread,
+	 * without starting a background refresh.
+	 */
+	private void refreshSynchronously(final Object element,
+			final boolean updateLabels) {
+		preservingSelection(new Runnable() {
+			@Override
+			public void run() {
+				internalRefresh(element, updateLabels);
+			}
+		});
+	}
+
+	private boolean isEqual(Object[] elements, Object[] otherElements) {
+		if (elements.length != otherElements.length) {
+			return false;
+		}
+		for (int i = 0; i < elements.length; i++) {
+			if (!equals(elements[i], otherElements[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the given filtered elements, replaced by the current instances
+	 * of the equal raw elements.
+	 * 
+	 * @param result
+	 *            the filtered elements, taken from the old raw elements
+	 * @param oldElements
+	 *            the raw elements filtered
+	 * @param elements
+	 *            the current raw elements, equal to the old ones
+	 * @return the current filtered elements
+	 */
+	private static Object[] getCurrentElements(Object[] result,
+			Object[] oldElements, Object[] elements) {
+		Map indices = new IdentityHashMap(oldElements.length);
+		for (int i = 0; i < oldElements.length; i++) {
+			indices.put(oldElements[i], Integer.valueOf(i));
+		}
+		Object[] current = new Object[result.length];
+		for (int i = 0; i < result.length; i++) {
+			current[i] = elements[((Integer) indices.get(result[i])).intValue()];
+		}
+		return current;
+	}
+
+	private static boolean isSame(Object[] elements, Object[] otherElements) {
+		if (elements.length != otherElements.length) {
+			return false;
+		}
+		for (int i = 0; i < elements.length; i++) {
+			if (elements[i] != otherElements[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Sets the time budget of the slices creating the items of this viewer
+	 * when it is populated with many elements.
+	 * <p>
+	 * When the time slice is positive, the items of the elements shown when
+	 * the input is set or the viewer is refreshed are created in time slices:
+	 * the items are created until the time slice is spent, then the remaining
+	 * items are created by the following slices, run with
+	 * <code>Display.asyncExec</code> so the viewer keeps painting and
+	 * handling user input meanwhile. The items are created and mapped to their
+	 * elements as usual, so the elements whose items are not created yet are
+	 * not found until they are. A refresh cancels the creation of the items it
+	 * replaces; other changes to the viewer, such as adding, removing or
+	 * selecting elements not shown yet, create the remaining items first.
+	 * </p>
+	 * <p>
+	 * The items are created at once by default. Virtual viewers create their
+	 * items when they become visible and ignore the time slice.
+	 * </p>
+	 * 
+	 * @param milliseconds
+	 *            the time budget of every slice, in milliseconds, or 0 to
+	 *            create the items at once
+	 * @since 3.10
+	 */
+	public void setPopulationTimeSlice(int milliseconds) {
+		Assert.isTrue(milliseconds >= 0);
+		populationTimeSlice = milliseconds;
+		if (milliseconds == 0) {
+			finishPopulation();
+		}
+	}
+
+	/**
+	 * Returns the time budget of the slices creating the items of this viewer.
+	 * 
+	 * @return the time budget of every slice, in milliseconds, or 0 if the
+	 *         items are created at once
+	 * @see #setPopulationTimeSlice(int)
+	 * @since 3.10
+	 */
+	public int getPopulationTimeSlice() {
+		return populationTimeSlice;
+	}
+
+	/**
+	 * Runs the given task creating items, at once or in time slices.
+	 * 
+	 * @param task
+	 *            the task
+	 */
+	void populate(IncrementalPopulation.Task task) {
+		if (population == null) {
+			if (populationTimeSlice == 0) {
+				task.populateAll();
+				return;
+			}
+			population = new IncrementalPopulation(this, populationTimeSlice);
+		}
+		population.start(task);
+		if (population.isDone()) {
+			population = null;
+		}
+	}
+
+	/**
+	 * Returns whether the given population is the one in progress.
+	 */
+	boolean isPopulating(IncrementalPopulation incrementalPopulation) {
+		if (population != incrementalPopulation) {
+			return false;
+		}
+		if (population.isDone()) {
+			population = null;
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether items are being created in time slices.
+	 * 
+	 * @return <code>true</code> if some items are not created yet
+	 */
+	boolean isPopulating() {
+		return population != null && !population.isDone();
+	}
+
+	/**
+	 * Creates the items not created yet, if any.
+	 */
+	void finishPopulation() {
+		if (population != null) {
+			IncrementalPopulation remaining = population;
+			population = null;
+			remaining.finish();
+		}
+	}
+
+	/**
+	 * Stops creating the items under the given widget, or all the items.
+	 * 
+	 * @param parent
+	 *            the widget whose items are refreshed, or <code>null</code>
+	 *            if all the items are
+	 */
+	void cancelPopulation(Widget parent) {
+		if (population != null) {
+			population.cancel(parent);
+			if (parent == null || population.isDone()) {
+				population = null;
+			}
+		}
+	}
+
 	/**
 	 * 
 	 * Refreshes the given item with the given element. Calls
@@ -1804,7 +2190,7 @@ public abstract class StructuredViewer extends ContentViewer implements IPostSel
 		Assert.isTrue(getInput() == null,
 				"Can only enable the hash look up before input has been set");//$NON-NLS-1$
 		if (enable) {
-			elementMap = newHashtable(CustomHashtable.DEFAULT_CAPACITY);
+			elementMap = new ElementMap(getComparer());
 		} else {
 			elementMap = null;
 		}
@@ -1822,7 +2208,7 @@ public abstract class StructuredViewer extends ContentViewer implements IPostSel
 	public void setComparer(IElementComparer comparer) {
 		this.comparer = comparer;
 		if (elementMap != null) {
-			elementMap = new CustomHashtable(elementMap, comparer);
+			elementMap = new ElementMap(elementMap, comparer);
 		}
 	}
 
@@ -1891,7 +2277,7 @@ public abstract class StructuredViewer extends ContentViewer implements IPostSel
 	 */
 	protected void unmapAllElements() {
 		if (elementMap != null) {
-			elementMap = newHashtable(CustomHashtable.DEFAULT_CAPACITY);
+			elementMap = new ElementMap(getComparer());
 		}
 	}
 
@@ -1931,36 +2317,7 @@ public abstract class StructuredViewer extends ContentViewer implements IPostSel
 		// double-check that the element actually maps to the given item before
 		// unmapping it
 		if (elementMap != null) {
-			Object widgetOrWidgets = elementMap.get(element);
-			if (widgetOrWidgets == null) {
-				// item was not mapped, return
-				return;
-			} else if (widgetOrWidgets instanceof Widget) {
-				if (item == widgetOrWidgets) {
-					elementMap.remove(element);
-				}
-			} else {
-				Widget[] widgets = (Widget[]) widgetOrWidgets;
-				int indexOfItem = Arrays.asList(widgets).indexOf(item);
-				if (indexOfItem == -1) {
-					return;
-				}
-				int length = widgets.length;
-				if (indexOfItem == 0) {
-					if(length == 1) {
-						elementMap.remove(element);
-					} else {
-						Widget[] updatedWidgets = new Widget[length - 1];
-						System.arraycopy(widgets, 1, updatedWidgets, 0, length -1 );
-						elementMap.put(element, updatedWidgets);
-					}
-				} else {
-					Widget[] updatedWidgets = new Widget[length - 1];
-					System.arraycopy(widgets, 0, updatedWidgets, 0, indexOfItem);
-					System.arraycopy(widgets, indexOfItem + 1, updatedWidgets, indexOfItem, length - indexOfItem - 1);
-					elementMap.put(element, updatedWidgets);
-				}
-			}
+			elementMap.remove(element, item);
 		}
 	}
 
@@ -2308,11 +2665,13 @@ public abstract class StructuredViewer extends ContentViewer implements IPostSel
 	@Override
 	protected void handleDispose(DisposeEvent event) {
 		super.handleDispose(event);
+		cancelBackgroundRefresh();
+		cancelPopulation(null);
 		sorter = null;
 		comparer = null;
 		if (filters != null)
 			filters.clear();
-		elementMap = newHashtable(1);
+		elementMap = new ElementMap(comparer);
 		openListeners.clear();
 		doubleClickListeners.clear();
 		colorAndFontCollector.clear();
@@ -362,6 +362,7 @@ public class TableViewer extends AbstractTableViewer {
 		if (checkBusy())
 			return;
 
+		cancelBackgroundRefresh();
 		if (isCellEditorActive()) {
 			cancelEditing();
 		}
@@ -96,6 +96,18 @@ public class TreeViewer extends AbstractTreeViewer {
 	 */
 	private boolean insidePreservingSelection;
 
+	/**
+	 * true if the expansion of the items of a lazy tree is deferred until they
+	 * are materialized
+	 */
+	private boolean deferredExpansion;
+
+	/**
+	 * The expanded state of the items not materialized yet, or
+	 * <code>null</code> if no expansion is deferred.
+	 */
+	private ExpansionState expansionState;
+
 	/**
 	 * Creates a tree viewer on a newly-created tree control under the given
 	 * parent. The tree control is created using the SWT style bits
@@ -299,6 +311,7 @@ public class TreeViewer extends AbstractTreeViewer {
 	@Override
 	protected void setExpanded(Item node, boolean expand) {
 		((TreeItem) node).setExpanded(expand);
+		recordExpandedState(node, expand);
 		if (contentProviderIsLazy) {
 			// force repaints to happen
 			getControl().update();
@@ -781,8 +794,13 @@ public class TreeViewer extends AbstractTreeViewer {
 
 	@Override
 	protected void internalInitializeTree(Control widget) {
+		expansionState = null;
 		if (contentProviderIsLazy) {
 			if (widget instanceof Tree && widget.getData() != null) {
+				if (isExpansionDeferred() && getAutoExpandLevel() != 0) {
+					getExpansionState().expandToLevel(TreePath.EMPTY,
+							getAutoExpandLevel());
+				}
 				virtualLazyUpdateChildCount(widget, 0);
 				return;
 			}
@@ -895,6 +913,7 @@ public class TreeViewer extends AbstractTreeViewer {
 					// count
 					virtualLazyUpdateChildCount(event.item, children.length);
 				}
+				recordExpandedState((Item) event.item, true);
 				fireTreeExpanded(new TreeExpansionEvent(this, event.item
 						.getData()));
 			}
@@ -910,7 +929,7 @@ public class TreeViewer extends AbstractTreeViewer {
 		if( isCellEditorActive() ) {
 			applyEditorValue();
 		}
-		
+		recordExpandedState((Item) event.item, false);
 		super.handleTreeCollapse(event);
 	}
 
@@ -919,6 +938,7 @@ public class TreeViewer extends AbstractTreeViewer {
 		contentProviderIsLazy = (provider instanceof ILazyTreeContentProvider)
 				|| (provider instanceof ILazyTreePathContentProvider);
 		contentProviderIsTreeBased = provider instanceof ILazyTreePathContentProvider;
+		expansionState = null;
 		super.setContentProvider(provider);
 	}
 
@@ -1001,6 +1021,9 @@ public class TreeViewer extends AbstractTreeViewer {
 				((ILazyTreeContentProvider) getContentProvider()).updateElement(
 						widget.getData(), index);
 			}
+			if (expansionState != null && !expansionState.isEmpty()) {
+				virtualExpandMaterializedItem(widget, index);
+			}
 		} finally {
 			setBusy(oldBusy);
 		}
@@ -1093,6 +1116,173 @@ public class TreeViewer extends AbstractTreeViewer {
 		super.setSelection(selection, reveal);
 	}
 
+	/**
+	 * Sets whether expanding the nodes of a tree with the {@link SWT#VIRTUAL}
+	 * style bit and a lazy content provider is deferred until their items are
+	 * materialized.
+	 * <p>
+	 * By default, {@link #expandToLevel(Object, int)} and {@link #expandAll()}
+	 * materialize and expand every item of the subtree at once, asking the
+	 * content provider for every element of the subtree. When expansion is
+	 * deferred, they only record the levels the subtrees are expanded to, and
+	 * expand the items already materialized; the other items are expanded when
+	 * they are materialized, that is when they become visible. The levels are
+	 * recorded by the tree paths of the roots of the subtrees, so expanding a
+	 * large tree takes little memory, and they are forgotten when the input
+	 * or the content provider changes. The automatic expansion level is
+	 * honored when expansion is deferred.
+	 * </p>
+	 * <p>
+	 * As the items of the subtree are not all materialized,
+	 * {@link #getExpandedElements()} and {@link #getExpandedTreePaths()} only
+	 * return the elements of the materialized items.
+	 * </p>
+	 * <p>
+	 * Deferred expansion is disabled by default. It has no effect unless the
+	 * content provider is an {@link ILazyTreeContentProvider} or an
+	 * {@link ILazyTreePathContentProvider}.
+	 * </p>
+	 *
+	 * @param deferredExpansion
+	 *            <code>true</code> to expand the items when they are
+	 *            materialized, <code>false</code> to materialize and expand
+	 *            them at once
+	 * @see #setAutoExpandLevel(int)
+	 * @since 3.10
+	 */
+	public void setDeferredExpansion(boolean deferredExpansion) {
+		this.deferredExpansion = deferredExpansion;
+		if (!deferredExpansion) {
+			expansionState = null;
+		}
+	}
+
+	/**
+	 * Returns whether expanding the nodes of a tree with a lazy content
+	 * provider is deferred until their items are materialized.
+	 *
+	 * @return <code>true</code> if expansion is deferred
+	 * @see #setDeferredExpansion(boolean)
+	 * @since 3.10
+	 */
+	public boolean isDeferredExpansion() {
+		return deferredExpansion;
+	}
+
+	private boolean isExpansionDeferred() {
+		return deferredExpansion && contentProviderIsLazy;
+	}
+
+	private ExpansionState getExpansionState() {
+		if (expansionState == null) {
+			expansionState = new ExpansionState(getComparer());
+		}
+		return expansionState;
+	}
+
+	@Override
+	protected void internalExpandToLevel(Widget widget, int level) {
+		if (!isExpansionDeferred()) {
+			super.internalExpandToLevel(widget, level);
+			return;
+		}
+		if (level == 0) {
+			return;
+		}
+		TreePath path = TreePath.EMPTY;
+		if (widget instanceof TreeItem) {
+			TreeItem item = (TreeItem) widget;
+			virtualMaterializeItem(item);
+			if (item.getData() == null) {
+				// give up because the item is still not materialized
+				return;
+			}
+			path = getTreePathFromItem(item);
+		}
+		getExpansionState().expandToLevel(path, level);
+		if (widget instanceof TreeItem) {
+			virtualExpand((TreeItem) widget);
+			((TreeItem) widget).clearAll(true);
+		} else {
+			((Tree) widget).clearAll(true);
+		}
+		// the materialized items are expanded when they are updated again,
+		// the others when they become visible
+	}
+
+	@Override
+	protected void internalCollapseToLevel(Widget widget, int level) {
+		if (expansionState != null && level == ALL_LEVELS) {
+			if (widget instanceof Tree) {
+				expansionState = null;
+			} else if (widget.getData() != null) {
+				expansionState.removeSubtree(getTreePathFromItem((Item) widget));
+			}
+		}
+		super.internalCollapseToLevel(widget, level);
+	}
+
+	/**
+	 * Records the expanded state of the given item if the state of items not
+	 * materialized yet depends on it.
+	 *
+	 * @param item
+	 * @param expanded
+	 */
+	private void recordExpandedState(Item item, boolean expanded) {
+		if (expansionState != null && !expansionState.isEmpty()
+				&& item.getData() != null) {
+			expansionState.setExpanded(getTreePathFromItem(item), expanded);
+		}
+	}
+
+	/**
+	 * Expands the item just materialized at the given index if its expansion
+	 * was deferred.
+	 *
+	 * @param parent
+	 * @param index
+	 */
+	private void virtualExpandMaterializedItem(Widget parent, int index) {
+		TreeItem item;
+		if (parent instanceof Tree) {
+			Tree parentTree = (Tree) parent;
+			if (index >= parentTree.getItemCount()) {
+				return;
+			}
+			item = parentTree.getItem(index);
+		} else {
+			TreeItem parentItem = (TreeItem) parent;
+			if (index >= parentItem.getItemCount()) {
+				return;
+			}
+			item = parentItem.getItem(index);
+		}
+		if (item.getData() != null && !item.getExpanded()
+				&& expansionState.isExpanded(getTreePathFromItem(item))) {
+			virtualExpand(item);
+		}
+	}
+
+	/**
+	 * Expands the given materialized item without materializing its
+	 * children.
+	 *
+	 * @param item
+	 */
+	private void virtualExpand(TreeItem item) {
+		if (item.getExpanded()) {
+			return;
+		}
+		if (item.getItemCount() == 1 && item.getItem(0).getData() == null) {
+			// we have a dummy child node, ask for an updated child count
+			virtualLazyUpdateChildCount(item, 1);
+		}
+		if (item.getItemCount() > 0) {
+			item.setExpanded(true);
+		}
+	}
+
 	@Override
 	public void editElement(Object element, int column) {
 		if( element instanceof TreePath ) {
@@ -12,6 +12,8 @@
 
 package org.eclipse.jface.viewers;
 
+import java.text.CollationKey;
+import java.text.Collator;
 import java.util.Arrays;
 import java.util.Comparator;
 
@@ -48,6 +50,31 @@ public class ViewerComparator {
 	 */
 	private Comparator comparator;
 
+	/**
+	 * Whether the class of this comparator inherits the default
+	 * <code>compare</code> method, <code>null</code> until it is known.
+	 */
+	private Boolean defaultCompare;
+
+	/**
+	 * The category and label of an element, extracted once when sorting with
+	 * the default <code>compare</code> method.
+	 */
+	private static final class SortKey {
+		final Object element;
+		final int category;
+		final String label;
+		final CollationKey collationKey;
+
+		SortKey(Object element, int category, String label,
+				CollationKey collationKey) {
+			this.element = element;
+			this.category = category;
+			this.label = label;
+			this.collationKey = collationKey;
+		}
+	}
+
 	/**
      * Creates a new {@link ViewerComparator}, which uses the default comparator
      * to sort strings.
@@ -170,12 +197,37 @@ public class ViewerComparator {
         return false;
     }
 
+    /**
+     * Returns whether this comparator may sort elements from a background
+     * thread, concurrently with the UI thread. The root elements of a viewer
+     * with background filtering enabled are sorted in a background thread
+     * when its comparator is thread safe, see
+     * {@link StructuredViewer#setBackgroundFiltering(boolean)}.
+     * <p>
+     * The default implementation of this method returns <code>false</code>,
+     * as the default <code>compare</code> method asks the label provider of
+     * the viewer for the labels of the elements. Subclasses may reimplement.
+     * </p>
+     *
+     * @return <code>true</code> if <code>sort</code> may be called from a
+     *    background thread, <code>false</code> otherwise
+     * @since 3.10
+     */
+    public boolean isThreadSafe() {
+        return false;
+    }
+
     /**
      * Sorts the given elements in-place, modifying the given array.
      * <p>
      * The default implementation of this method uses the 
      * java.util.Arrays#sort algorithm on the given array, 
-     * calling <code>compare</code> to compare elements.
+     * calling <code>compare</code> to compare elements. If the
+     * <code>compare</code> method is not overridden, the category and the
+     * label of every element are computed once instead, and the elements are
+     * sorted on them; when the comparator used to sort strings is a
+     * {@link Collator}, the labels are compared through their
+     * {@link CollationKey}s.
      * </p>
      * <p>
      * Subclasses may reimplement this method to provide a more optimized implementation.
@@ -186,6 +238,10 @@ public class ViewerComparator {
      */
 	public void sort(final Viewer viewer, Object[] elements) {
 		try {
+			if (elements.length > 1 && isDefaultCompare()) {
+				sortByKeys(viewer, elements);
+				return;
+			}
 			Arrays.sort(elements, new Comparator() {
 				@Override
 				public int compare(Object a, Object b) {
@@ -205,4 +261,52 @@ public class ViewerComparator {
 			throw e;
 		}
 	}
+
+	private boolean isDefaultCompare() {
+		if (defaultCompare == null) {
+			try {
+				defaultCompare = Boolean.valueOf(getClass().getMethod(
+						"compare", //$NON-NLS-1$
+						new Class[] { Viewer.class, Object.class, Object.class })
+						.getDeclaringClass() == ViewerComparator.class);
+			} catch (NoSuchMethodException e) {
+				defaultCompare = Boolean.FALSE;
+			} catch (SecurityException e) {
+				defaultCompare = Boolean.FALSE;
+			}
+		}
+		return defaultCompare.booleanValue();
+	}
+
+	/**
+	 * Sorts the elements like the default <code>compare</code> method would,
+	 * computing the category and label of every element once.
+	 */
+	private void sortByKeys(Viewer viewer, Object[] elements) {
+		final Comparator stringComparator = getComparator();
+		Collator collator = stringComparator instanceof Collator ? (Collator) stringComparator
+				: null;
+		SortKey[] keys = new SortKey[elements.length];
+		for (int i = 0; i < elements.length; i++) {
+			Object element = elements[i];
+			String label = getLabel(viewer, element);
+			keys[i] = new SortKey(element, category(element), label,
+					collator == null ? null : collator.getCollationKey(label));
+		}
+		Arrays.sort(keys, new Comparator<SortKey>() {
+			@Override
+			public int compare(SortKey key1, SortKey key2) {
+				if (key1.category != key2.category) {
+					return key1.category - key2.category;
+				}
+				if (key1.collationKey != null) {
+					return key1.collationKey.compareTo(key2.collationKey);
+				}
+				return stringComparator.compare(key1.label, key2.label);
+			}
+		});
+		for (int i = 0; i < keys.length; i++) {
+			elements[i] = keys[i].element;
+		}
+	}
 }
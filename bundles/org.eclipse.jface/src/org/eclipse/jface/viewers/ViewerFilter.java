@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2006 IBM Corporation and others.
+ * Copyright (c) 2000, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -90,6 +90,28 @@ public abstract class ViewerFilter {
         return false;
     }
 
+    /**
+     * Returns whether this filter may select elements from background
+     * threads, concurrently with the UI thread and with itself. The filters
+     * of a viewer with background filtering enabled run in background threads
+     * when they are all thread safe, see
+     * {@link StructuredViewer#setBackgroundFiltering(boolean)}.
+     * <p>
+     * The default implementation of this method returns <code>false</code>.
+     * Subclasses whose <code>select</code> and <code>filter</code> methods
+     * neither access widgets nor modify shared state may reimplement it to
+     * return <code>true</code>.
+     * </p>
+     *
+     * @return <code>true</code> if <code>select</code> and <code>filter</code>
+     *    may be called from several threads at once, <code>false</code>
+     *    otherwise
+     * @since 3.10
+     */
+    public boolean isThreadSafe() {
+        return false;
+    }
+
     /**
      * Returns whether the given element makes it through this filter.
      *
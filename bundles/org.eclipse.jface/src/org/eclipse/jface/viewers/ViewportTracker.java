@@ -0,0 +1,288 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.jface.viewers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Scrollable;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.Tree;
+import org.eclipse.swt.widgets.TreeItem;
+
+/**
+ * Reports the elements a table or tree viewer shows to a viewport label
+ * decorator, so it decorates them first.
+ * <p>
+ * The viewport is computed once the control was painted, since scrolling,
+ * resizing, expanding and collapsing all paint it, at most once for the paint
+ * events processed together. It is reported to the decorator when it changed:
+ * the elements of the visible rows, and as elements about to be scrolled into
+ * view, the elements of a page of rows above and below them.
+ * </p>
+ */
+/* package */final class ViewportTracker implements Listener, Runnable {
+
+	private static final Object[] NO_ELEMENTS = new Object[0];
+
+	private final ColumnViewer viewer;
+
+	private final IViewportLabelDecorator decorator;
+
+	private Object[] visibleElements = NO_ELEMENTS;
+
+	private Object[] nearElements = NO_ELEMENTS;
+
+	private boolean scheduled;
+
+	private boolean disposed;
+
+	/**
+	 * Starts tracking the viewport of the given viewer.
+	 *
+	 * @param viewer
+	 *            the viewer, whose control is a table or a tree
+	 * @param decorator
+	 *            the decorator the viewport is reported to
+	 */
+	ViewportTracker(ColumnViewer viewer, IViewportLabelDecorator decorator) {
+		this.viewer = viewer;
+		this.decorator = decorator;
+		Control control = viewer.getControl();
+		control.addListener(SWT.Paint, this);
+		control.addListener(SWT.Dispose, this);
+	}
+
+	/**
+	 * Returns whether the viewport of the given viewer can be tracked.
+	 *
+	 * @param viewer
+	 *            the viewer
+	 * @return <code>true</code> if the control of the viewer is a table or a
+	 *         tree
+	 */
+	static boolean canTrack(ColumnViewer viewer) {
+		Control control = viewer.getControl();
+		return control instanceof Table || control instanceof Tree;
+	}
+
+	/**
+	 * Stops tracking the viewport and tells the decorator to forget it.
+	 */
+	void dispose() {
+		if (disposed) {
+			return;
+		}
+		disposed = true;
+		Control control = viewer.getControl();
+		if (control != null && !control.isDisposed()) {
+			control.removeListener(SWT.Paint, this);
+			control.removeListener(SWT.Dispose, this);
+		}
+		decorator.clearViewport(viewer);
+	}
+
+	@Override
+	public void handleEvent(Event event) {
+		if (event.type == SWT.Dispose) {
+			dispose();
+		} else if (!scheduled) {
+			scheduled = true;
+			event.display.asyncExec(this);
+		}
+	}
+
+	@Override
+	public void run() {
+		scheduled = false;
+		Control control = viewer.getControl();
+		if (disposed || control == null || control.isDisposed()) {
+			return;
+		}
+		List visible = new ArrayList();
+		List near = new ArrayList();
+		if (control instanceof Table) {
+			collectTableElements((Table) control, visible, near);
+		} else {
+			collectTreeElements((Tree) control, visible, near);
+		}
+		Object[] newVisibleElements = visible.toArray();
+		Object[] newNearElements = near.toArray();
+		if (Arrays.equals(newVisibleElements, visibleElements)
+				&& Arrays.equals(newNearElements, nearElements)) {
+			return;
+		}
+		visibleElements = newVisibleElements;
+		nearElements = newNearElements;
+		decorator.setViewport(viewer, visibleElements, nearElements);
+	}
+
+	/**
+	 * Returns the number of rows of a page of the given control.
+	 */
+	private static int getPageSize(Scrollable control, int itemHeight) {
+		return control.getClientArea().height / Math.max(itemHeight, 1) + 1;
+	}
+
+	private static void collectTableElements(Table table, List visible,
+			List near) {
+		int count = table.getItemCount();
+		int top = table.getTopIndex();
+		int rows = getPageSize(table, table.getItemHeight());
+		for (int i = top; i < count && i < top + 2 * rows; i++) {
+			addElement(i < top + rows ? visible : near, table.getItem(i)
+					.getData());
+		}
+		for (int i = top; --i >= 0 && i >= top - rows;) {
+			addElement(near, table.getItem(i).getData());
+		}
+	}
+
+	private static void collectTreeElements(Tree tree, List visible, List near) {
+		TreeItem top = tree.getTopItem();
+		if (top == null) {
+			return;
+		}
+		int rows = getPageSize(tree, tree.getItemHeight());
+		TreeWalker walker = new TreeWalker(tree, top);
+		for (int i = 0; i < 2 * rows; i++) {
+			addElement(i < rows ? visible : near, walker.item.getData());
+			if (!walker.next()) {
+				break;
+			}
+		}
+		walker = new TreeWalker(tree, top);
+		for (int i = 0; i < rows && walker.previous(); i++) {
+			addElement(near, walker.item.getData());
+		}
+	}
+
+	private static void addElement(List elements, Object element) {
+		// the items of virtual viewers have no element until they are shown
+		if (element != null) {
+			elements.add(element);
+		}
+	}
+
+	/**
+	 * Walks the visible items of a tree from a given item. The indexes of the
+	 * item and its ancestors are kept, so every step takes constant time
+	 * however many siblings the items have.
+	 */
+	private static final class TreeWalker {
+		private final Tree tree;
+
+		TreeItem item;
+
+		private TreeItem[] parents = new TreeItem[8];
+
+		private int[] indexes = new int[8];
+
+		// the depth of item; parents[depth] is null for top level items
+		private int depth;
+
+		TreeWalker(Tree tree, TreeItem item) {
+			this.tree = tree;
+			List ancestors = new ArrayList();
+			for (TreeItem ancestor = item; ancestor != null; ancestor = ancestor
+					.getParentItem()) {
+				ancestors.add(0, ancestor);
+			}
+			depth = -1;
+			TreeItem parent = null;
+			for (int i = 0; i < ancestors.size(); i++) {
+				TreeItem ancestor = (TreeItem) ancestors.get(i);
+				push(parent, parent == null ? tree.indexOf(ancestor) : parent
+						.indexOf(ancestor));
+				parent = ancestor;
+			}
+			this.item = item;
+		}
+
+		private void push(TreeItem parent, int index) {
+			depth++;
+			if (depth == parents.length) {
+				TreeItem[] newParents = new TreeItem[depth * 2];
+				System.arraycopy(parents, 0, newParents, 0, depth);
+				parents = newParents;
+				int[] newIndexes = new int[depth * 2];
+				System.arraycopy(indexes, 0, newIndexes, 0, depth);
+				indexes = newIndexes;
+			}
+			parents[depth] = parent;
+			indexes[depth] = index;
+		}
+
+		private int getSiblingCount() {
+			TreeItem parent = parents[depth];
+			return parent == null ? tree.getItemCount() : parent
+					.getItemCount();
+		}
+
+		private TreeItem getSibling(int index) {
+			TreeItem parent = parents[depth];
+			return parent == null ? tree.getItem(index) : parent
+					.getItem(index);
+		}
+
+		/**
+		 * Moves to the next visible item.
+		 *
+		 * @return <code>false</code> if the item is the last visible one
+		 */
+		boolean next() {
+			if (item.getExpanded() && item.getItemCount() > 0) {
+				push(item, 0);
+				item = item.getItem(0);
+				return true;
+			}
+			for (; depth >= 0; depth--) {
+				int index = indexes[depth] + 1;
+				if (index < getSiblingCount()) {
+					indexes[depth] = index;
+					item = getSibling(index);
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Moves to the previous visible item.
+		 *
+		 * @return <code>false</code> if the item is the first visible one
+		 */
+		boolean previous() {
+			int index = indexes[depth] - 1;
+			if (index < 0) {
+				if (depth == 0) {
+					return false;
+				}
+				item = parents[depth--];
+				return true;
+			}
+			indexes[depth] = index;
+			item = getSibling(index);
+			while (item.getExpanded() && item.getItemCount() > 0) {
+				int last = item.getItemCount() - 1;
+				push(item, last);
+				item = item.getItem(last);
+			}
+			return true;
+		}
+	}
+}
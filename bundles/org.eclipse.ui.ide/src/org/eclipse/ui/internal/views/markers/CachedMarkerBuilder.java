@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2009 IBM Corporation and others.
+ * Copyright (c) 2000, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -16,6 +16,7 @@ import java.util.Iterator;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.operation.IRunnableWithProgress;
 import org.eclipse.jface.util.IPropertyChangeListener;
@@ -70,6 +71,17 @@ public class CachedMarkerBuilder {
 	private boolean building;
 	
 	private IMemento memento;
+
+	// the rule of the jobs changing the markers, run one at a time
+	private final ISchedulingRule updateRule = new ISchedulingRule() {
+		public boolean contains(ISchedulingRule rule) {
+			return rule == this;
+		}
+
+		public boolean isConflicting(ISchedulingRule rule) {
+			return rule == this;
+		}
+	};
 	
 
 	/**
@@ -134,9 +146,10 @@ public class CachedMarkerBuilder {
 			.removePropertyChangeListener(getWorkingSetListener());
 		}
 		
-		if (isIncremental()) {
-			if(incrementJob!=null){
-				incrementJob.clearEntries();
+		synchronized (getUpdateScheduler().getSchedulingLock()) {
+			if (incrementJob != null) {
+				incrementJob.cancel();
+				incrementJob.clearUpdates();
 			}
 		}
 	}
@@ -466,10 +479,6 @@ public class CachedMarkerBuilder {
 				// ensure cancellation before calling the method
 				// updateJob.cancel();
 			} else {
-				/*
-				 * updateJob = isIncremental() ? new IncrementUpdateJob(this):
-				 * new MarkerUpdateJob(this);
-				 */
 				updateJob = new MarkerUpdateJob(this);
 				updateJob.setPriority(Job.LONG);
 				updateJob.setSystem(true);
@@ -613,21 +622,7 @@ public class CachedMarkerBuilder {
 	}
 	 
 ///////	<Incremental update code>///////
-		private IncrementUpdateJob incrementJob;
-	/**
-	 * Checks whether the builder should perform incrementally Note : Incremental
-	 * updating method is NOT used and tested yet but left out for further
-	 * investigation(*).
-	 * 
-	 * @return Returns true if we should collect markers incrementally.
-	 */
-	boolean isIncremental() {
-		/*
-		 * We do not update incrementally. We have 
-		 * code for further investigation(*) for this anyway.
-		 */
-		return false;
-	}
+	private IncrementUpdateJob incrementJob;
 	
 	/**
 	 * @return Returns the changeFlags {added,removed,changed}.
@@ -652,16 +647,56 @@ public class CachedMarkerBuilder {
 	}
 
 	/**
-	 * Handles an incremental update
+	 * Handles an incremental update, applying the changes to the markers
+	 * instead of gathering them all again.
+	 * 
 	 * @param update
 	 */
 	void incrementalUpdate(MarkerUpdate update) {
 		synchronized (getUpdateScheduler().getSchedulingLock()) {
+			if (generator == null || !active) {
+				return;
+			}
 			if (incrementJob == null) {
-				scheduleUpdateJob(MarkerUpdateScheduler.SHORT_DELAY, true);
+				incrementJob = new IncrementUpdateJob(this);
+				incrementJob.setPriority(Job.SHORT);
+				incrementJob.setSystem(true);
+			}
+			incrementJob.addUpdate(update);
+			// a sleeping or waiting job will process the update, do not
+			// delay it further
+			int state = incrementJob.getState();
+			if (state == Job.NONE || state == Job.RUNNING) {
+				incrementJob.schedule(MarkerUpdateScheduler.SHORT_DELAY);
 			}
 		}
-		incrementJob.addUpdate(update);
+	}
+
+	/**
+	 * Forget the pending incremental updates, as the markers are gathered
+	 * again.
+	 */
+	void clearIncrementalUpdates() {
+		IncrementUpdateJob job = incrementJob;
+		if (job != null) {
+			job.clearUpdates();
+		}
+	}
+
+	/**
+	 * Returns true if an incremental update has been scheduled and not
+	 * finished, else false.
+	 */
+	boolean incrementalUpdatePending() {
+		IncrementUpdateJob job = incrementJob;
+		return job != null && job.getState() != Job.NONE;
+	}
+
+	/**
+	 * @return Returns the rule of the jobs updating the markers.
+	 */
+	ISchedulingRule getUpdateRule() {
+		return updateRule;
 	}
 ///////	</Incremental update code>///////
 	
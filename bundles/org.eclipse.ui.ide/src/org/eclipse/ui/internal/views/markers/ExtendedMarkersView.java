@@ -1687,6 +1687,20 @@ public class ExtendedMarkersView extends ViewPart {
 	 * @return UIUpdateJob
 	 */
 	UIUpdateJob scheduleUpdate(long delay) {
+		return scheduleUpdate(delay, null);
+	}
+
+	/**
+	 * The method should not be called directly, see
+	 * {@link MarkerUpdateScheduler}
+	 *
+	 * @param delay
+	 * @param categories
+	 *            the changed {@link MarkerCategory}s to refresh, or
+	 *            <code>null</code> to refresh all
+	 * @return UIUpdateJob
+	 */
+	UIUpdateJob scheduleUpdate(long delay, Collection categories) {
 		synchronized (builder.getUpdateScheduler().getSchedulingLock()) {
 			if (uiUpdateJob != null) {
 				// ensure cancellation before calling the method
@@ -1696,6 +1710,11 @@ public class ExtendedMarkersView extends ViewPart {
 				// uiUpdateJob.setPriority(Job.SHORT);
 				uiUpdateJob.setSystem(true);
 			}
+			if (categories == null) {
+				uiUpdateJob.refreshAll();
+			} else {
+				uiUpdateJob.refreshCategories(categories);
+			}
 			IWorkbenchSiteProgressService progressService = builder
 					.getProgressService();
 			if (progressService != null) {
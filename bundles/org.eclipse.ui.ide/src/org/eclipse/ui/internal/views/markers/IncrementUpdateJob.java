@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009 IBM Corporation and others.
+ * Copyright (c) 2009, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,35 +11,40 @@
 
 package org.eclipse.ui.internal.views.markers;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashSet;
 
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.ui.views.markers.internal.MarkerMessages;
 
 /**
- * The job that performs incremental update. Once the processing is complete it
- * schedules an UI update. If it'll be possible and beneficial switch to
- * incremental updatation, this has been left out for further investigation(*).
- * only, and not used currently.
+ * The IncrementUpdateJob applies the marker changes reported by the
+ * {@link MarkersChangeListener} to the markers gathered by the last
+ * {@link MarkerUpdateJob}, instead of gathering all of them again. Once the
+ * changes are applied it schedules an UI update of the changed categories.
+ * The markers are gathered again if the changes cannot be applied, as when
+ * they were not sorted and grouped yet.
  * 
  * @since 3.6
  * 
  */
 class IncrementUpdateJob extends MarkerUpdateJob {
 
-	private LinkedList incrementEntryList;
-	private LinkedList updateQueue;
+	// the changed markers, in the order they changed
+	private Collection updateQueue;
 
 	/**
 	 * @param builder
 	 */
 	public IncrementUpdateJob(CachedMarkerBuilder builder) {
 		super(builder);
-		incrementEntryList = new LinkedList();
+		updateQueue = new LinkedHashSet();
 	}
 
 	/*
@@ -51,243 +56,111 @@ class IncrementUpdateJob extends MarkerUpdateJob {
 	protected IStatus run(IProgressMonitor monitor) {
 		monitor.beginTask(MarkerMessages.MarkerView_processUpdates,
 				IProgressMonitor.UNKNOWN);
-		boolean clean= isClean();
-		if (clean) {
-			clearEntries();
-		}
-		Collection markerEntries = incrementalEntries();
-		if (clean) {
-			/*
-			 * Unfortunately we cannot lock marker operations between gathering
-			 * and updation. We have this code in place only for further
-			 * investigation
-			 */
-			clean = !clean(markerEntries, monitor);
-			LinkedList queue = getUpdatesQueue();
-			synchronized (queue) {
-				queue.clear();
+		Collection changedMarkers;
+		synchronized (updateQueue) {
+			if (updateQueue.isEmpty()) {
+				return Status.OK_STATUS;
 			}
+			changedMarkers = new ArrayList(updateQueue);
+			updateQueue.clear();
 		}
-		if (monitor.isCanceled()) {
-			return Status.CANCEL_STATUS;
-		}
-		if (!clean) {
-			builder.registerTypesToListener();
-			if (!processUpdates(monitor)) {
-				return Status.CANCEL_STATUS;
+		MarkerContentGenerator generator = builder.getGenerator();
+		if (generator == null) {
+			return Status.OK_STATUS;
+		}
+		/*
+		 * The changes are gone from the queue, so they are applied even if we
+		 * are canceled, or the markers would not show them until gathered
+		 * again.
+		 */
+		Collection added = selectEntries(generator, changedMarkers);
+		Collection categories = null;
+		boolean applied = false;
+		Markers markers = builder.getMarkers();
+		synchronized (markers) {
+			if (markers.canApplyChanges()) {
+				Collection removed = new ArrayList();
+				Iterator iterator = changedMarkers.iterator();
+				while (iterator.hasNext()) {
+					MarkerEntry entry = (MarkerEntry) markers
+							.getMarkerItem((IMarker) iterator.next());
+					if (entry != null) {
+						removed.add(entry);
+					}
+				}
+				if (removed.isEmpty() && added.isEmpty()) {
+					// none of the changes shows
+					return Status.OK_STATUS;
+				}
+				categories = markers.applyChanges(removed, added);
+				applied = true;
 			}
 		}
-		if (!processMarkerEntries(markerEntries, monitor)) {
-			return Status.CANCEL_STATUS;
-		}
-		if (monitor.isCanceled()) {
-			return Status.CANCEL_STATUS;
-		}
-		// update with sorted entries
-		updateIncrementalList(markerEntries);
-
-		if (monitor.isCanceled()) {
-			return Status.CANCEL_STATUS;
+		if (!applied) {
+			// gather them all again
+			builder.scheduleUpdate();
+			return Status.OK_STATUS;
 		}
 		builder.getUpdateScheduler().scheduleUIUpdate(
-				MarkerUpdateScheduler.SHORT_DELAY);
-		if (monitor.isCanceled()) {
-			return Status.CANCEL_STATUS;
-		}
-		builder.setBuilding(false);
+				MarkerUpdateScheduler.SHORT_DELAY, categories);
 		updateDone();
 		return Status.OK_STATUS;
 	}
 
 	/**
-	 * Update the list
-	 * 
-	 * @param markerEntries
-	 */
-	private boolean updateIncrementalList(Collection markerEntries) {
-		markerEntries.clear();
-		Markers clone = builder.getMarkers();
-		synchronized (clone) {
-			clone = clone.getClone();
-		}
-		MarkerEntry[] entries = clone.getMarkerEntryArray();
-		for (int i = 0; i < entries.length; i++) {
-			markerEntries.add(entries[i]);
-		}
-		return true;
-	}
-
-	/**
-	 * Process the incremental updates
+	 * Return the entries of the markers that still exist and are selected by
+	 * the filters of the generator.
 	 * 
-	 * @param monitor
-	 */
-	private boolean processUpdates(IProgressMonitor monitor) {
-		Collection markerEntries = incrementalEntries();
-		int addCount = 0, removedCount = 0, changedCount = 0, size = 0, newSize = 0;
-		LinkedList queue = getUpdatesQueue();
-		MarkerUpdate next = null;
-		do {
-			synchronized (queue) {
-				if (!queue.isEmpty()) {
-					next = (MarkerUpdate) queue.removeFirst();
-				} else {
-					next = null;
-				}
-			}
-			if (monitor.isCanceled() || next == null) {
-				break;
-			}
-			/**
-			 * The following performs incremental updation of the markers that
-			 * were gathered intially, and keeps them synched at any point with
-			 * the markers of interest in Workspace
-			 */
-			// unfortunately marker operations cannot be locked
-			// so locking between gathering of markers and
-			// marker deltas is not possible
-			size = markerEntries.size();
-			handleRemovedEntries(markerEntries, next.removed, monitor);
-			newSize = markerEntries.size();
-			removedCount += size - newSize;
-
-			handleChangedEntries(markerEntries, next.changed, monitor);
-			changedCount += next.changed.size();
-
-			size = newSize;
-			handleAddedEntries(markerEntries, next.added, monitor);
-			newSize = markerEntries.size();
-			removedCount += newSize - size;
-		} while (next != null);
-		boolean[] changeFlags = new boolean[] { addCount > 0, removedCount > 0,
-				changedCount > 0 };
-		for (int i = 0; i < changeFlags.length; i++) {
-			if (changeFlags[i]) {
-				builder.updateChangeFlags(changeFlags);
-				return true;
-			}
-		}
-		return false;
-	}
-
-	/**
-	 * @param added
-	 * @param monitor
-	 */
-	private void handleAddedEntries(Collection markerEntries, Collection added,
-			IProgressMonitor monitor) {
-		MarkerContentGenerator generator = builder.getGenerator();
-		Iterator iterator = added.iterator();
-		while (iterator.hasNext()) {
-			MarkerEntry entry = (MarkerEntry) iterator.next();
-			if (generator.select(entry)) {
-				markerEntries.add(entry);
-			}
-		}
-	}
-
-	/**
-	 * @param changed
-	 * @param monitor
+	 * @param generator
+	 * @param changedMarkers
+	 * @return Collection of {@link MarkerEntry}
 	 */
-	private void handleChangedEntries(Collection markerEntries,
-			Collection changed, IProgressMonitor monitor) {
-		MarkerContentGenerator generator = builder.getGenerator();
-		Iterator iterator = changed.iterator();
+	private Collection selectEntries(MarkerContentGenerator generator,
+			Collection changedMarkers) {
+		Collection result = new ArrayList();
+		IResource[] selected = generator.getSelectedResources();
+		Collection filters = generator.getEnabledFilters();
+		boolean andFilters = generator.andFilters();
+		MarkerSnapshot snapshot = new MarkerSnapshot();
+		Iterator iterator = changedMarkers.iterator();
 		while (iterator.hasNext()) {
-			MarkerEntry entry = (MarkerEntry) iterator.next();
-			Iterator iterator2 = markerEntries.iterator();
-			while (iterator2.hasNext()) {
-				MarkerEntry oldEntry = (MarkerEntry) iterator2.next();
-				if (oldEntry.getMarker().equals(entry.getMarker())) {
-					iterator2.remove();
-				}
-			}
-			if (!generator.select(entry)) {
-				iterator.remove();
-			}
-		}
-		markerEntries.addAll(changed);
-	}
-
-	/**
-	 * @param removed
-	 * @param monitor
-	 */
-	private void handleRemovedEntries(Collection markerEntries,
-			Collection removed, IProgressMonitor monitor) {
-		boolean found = false;
-		Iterator iterator = markerEntries.iterator();
-		while (iterator.hasNext()) {
-			MarkerEntry entry = (MarkerEntry) iterator.next();
-			found = entry.getStaleState();
-			if (found) {
-				iterator.remove();
-			}
-			if (removed.isEmpty()) {
+			IMarker marker = (IMarker) iterator.next();
+			if (!marker.exists()) {
 				continue;
 			}
-			Iterator iterator2 = removed.iterator();
-			while (iterator2.hasNext()) {
-				MarkerEntry stale = (MarkerEntry) iterator2.next();
-				if (stale.getMarker().equals(entry.getMarker())) {
-					iterator2.remove();
-					if (!found) {
-						iterator.remove();
-					}
-					break;
-				}
-			}
-		}
-		if (removed.isEmpty()) {
-			// TODO: do we check for residuals?
-			return;
-		}
-		// TODO: do we check for residuals?
-		iterator = markerEntries.iterator();
-		while (iterator.hasNext()) {
-			MarkerEntry entry = (MarkerEntry) iterator.next();
-			if (entry.getMarker() != null && !entry.getMarker().exists()) {
-				iterator.remove();
+			int row = snapshot.add(marker);
+			MarkerEntry entry = row < 0 ? new MarkerEntry(marker)
+					: new MarkerEntry(marker, snapshot, row);
+			if (generator.select(entry, selected, filters, andFilters)) {
+				result.add(entry);
+			} else if (row >= 0) {
+				snapshot.removeLast();
 			}
+			entry.clearCache();
 		}
+		snapshot.trimToSize();
+		return result;
 	}
 
 	/**
-	 * Clean
-	 */
-	void clearEntries() {
-		incrementEntryList = new LinkedList();
-	}
-
-	/**
-	 * @return Returns the incrementEntryies.
-	 */
-	Collection incrementalEntries() {
-		return incrementEntryList;
-	}
-
-	/**
-	 * @return the updateQueue that holds the updates and maintains ordering
+	 * Add the changed markers of update to the queue.
+	 * 
+	 * @param update
 	 */
-	LinkedList getUpdatesQueue() {
-		synchronized (builder.MARKER_INCREMENTAL_UPDATE_FAMILY) {
-			if (updateQueue == null) {
-				updateQueue = new LinkedList();
-			}
-			return updateQueue;
+	void addUpdate(MarkerUpdate update) {
+		synchronized (updateQueue) {
+			updateQueue.addAll(update.removed);
+			updateQueue.addAll(update.added);
+			updateQueue.addAll(update.changed);
 		}
 	}
 
 	/**
-	 * Add update to the list
-	 * 
-	 * @param update
+	 * Forget the queued changes, as the markers are gathered again.
 	 */
-	void addUpdate(MarkerUpdate update) {
-		LinkedList updateList = getUpdatesQueue();
-		synchronized (updateList) {
-			updateList.addLast(update);
+	void clearUpdates() {
+		synchronized (updateQueue) {
+			updateQueue.clear();
 		}
 	}
 
@@ -302,4 +175,4 @@ class IncrementUpdateJob extends MarkerUpdateJob {
 		}
 		return super.belongsTo(family);
 	}
-}
\ No newline at end of file
+}
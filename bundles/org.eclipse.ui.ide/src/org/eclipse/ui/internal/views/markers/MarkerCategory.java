@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2011 IBM Corporation and others.
+ * Copyright (c) 2007, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,7 +13,7 @@ package org.eclipse.ui.internal.views.markers;
 
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.osgi.util.NLS;
-import org.eclipse.ui.views.markers.MarkerItem;
+import org.eclipse.ui.views.markers.internal.MarkerGroupingEntry;
 import org.eclipse.ui.views.markers.internal.MarkerMessages;
 
 class MarkerCategory extends MarkerSupportItem {
@@ -26,12 +26,25 @@ class MarkerCategory extends MarkerSupportItem {
 
 	MarkerEntry[] children;
 
+	/**
+	 * The grouping entry the markers of the receiver belong to.
+	 */
+	MarkerGroupingEntry groupingEntry;
+
+	/**
+	 * The number of markers from start on that are sorted.
+	 */
+	int sortedCount;
+
 	private String name;
 
 	private int severity = -1;
 
 	private Markers markers;
 
+	// The entries the receiver is a range of
+	private MarkerEntry[] entries;
+
 	/**
 	 * Create a new instance of the receiver that has the markers between
 	 * startIndex and endIndex showing.
@@ -43,7 +56,25 @@ class MarkerCategory extends MarkerSupportItem {
 	 */
 	MarkerCategory(Markers markers, int startIndex,
 			int endIndex, String categoryName) {
+		this(markers, markers.getMarkerEntryArray(), startIndex, endIndex,
+				categoryName);
+	}
+
+	/**
+	 * Create a new instance of the receiver that has the entries between
+	 * startIndex and endIndex showing.
+	 * 
+	 * @param markers
+	 * @param entries
+	 *            the entries, which may not be the ones of markers yet
+	 * @param startIndex
+	 * @param endIndex
+	 * @param categoryName
+	 */
+	MarkerCategory(Markers markers, MarkerEntry[] entries, int startIndex,
+			int endIndex, String categoryName) {
 		this.markers = markers;
+		this.entries = entries;
 		start = startIndex;
 		end = endIndex;
 		refreshing=false;
@@ -58,10 +89,9 @@ class MarkerCategory extends MarkerSupportItem {
 	 */
 	MarkerSupportItem[] getChildren() {
 		if (children == null) {
-			MarkerItem[] allMarkers = markers.getMarkerEntryArray();
 			int totalSize = getChildrenCount();
 			children = new MarkerEntry[totalSize];
-			System.arraycopy(allMarkers, start, children, 0, totalSize);
+			System.arraycopy(entries, start, children, 0, totalSize);
 			for (int i = 0; i < children.length; i++) {
 				children[i].setCategory(this);
 			}
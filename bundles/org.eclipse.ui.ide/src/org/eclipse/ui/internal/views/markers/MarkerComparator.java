@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2009 IBM Corporation and others.
+ * Copyright (c) 2007, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -29,9 +29,12 @@ import org.eclipse.ui.views.markers.MarkerItem;
 class MarkerComparator implements Comparator {
 
 	private MarkerField category;
+	private int categoryColumn;
 
 	// These fields are in sort order
 	private MarkerField[] fields;
+	// The snapshot columns compared by the fields
+	private int[] columns;
 	/**
 	 * Constant to indicate an ascending sort direction.
 	 */
@@ -55,8 +58,44 @@ class MarkerComparator implements Comparator {
 	 * @param mainFields in order of compare significance
 	 */
 	public MarkerComparator(MarkerField categoryField, MarkerField[] mainFields) {
-		category = categoryField;
-		fields = mainFields;
+		setCategory(categoryField);
+		setFields(mainFields);
+	}
+
+	/**
+	 * Set the fields, in order of compare significance.
+	 * 
+	 * @param newFields
+	 */
+	private void setFields(MarkerField[] newFields) {
+		fields = newFields;
+		columns = new int[fields.length];
+		for (int i = 0; i < fields.length; i++) {
+			columns[i] = MarkerSnapshot.getColumn(fields[i]);
+		}
+	}
+
+	/**
+	 * Compare the items by the field, directly on the snapshot column the
+	 * field compares when both items are held by snapshots.
+	 * 
+	 * @param field
+	 * @param column
+	 * @param item1
+	 * @param item2
+	 * @return int
+	 */
+	private static int compare(MarkerField field, int column, Object item1,
+			Object item2) {
+		if (column != MarkerSnapshot.NO_COLUMN && item1 instanceof MarkerEntry
+				&& item2 instanceof MarkerEntry) {
+			MarkerEntry entry1 = (MarkerEntry) item1;
+			MarkerEntry entry2 = (MarkerEntry) item2;
+			if (entry1.getSnapshot() != null && entry2.getSnapshot() != null) {
+				return MarkerSnapshot.compare(column, entry1, entry2);
+			}
+		}
+		return field.compare((MarkerItem) item1, (MarkerItem) item2);
 	}
 
 	/**
@@ -70,7 +109,7 @@ class MarkerComparator implements Comparator {
 	public int compareCategory(Object object1, Object object2) {
 		if (category == null)
 			return 0;
-		return category.compare((MarkerItem) object1, (MarkerItem) object2);
+		return compare(category, categoryColumn, object1, object2);
 	}
 	
 	/**
@@ -113,9 +152,9 @@ class MarkerComparator implements Comparator {
 		int value=0;
 		for (int i = 0; i < fields.length; i++) {
 			if (descendingFields.contains(fields[i])){
-				value = fields[i].compare((MarkerItem)item1,(MarkerItem)item0);
+				value = compare(fields[i], columns[i], item1, item0);
 			}else{
-				value = fields[i].compare((MarkerItem)item0,(MarkerItem)item1);
+				value = compare(fields[i], columns[i], item0, item1);
 			}if (value != 0){
 				break;
 			}
@@ -169,7 +208,7 @@ class MarkerComparator implements Comparator {
 			insertionIndex++;
 		}
 
-		fields = newFields;
+		setFields(newFields);
 
 	}
 
@@ -241,6 +280,7 @@ class MarkerComparator implements Comparator {
 	 */
 	void setCategory(MarkerField category) {
 		this.category = category;
+		categoryColumn = MarkerSnapshot.getColumn(category);
 	}
 
 }
@@ -1073,6 +1073,7 @@ public class MarkerContentGenerator {
 	 */
 	boolean gatherMarkers(String[] typeIds, boolean includeSubTypes,
 			Collection result, IProgressMonitor monitor) {
+		MarkerSnapshot snapshot = new MarkerSnapshot();
 		try {
 			Collection resources = getResourcesForBuild();
 			if (includeSubTypes) {
@@ -1084,7 +1085,7 @@ public class MarkerContentGenerator {
 				}
 				for (int i = 0; i < superTypes.length; i++) {
 					boolean success = internalGatherMarkers(resources,superTypes[i],
-							includeSubTypes, result, monitor);
+							includeSubTypes, result, snapshot, monitor);
 					if (!success || monitor.isCanceled()) {
 						return false;
 					}
@@ -1092,7 +1093,7 @@ public class MarkerContentGenerator {
 			} else {
 				for (int i = 0; i < typeIds.length; i++) {
 					boolean success = internalGatherMarkers(resources,typeIds[i],
-							includeSubTypes, result, monitor);
+							includeSubTypes, result, snapshot, monitor);
 					if (!success || monitor.isCanceled()) {
 						return false;
 					}
@@ -1102,8 +1103,8 @@ public class MarkerContentGenerator {
 			//do not propagate but do show the error
 			MarkerSupportInternalUtilities.showViewError(e);
 			return false;
-		} finally {
 		}
+		snapshot.trimToSize();
 		return true;
 	}
 
@@ -1115,10 +1116,13 @@ public class MarkerContentGenerator {
 	 * @param typeId
 	 * @param includeSubTypes
 	 * @param result
+	 * @param snapshot
+	 *            the snapshot the values of the selected markers are added to
 	 * @param monitor
 	 */
 	private boolean internalGatherMarkers(Collection resources, String typeId,
-			boolean includeSubTypes, Collection result, IProgressMonitor monitor) {
+			boolean includeSubTypes, Collection result,
+			MarkerSnapshot snapshot, IProgressMonitor monitor) {
 		if (monitor.isCanceled()) {
 			return false;
 		}
@@ -1147,9 +1151,13 @@ public class MarkerContentGenerator {
 			MarkerEntry entry = null;
 			int lenght =  markers.length;
 			for (int i = 0; i < lenght; i++) {
-				entry = new MarkerEntry(markers[i]);
+				int row = snapshot.add(markers[i]);
+				entry = row < 0 ? new MarkerEntry(markers[i]) : new MarkerEntry(
+						markers[i], snapshot, row);
 				if (select(entry, selected, filters, andFilters)) {
 					result.add(entry);
+				} else if (row >= 0) {
+					snapshot.removeLast();
 				}
 				entry.clearCache();
 				if (i % 500 == 0) {
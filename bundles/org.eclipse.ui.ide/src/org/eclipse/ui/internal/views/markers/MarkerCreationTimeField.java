@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2013 IBM Corporation and others.
+ * Copyright (c) 2007, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -48,8 +48,9 @@ public class MarkerCreationTimeField extends MarkerField {
 	 *      org.eclipse.ui.internal.provisional.views.markers.MarkerItem)
 	 */
 	public int compare(MarkerItem item1, MarkerItem item2) {
-		return (int) (((MarkerSupportItem) item1).getCreationTime() - ((MarkerSupportItem) item2)
-				.getCreationTime());
+		long time1 = ((MarkerSupportItem) item1).getCreationTime();
+		long time2 = ((MarkerSupportItem) item2).getCreationTime();
+		return time1 < time2 ? -1 : (time1 == time2 ? 0 : 1);
 	}
 
 	/*
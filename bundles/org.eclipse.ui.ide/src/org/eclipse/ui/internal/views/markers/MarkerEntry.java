@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2009 IBM Corporation and others.
+ * Copyright (c) 2007, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -82,6 +82,14 @@ class MarkerEntry extends MarkerSupportItem implements IAdaptable {
 	 */
 	private IMarker marker;
 
+	/**
+	 * The snapshot holding the values of the marker and the row of the
+	 * marker, or <code>null</code> if the values are read from the marker
+	 * when needed and cached.
+	 */
+	private MarkerSnapshot snapshot;
+	private int row = -1;
+
 	/**
 	 * Create a new instance of the receiver.
 	 * 
@@ -92,6 +100,20 @@ class MarkerEntry extends MarkerSupportItem implements IAdaptable {
 		stale = false;
 	}
 
+	/**
+	 * Create a new instance of the receiver whose values are held by a row of
+	 * snapshot.
+	 * 
+	 * @param marker
+	 * @param snapshot
+	 * @param row
+	 */
+	MarkerEntry(IMarker marker, MarkerSnapshot snapshot, int row) {
+		this(marker);
+		this.snapshot = snapshot;
+		this.row = row;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -123,7 +145,12 @@ class MarkerEntry extends MarkerSupportItem implements IAdaptable {
 	 *      int)
 	 */
 	public int getAttributeValue(String attribute, int defaultValue) {
-
+		if (snapshot != null) {
+			int column = MarkerSnapshot.getAttributeColumn(attribute);
+			if (column >= 0 && column <= MarkerSnapshot.LINE_NUMBER) {
+				return snapshot.getIntValue(column, row, defaultValue);
+			}
+		}
 		Object value = getAttributeValue(attribute);
 		if (value == null)
 			return defaultValue;
@@ -139,6 +166,12 @@ class MarkerEntry extends MarkerSupportItem implements IAdaptable {
 	 * @return Object or <code>null</code>
 	 */
 	Object getAttributeValue(String attribute) {
+		if (snapshot != null) {
+			int column = MarkerSnapshot.getAttributeColumn(attribute);
+			if (column != MarkerSnapshot.NO_COLUMN) {
+				return snapshot.getAttributeValue(column, row);
+			}
+		}
 		Object value = getCache().get(attribute);
 		if(value == null) {
 			if(stale){
@@ -202,6 +235,10 @@ class MarkerEntry extends MarkerSupportItem implements IAdaptable {
 	 * @return CollationKey
 	 */
 	CollationKey getCollationKey(String attribute, String defaultValue) {
+		if (snapshot != null && IMarker.MESSAGE.equals(attribute)
+				&& snapshot.getAttributeValue(MarkerSnapshot.MESSAGE, row) != null) {
+			return snapshot.getMessageKey(row);
+		}
 		String attributeValue;
 		Object value = getCache().get(attribute);
 		if (value != null) {
@@ -229,6 +266,9 @@ class MarkerEntry extends MarkerSupportItem implements IAdaptable {
 	 * @see org.eclipse.ui.internal.views.markers.MarkerSupportItem#getCreationTime()
 	 */
 	long getCreationTime() {
+		if (snapshot != null) {
+			return snapshot.getCreationTime(row);
+		}
 		if(stale){
 			return -1;
 		}
@@ -269,6 +309,9 @@ class MarkerEntry extends MarkerSupportItem implements IAdaptable {
 		if(stale||checkIfMarkerStale()){
 			return MarkerSupportInternalUtilities.UNKNOWN_ATRRIBTE_VALUE_STRING;
 		}
+		if (snapshot != null) {
+			return getLocationString();
+		}
 		if (getCache().containsKey(LOCATION_STRING)) {
 			Object value = getCache().get(LOCATION_STRING);
 			if (value instanceof CollationKey)
@@ -277,26 +320,31 @@ class MarkerEntry extends MarkerSupportItem implements IAdaptable {
 		}
 
 
+		String locationString = getLocationString();
+		getCache().put(LOCATION_STRING, locationString);
+		return locationString;
+
+	}
+
+	/**
+	 * Compute the string of the location.
+	 * 
+	 * @return String
+	 */
+	private String getLocationString() {
 		// Is the location override set?
 		String locationString = getAttributeValue(IMarker.LOCATION,
 				MarkerSupportInternalUtilities.EMPTY_STRING);
 		if (locationString.length() > 0) {
-			getCache().put(LOCATION_STRING, locationString);
 			return locationString;
 		}
 
 		// No override so use line number
 		int lineNumber = getAttributeValue(IMarker.LINE_NUMBER, -1);
-		String lineNumberString;
 		if (lineNumber < 0)
-			lineNumberString = MarkerMessages.Unknown;
-		else
-			lineNumberString = NLS.bind(MarkerMessages.label_lineNumber,
-					Integer.toString(lineNumber));
-
-		getCache().put(LOCATION_STRING, lineNumberString);
-		return lineNumberString;
-
+			return MarkerMessages.Unknown;
+		return NLS.bind(MarkerMessages.label_lineNumber,
+				Integer.toString(lineNumber));
 	}
 
 	/*
@@ -314,6 +362,10 @@ class MarkerEntry extends MarkerSupportItem implements IAdaptable {
 	 * @see org.eclipse.ui.internal.views.markers.MarkerSupportItem#getMarkerTypeName()
 	 */
 	String getMarkerTypeName() {
+		if (snapshot != null) {
+			return MarkerTypesModel.getInstance().getType(
+					snapshot.getTypeId(row)).getLabel();
+		}
 		if(stale){
 			return NLS.bind(MarkerMessages.FieldMessage_WrongType, marker
 					.toString());
@@ -329,6 +381,9 @@ class MarkerEntry extends MarkerSupportItem implements IAdaptable {
 		}
 	}
 	String getMarkerTypeId() {
+		if (snapshot != null) {
+			return snapshot.getTypeId(row);
+		}
 		if(stale){
 			return NLS.bind(MarkerMessages.FieldMessage_WrongType, marker
 					.toString());
@@ -358,6 +413,10 @@ class MarkerEntry extends MarkerSupportItem implements IAdaptable {
 	 * @see org.eclipse.ui.views.markers.MarkerItem#getPath()
 	 */
 	public String getPath() {
+		if (snapshot != null) {
+			String path = snapshot.getPath(row);
+			return path == null ? super.getPath() : path;
+		}
 		String folder = getAttributeValue(MarkerViewUtil.PATH_ATTRIBUTE, null);
 		if (folder != null) {
 			return folder;
@@ -404,11 +463,33 @@ class MarkerEntry extends MarkerSupportItem implements IAdaptable {
 	 */
 	void setMarker(IMarker marker) {
 		this.marker = marker;
+		// the values of the snapshot are the ones of the former marker
+		snapshot = null;
+		row = -1;
 		// reset stale
 		stale = false;
 		clearCache();
 	}
 
+	/**
+	 * Return the snapshot holding the values of the receiver.
+	 * 
+	 * @return {@link MarkerSnapshot} or <code>null</code> if the values are
+	 *         read from the marker
+	 */
+	MarkerSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Return the row of the receiver in its snapshot.
+	 * 
+	 * @return int
+	 */
+	int getRow() {
+		return row;
+	}
+
 	/**
 	 * Get the cache for the receiver. Create if neccessary.
 	 * 
@@ -0,0 +1,429 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.ui.internal.views.markers;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.ui.views.markers.MarkerField;
+import org.eclipse.ui.views.markers.MarkerViewUtil;
+
+import com.ibm.icu.text.CollationKey;
+import com.ibm.icu.text.Collator;
+
+/**
+ * The MarkerSnapshot holds the values of the markers gathered by a
+ * {@link MarkerContentGenerator} in columns, one row per {@link MarkerEntry}.
+ * The numeric values are kept in primitive arrays and the strings are
+ * interned, so that the many markers sharing a type, a message or a folder
+ * share a single string, and a single collation key for sorting.
+ * <p>
+ * The snapshot is filled by the thread gathering the markers and is only read
+ * afterwards. The entries of markers changed since are replaced by new ones,
+ * so the values of a row do not go stale.
+ * </p>
+ *
+ * @since 3.10
+ *
+ */
+class MarkerSnapshot {
+
+	/**
+	 * The columns of the snapshot.
+	 */
+	static final int NO_COLUMN = -1;
+	static final int SEVERITY = 0;
+	static final int PRIORITY = 1;
+	static final int LINE_NUMBER = 2;
+	static final int MESSAGE = 3;
+	static final int LOCATION = 4;
+	static final int CREATION_TIME = 5;
+	static final int PATH = 6;
+
+	// The attributes read for the columns, in column order
+	private static final String[] ATTRIBUTES = { IMarker.SEVERITY,
+			IMarker.PRIORITY, IMarker.LINE_NUMBER, IMarker.MESSAGE,
+			IMarker.LOCATION, MarkerViewUtil.PATH_ATTRIBUTE };
+
+	// The value of the integer attributes that are not set
+	private static final int NO_VALUE = Integer.MIN_VALUE;
+
+	// The index of the strings that are not set
+	private static final int NO_STRING = -1;
+
+	private static final int INITIAL_CAPACITY = 256;
+
+	private int size;
+	private int[] severities = new int[INITIAL_CAPACITY];
+	private int[] priorities = new int[INITIAL_CAPACITY];
+	private int[] lineNumbers = new int[INITIAL_CAPACITY];
+	private long[] creationTimes = new long[INITIAL_CAPACITY];
+	private int[] types = new int[INITIAL_CAPACITY];
+	private int[] messages = new int[INITIAL_CAPACITY];
+	private int[] locations = new int[INITIAL_CAPACITY];
+	private int[] paths = new int[INITIAL_CAPACITY];
+
+	// The interned strings, and their collation keys created on demand
+	private int stringCount;
+	private String[] strings = new String[INITIAL_CAPACITY];
+	private CollationKey[] collationKeys = new CollationKey[INITIAL_CAPACITY];
+	private Map stringIndexes = new HashMap();
+
+	// The index of the path of the containers of the markers
+	private Map containerPaths = new HashMap();
+
+	/**
+	 * Return the column the field compares, or {@link #NO_COLUMN} if it does
+	 * not compare one.
+	 *
+	 * @param field
+	 *            the field or <code>null</code>
+	 * @return int
+	 */
+	static int getColumn(MarkerField field) {
+		if (field == null) {
+			return NO_COLUMN;
+		}
+		Class fieldClass = field.getClass();
+		if (fieldClass == MarkerSeverityField.class) {
+			return SEVERITY;
+		}
+		if (fieldClass == MarkerPriorityField.class) {
+			return PRIORITY;
+		}
+		if (fieldClass == MarkerDescriptionField.class) {
+			return MESSAGE;
+		}
+		if (fieldClass == MarkerLocationField.class) {
+			return LOCATION;
+		}
+		if (fieldClass == MarkerCreationTimeField.class) {
+			return CREATION_TIME;
+		}
+		if (fieldClass == MarkerPathField.class) {
+			return PATH;
+		}
+		return NO_COLUMN;
+	}
+
+	/**
+	 * Return the column holding the attribute, or {@link #NO_COLUMN} if it is
+	 * not held.
+	 *
+	 * @param attribute
+	 * @return int
+	 */
+	static int getAttributeColumn(String attribute) {
+		// The path attribute is not a column, the path column holds the path
+		// of the container when it is not set
+		for (int i = 0; i < ATTRIBUTES.length - 1; i++) {
+			if (ATTRIBUTES[i].equals(attribute)) {
+				return i;
+			}
+		}
+		return NO_COLUMN;
+	}
+
+	/**
+	 * Compare the values of the column the way the field of the column does.
+	 * Both entries must have a row.
+	 *
+	 * @param column
+	 *            a column returned by {@link #getColumn(MarkerField)}
+	 * @param entry1
+	 * @param entry2
+	 * @return int
+	 * @see MarkerField#compare(org.eclipse.ui.views.markers.MarkerItem,
+	 *      org.eclipse.ui.views.markers.MarkerItem)
+	 */
+	static int compare(int column, MarkerEntry entry1, MarkerEntry entry2) {
+		MarkerSnapshot snapshot1 = entry1.getSnapshot();
+		MarkerSnapshot snapshot2 = entry2.getSnapshot();
+		int row1 = entry1.getRow();
+		int row2 = entry2.getRow();
+		switch (column) {
+		case SEVERITY:
+			return snapshot2.getIntValue(SEVERITY, row2, -1)
+					- snapshot1.getIntValue(SEVERITY, row1, -1);
+		case PRIORITY:
+			return snapshot2.getIntValue(PRIORITY, row2,
+					IMarker.PRIORITY_NORMAL)
+					- snapshot1.getIntValue(PRIORITY, row1,
+							IMarker.PRIORITY_NORMAL);
+		case MESSAGE:
+			return snapshot1.getMessageKey(row1).compareTo(
+					snapshot2.getMessageKey(row2));
+		case LOCATION:
+			String location1 = snapshot1.getString(snapshot1.locations[row1]);
+			String location2 = snapshot2.getString(snapshot2.locations[row2]);
+			if (location1 == null) {
+				location1 = MarkerSupportInternalUtilities.EMPTY_STRING;
+			}
+			if (location2 == null) {
+				location2 = MarkerSupportInternalUtilities.EMPTY_STRING;
+			}
+			if (location1.length() == 0 || location2.length() == 0) {
+				return snapshot1.getIntValue(LINE_NUMBER, row1, -1)
+						- snapshot2.getIntValue(LINE_NUMBER, row2, -1);
+			}
+			return location1.compareTo(location2);
+		case CREATION_TIME:
+			long time1 = snapshot1.creationTimes[row1];
+			long time2 = snapshot2.creationTimes[row2];
+			return time1 < time2 ? -1 : (time1 == time2 ? 0 : 1);
+		case PATH:
+			return entry1.getPath().compareTo(entry2.getPath());
+		default:
+			throw new IllegalArgumentException();
+		}
+	}
+
+	/**
+	 * Add a row for the marker.
+	 *
+	 * @param marker
+	 * @return the index of the row, or <code>-1</code> if the marker does not
+	 *         exist anymore or has attributes of unexpected types
+	 */
+	int add(IMarker marker) {
+		Object[] values;
+		String type;
+		long creationTime;
+		try {
+			values = marker.getAttributes(ATTRIBUTES);
+			type = marker.getType();
+			creationTime = marker.getCreationTime();
+		} catch (CoreException e) {
+			return -1;
+		}
+		for (int i = SEVERITY; i <= LINE_NUMBER; i++) {
+			if (values[i] != null && !(values[i] instanceof Integer)) {
+				return -1;
+			}
+		}
+		for (int i = MESSAGE; i < values.length; i++) {
+			if (values[i] != null && !(values[i] instanceof String)) {
+				return -1;
+			}
+		}
+		if (size == severities.length) {
+			grow(size * 2);
+		}
+		int row = size++;
+		severities[row] = getInt(values[SEVERITY]);
+		priorities[row] = getInt(values[PRIORITY]);
+		lineNumbers[row] = getInt(values[LINE_NUMBER]);
+		creationTimes[row] = creationTime;
+		types[row] = intern(type);
+		messages[row] = intern((String) values[MESSAGE]);
+		locations[row] = intern((String) values[LOCATION]);
+		String path = (String) values[ATTRIBUTES.length - 1];
+		paths[row] = path == null ? getContainerPath(marker.getResource())
+				: intern(path);
+		return row;
+	}
+
+	/**
+	 * Remove the row added last, as the marker was filtered out.
+	 */
+	void removeLast() {
+		size--;
+	}
+
+	/**
+	 * Shrink the columns to the number of rows.
+	 */
+	void trimToSize() {
+		grow(size);
+		String[] newStrings = new String[stringCount];
+		System.arraycopy(strings, 0, newStrings, 0, stringCount);
+		strings = newStrings;
+		CollationKey[] newKeys = new CollationKey[stringCount];
+		System.arraycopy(collationKeys, 0, newKeys, 0, stringCount);
+		collationKeys = newKeys;
+		// No more strings are added
+		stringIndexes = null;
+		containerPaths = null;
+	}
+
+	/**
+	 * Return the value of the integer column, or defaultValue if it is not
+	 * set.
+	 *
+	 * @param column
+	 * @param row
+	 * @param defaultValue
+	 * @return int
+	 */
+	int getIntValue(int column, int row, int defaultValue) {
+		int value;
+		switch (column) {
+		case SEVERITY:
+			value = severities[row];
+			break;
+		case PRIORITY:
+			value = priorities[row];
+			break;
+		case LINE_NUMBER:
+			value = lineNumbers[row];
+			break;
+		default:
+			throw new IllegalArgumentException();
+		}
+		return value == NO_VALUE ? defaultValue : value;
+	}
+
+	/**
+	 * Return the value of the attribute column, or <code>null</code> if it is
+	 * not set.
+	 *
+	 * @param column
+	 *            a column returned by {@link #getAttributeColumn(String)}
+	 * @param row
+	 * @return Object
+	 */
+	Object getAttributeValue(int column, int row) {
+		switch (column) {
+		case MESSAGE:
+			return getString(messages[row]);
+		case LOCATION:
+			return getString(locations[row]);
+		default:
+			int value = getIntValue(column, row, NO_VALUE);
+			return value == NO_VALUE ? null : Integer.valueOf(value);
+		}
+	}
+
+	/**
+	 * Return the creation time of the marker.
+	 *
+	 * @param row
+	 * @return long
+	 */
+	long getCreationTime(int row) {
+		return creationTimes[row];
+	}
+
+	/**
+	 * Return the type id of the marker.
+	 *
+	 * @param row
+	 * @return String
+	 */
+	String getTypeId(int row) {
+		return strings[types[row]];
+	}
+
+	/**
+	 * Return the path of the marker, or <code>null</code> if its resource is
+	 * not in a folder or project.
+	 *
+	 * @param row
+	 * @return String
+	 */
+	String getPath(int row) {
+		return getString(paths[row]);
+	}
+
+	/**
+	 * Return the collation key of the message of the marker.
+	 *
+	 * @param row
+	 * @return CollationKey
+	 */
+	CollationKey getMessageKey(int row) {
+		int index = messages[row];
+		if (index == NO_STRING) {
+			return getCollationKey(MarkerSupportInternalUtilities.UNKNOWN_ATRRIBTE_VALUE_STRING);
+		}
+		CollationKey key = collationKeys[index];
+		if (key == null) {
+			// Computing the same key twice from two threads is harmless
+			key = getCollationKey(strings[index]);
+			collationKeys[index] = key;
+		}
+		return key;
+	}
+
+	private static CollationKey getCollationKey(String value) {
+		if (value.length() == 0) {
+			return MarkerSupportInternalUtilities.EMPTY_COLLATION_KEY;
+		}
+		return Collator.getInstance().getCollationKey(value);
+	}
+
+	private static int getInt(Object value) {
+		return value == null ? NO_VALUE : ((Integer) value).intValue();
+	}
+
+	private String getString(int index) {
+		return index == NO_STRING ? null : strings[index];
+	}
+
+	private int getContainerPath(IResource resource) {
+		IContainer container = resource.getParent();
+		if (container == null || container.getType() == IResource.ROOT) {
+			return NO_STRING;
+		}
+		Integer index = (Integer) containerPaths.get(container);
+		if (index == null) {
+			index = Integer.valueOf(intern(container.getFullPath()
+					.removeTrailingSeparator().toString()));
+			containerPaths.put(container, index);
+		}
+		return index.intValue();
+	}
+
+	private int intern(String value) {
+		if (value == null) {
+			return NO_STRING;
+		}
+		Integer index = (Integer) stringIndexes.get(value);
+		if (index != null) {
+			return index.intValue();
+		}
+		if (stringCount == strings.length) {
+			String[] newStrings = new String[stringCount * 2];
+			System.arraycopy(strings, 0, newStrings, 0, stringCount);
+			strings = newStrings;
+			CollationKey[] newKeys = new CollationKey[stringCount * 2];
+			System.arraycopy(collationKeys, 0, newKeys, 0, stringCount);
+			collationKeys = newKeys;
+		}
+		strings[stringCount] = value;
+		stringIndexes.put(value, Integer.valueOf(stringCount));
+		return stringCount++;
+	}
+
+	private void grow(int capacity) {
+		severities = copyOf(severities, capacity);
+		priorities = copyOf(priorities, capacity);
+		lineNumbers = copyOf(lineNumbers, capacity);
+		types = copyOf(types, capacity);
+		messages = copyOf(messages, capacity);
+		locations = copyOf(locations, capacity);
+		paths = copyOf(paths, capacity);
+		long[] newTimes = new long[capacity];
+		System.arraycopy(creationTimes, 0, newTimes, 0, size);
+		creationTimes = newTimes;
+	}
+
+	private int[] copyOf(int[] column, int capacity) {
+		int[] newColumn = new int[capacity];
+		System.arraycopy(column, 0, newColumn, 0, size);
+		return newColumn;
+	}
+}
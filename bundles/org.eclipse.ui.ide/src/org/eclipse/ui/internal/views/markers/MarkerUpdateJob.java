@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009 IBM Corporation and others.
+ * Copyright (c) 2009, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -43,6 +43,8 @@ class MarkerUpdateJob extends Job {
 	MarkerUpdateJob(CachedMarkerBuilder builder) {
 		super(MarkerMessages.MarkerView_searching_for_markers);
 		this.builder = builder;
+		// run one at a time with the jobs applying changes
+		setRule(builder.getUpdateRule());
 	}
 
 	/*
@@ -72,6 +74,8 @@ class MarkerUpdateJob extends Job {
 		// builder.getUpdateScheduler().indicateStatus(
 		// MarkerMessages.MarkerView_searching_for_markers, false);
 
+		// the changes so far are gathered anyway
+		builder.clearIncrementalUpdates();
 		Collection markerEntries = new LinkedList();
 		//this is not incremental clean every time
 		clean = !clean(markerEntries, monitor);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2011 IBM Corporation and others.
+ * Copyright (c) 2009, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,8 +13,10 @@ package org.eclipse.ui.internal.views.markers;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -23,6 +25,7 @@ import java.util.TreeMap;
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.ui.views.markers.MarkerItem;
 import org.eclipse.ui.views.markers.internal.MarkerGroup;
 import org.eclipse.ui.views.markers.internal.MarkerGroupingEntry;
@@ -54,6 +57,13 @@ class Markers {
 	private Map markerToEntryMap = null;
 	private Integer[] markerCounts;
 
+	// the number of entries sorted from the start when not showing the
+	// hierarchy, see MarkerCategory#sortedCount for the categories
+	private int sortedCount;
+	// the group the entries were sorted and grouped for, if they were
+	private MarkerGroup group;
+	private boolean organized;
+
 	Markers(CachedMarkerBuilder builder) {
 		this.builder = builder;
 		inChange = false;
@@ -78,9 +88,13 @@ class Markers {
 				markerToEntryMap = null;
 			}
 			markerCounts = null;
+			organized = false;
 			if (markerEntries.size() == 0) {
 				categories = EMPTY_CATEGORY_ARRAY;
 				markerEntryArray = EMPTY_ENTRY_ARRAY;
+				sortedCount = 0;
+				group = builder.getCategoryGroup();
+				organized = sortAndGroup;
 				return true;
 			}
 			if (monitor.isCanceled()) {
@@ -115,6 +129,8 @@ class Markers {
 		boolean initialVal = inChange;
 		try {
 			inChange = true;
+			organized = false;
+			group = builder.getCategoryGroup();
 			// Sort by Category first
 			if (builder.isShowingHierarchy()) {
 				MarkerCategory[] markerCategories = groupIntoCategories(
@@ -129,7 +145,8 @@ class Markers {
 			}
 			monitor.subTask(MarkerMessages.MarkerView_processUpdates);
 
-			return sortMarkerEntries(monitor);
+			organized = sortMarkerEntries(monitor);
+			return organized;
 		} finally {
 			inChange = initialVal;
 		}
@@ -155,13 +172,19 @@ class Markers {
 					// sort various categories
 					MarkerCategory category = categories[i];
 					category.children = null; // reset cached children
+					category.sortedCount = 0;
 					int avaliable = category.end - category.start + 1;
 					int effLimit = getShowingLimit(avaliable);
 					MarkerSortUtil.sortStartingKElement(markerEntryArray,
 							comparator, category.start, category.end, effLimit,
 							monitor);
+					if (monitor.isCanceled()) {
+						return false;
+					}
+					category.sortedCount = getSortedCount(avaliable, effLimit);
 				}
 			} else {
+				sortedCount = 0;
 				if (monitor.isCanceled()) {
 					return false;
 				}
@@ -169,6 +192,10 @@ class Markers {
 				int effLimit = getShowingLimit(avaialble);
 				MarkerSortUtil.sortStartingKElement(markerEntryArray,
 						builder.getComparator(), effLimit, monitor);
+				if (monitor.isCanceled()) {
+					return false;
+				}
+				sortedCount = getSortedCount(markerEntryArray.length, effLimit);
 			}
 			if (monitor.isCanceled()) {
 				return false;
@@ -199,6 +226,20 @@ class Markers {
 		return effLimit;
 	}
 
+	/**
+	 * Return the number of entries sorted from the start of a range by
+	 * {@link MarkerSortUtil#sortStartingKElement(MarkerEntry[], Comparator, int, int, int, IProgressMonitor)}
+	 * 
+	 * @param available
+	 *            the number of entries in the range
+	 * @param k
+	 *            the number of entries that were asked to be sorted
+	 */
+	private static int getSortedCount(int available, int k) {
+		// the last entry is not less than the ones sorted before it
+		return k >= available - 1 ? available : Math.max(k, 0);
+	}
+
 	/**
 	 * Sort Markers according to groups, and Group them into categories
 	 * 
@@ -219,9 +260,15 @@ class Markers {
 		while (iterator.hasNext()) {
 			Object key = iterator.next();
 			end = ((Integer) boundaryInfoMap.get(key)).intValue();
-			markerCategories[i++] = new MarkerCategory(this, start, end,
-					builder.getCategoryGroup().getMarkerField()
+			MarkerCategory category = new MarkerCategory(this, newMarkers,
+					start, end, builder.getCategoryGroup().getMarkerField()
 							.getValue(newMarkers[start]));
+			category.groupingEntry = (MarkerGroupingEntry) key;
+			// the category is looked up from the entries on changes
+			for (int j = start; j <= end; j++) {
+				newMarkers[j].setCategory(category);
+			}
+			markerCategories[i++] = category;
 			start = end + 1;
 		}
 		return markerCategories;
@@ -283,6 +330,341 @@ class Markers {
 		return map;
 	}
 
+	/**
+	 * Return whether the changes of some markers can be applied to the
+	 * entries, which is the case once they were sorted and grouped for the
+	 * current category group.
+	 * 
+	 * @return boolean
+	 * @see #applyChanges(Collection, Collection)
+	 */
+	synchronized boolean canApplyChanges() {
+		return organized && group == builder.getCategoryGroup();
+	}
+
+	/**
+	 * Apply the changes of some markers to the sorted and grouped entries
+	 * instead of gathering, sorting and grouping all of them again. The added
+	 * entries are merged into the sorted entries of their categories using
+	 * binary searches, so the number of comparisons grows with the number of
+	 * changes only. The entries are copied to new arrays rather than changed in
+	 * place, since the clones shown by the view share them.
+	 * 
+	 * @param removed
+	 *            the {@link MarkerEntry}s to remove
+	 * @param added
+	 *            the {@link MarkerEntry}s to add, which were selected by the
+	 *            filters
+	 * @return the changed {@link MarkerCategory}s, or <code>null</code> if the
+	 *         elements changed and must all be refreshed
+	 * @see #canApplyChanges()
+	 */
+	synchronized Collection applyChanges(Collection removed, Collection added) {
+		if (removed.isEmpty() && added.isEmpty()) {
+			return Collections.EMPTY_LIST;
+		}
+		boolean initialVal = inChange;
+		try {
+			inChange = true;
+			// entries of changed markers are equal, so look them up by identity
+			Map removedEntries = new IdentityHashMap();
+			Iterator iterator = removed.iterator();
+			while (iterator.hasNext()) {
+				removedEntries.put(iterator.next(), Boolean.TRUE);
+			}
+			boolean showingHierarchy = group != null;
+			Comparator comparator = showingHierarchy ? builder.getComparator()
+					.getFieldsComparator() : builder.getComparator();
+			List addedEntries = new ArrayList(added);
+			Collections.sort(addedEntries, comparator);
+
+			Collection changes;
+			boolean structureChanged = !showingHierarchy;
+			if (showingHierarchy) {
+				TreeMap categoryChanges = new TreeMap(
+						group.getEntriesComparator());
+				for (int i = 0; i < categories.length; i++) {
+					categoryChanges.put(categories[i].groupingEntry,
+							new RangeChange(categories[i]));
+				}
+				changes = categoryChanges.values();
+				iterator = removed.iterator();
+				while (iterator.hasNext()) {
+					MarkerCategory category = ((MarkerEntry) iterator.next())
+							.getCategory();
+					RangeChange change = null;
+					if (category != null && category.groupingEntry != null) {
+						change = (RangeChange) categoryChanges
+								.get(category.groupingEntry);
+					}
+					if (change == null) {
+						// not where it is expected, look for it everywhere
+						Iterator all = changes.iterator();
+						while (all.hasNext()) {
+							((RangeChange) all.next()).changed = true;
+						}
+						structureChanged = true;
+						break;
+					}
+					change.changed = true;
+				}
+				iterator = addedEntries.iterator();
+				while (iterator.hasNext()) {
+					MarkerEntry entry = (MarkerEntry) iterator.next();
+					String type = entry.getMarkerTypeId();
+					if (type == null) {
+						continue;// skip stale markers
+					}
+					MarkerGroupingEntry groupingEntry = group.findGroupValue(
+							type, entry.getMarker());
+					RangeChange change = (RangeChange) categoryChanges
+							.get(groupingEntry);
+					if (change == null) {
+						change = new RangeChange(groupingEntry);
+						categoryChanges.put(groupingEntry, change);
+						structureChanged = true;
+					}
+					change.changed = true;
+					change.added.add(entry);
+				}
+			} else {
+				RangeChange change = new RangeChange(null, 0,
+						markerEntryArray.length - 1, sortedCount);
+				change.changed = true;
+				change.added.addAll(addedEntries);
+				changes = Collections.singletonList(change);
+			}
+
+			MarkerEntry[] newEntries = new MarkerEntry[markerEntryArray.length
+					+ addedEntries.size()];
+			int size = 0;
+			int removedCount = 0;
+			iterator = changes.iterator();
+			while (iterator.hasNext()) {
+				RangeChange change = (RangeChange) iterator.next();
+				if (change.changed) {
+					applyChange(change, newEntries, size, removedEntries,
+							comparator);
+					removedCount += change.removedCount;
+				} else {
+					change.newStart = size;
+					change.newSize = change.end - change.start + 1;
+					System.arraycopy(markerEntryArray, change.start,
+							newEntries, size, change.newSize);
+				}
+				size += change.newSize;
+			}
+			if (size < newEntries.length) {
+				MarkerEntry[] trimmed = new MarkerEntry[size];
+				System.arraycopy(newEntries, 0, trimmed, 0, size);
+				newEntries = trimmed;
+			}
+
+			Collection changedCategories = new ArrayList();
+			if (showingHierarchy) {
+				List newCategories = new ArrayList();
+				iterator = changes.iterator();
+				while (iterator.hasNext()) {
+					RangeChange change = (RangeChange) iterator.next();
+					if (change.newSize == 0) {
+						structureChanged = true;
+						continue;
+					}
+					String name = change.changed ? group.getMarkerField()
+							.getValue(newEntries[change.newStart])
+							: change.category.getName();
+					if (change.category == null
+							|| (name == null ? change.category.getName() != null
+									: !name.equals(change.category.getName()))) {
+						structureChanged = true;
+					}
+					MarkerCategory category = new MarkerCategory(this,
+							newEntries, change.newStart, change.newStart
+									+ change.newSize - 1, name);
+					category.groupingEntry = change.groupingEntry;
+					category.sortedCount = change.sortedCount;
+					if (change.changed) {
+						for (int i = category.start; i <= category.end; i++) {
+							newEntries[i].setCategory(category);
+						}
+						changedCategories.add(category);
+					}
+					newCategories.add(category);
+				}
+				categories = new MarkerCategory[newCategories.size()];
+				newCategories.toArray(categories);
+			} else {
+				sortedCount = ((RangeChange) changes.iterator().next()).sortedCount;
+			}
+			markerEntryArray = newEntries;
+
+			updateMarkerCounts(removedEntries.keySet(), changes,
+					removedCount == removedEntries.size());
+			if (markerToEntryMap != null) {
+				iterator = removed.iterator();
+				while (iterator.hasNext()) {
+					MarkerEntry entry = (MarkerEntry) iterator.next();
+					IMarker marker = entry.getMarker();
+					if (marker != null && markerToEntryMap.get(marker) == entry) {
+						markerToEntryMap.remove(marker);
+					}
+				}
+				iterator = changes.iterator();
+				while (iterator.hasNext()) {
+					Iterator entries = ((RangeChange) iterator.next()).added
+							.iterator();
+					while (entries.hasNext()) {
+						MarkerEntry entry = (MarkerEntry) entries.next();
+						markerToEntryMap.put(entry.getMarker(), entry);
+					}
+				}
+			}
+			return structureChanged ? null : changedCategories;
+		} finally {
+			inChange = initialVal;
+		}
+	}
+
+	/**
+	 * Copy the entries of the range of change to target from offset, leaving
+	 * out the removed ones and merging in the added ones.
+	 * 
+	 * @param change
+	 * @param target
+	 * @param offset
+	 * @param removedEntries
+	 * @param comparator
+	 */
+	private void applyChange(RangeChange change, MarkerEntry[] target,
+			int offset, Map removedEntries, Comparator comparator) {
+		int sortedEnd = change.start + change.sortedCount;
+		boolean allSorted = change.sortedCount == change.end - change.start + 1;
+		int next = offset;
+		int copied = change.start;
+		List unsorted = new ArrayList();
+		Iterator iterator = change.added.iterator();
+		while (iterator.hasNext()) {
+			MarkerEntry entry = (MarkerEntry) iterator.next();
+			// the sorted entries are not greater than the others, so an entry
+			// sorting after the last of them goes to the others
+			if (!allSorted
+					&& (change.sortedCount == 0 || comparator.compare(entry,
+							markerEntryArray[sortedEnd - 1]) >= 0)) {
+				unsorted.add(entry);
+				continue;
+			}
+			// the added entries are sorted, so they go after the previous one
+			int index = insertionIndex(entry, copied, sortedEnd, comparator);
+			next = copyEntries(change, copied, index, target, next,
+					removedEntries);
+			target[next++] = entry;
+			copied = index;
+		}
+		next = copyEntries(change, copied, sortedEnd, target, next,
+				removedEntries);
+		int sorted = next - offset;
+		next = copyEntries(change, sortedEnd, change.end + 1, target, next,
+				removedEntries);
+		for (int i = 0; i < unsorted.size(); i++) {
+			target[next++] = (MarkerEntry) unsorted.get(i);
+		}
+
+		int size = next - offset;
+		int limit = getShowingLimit(size);
+		if (sorted < limit) {
+			// the removed entries were shown, sort the next ones to show
+			int k = limit - sorted;
+			MarkerSortUtil.sortStartingKElement(target, comparator, offset
+					+ sorted, next - 1, k, new NullProgressMonitor());
+			sorted += getSortedCount(size - sorted, k);
+		}
+		change.newStart = offset;
+		change.newSize = size;
+		change.sortedCount = sorted;
+	}
+
+	/**
+	 * Copy the entries from index from to index to of the range of change to
+	 * target, leaving out the removed ones.
+	 * 
+	 * @return the index in target after the copied entries
+	 */
+	private int copyEntries(RangeChange change, int from, int to,
+			MarkerEntry[] target, int next, Map removedEntries) {
+		for (int i = from; i < to; i++) {
+			if (removedEntries.containsKey(markerEntryArray[i])) {
+				change.removedCount++;
+			} else {
+				target[next++] = markerEntryArray[i];
+			}
+		}
+		return next;
+	}
+
+	/**
+	 * Return the index between from and to of the first of the sorted entries
+	 * that is greater than entry.
+	 */
+	private int insertionIndex(MarkerEntry entry, int from, int to,
+			Comparator comparator) {
+		int low = from;
+		int high = to - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (comparator.compare(markerEntryArray[mid], entry) > 0) {
+				high = mid - 1;
+			} else {
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Update the marker counts, if they were computed, with the removed and
+	 * added entries. The severity of a removed entry is only known from its
+	 * snapshot, its cache being cleared and its marker possibly deleted:
+	 * without snapshots the counts are computed again.
+	 * 
+	 * @param removedEntries
+	 * @param changes
+	 * @param allRemoved
+	 *            whether all the removed entries were found
+	 */
+	private void updateMarkerCounts(Collection removedEntries,
+			Collection changes, boolean allRemoved) {
+		if (markerCounts == null) {
+			return;
+		}
+		if (!allRemoved) {
+			// count them again when asked
+			markerCounts = null;
+			return;
+		}
+		int[] ints = new int[markerCounts.length];
+		for (int i = 0; i < ints.length; i++) {
+			ints[i] = markerCounts[i].intValue();
+		}
+		Iterator iterator = removedEntries.iterator();
+		while (iterator.hasNext()) {
+			MarkerEntry entry = (MarkerEntry) iterator.next();
+			if (entry.getSnapshot() == null) {
+				markerCounts = null;
+				return;
+			}
+			ints[getCountIndex(entry)]--;
+		}
+		iterator = changes.iterator();
+		while (iterator.hasNext()) {
+			Iterator entries = ((RangeChange) iterator.next()).added
+					.iterator();
+			while (entries.hasNext()) {
+				ints[getCountIndex((MarkerEntry) entries.next())]++;
+			}
+		}
+		markerCounts = toMarkerCounts(ints);
+	}
+
 	/**
 	 * Returns an array of marker counts where getMarkerCounts()[severity] is
 	 * the number of markers in the list with the given severity.
@@ -309,26 +691,43 @@ class Markers {
 	static Integer[] getMarkerCounts(MarkerEntry[] entries) {
 		int[] ints = new int[] { 0, 0, 0, 0 };
 		for (int idx = 0; idx < entries.length; idx++) {
-			IMarker marker = entries[idx].getMarker();
-			int severity = -1;
-			Object value = null;
+			ints[getCountIndex(entries[idx])]++;
+		}
+		return toMarkerCounts(ints);
+	}
+
+	/**
+	 * Return the index of the count of the severity of entry in the marker
+	 * counts.
+	 * 
+	 * @param entry
+	 * @return int
+	 */
+	private static int getCountIndex(MarkerEntry entry) {
+		int severity = -1;
+		Object value = null;
+		if (entry.getSnapshot() != null) {
+			value = entry.getAttributeValue(IMarker.SEVERITY);
+		} else {
 			try {
-				value = marker.getAttribute(IMarker.SEVERITY);
+				value = entry.getMarker().getAttribute(IMarker.SEVERITY);
 			} catch (CoreException e) {
-				entries[idx].checkIfMarkerStale();
-			}
-			if (value instanceof Integer) {
-				severity = ((Integer) value).intValue();
-			}
-			if (severity >= IMarker.SEVERITY_INFO) {
-				ints[severity]++;
-			} else {
-				ints[3]++;
+				entry.checkIfMarkerStale();
 			}
 		}
+		if (value instanceof Integer) {
+			severity = ((Integer) value).intValue();
+		}
+		if (severity >= IMarker.SEVERITY_INFO
+				&& severity <= IMarker.SEVERITY_ERROR) {
+			return IMarker.SEVERITY_ERROR - severity;
+		}
+		return 3;
+	}
 
-		return new Integer[] { new Integer(ints[2]), new Integer(ints[1]),
-				new Integer(ints[0]), new Integer(ints[3]) };
+	private static Integer[] toMarkerCounts(int[] ints) {
+		return new Integer[] { new Integer(ints[0]), new Integer(ints[1]),
+				new Integer(ints[2]), new Integer(ints[3]) };
 	}
 
 	/**
@@ -392,6 +791,7 @@ class Markers {
 		if (!inChange) {
 			markers.markerEntryArray = markerEntryArray;
 			markers.categories = categories;
+			markers.markerCounts = markerCounts;
 		}
 		return markers;
 	}
@@ -440,4 +840,49 @@ class Markers {
 		}
 		return true;
 	}
+
+	/**
+	 * The changes of a range of the sorted entries, which is a category or all
+	 * of them when not showing the hierarchy.
+	 */
+	private static class RangeChange {
+
+		final MarkerCategory category;
+		final MarkerGroupingEntry groupingEntry;
+		final int start;
+		final int end;
+		int sortedCount;
+
+		final List added = new ArrayList();
+		boolean changed;
+		int removedCount;
+
+		// the range of the entries once changed
+		int newStart;
+		int newSize;
+
+		RangeChange(MarkerCategory category) {
+			this(category, category.start, category.end, category.sortedCount);
+		}
+
+		RangeChange(MarkerGroupingEntry groupingEntry) {
+			this(null, groupingEntry, 0, -1, 0);
+		}
+
+		RangeChange(MarkerCategory category, int start, int end,
+				int sortedCount) {
+			this(category, category == null ? null : category.groupingEntry,
+					start, end, sortedCount);
+		}
+
+		private RangeChange(MarkerCategory category,
+				MarkerGroupingEntry groupingEntry, int start, int end,
+				int sortedCount) {
+			this.category = category;
+			this.groupingEntry = groupingEntry;
+			this.start = start;
+			this.end = end;
+			this.sortedCount = sortedCount;
+		}
+	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009 IBM Corporation and others.
+ * Copyright (c) 2009, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -25,7 +25,7 @@ import org.eclipse.core.runtime.jobs.Job;
 /**
  * The MarkersChangeListener is IResourceChangeListener that waits for any
  * change in the markers in workspace that are of the view's interest. Schedules
- * an update if we have a change that affects the view.
+ * an incremental update if we have a change that affects the view.
  * 
  * @since 3.6
  */
@@ -138,10 +138,6 @@ class MarkersChangeListener implements IResourceChangeListener {
 			// return;
 			// }
 			
-			if (!builder.isIncremental()) {
-				handleMarkerChange(event);
-				return;
-			}
 			handleIncrementalChange(event);
 		} finally {
 			setReceivingChange(false);
@@ -163,14 +159,6 @@ class MarkersChangeListener implements IResourceChangeListener {
 		this.receiving = receiving;
 	}
 
-	/**
-	 * Handle marker change event
-	 * @param event
-	 */
-	private void handleMarkerChange(IResourceChangeEvent event) {
-		builder.getUpdateScheduler().scheduleUpdate();
-	}
-	
 	/**
 	 * Markers have not changed
 	 */
@@ -180,14 +168,11 @@ class MarkersChangeListener implements IResourceChangeListener {
 
 	/**
 	 * Handle changes incrementally. 
-	 * The following performs incremental updation
-	 * of the markers that were gathered initially, and keeps them synched at
-	 * any point with the markers of interest in Workspace. Unfortunately marker
-	 * operations cannot be locked so locking between gathering of markers and
-	 * marker deltas is not possible.
-	 * 
-	 * Note : this method of updating is NOT used and tested yet and has holes
-	 * but left out SOLELY for further investigation(*).
+	 * The {@link IncrementUpdateJob} applies the changed markers to the markers
+	 * that were gathered initially, and keeps them synched at any point with
+	 * the markers of interest in Workspace. Unfortunately marker operations
+	 * cannot be locked so locking between gathering of markers and marker
+	 * deltas is not possible; the markers changed meanwhile are applied again.
 	 * 
 	 * @param event
 	 */
@@ -205,18 +190,17 @@ class MarkersChangeListener implements IResourceChangeListener {
 					continue;
 				}
 				IMarker marker = markerDeltas[i].getMarker();
-				MarkerEntry markerEntry = new MarkerEntry(marker);
 				switch (markerDeltas[i].getKind()) {
 				case IResourceDelta.REMOVED: {
-					removed.add(markerEntry);
+					removed.add(marker);
 					break;
 				}
 				case IResourceDelta.ADDED: {
-					added.add(markerEntry);
+					added.add(marker);
 					break;
 				}
 				case IResourceDelta.CHANGED: {
-					changed.add(markerEntry);
+					changed.add(marker);
 					break;
 				}
 				default:{
@@ -231,7 +215,6 @@ class MarkersChangeListener implements IResourceChangeListener {
 		if (removed.size() > 0 || added.size() > 0 || changed.size() > 0) {
 			MarkerUpdate update = new MarkerUpdate(added, removed, changed);
 			builder.incrementalUpdate(update);
-			builder.getUpdateScheduler().scheduleUpdate();
 		} else {
 			handleNoMarkerChange();
 		}
@@ -453,7 +436,7 @@ class MarkersChangeListener implements IResourceChangeListener {
 ///////////helpers/////////////
 
 /**
- * For Incremental updating
+ * For Incremental updating, the {@link IMarker}s added, removed and changed
  * @since 3.6
  */
 class MarkerUpdate {
@@ -593,6 +576,9 @@ class MarkerUpdateScheduler {
 			if (updateJob != null) {
 				pending = updateJob.getState() != Job.NONE;
 			}
+			if (!pending) {
+				pending = builder.incrementalUpdatePending();
+			}
 			if (!pending) {
 				if (uiUpdateJob != null) {
 					pending = uiUpdateJob.getState() != Job.NONE;
@@ -616,6 +602,18 @@ class MarkerUpdateScheduler {
 		uiUpdateJob = view.scheduleUpdate(delay);
 	}
 
+	/**
+	 * Schedule only an UI update of some categories
+	 * 
+	 * @param delay
+	 * @param categories
+	 *            the changed {@link MarkerCategory}s, or <code>null</code> to
+	 *            update all
+	 */
+	void scheduleUIUpdate(long delay, Collection categories) {
+		uiUpdateJob = view.scheduleUpdate(delay, categories);
+	}
+
 	/**
 	 * Cancel any marker update if pending.
 	 * 
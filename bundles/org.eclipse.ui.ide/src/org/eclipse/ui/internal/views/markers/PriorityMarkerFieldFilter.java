@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2008 IBM Corporation and others.
+ * Copyright (c) 2007, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -97,7 +97,7 @@ public class PriorityMarkerFieldFilter extends CompatibilityFieldFilter {
 		IMarker marker = item.getMarker();
 		if (marker == null)
 			return false;
-		int markerPriority = 1 << marker.getAttribute(IMarker.PRIORITY,
+		int markerPriority = 1 << item.getAttributeValue(IMarker.PRIORITY,
 				IMarker.PRIORITY_NORMAL);
 
 		switch (markerPriority) {
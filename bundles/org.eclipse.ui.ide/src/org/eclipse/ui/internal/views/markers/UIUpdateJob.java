@@ -11,6 +11,11 @@
 
 package org.eclipse.ui.internal.views.markers;
 
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
@@ -36,6 +41,11 @@ class UIUpdateJob extends WorkbenchJob {
 
 	private long lastUpdateTime=-1;
 
+	// whether all the elements are refreshed, else the categories only
+	private boolean refreshAll;
+
+	private Set categories = new HashSet();
+
 	/**
 	 * @param view
 	 *            the markers view base class
@@ -108,14 +118,25 @@ class UIUpdateJob extends WorkbenchJob {
 				contentProvider.inputChanged(viewer, view.getViewerInput(), clone);
 
 				viewer.getTree().setRedraw(false);
-				viewer.refresh(true);
-				if (!monitor.isCanceled()) {
-					//do not expand if canceled
-					view.reexpandCategories();
+				Object[] changedCategories = takeCategories();
+				if (changedCategories == null) {
+					viewer.refresh(true);
+					if (!monitor.isCanceled()) {
+						//do not expand if canceled
+						view.reexpandCategories();
+					}
+				} else {
+					// the other elements did not change
+					for (int i = 0; i < changedCategories.length; i++) {
+						viewer.refresh(changedCategories[i], true);
+					}
 				}
 				if (view.getBuilder().readChangeFlags()[0]) {
 					// indicate changes
 				}
+			} else {
+				// the categories are refreshed with the rest once visible
+				refreshAll();
 			}
 
 			// show new counts
@@ -134,6 +155,46 @@ class UIUpdateJob extends WorkbenchJob {
 		return Status.OK_STATUS;
 	}
 
+	/**
+	 * Refresh all the elements on the next run.
+	 */
+	synchronized void refreshAll() {
+		refreshAll = true;
+		categories.clear();
+	}
+
+	/**
+	 * Refresh the given categories on the next run, unless all the elements
+	 * are refreshed.
+	 * 
+	 * @param changedCategories
+	 *            the changed {@link MarkerCategory}s
+	 */
+	synchronized void refreshCategories(Collection changedCategories) {
+		if (refreshAll) {
+			return;
+		}
+		Iterator iterator = changedCategories.iterator();
+		while (iterator.hasNext()) {
+			// keep the latest of the equal categories
+			Object category = iterator.next();
+			categories.remove(category);
+			categories.add(category);
+		}
+	}
+
+	/**
+	 * Return the categories to refresh and forget them.
+	 * 
+	 * @return Object[] or <code>null</code> to refresh all the elements
+	 */
+	private synchronized Object[] takeCategories() {
+		Object[] result = refreshAll ? null : categories.toArray();
+		refreshAll = false;
+		categories.clear();
+		return result;
+	}
+
 	/**
 	 * @return Returns true if updating.
 	 */
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2006 IBM Corporation and others.
+ * Copyright (c) 2000, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -106,4 +106,35 @@ class DecorationReference {
 		newContexts[contexts.length] = context;
 		contexts = newContexts;
 	}
+
+	/**
+	 * Return a reference with the force update flag and the contexts of the
+	 * receiver and the supplied ones. The receiver is not changed so that it
+	 * can be read by another thread meanwhile.
+	 * @param force whether an update is forced
+	 * @param context the decoration context to add
+	 * @return the receiver if it already has the flag and the context,
+	 * otherwise a copy of the receiver with them
+	 */
+	DecorationReference merge(boolean force, IDecorationContext context) {
+		boolean hasContext = false;
+		for (int i = 0; i < contexts.length; i++) {
+			if (contexts[i].equals(context)) {
+				hasContext = true;
+				break;
+			}
+		}
+		if (hasContext && (forceUpdate || !force)) {
+			return this;
+		}
+		DecorationReference merged = new DecorationReference(element,
+				adaptedElement, contexts[0]);
+		merged.contexts = contexts;
+		if (!hasContext) {
+			merged.addContext(context);
+		}
+		merged.forceUpdate = forceUpdate || force;
+		merged.undecoratedText = undecoratedText;
+		return merged;
+	}
 }
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.internal.decorators;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The DecorationResultCache holds the decoration results of the elements
+ * decorated in a decoration context. The results not yet delivered to the
+ * labels of their elements are always kept, since discarding them would only
+ * get the elements decorated again. Once delivered, the cache holds a bounded
+ * number of them, discarding the least recently used ones when it is full, so
+ * that it does not grow without limit.
+ * <p>
+ * The cache is split in segments locked separately, so that the decoration
+ * jobs and the UI thread seldom wait for each other.
+ * </p>
+ */
+class DecorationResultCache {
+
+	private static final int SEGMENT_COUNT = 16;
+
+	/**
+	 * A segment of the cache, holding the delivered results ordered from the
+	 * least to the most recently used one.
+	 */
+	private static class Segment extends LinkedHashMap {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int capacity;
+
+		// The results not delivered yet, never discarded
+		final Map pending = new HashMap();
+
+		Segment(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry eldest) {
+			return size() > capacity;
+		}
+	}
+
+	private final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+	/**
+	 * Create a new instance of the receiver holding at most about the supplied
+	 * number of delivered results.
+	 *
+	 * @param capacity
+	 *            the maximum number of delivered results
+	 */
+	DecorationResultCache(int capacity) {
+		int segmentCapacity = Math.max(1, capacity / SEGMENT_COUNT);
+		for (int i = 0; i < segments.length; i++) {
+			segments[i] = new Segment(segmentCapacity);
+		}
+	}
+
+	private Segment segmentFor(Object element) {
+		int hash = element.hashCode();
+		hash ^= (hash >>> 16);
+		return segments[hash & (SEGMENT_COUNT - 1)];
+	}
+
+	/**
+	 * Return the result of the element, or <code>null</code> if it is not
+	 * cached.
+	 *
+	 * @param element
+	 * @return DecorationResult or <code>null</code>
+	 */
+	DecorationResult get(Object element) {
+		Segment segment = segmentFor(element);
+		synchronized (segment) {
+			DecorationResult result = (DecorationResult) segment.pending
+					.get(element);
+			if (result != null) {
+				return result;
+			}
+			return (DecorationResult) segment.get(element);
+		}
+	}
+
+	/**
+	 * Cache the result of the element, which is kept until it is delivered.
+	 *
+	 * @param element
+	 * @param result
+	 */
+	void put(Object element, DecorationResult result) {
+		Segment segment = segmentFor(element);
+		synchronized (segment) {
+			segment.remove(element);
+			segment.pending.put(element, result);
+		}
+	}
+
+	/**
+	 * The results of the elements were delivered to their labels, they may
+	 * be discarded from now on.
+	 *
+	 * @param elements
+	 */
+	void delivered(Object[] elements) {
+		for (int i = 0; i < elements.length; i++) {
+			Segment segment = segmentFor(elements[i]);
+			synchronized (segment) {
+				Object result = segment.pending.remove(elements[i]);
+				if (result != null) {
+					segment.put(elements[i], result);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Return the number of cached results.
+	 *
+	 * @return int
+	 */
+	int size() {
+		int size = 0;
+		for (int i = 0; i < segments.length; i++) {
+			synchronized (segments[i]) {
+				size += segments[i].size() + segments[i].pending.size();
+			}
+		}
+		return size;
+	}
+}
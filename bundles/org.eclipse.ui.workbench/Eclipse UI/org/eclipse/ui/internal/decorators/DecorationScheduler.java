@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2009 IBM Corporation and others.
+ * Copyright (c) 2000, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,14 +12,16 @@
  *******************************************************************************/
 package org.eclipse.ui.internal.decorators;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -41,18 +43,35 @@ import org.eclipse.ui.progress.WorkbenchJob;
 
 /**
  * The DecorationScheduler is the class that handles the decoration of elements
- * using a background thread.
+ * using background threads.
+ * <p>
+ * The elements awaiting decoration are queued without locking. They are
+ * decorated by a single job, or by several jobs in parallel when all the
+ * enabled lightweight decorators are thread safe. The results are cached per
+ * decoration context until the labels are updated, in caches discarding the
+ * results already delivered to the labels when they are full.
+ * </p>
+ * <p>
+ * The viewers tell the scheduler which elements they show with
+ * {@link #setViewport(Object, Object[], Object[])}. The elements of the
+ * visible rows are decorated first, then the elements about to be scrolled
+ * into view, then the other elements. The elements a viewer scrolled away, or
+ * a disposed viewer showed, are demoted to the priority of the elements no
+ * viewer shows, unless another viewer still shows them.
+ * </p>
  */
 public class DecorationScheduler {
 
 	static final ILabelProviderListener[] EMPTY_LISTENER_LIST = new ILabelProviderListener[0];
 
-	// When decorations are computed they are added to this cache via
-	// decorated() method
-	Map resultCache = new HashMap();
+	// When decorations are computed they are added to the cache of their
+	// context via decorated() method
+	Map resultCache = new ConcurrentHashMap();
 
-	// Objects that need an icon and text computed for display to the user
-	List awaitingDecoration = new ArrayList();
+	// Objects that need an icon and text computed for display to the user,
+	// queued by priority
+	Queue[] awaitingDecoration = new Queue[] { new ConcurrentLinkedQueue(),
+			new ConcurrentLinkedQueue(), new ConcurrentLinkedQueue() };
 
 	// Objects that are awaiting a label update.
 	Set pendingUpdate = new HashSet();
@@ -60,18 +79,28 @@ public class DecorationScheduler {
 	// Key to lock write access to the pending update set
 	Object pendingKey = new Object();
 
-	Map awaitingDecorationValues = new HashMap();
+	Map awaitingDecorationValues = new ConcurrentHashMap();
+
+	// The priorities of the elements shown by the viewers, as Integers
+	private Map priorities = new ConcurrentHashMap();
+
+	// The Viewports of the viewers
+	private Map viewports = new HashMap();
 
 	DecoratorManager decoratorManager;
 
-	boolean shutdown = false;
+	volatile boolean shutdown = false;
 
 	Job decorationJob;
 
+	// The jobs decorating in parallel with decorationJob, created when the
+	// decorators are thread safe
+	private Job[] parallelDecorationJobs;
+
 	UIJob updateJob;
 
 	private Collection removedListeners = Collections
-			.synchronizedSet(new HashSet());
+			.newSetFromMap(new ConcurrentHashMap());
 
 	private Job clearJob;
 
@@ -81,6 +110,31 @@ public class DecorationScheduler {
 	/** Amount of time to delay the update notification when max reached. */
 	static final int UPDATE_DELAY = 100;
 
+	/** The maximum number of results cached per decoration context. */
+	static final int MAX_CACHED_RESULTS = 10000;
+
+	/** The priority of the elements of the visible rows of a viewer. */
+	static final int PRIORITY_VISIBLE = 0;
+
+	/** The priority of the elements about to be scrolled into view. */
+	static final int PRIORITY_NEAR = 1;
+
+	/** The priority of the elements not shown by a viewer. */
+	static final int PRIORITY_BACKGROUND = 2;
+
+	/** The maximum number of jobs decorating in parallel. */
+	static final int MAX_DECORATION_JOBS = Math.min(4, Runtime.getRuntime()
+			.availableProcessors());
+
+	/**
+	 * The elements a viewer shows.
+	 */
+	private static class Viewport {
+
+		// The priorities of the elements, as Integers
+		Map priorities = new HashMap();
+	}
+
 	/**
 	 * Return a new instance of the receiver configured for the supplied
 	 * DecoratorManager.
@@ -89,7 +143,8 @@ public class DecorationScheduler {
 	 */
 	DecorationScheduler(DecoratorManager manager) {
 		decoratorManager = manager;
-		createDecorationJob();
+		decorationJob = createDecorationJob();
+		decorationJob.schedule();
 	}
 
 	/**
@@ -134,31 +189,64 @@ public class DecorationScheduler {
 	 *            The decoration context
 	 */
 
-	synchronized void queueForDecoration(Object element, Object adaptedElement,
+	void queueForDecoration(Object element, Object adaptedElement,
 			boolean forceUpdate, String undecoratedText,
 			IDecorationContext context) {
 
 		Assert.isNotNull(context);
-		DecorationReference reference = (DecorationReference) awaitingDecorationValues
-				.get(element);
-		if (reference != null) {
-			if (forceUpdate) {// Make sure we don't loose a force
+		ConcurrentHashMap values = (ConcurrentHashMap) awaitingDecorationValues;
+		while (true) {
+			DecorationReference reference = (DecorationReference) values
+					.get(element);
+			if (reference != null) {
+				// Make sure we don't loose a force or a context. The queued
+				// reference is replaced rather than changed as a decoration
+				// job may be taking it.
+				DecorationReference merged = reference.merge(forceUpdate,
+						context);
+				if (merged == reference
+						|| values.replace(element, reference, merged)) {
+					return;
+				}
+			} else {
+				reference = new DecorationReference(element, adaptedElement,
+						context);
 				reference.setForceUpdate(forceUpdate);
+				reference.setUndecoratedText(undecoratedText);
+				if (values.putIfAbsent(element, reference) == null) {
+					awaitingDecoration[getPriority(element)].add(element);
+					if (shutdown) {
+						return;
+					}
+					scheduleDecoration();
+					return;
+				}
 			}
-			reference.addContext(context);
-		} else {
-			reference = new DecorationReference(element, adaptedElement,
-					context);
-			reference.setForceUpdate(forceUpdate);
-			reference.setUndecoratedText(undecoratedText);
-			awaitingDecorationValues.put(element, reference);
-			awaitingDecoration.add(element);
-			if (shutdown) {
-				return;
-			}
-			decorationJob.schedule();
 		}
+	}
 
+	/**
+	 * Schedule the decoration jobs, several of them if all the enabled
+	 * lightweight decorators are thread safe.
+	 */
+	private void scheduleDecoration() {
+		decorationJob.schedule();
+		if (MAX_DECORATION_JOBS > 1
+				&& decoratorManager.getLightweightManager().isThreadSafe()) {
+			Job[] jobs = parallelDecorationJobs;
+			if (jobs == null) {
+				jobs = new Job[MAX_DECORATION_JOBS - 1];
+				for (int i = 0; i < jobs.length; i++) {
+					jobs[i] = createDecorationJob();
+				}
+				parallelDecorationJobs = jobs;
+			}
+			for (int i = 0; i < jobs.length; i++) {
+				if (jobs[i].getState() == Job.NONE) {
+					jobs[i].schedule();
+				}
+			}
+		}
 	}
 
 	/**
@@ -219,27 +307,56 @@ public class DecorationScheduler {
 
 	private DecorationResult internalGetResult(Object element,
 			IDecorationContext context) {
-		Map results = (Map) resultCache.get(context);
+		DecorationResultCache results = (DecorationResultCache) resultCache
+				.get(context);
 		if (results != null) {
-			return (DecorationResult) results.get(element);
+			return results.get(element);
 		}
 		return null;
 	}
 
 	protected void internalPutResult(Object element,
 			IDecorationContext context, DecorationResult result) {
-		Map results = (Map) resultCache.get(context);
+		DecorationResultCache results = (DecorationResultCache) resultCache
+				.get(context);
 		if (results == null) {
-			results = new HashMap();
-			resultCache.put(context, results);
+			results = new DecorationResultCache(MAX_CACHED_RESULTS);
+			DecorationResultCache existing = (DecorationResultCache) ((ConcurrentHashMap) resultCache)
+					.putIfAbsent(context, results);
+			if (existing != null) {
+				results = existing;
+			}
 		}
 		results.put(element, result);
 	}
 
+	/**
+	 * The labels of the elements were updated with their results, which may
+	 * be discarded from now on when the caches are full.
+	 * 
+	 * @param elements
+	 */
+	void resultsDelivered(Object[] elements) {
+		for (Iterator iterator = resultCache.values().iterator(); iterator
+				.hasNext();) {
+			((DecorationResultCache) iterator.next()).delivered(elements);
+		}
+	}
+
 	/**
 	 * Execute a label update using the pending decorations.
 	 */
-	synchronized void decorated() {
+	void decorated() {
+		decorated(UPDATE_DELAY);
+	}
+
+	/**
+	 * Execute a label update using the pending decorations after the delay.
+	 * 
+	 * @param delay
+	 *            the delay in milliseconds
+	 */
+	synchronized void decorated(long delay) {
 
 		// Don't bother if we are shutdown now
 		if (shutdown) {
@@ -252,13 +369,17 @@ public class DecorationScheduler {
 		}
 
 		// Give it a bit of a lag for other updates to occur
-		updateJob.schedule(UPDATE_DELAY);
+		updateJob.schedule(delay);
+		if (delay == 0) {
+			// Do not wait for the lag of an update already scheduled
+			updateJob.wakeUp();
+		}
 	}
 
 	/**
 	 * Shutdown the decoration.
 	 */
-	synchronized void shutdown() {
+	void shutdown() {
 		shutdown = true;
 	}
 
@@ -267,21 +388,173 @@ public class DecorationScheduler {
 	 * 
 	 * @return IResource
 	 */
-	synchronized DecorationReference nextElement() {
+	DecorationReference nextElement() {
+		int priority = PRIORITY_VISIBLE;
+		while (!shutdown && priority < awaitingDecoration.length) {
+			Object element = awaitingDecoration[priority].poll();
+			if (element == null) {
+				priority++;
+				continue;
+			}
+			if (getPriority(element) > priority) {
+				// Demoted since it was queued, it is queued with its new
+				// priority too
+				continue;
+			}
+			// The queues hold the elements queued again with another
+			// priority twice, the element is decorated the first time
+			DecorationReference reference = (DecorationReference) awaitingDecorationValues
+					.remove(element);
+			if (reference != null) {
+				return reference;
+			}
+		}
+		return null;
+	}
 
-		if (shutdown || awaitingDecoration.isEmpty()) {
-			return null;
+	/**
+	 * Return the priority of the decoration of the element.
+	 * 
+	 * @param element
+	 * @return int
+	 */
+	private int getPriority(Object element) {
+		Integer priority = (Integer) priorities.get(element);
+		return priority == null ? PRIORITY_BACKGROUND : priority.intValue();
+	}
+
+	/**
+	 * Set the elements the viewer shows. Their decoration is done before the
+	 * one of the other elements, and the elements the viewer no longer shows
+	 * are demoted unless another viewer shows them.
+	 * 
+	 * @param viewer
+	 *            the viewer
+	 * @param visibleElements
+	 *            the elements of the visible rows
+	 * @param nearElements
+	 *            the elements of the rows about to be scrolled into view
+	 */
+	void setViewport(Object viewer, Object[] visibleElements,
+			Object[] nearElements) {
+		boolean queued = false;
+		synchronized (viewports) {
+			Viewport viewport = (Viewport) viewports.get(viewer);
+			if (viewport == null) {
+				viewport = new Viewport();
+				viewports.put(viewer, viewport);
+			}
+			Map oldPriorities = viewport.priorities;
+			viewport.priorities = new HashMap();
+			putPriorities(viewport.priorities, nearElements, PRIORITY_NEAR);
+			putPriorities(viewport.priorities, visibleElements,
+					PRIORITY_VISIBLE);
+
+			for (Iterator iterator = oldPriorities.keySet().iterator(); iterator
+					.hasNext();) {
+				Object element = iterator.next();
+				// Scrolled away: decorate it after the shown elements
+				if (!viewport.priorities.containsKey(element)
+						&& reprioritize(element)) {
+					queued = true;
+				}
+			}
+
+			for (Iterator iterator = viewport.priorities.keySet().iterator(); iterator
+					.hasNext();) {
+				if (reprioritize(iterator.next())) {
+					queued = true;
+				}
+			}
+		}
+		if (queued && !shutdown) {
+			scheduleDecoration();
 		}
-		Object element = awaitingDecoration.remove(0);
+	}
 
-		return (DecorationReference) awaitingDecorationValues.remove(element);
+	/**
+	 * Forget the elements the viewer shows and demote them unless another
+	 * viewer shows them.
+	 * 
+	 * @param viewer
+	 *            the viewer, usually disposed
+	 */
+	void clearViewport(Object viewer) {
+		boolean queued = false;
+		synchronized (viewports) {
+			Viewport viewport = (Viewport) viewports.remove(viewer);
+			if (viewport == null) {
+				return;
+			}
+			for (Iterator iterator = viewport.priorities.keySet().iterator(); iterator
+					.hasNext();) {
+				if (reprioritize(iterator.next())) {
+					queued = true;
+				}
+			}
+		}
+		if (queued && !shutdown) {
+			scheduleDecoration();
+		}
 	}
 
 	/**
-	 * Create the Thread used for running decoration.
+	 * Update the priority of the element from the viewports showing it, and
+	 * queue it with its new priority if it awaits decoration. The entries of
+	 * the queues of other priorities are skipped or found decorated already.
+	 * 
+	 * @param element
+	 * @return boolean <code>true</code> if the element was queued
 	 */
-	private void createDecorationJob() {
-		decorationJob = new Job(
+	private boolean reprioritize(Object element) {
+		int oldPriority = getPriority(element);
+		int priority = updatePriority(element);
+		if (priority != oldPriority
+				&& awaitingDecorationValues.containsKey(element)) {
+			awaitingDecoration[priority].add(element);
+			return true;
+		}
+		return false;
+	}
+
+	private static void putPriorities(Map priorities, Object[] elements,
+			int priority) {
+		for (int i = 0; i < elements.length; i++) {
+			priorities.put(elements[i], Integer.valueOf(priority));
+		}
+	}
+
+	/**
+	 * Compute the priority of the element from the viewports showing it.
+	 * 
+	 * @param element
+	 * @return int the new priority
+	 */
+	private int updatePriority(Object element) {
+		int priority = PRIORITY_BACKGROUND;
+		for (Iterator iterator = viewports.values().iterator(); iterator
+				.hasNext();) {
+			Integer shown = (Integer) ((Viewport) iterator.next()).priorities
+					.get(element);
+			if (shown != null) {
+				priority = Math.min(priority, shown.intValue());
+			}
+		}
+		if (priority == PRIORITY_BACKGROUND) {
+			priorities.remove(element);
+		} else {
+			priorities.put(element, Integer.valueOf(priority));
+		}
+		return priority;
+	}
+
+	/**
+	 * Create a job used for running decoration.
+	 * 
+	 * @return the job
+	 */
+	private Job createDecorationJob() {
+		Job job = new Job(
 				WorkbenchMessages.DecorationScheduler_CalculationJobName) {
 			/*
 			 * (non-Javadoc)
@@ -291,10 +564,8 @@ public class DecorationScheduler {
 			@Override
 			public IStatus run(IProgressMonitor monitor) {
 
-				synchronized (DecorationScheduler.this) {
-					if (shutdown) {
-						return Status.CANCEL_STATUS;
-					}
+				if (shutdown) {
+					return Status.CANCEL_STATUS;
 				}
 
 				while (updatesPending()) {
@@ -315,6 +586,8 @@ public class DecorationScheduler {
 				DecorationReference reference;
 				monitor.worked(5);
 				int workCount = 5;
+				boolean visible = !awaitingDecoration[PRIORITY_VISIBLE]
+						.isEmpty();
 				while ((reference = nextElement()) != null) {
 
 					// Count up to 90 to give the appearance of updating
@@ -333,12 +606,15 @@ public class DecorationScheduler {
 					}
 
 					// Only notify listeners when we have exhausted the
-					// queue of decoration requests.
-					synchronized (DecorationScheduler.this) {
-						if (awaitingDecoration.isEmpty()) {
-							decorated();
-						}
+					// queue of decoration requests, or at once when the
+					// visible elements are decorated.
+					if (awaitingDecorationValues.isEmpty()) {
+						decorated();
+					} else if (visible
+							&& awaitingDecoration[PRIORITY_VISIBLE].isEmpty()) {
+						decorated(0);
 					}
+					visible = !awaitingDecoration[PRIORITY_VISIBLE].isEmpty();
 				}
 				monitor.worked(100 - workCount);
 				monitor.done();
@@ -357,8 +633,11 @@ public class DecorationScheduler {
 			 */
 			private void ensureResultCached(Object element, boolean force,
 					IDecorationContext context) {
-				boolean elementIsCached = internalGetResult(element, context) != null;
+				DecorationResult cached = internalGetResult(element, context);
+				boolean elementIsCached = cached != null;
 				if (elementIsCached) {
+					// Keep the result until the label is updated again
+					internalPutResult(element, context, cached);
 					synchronized (pendingKey) {
 						pendingUpdate.add(element);
 					}
@@ -421,9 +700,9 @@ public class DecorationScheduler {
 			}
 		};
 
-		decorationJob.setSystem(true);
-		decorationJob.setPriority(Job.DECORATE);
-		decorationJob.schedule();
+		job.setSystem(true);
+		job.setPriority(Job.DECORATE);
+		return job;
 	}
 
 	/**
@@ -501,10 +780,8 @@ public class DecorationScheduler {
 			@Override
 			public IStatus runInUIThread(IProgressMonitor monitor) {
 
-				synchronized (DecorationScheduler.this) {
-					if (shutdown) {
-						return Status.CANCEL_STATUS;
-					}
+				if (shutdown) {
+					return Status.CANCEL_STATUS;
 				}
 
 				// If this is the first one check again in case
@@ -518,6 +795,7 @@ public class DecorationScheduler {
 				}
 
 				if (listeners.length == 0) {
+				    resultsDelivered(labelProviderChangedEvent.getElements());
 				    resetState();
 				    return Status.OK_STATUS;
 				}
@@ -548,6 +826,7 @@ public class DecorationScheduler {
 				monitor.done();
 
 				if (currentIndex >= listeners.length) {
+				    resultsDelivered(labelProviderChangedEvent.getElements());
 				    resetState();
 					if (!hasPendingUpdates()) {
 						decorated();
@@ -569,7 +848,7 @@ public class DecorationScheduler {
                 // Other decoration requests may have occurred due to
                 // updates or we may have timed out updating listeners.
                 // Only clear the results if there are none pending.
-                if (awaitingDecoration.isEmpty()) {
+                if (awaitingDecorationValues.isEmpty()) {
                     resultCache.clear();
                 }
             }
@@ -692,7 +971,7 @@ public class DecorationScheduler {
 	 * @return boolean
 	 */
 	public boolean processingUpdates() {
-		return !hasPendingUpdates() && !awaitingDecoration.isEmpty();
+		return !hasPendingUpdates() && !awaitingDecorationValues.isEmpty();
 	}
 
 	/**
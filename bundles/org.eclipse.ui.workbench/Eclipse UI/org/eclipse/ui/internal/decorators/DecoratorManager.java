@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -42,8 +42,10 @@ import org.eclipse.jface.viewers.IFontDecorator;
 import org.eclipse.jface.viewers.ILabelDecorator;
 import org.eclipse.jface.viewers.ILabelProviderListener;
 import org.eclipse.jface.viewers.ILightweightLabelDecorator;
+import org.eclipse.jface.viewers.IViewportLabelDecorator;
 import org.eclipse.jface.viewers.LabelDecorator;
 import org.eclipse.jface.viewers.LabelProviderChangedEvent;
+import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.Font;
 import org.eclipse.swt.graphics.Image;
@@ -112,7 +114,7 @@ public class DecoratorManager implements ILabelProviderListener,
 	 */
 	private static class ManagedWorkbenchLabelDecorator extends LabelDecorator
 			implements ILabelDecorator, IDelayedLabelDecorator,
-			IColorDecorator, IFontDecorator {
+			IViewportLabelDecorator, IColorDecorator, IFontDecorator {
 
 		private final DecoratorManager decoratorManager;
 		private LocalResourceManager resourceManager;
@@ -188,6 +190,29 @@ public class DecoratorManager implements ILabelProviderListener,
 					DecorationContext.DEFAULT_CONTEXT);
 		}
 
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see org.eclipse.jface.viewers.IViewportLabelDecorator#setViewport(org.eclipse.jface.viewers.Viewer,
+		 *      java.lang.Object[], java.lang.Object[])
+		 */
+		@Override
+		public void setViewport(Viewer viewer, Object[] visibleElements,
+				Object[] nearElements) {
+			decoratorManager.setViewport(viewer, visibleElements,
+					nearElements);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see org.eclipse.jface.viewers.IViewportLabelDecorator#clearViewport(org.eclipse.jface.viewers.Viewer)
+		 */
+		@Override
+		public void clearViewport(Viewer viewer) {
+			decoratorManager.clearViewport(viewer);
+		}
+
 		/*
 		 * (non-Javadoc)
 		 * 
@@ -786,7 +811,6 @@ public class DecoratorManager implements ILabelProviderListener,
 	 * may occur due to changes in enablement.
 	 */
 	public void clearCaches() {
-		getLightweightManager().reset();
 		fullTextRunnable.clearReferences();
 		fullImageRunnable.clearReferences();
 	}
@@ -1184,6 +1208,33 @@ public class DecoratorManager implements ILabelProviderListener,
 				DecorationContext.DEFAULT_CONTEXT);
 	}
 
+	/**
+	 * Decorate the elements the viewer shows before the other elements
+	 * awaiting decoration. The elements it scrolled away are still decorated,
+	 * after the shown ones, unless another viewer shows them.
+	 * 
+	 * @param viewer
+	 * @param visibleElements
+	 *            the elements of the visible rows
+	 * @param nearElements
+	 *            the elements of the rows about to be scrolled into view
+	 * @see IViewportLabelDecorator#setViewport(Viewer, Object[], Object[])
+	 */
+	public void setViewport(Viewer viewer, Object[] visibleElements,
+			Object[] nearElements) {
+		scheduler.setViewport(viewer, visibleElements, nearElements);
+	}
+
+	/**
+	 * Forget the elements the viewer shows.
+	 * 
+	 * @param viewer
+	 * @see IViewportLabelDecorator#clearViewport(Viewer)
+	 */
+	public void clearViewport(Viewer viewer) {
+		scheduler.clearViewport(viewer);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -34,6 +34,8 @@ class LightweightDecoratorDefinition extends DecoratorDefinition implements
 
 	static final String ATT_ICON = "icon"; //$NON-NLS-1$
 
+	private static final String ATT_THREAD_SAFE = "threadSafe"; //$NON-NLS-1$
+
 	// Constants for quadrants
 	/**
 	 * Position <code>TOP_LEFT</code>. Value <code>0</code>
@@ -82,7 +84,8 @@ class LightweightDecoratorDefinition extends DecoratorDefinition implements
 	 * The DeclarativeDecorator is the internal decorator supplied by the
 	 * decorator definition.
 	 */
-	private ILightweightLabelDecorator decorator;
+	// volatile as thread safe decorators decorate from several threads
+	private volatile ILightweightLabelDecorator decorator;
 
 	private int quadrant;
 
@@ -102,7 +105,7 @@ class LightweightDecoratorDefinition extends DecoratorDefinition implements
 	 * 
 	 * @return Returns a ILabelDecorator
 	 */
-	protected ILightweightLabelDecorator internalGetDecorator()
+	protected synchronized ILightweightLabelDecorator internalGetDecorator()
 			throws CoreException {
 		if (labelProviderCreationFailed) {
 			return null;
@@ -165,6 +168,19 @@ class LightweightDecoratorDefinition extends DecoratorDefinition implements
 		return definingElement.getAttribute(DecoratorDefinition.ATT_CLASS) == null;
 	}
 
+	/**
+	 * Return whether or not the decorator can decorate several elements
+	 * concurrently. Declarative decorators always can.
+	 * 
+	 * @return boolean <code>true</code> if the decorator is thread safe
+	 */
+	boolean isThreadSafe() {
+		return isDeclarative()
+				|| Boolean.valueOf(
+						definingElement.getAttribute(ATT_THREAD_SAFE))
+						.booleanValue();
+	}
+
 	/**
 	 * Return the icon location.
 	 * 
@@ -252,7 +268,10 @@ class LightweightDecoratorDefinition extends DecoratorDefinition implements
 	public void decorate(Object element, IDecoration decoration) {
 		try {
 			// Internal decorator might be null so be prepared
-			ILightweightLabelDecorator currentDecorator = internalGetDecorator();
+			ILightweightLabelDecorator currentDecorator = decorator;
+			if (currentDecorator == null) {
+				currentDecorator = internalGetDecorator();
+			}
 			if(currentDecorator == null) {
 				return;
 			}
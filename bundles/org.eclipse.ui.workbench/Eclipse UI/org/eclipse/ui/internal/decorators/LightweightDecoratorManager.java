@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -96,8 +96,6 @@ public class LightweightDecoratorManager extends ObjectContributorManager {
 		}
 	}
 
-	private LightweightRunnable runnable = new LightweightRunnable();
-
 	// The lightweight definitions read from the registry
 	private LightweightDecoratorDefinition[] lightweightDefinitions;
 
@@ -263,10 +261,19 @@ public class LightweightDecoratorManager extends ObjectContributorManager {
 	}
 
 	/**
-	 * Reset any cached values.
+	 * Return whether all the enabled lightweight decorators are thread safe,
+	 * so that elements can be decorated concurrently.
+	 * 
+	 * @return boolean
 	 */
-	void reset() {
-		runnable.clearReferences();
+	boolean isThreadSafe() {
+		for (int i = 0; i < lightweightDefinitions.length; i++) {
+			if (lightweightDefinitions[i].isEnabled()
+					&& !lightweightDefinitions[i].isThreadSafe()) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	/**
@@ -363,6 +370,8 @@ public class LightweightDecoratorManager extends ObjectContributorManager {
 	private void decorate(Object element, DecorationBuilder decoration,
 			LightweightDecoratorDefinition decorator) {
 
+		// a runnable per decoration as elements may be decorated concurrently
+		LightweightRunnable runnable = new LightweightRunnable();
 		runnable.setValues(element, decoration, decorator);
 		SafeRunner.run(runnable);
 	}
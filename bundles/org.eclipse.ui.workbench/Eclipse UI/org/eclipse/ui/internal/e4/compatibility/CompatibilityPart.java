@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010, 2013 IBM Corporation and others.
+ * Copyright (c) 2010, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -26,6 +26,7 @@ import org.eclipse.e4.ui.model.application.ui.basic.MPart;
 import org.eclipse.e4.ui.model.application.ui.menu.MMenu;
 import org.eclipse.e4.ui.workbench.IPresentationEngine;
 import org.eclipse.e4.ui.workbench.UIEvents;
+import org.eclipse.e4.ui.workbench.modeling.EModelService;
 import org.eclipse.e4.ui.workbench.modeling.ESelectionService;
 import org.eclipse.jface.viewers.IPostSelectionProvider;
 import org.eclipse.jface.viewers.ISelectionChangedListener;
@@ -73,6 +74,9 @@ public abstract class CompatibilityPart implements ISelectionChangedListener {
 	@Inject
 	private IEventBroker eventBroker;
 
+	@Inject
+	private EModelService modelService;
+
 	private boolean beingDisposed = false;
 
 	private boolean alreadyDisposed = false;
@@ -340,17 +344,24 @@ public abstract class CompatibilityPart implements ISelectionChangedListener {
 			public void propertyChanged(Object source, int propId) {
 				switch (propId) {
 				case IWorkbenchPartConstants.PROP_TITLE:
-					part.setLabel(computeLabel());
-
-					if (wrapped.getTitleImage() != null) {
-						Image newImage = wrapped.getTitleImage();
-						part.getTransientData().put(IPresentationEngine.OVERRIDE_ICON_IMAGE_KEY,
-								newImage);
-					}
-					if (wrapped.getTitleToolTip() != null && wrapped.getTitleToolTip().length() > 0) {
-						part.getTransientData()
-								.put(IPresentationEngine.OVERRIDE_TITLE_TOOL_TIP_KEY,
-								wrapped.getTitleToolTip());
+					// the label, image and tool tip change together
+					modelService.beginChangeBatch();
+					try {
+						part.setLabel(computeLabel());
+
+						if (wrapped.getTitleImage() != null) {
+							Image newImage = wrapped.getTitleImage();
+							part.getTransientData().put(
+									IPresentationEngine.OVERRIDE_ICON_IMAGE_KEY, newImage);
+						}
+						if (wrapped.getTitleToolTip() != null
+								&& wrapped.getTitleToolTip().length() > 0) {
+							part.getTransientData().put(
+									IPresentationEngine.OVERRIDE_TITLE_TOOL_TIP_KEY,
+									wrapped.getTitleToolTip());
+						}
+					} finally {
+						modelService.endChangeBatch();
 					}
 					break;
 				case IWorkbenchPartConstants.PROP_DIRTY:
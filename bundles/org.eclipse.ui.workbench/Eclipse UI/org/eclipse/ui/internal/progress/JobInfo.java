@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2012 IBM Corporation and others.
+ * Copyright (c) 2003, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -15,6 +15,7 @@ package org.eclipse.ui.internal.progress;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.jobs.Job;
@@ -37,7 +38,10 @@ public class JobInfo extends JobTreeElement {
 
     private GroupInfo parent;
 
-    private TaskInfo taskInfo;
+    private volatile TaskInfo taskInfo;
+
+    // Whether the progress changed since it was last sampled
+    private final AtomicBoolean progressChanged = new AtomicBoolean();
 
     //Default to no progress
     private int ticks = -1;
@@ -361,11 +365,28 @@ public class JobInfo extends JobTreeElement {
         	if(info.totalWork == 0) {
 				return 0;
 			}
-            return (int) info.preWork * 100 / info.totalWork;
+            return (int) info.getPreWork() * 100 / info.totalWork;
         }
         return IProgressMonitor.UNKNOWN;
     }
 
+    /**
+     * Mark the progress of the receiver as changed.
+     * 
+     * @return boolean <code>true</code> if it was not marked since it was
+     *         last sampled
+     */
+    boolean markProgressChanged() {
+        return progressChanged.compareAndSet(false, true);
+    }
+
+    /**
+     * Clear the mark of the change of the progress before it is sampled.
+     */
+    void clearProgressChanged() {
+        progressChanged.set(false);
+    }
+
     /**
      * @return Returns the taskInfo.
      */
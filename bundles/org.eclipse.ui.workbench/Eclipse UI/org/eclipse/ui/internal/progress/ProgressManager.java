@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2013 IBM Corporation and others.
+ * Copyright (c) 2003, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -23,11 +23,15 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IProgressMonitorWithBlocking;
 import org.eclipse.core.runtime.IStatus;
@@ -92,10 +96,23 @@ public class ProgressManager extends ProgressProvider implements
 
 	private static ProgressManager singleton;
 
-	final private Map jobs = Collections.synchronizedMap(new HashMap());
+	final private ConcurrentHashMap jobs = new ConcurrentHashMap();
 
-	final private Map familyListeners = Collections
-			.synchronizedMap(new HashMap());
+	// Sets of IJobBusyListener by family, changed while holding the lock
+	// on the map and read without locking
+	final private Map familyListeners = new ConcurrentHashMap();
+
+	// The job infos whose progress changed since it was last sampled
+	private final Queue changedProgress = new ConcurrentLinkedQueue();
+
+	private final AtomicBoolean progressSamplerScheduled = new AtomicBoolean();
+
+	final Job progressSampler;
+
+	/**
+	 * The delay between the samples of the progress of the jobs.
+	 */
+	static final int PROGRESS_SAMPLE_RATE = 100;
 
 	//	list of IJobProgressManagerListener
 	private ListenerList listeners = new ListenerList();
@@ -127,7 +144,7 @@ public class ProgressManager extends ProgressProvider implements
 	 */
 	public static final String BLOCKED_JOB_KEY = "LOCKED_JOB"; //$NON-NLS-1$
 
-	final Map runnableMonitors = Collections.synchronizedMap(new HashMap());
+	final ConcurrentHashMap runnableMonitors = new ConcurrentHashMap();
 
 	// A table that maps families to keys in the Jface image
 	// table
@@ -196,7 +213,7 @@ public class ProgressManager extends ProgressProvider implements
 			TaskInfo currentTask = info.getTaskInfo();
 			if (currentTask != null) {
 				listener.beginTask(currentTaskName, currentTask.totalWork);
-				listener.internalWorked(currentTask.preWork);
+				listener.internalWorked(currentTask.getPreWork());
 			}
 		}
 
@@ -243,7 +260,7 @@ public class ProgressManager extends ProgressProvider implements
 			JobInfo info = getJobInfo(job);
 			if (info.hasTaskInfo()) {
 				info.addWork(work);
-				refreshJobInfo(info);
+				progressChanged(info);
 			}
 			if (listener != null) {
 				listener.internalWorked(work);
@@ -318,7 +335,7 @@ public class ProgressManager extends ProgressProvider implements
 			JobInfo info = getJobInfo(job);
 			info.clearChildren();
 			info.addSubTask(name);
-			refreshJobInfo(info);
+			progressChanged(info);
 			if (listener != null) {
 				listener.subTask(name);
 			}
@@ -378,6 +395,8 @@ public class ProgressManager extends ProgressProvider implements
 
 		notificationListener = createNotificationListener();
 
+		progressSampler = createProgressSampler();
+
 		Job.getJobManager().setProgressProvider(this);
 		Job.getJobManager().addJobChangeListener(this.changeListener);
 		StatusManager.getManager().addListener(notificationListener);
@@ -414,6 +433,56 @@ public class ProgressManager extends ProgressProvider implements
 		};
 	}
 
+	/**
+	 * Create the job sampling the progress of the jobs. The work done and the
+	 * subtasks of the jobs change too often to refresh the listeners every
+	 * time: the changes are coalesced and the job infos refreshed at most once
+	 * every {@link #PROGRESS_SAMPLE_RATE} milliseconds.
+	 * 
+	 * @return the created Job
+	 */
+	private Job createProgressSampler() {
+		Job sampler = new Job(ProgressMessages.ProgressManager_sampleProgressJobName) {
+			/*
+			 * (non-Javadoc)
+			 * 
+			 * @see org.eclipse.core.runtime.jobs.Job#run(org.eclipse.core.runtime.IProgressMonitor)
+			 */
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				// Changes made from now on schedule another sample
+				progressSamplerScheduled.set(false);
+				JobInfo info;
+				while ((info = (JobInfo) changedProgress.poll()) != null) {
+					info.clearProgressChanged();
+					if (jobs.get(info.getJob()) == info) {
+						refreshJobInfo(info);
+					}
+				}
+				return Status.OK_STATUS;
+			}
+		};
+		sampler.setSystem(true);
+		sampler.setProperty(ProgressManagerUtil.INFRASTRUCTURE_PROPERTY,
+				new Object());
+		return sampler;
+	}
+
+	/**
+	 * The progress of the job in info changed. Refresh it with the next sample
+	 * of the progress.
+	 * 
+	 * @param info
+	 */
+	void progressChanged(JobInfo info) {
+		if (info.markProgressChanged()) {
+			changedProgress.add(info);
+			if (progressSamplerScheduled.compareAndSet(false, true)) {
+				progressSampler.schedule(PROGRESS_SAMPLE_RATE);
+			}
+		}
+	}
+
 	/**
 	 * Create and return the IJobChangeListener registered with the Job manager.
 	 * 
@@ -658,15 +727,16 @@ public class ProgressManager extends ProgressProvider implements
 	 */
 	public JobMonitor progressFor(Job job) {
 
-		synchronized (runnableMonitors) {
-			JobMonitor monitor = (JobMonitor) runnableMonitors.get(job);
-			if (monitor == null) {
-				monitor = new JobMonitor(job);
-				runnableMonitors.put(job, monitor);
+		JobMonitor monitor = (JobMonitor) runnableMonitors.get(job);
+		if (monitor == null) {
+			monitor = new JobMonitor(job);
+			JobMonitor existing = (JobMonitor) runnableMonitors.putIfAbsent(
+					job, monitor);
+			if (existing != null) {
+				monitor = existing;
 			}
-			
-			return monitor;
 		}
+		return monitor;
 
 	}
 
@@ -699,7 +769,10 @@ public class ProgressManager extends ProgressProvider implements
 		JobInfo info = internalGetJobInfo(job);
 		if (info == null) {
 			info = new JobInfo(job);
-			jobs.put(job, info);
+			JobInfo existing = (JobInfo) jobs.putIfAbsent(job, info);
+			if (existing != null) {
+				info = existing;
+			}
 		}
 		return info;
 	}
@@ -867,19 +940,17 @@ public class ProgressManager extends ProgressProvider implements
 	 * @return JobInfo[]
 	 */
 	public JobInfo[] getJobInfos(boolean debug) {
-		synchronized (jobs) {
-			Iterator iterator = jobs.keySet().iterator();
-			Collection result = new ArrayList();
-			while (iterator.hasNext()) {
-				Job next = (Job) iterator.next();
-				if (!isCurrentDisplaying(next, debug)) {
-					result.add(jobs.get(next));
-				}
+		Iterator iterator = jobs.entrySet().iterator();
+		Collection result = new ArrayList();
+		while (iterator.hasNext()) {
+			Map.Entry next = (Map.Entry) iterator.next();
+			if (!isCurrentDisplaying((Job) next.getKey(), debug)) {
+				result.add(next.getValue());
 			}
-			JobInfo[] infos = new JobInfo[result.size()];
-			result.toArray(infos);
-			return infos;
 		}
+		JobInfo[] infos = new JobInfo[result.size()];
+		result.toArray(infos);
+		return infos;
 	}
 
 	/**
@@ -889,25 +960,23 @@ public class ProgressManager extends ProgressProvider implements
 	 * @return JobTreeElement[]
 	 */
 	public JobTreeElement[] getRootElements(boolean debug) {
-		synchronized (jobs) {
-			Iterator iterator = jobs.keySet().iterator();
-			Collection result = new HashSet();
-			while (iterator.hasNext()) {
-				Job next = (Job) iterator.next();
-				if (!isCurrentDisplaying(next, debug)) {
-					JobInfo jobInfo = (JobInfo) jobs.get(next);
-					GroupInfo group = jobInfo.getGroupInfo();
-					if (group == null) {
-						result.add(jobInfo);
-					} else {
-						result.add(group);
-					}
+		Iterator iterator = jobs.entrySet().iterator();
+		Collection result = new HashSet();
+		while (iterator.hasNext()) {
+			Map.Entry next = (Map.Entry) iterator.next();
+			if (!isCurrentDisplaying((Job) next.getKey(), debug)) {
+				JobInfo jobInfo = (JobInfo) next.getValue();
+				GroupInfo group = jobInfo.getGroupInfo();
+				if (group == null) {
+					result.add(jobInfo);
+				} else {
+					result.add(group);
 				}
 			}
-			JobTreeElement[] infos = new JobTreeElement[result.size()];
-			result.toArray(infos);
-			return infos;
 		}
+		JobTreeElement[] infos = new JobTreeElement[result.size()];
+		result.toArray(infos);
+		return infos;
 	}
 
 	/**
@@ -916,13 +985,7 @@ public class ProgressManager extends ProgressProvider implements
 	 * @return boolean
 	 */
 	public boolean hasJobInfos() {
-		synchronized (jobs) {
-			Iterator iterator = jobs.keySet().iterator();
-			while (iterator.hasNext()) {
-				return true;
-			}
-			return false;
-		}
+		return !jobs.isEmpty();
 	}
 
 	/**
@@ -1053,6 +1116,7 @@ public class ProgressManager extends ProgressProvider implements
 	 */
 	private void shutdown() {
 		listeners.clear();
+		progressSampler.cancel();
 		Job.getJobManager().setProgressProvider(null);
 		Job.getJobManager().removeJobChangeListener(this.changeListener);
 	}
@@ -1097,7 +1161,7 @@ public class ProgressManager extends ProgressProvider implements
 		synchronized (familyListeners) {
 			Collection currentListeners = (Collection) familyListeners.get(family);
 			if (currentListeners == null) {
-				currentListeners = new HashSet();
+				currentListeners = new CopyOnWriteArraySet();
 				familyListeners.put(family, currentListeners);
 			}
 			currentListeners.add(listener);
@@ -1136,24 +1200,19 @@ public class ProgressManager extends ProgressProvider implements
 		if (job.isSystem()) {
 			return Collections.EMPTY_LIST;
 		}
-		synchronized (familyListeners) {
-
-			if (familyListeners.isEmpty()) {
-				return Collections.EMPTY_LIST;
-			}
+		if (familyListeners.isEmpty()) {
+			return Collections.EMPTY_LIST;
+		}
 
-			Iterator families = familyListeners.keySet().iterator();
-			Collection returnValue = new HashSet();
-			while (families.hasNext()) {
-				Object next = families.next();
-				if (job.belongsTo(next)) {
-					Collection currentListeners = (Collection) familyListeners
-							.get(next);
-					returnValue.addAll(currentListeners);
-				}
+		Iterator families = familyListeners.entrySet().iterator();
+		Collection returnValue = new HashSet();
+		while (families.hasNext()) {
+			Map.Entry next = (Map.Entry) families.next();
+			if (job.belongsTo(next.getKey())) {
+				returnValue.addAll((Collection) next.getValue());
 			}
-			return returnValue;
 		}
+		return returnValue;
 	}
 
 	/*
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2008 IBM Corporation and others.
+ * Copyright (c) 2005, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -54,6 +54,7 @@ public class ProgressMessages extends NLS {
 	public static String JobErrorDialog_MultipleErrorsTitle;
 	public static String ProgressManager_openJobName;
 	public static String ProgressManager_showInDialogName;
+	public static String ProgressManager_sampleProgressJobName;
 	public static String ProgressMonitorJobsDialog_DetailsTitle;
 	public static String ProgressMonitorJobsDialog_HideTitle;
 	public static String ErrorNotificationManager_OpenErrorDialogJob;
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2006 IBM Corporation and others.
+ * Copyright (c) 2003, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.eclipse.ui.internal.progress;
 
+import java.util.concurrent.atomic.AtomicLong;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.osgi.util.NLS;
 
@@ -19,7 +20,10 @@ import org.eclipse.osgi.util.NLS;
  * deleted.
  */
 public class TaskInfo extends SubTaskInfo {
-	double preWork = 0;
+	// The work done, as the bits of a double so that it is added atomically
+	// when the monitor of the job is used by several threads
+	private final AtomicLong preWork = new AtomicLong(Double
+			.doubleToLongBits(0));
 
 	int totalWork = 0;
 
@@ -47,8 +51,24 @@ public class TaskInfo extends SubTaskInfo {
 		if (totalWork == IProgressMonitor.UNKNOWN) {
 			return;
 		}
-		preWork += workIncrement;
+		while (true) {
+			long current = preWork.get();
+			long added = Double.doubleToLongBits(Double
+					.longBitsToDouble(current) + workIncrement);
+			if (preWork.compareAndSet(current, added)) {
+				return;
+			}
+		}
+
+	}
 
+	/**
+	 * Return the work done so far.
+	 * 
+	 * @return double
+	 */
+	double getPreWork() {
+		return Double.longBitsToDouble(preWork.get());
 	}
 
 	/**
@@ -136,7 +156,7 @@ public class TaskInfo extends SubTaskInfo {
 			return IProgressMonitor.UNKNOWN;
 		}
 
-		return Math.min((int) (preWork * 100 / totalWork), 100);
+		return Math.min((int) (getPreWork() * 100 / totalWork), 100);
 	}
 
 	/**
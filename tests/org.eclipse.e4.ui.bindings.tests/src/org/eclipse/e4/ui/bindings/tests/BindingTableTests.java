@@ -24,6 +24,7 @@ import org.eclipse.core.commands.ParameterizedCommand;
 import org.eclipse.core.commands.contexts.Context;
 import org.eclipse.core.commands.contexts.ContextManager;
 import org.eclipse.e4.core.contexts.ContextInjectionFactory;
+import org.eclipse.e4.core.contexts.EclipseContextFactory;
 import org.eclipse.e4.core.contexts.IEclipseContext;
 import org.eclipse.e4.ui.bindings.internal.BindingTable;
 import org.eclipse.e4.ui.bindings.internal.BindingTableManager;
@@ -362,6 +363,58 @@ public class BindingTableTests extends TestCase {
 		assertEquals(about, it.next());
 	}
 
+	public void testManagerLookupAfterTableChange() throws Exception {
+		// the tables are changed, do not share them with the other tests
+		BindingTableManager manager = createManager(EclipseContextFactory
+				.create());
+		Binding about = getTestBinding(ABOUT_ID);
+		ContextSet javaSet = createJavaSet(manager);
+		KeySequence aboutSeq = KeySequence.getInstance("CTRL+5 A");
+		KeySequence ctrl5 = KeySequence.getInstance("CTRL+5");
+		assertEquals(about, manager.getPerfectMatch(javaSet, aboutSeq));
+
+		BindingTable dawTable = manager.getTable(ID_DIALOG_AND_WINDOW);
+		dawTable.removeBinding(about);
+		assertNull(manager.getPerfectMatch(javaSet, aboutSeq));
+		assertNull(manager.getPerfectMatch(javaSet, aboutSeq));
+		assertTrue(manager.isPartialMatch(javaSet, ctrl5));
+
+		BindingTable textTable = manager.getTable(ID_TEXT);
+		Binding pasteCtrl5 = manager.getPerfectMatch(javaSet,
+				KeySequence.getInstance("CTRL+5 V"));
+		textTable.removeBinding(pasteCtrl5);
+		assertFalse(manager.isPartialMatch(javaSet, ctrl5));
+		assertFalse(manager.isPartialMatch(javaSet, ctrl5));
+
+		dawTable.addBinding(about);
+		assertTrue(manager.isPartialMatch(javaSet, ctrl5));
+		assertEquals(about, manager.getPerfectMatch(javaSet, aboutSeq));
+	}
+
+	public void testManagerSequencesAfterTableChange() throws Exception {
+		BindingTableManager manager = createManager(EclipseContextFactory
+				.create());
+		Binding paste = getTestBinding(PASTE_ID);
+		ParameterizedCommand pasteCmd = paste.getParameterizedCommand();
+		ContextSet javaSet = createJavaSet(manager);
+		int activeBindings = manager.getActiveBindings().size();
+		assertEquals(3, manager.getSequencesFor(javaSet, pasteCmd).size());
+		assertEquals(3, manager.getSequencesFor(javaSet, pasteCmd).size());
+
+		BindingTable textTable = manager.getTable(ID_TEXT);
+		Binding pasteCtrl5 = manager.getPerfectMatch(javaSet,
+				KeySequence.getInstance("CTRL+5 V"));
+		textTable.removeBinding(pasteCtrl5);
+		assertEquals(2, manager.getSequencesFor(javaSet, pasteCmd).size());
+		assertEquals(2, manager.getSequencesFor(javaSet, pasteCmd).size());
+		assertEquals(paste, manager.getBestSequenceFor(javaSet, pasteCmd));
+		assertEquals(activeBindings - 1, manager.getActiveBindings().size());
+
+		textTable.addBinding(pasteCtrl5);
+		assertEquals(3, manager.getSequencesFor(javaSet, pasteCmd).size());
+		assertEquals(activeBindings, manager.getActiveBindings().size());
+	}
+
 	private BindingTable loadTable(String contextId) {
 		Context context = contextManager.getContext(contextId);
 		BindingTable table = new BindingTable(context);
@@ -391,8 +444,13 @@ public class BindingTableTests extends TestCase {
 	}
 
 	private BindingTableManager createManager() throws Exception {
+		return createManager(workbenchContext);
+	}
+
+	private BindingTableManager createManager(IEclipseContext context)
+			throws Exception {
 		BindingTableManager manager = (BindingTableManager) ContextInjectionFactory
-				.make(BindingTableManager.class, workbenchContext);
+				.make(BindingTableManager.class, context);
 
 		for (int i = 0; i < CONTEXTS.length; i += 3) {
 			manager.addTable(loadTable(CONTEXTS[i]));
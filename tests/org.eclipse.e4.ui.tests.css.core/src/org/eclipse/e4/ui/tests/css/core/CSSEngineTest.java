@@ -10,16 +10,25 @@
  *******************************************************************************/
 package org.eclipse.e4.ui.tests.css.core;
 
+import java.io.StringReader;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 
 import junit.framework.TestCase;
 
 import org.eclipse.e4.ui.css.core.dom.IElementProvider;
+import org.eclipse.e4.ui.css.core.dom.properties.ICSSPropertyHandler;
+import org.eclipse.e4.ui.css.core.dom.properties.providers.CSSPropertyHandlerSimpleProviderImpl;
 import org.eclipse.e4.ui.css.core.engine.CSSEngine;
 import org.eclipse.e4.ui.css.core.impl.engine.CSSEngineImpl;
 import org.eclipse.e4.ui.tests.css.core.util.TestElement;
 import org.w3c.css.sac.SelectorList;
 import org.w3c.dom.Element;
+import org.w3c.dom.css.CSSStyleDeclaration;
+import org.w3c.dom.css.CSSValue;
 
 public class CSSEngineTest extends TestCase {
 	private static class TestCSSEngine extends CSSEngineImpl {
@@ -28,6 +37,16 @@ public class CSSEngineTest extends TestCase {
 		}
 	}
 
+	private static class RecordingCSSEngine extends TestCSSEngine {
+		String appliedStyle;
+
+		@Override
+		public void applyStyleDeclaration(Object element,
+				CSSStyleDeclaration style, String pseudo) {
+			appliedStyle = style.getCssText();
+		}
+	}
+
 	public void testSelectorMatch() throws Exception {
 		TestCSSEngine engine = new TestCSSEngine();
 		SelectorList list = engine.parseSelectors("Date");
@@ -42,4 +61,101 @@ public class CSSEngineTest extends TestCase {
 		assertTrue(engine.matches(list.item(0), new Date(), null));
 	}
 
+	public void testComputedStyleCache() throws Exception {
+		final Map<Object, Element> elements = new HashMap<Object, Element>();
+		RecordingCSSEngine engine = new RecordingCSSEngine();
+		engine.setElementProvider(new IElementProvider() {
+			@Override
+			public Element getElement(Object element, CSSEngine engine) {
+				return elements.get(element);
+			}
+		});
+		engine.parseStyleSheet(new StringReader("Button { color: red; }\n"
+				+ ".primary Button { color: blue; }\n"
+				+ "Button.checked { color: green; }\n"));
+		engine.setComputedStyleCacheEnabled(true);
+		assertTrue(engine.isComputedStyleCacheEnabled());
+
+		TestElement primary = new TestElement("Composite", engine);
+		primary.setClass("primary");
+		TestElement secondary = new TestElement("Composite", engine);
+		TestElement button1 = new TestElement("Button", primary, engine);
+		TestElement button2 = new TestElement("Button", primary, engine);
+		TestElement button3 = new TestElement("Button", secondary, engine);
+		Object widget1 = new Object();
+		Object widget2 = new Object();
+		Object widget3 = new Object();
+		elements.put(widget1, button1);
+		elements.put(widget2, button2);
+		elements.put(widget3, button3);
+
+		engine.applyStyles(widget1, false);
+		assertEquals("color: blue;", engine.appliedStyle);
+		engine.applyStyles(widget2, false);
+		assertEquals("color: blue;", engine.appliedStyle);
+		engine.applyStyles(widget3, false);
+		assertEquals("color: red;", engine.appliedStyle);
+
+		// changing the class of an element changes its signature
+		button2.setClass("checked");
+		engine.applyStyles(widget2, false);
+		assertEquals("color: green;", engine.appliedStyle);
+
+		// resetting the engine discards the cached styles
+		engine.reset();
+		engine.parseStyleSheet(new StringReader("Button { color: black; }"));
+		engine.applyStyles(widget1, false);
+		assertEquals("color: black;", engine.appliedStyle);
+	}
+
+	public void testPropertyHandlerDispatchTable() throws Exception {
+		final Element button = new TestElement("Button", null);
+		final int[] lookups = new int[1];
+		final int[] applied = new int[1];
+		final ICSSPropertyHandler handler = new ICSSPropertyHandler() {
+			@Override
+			public boolean applyCSSProperty(Object element, String property,
+					CSSValue value, String pseudo, CSSEngine engine) {
+				applied[0]++;
+				return true;
+			}
+
+			@Override
+			public String retrieveCSSProperty(Object element, String property,
+					String pseudo, CSSEngine engine) {
+				return "red";
+			}
+		};
+		TestCSSEngine engine = new TestCSSEngine();
+		engine.setElementProvider(new IElementProvider() {
+			@Override
+			public Element getElement(Object widget, CSSEngine engine) {
+				return button;
+			}
+		});
+		engine.registerCSSPropertyHandlerProvider(new CSSPropertyHandlerSimpleProviderImpl() {
+			@Override
+			public Collection<ICSSPropertyHandler> getCSSPropertyHandlers(
+					Object element, String property) {
+				lookups[0]++;
+				return "color".equals(property) ? Collections
+						.singletonList(handler) : null;
+			}
+		});
+		CSSValue red = engine.parsePropertyValue("red");
+		Object widget = new Object();
+
+		assertSame(handler, engine.applyCSSProperty(widget, "color", red, null));
+		assertSame(handler, engine.applyCSSProperty(widget, "color", red, null));
+		assertEquals("red", engine.retrieveCSSProperty(widget, "color", null));
+		assertNull(engine.applyCSSProperty(widget, "font", red, null));
+		assertNull(engine.applyCSSProperty(widget, "font", red, null));
+		assertEquals(2, applied[0]);
+		assertEquals(2, lookups[0]);
+
+		// registering a provider invalidates the dispatch table
+		engine.registerCSSPropertyHandlerProvider(new CSSPropertyHandlerSimpleProviderImpl());
+		assertSame(handler, engine.applyCSSProperty(widget, "color", red, null));
+		assertEquals(3, lookups[0]);
+	}
 }
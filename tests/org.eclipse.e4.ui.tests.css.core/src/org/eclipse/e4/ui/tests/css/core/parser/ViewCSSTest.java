@@ -109,6 +109,53 @@ public class ViewCSSTest extends TestCase {
 		assertEquals("color: blue;", buttonStyle.getCssText());
 	}
 
+	public void testRuleIndexMatchesLinearScan() throws Exception {
+		String css = "* { font-size: 9; }\n"
+				+ "Button { color: blue; }\n"
+				+ ".primary { color: red; }\n"
+				+ "Button.primary, Label.secondary { font-weight: bold; }\n"
+				+ "#okButton { color: green; }\n"
+				+ "Shell > * > .primary { background-color: black; }\n"
+				+ "Shell Button { background-color: white; }\n"
+				+ ".primary.secondary { font-style: italic; }\n"
+				+ ":selected { color: gray; }\n";
+		CSSStyleSheet styleSheet = ParserTestUtil.parseCss(css);
+		DocumentCSSImpl docCss = new DocumentCSSImpl();
+		docCss.addStyleSheet(styleSheet);
+		ViewCSSImpl viewCSS = new ViewCSSImpl(docCss);
+
+		TestElement shell = new TestElement("Shell", engine);
+		TestElement composite = new TestElement("Composite", shell, engine);
+		TestElement button = new TestElement("Button", composite, engine);
+		button.setClass("primary");
+		TestElement okButton = new TestElement("Button", composite, engine);
+		okButton.setId("okButton");
+		okButton.setClass("secondary  primary primary");
+		TestElement label = new TestElement("Label", composite, engine);
+		label.setClass("secondary");
+
+		TestElement[] elements = new TestElement[] { shell, composite,
+				button, okButton, label };
+		for (int i = 0; i < elements.length; i++) {
+			assertSameStyle(
+					viewCSS.getComputedStyle(styleSheet, elements[i], null),
+					viewCSS.getComputedStyle(elements[i], null));
+			assertSameStyle(
+					viewCSS.getComputedStyle(styleSheet, elements[i], "selected"),
+					viewCSS.getComputedStyle(elements[i], "selected"));
+		}
+	}
+
+	private static void assertSameStyle(CSSStyleDeclaration expected,
+			CSSStyleDeclaration actual) {
+		if (expected == null) {
+			assertNull(actual);
+		} else {
+			assertNotNull(actual);
+			assertEquals(expected.getCssText(), actual.getCssText());
+		}
+	}
+
 	private static ViewCSS createViewCss(String css) throws IOException {
 		CSSStyleSheet styleSheet = ParserTestUtil.parseCss(css);
 		DocumentCSSImpl docCss = new DocumentCSSImpl();
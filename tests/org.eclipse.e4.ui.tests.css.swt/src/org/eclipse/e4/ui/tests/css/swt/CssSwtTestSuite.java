@@ -67,6 +67,7 @@ public class CssSwtTestSuite extends TestSuite {
 
 		//other
 		addTestSuite(DescendentTest.class);
+		addTestSuite(DirtyStylesTest.class);
 
 		addTestSuite(ThemeTest.class);
 		addTestSuite(Bug419482Test.class);
@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.ui.tests.css.swt;
+
+import org.eclipse.e4.ui.css.swt.dom.WidgetElement;
+import org.eclipse.e4.ui.css.swt.engine.AbstractCSSSWTEngineImpl;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.RGB;
+import org.eclipse.swt.layout.FillLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Shell;
+
+/**
+ * Tests the restyling of the widgets marked as dirty by
+ * {@link AbstractCSSSWTEngineImpl}.
+ */
+public class DirtyStylesTest extends CSSSWTTestCase {
+
+	static final RGB RED = new RGB(255, 0, 0);
+	static final RGB BLUE = new RGB(0, 0, 255);
+	static final RGB WHITE = new RGB(255, 255, 255);
+
+	private static final String DYNAMIC_PROPERTY = "org.eclipse.e4.ui.css.dynamic";
+
+	private AbstractCSSSWTEngineImpl engine;
+
+	private Shell shell;
+
+	private Composite panel;
+
+	private Composite innerPanel;
+
+	private Button child;
+
+	private Button grandChild;
+
+	private Button[] siblings;
+
+	private Color white;
+
+	protected void createTestWidgets(String styleSheet) {
+		Display display = Display.getDefault();
+		engine = (AbstractCSSSWTEngineImpl) createEngine(styleSheet, display);
+		white = new Color(display, WHITE);
+
+		shell = new Shell(display, SWT.SHELL_TRIM);
+		shell.setLayout(new FillLayout());
+		panel = new Composite(shell, SWT.NONE);
+		panel.setLayout(new FillLayout());
+		child = new Button(panel, SWT.CHECK);
+		innerPanel = new Composite(panel, SWT.NONE);
+		innerPanel.setLayout(new FillLayout());
+		grandChild = new Button(innerPanel, SWT.NONE);
+		siblings = new Button[] { new Button(shell, SWT.NONE),
+				new Button(shell, SWT.NONE), new Button(shell, SWT.NONE) };
+
+		engine.applyStyles(shell, true, true);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (white != null) {
+			white.dispose();
+		}
+		super.tearDown();
+	}
+
+	public void testClassChangeRestylesChildren() throws Exception {
+		createTestWidgets("Composite.special > Button { background: #FF0000 }\n"
+				+ "Button { background: #0000FF }");
+		grandChild.setBackground(white);
+
+		WidgetElement.setCSSClass(panel, "special");
+		engine.classChanged(panel, null, "special");
+		// restyled on the next event loop tick
+		assertEquals(BLUE, child.getBackground().getRGB());
+
+		engine.flushDirtyStyles();
+		assertEquals(RED, child.getBackground().getRGB());
+		// the child combinator cannot match below the children
+		assertEquals(WHITE, grandChild.getBackground().getRGB());
+	}
+
+	public void testClassChangeRestylesDescendants() throws Exception {
+		createTestWidgets("Composite.special Button { background: #FF0000 }\n"
+				+ "Button { background: #0000FF }");
+
+		WidgetElement.setCSSClass(panel, "special");
+		engine.classChanged(panel, null, "special");
+		engine.flushDirtyStyles();
+		assertEquals(RED, child.getBackground().getRGB());
+		assertEquals(RED, grandChild.getBackground().getRGB());
+
+		WidgetElement.setCSSClass(panel, null);
+		engine.classChanged(panel, "special", null);
+		engine.flushDirtyStyles();
+		assertEquals(BLUE, child.getBackground().getRGB());
+		assertEquals(BLUE, grandChild.getBackground().getRGB());
+	}
+
+	public void testRemovedClassRestoresDefaultStyle() throws Exception {
+		createTestWidgets("Composite.special Button { background: #FF0000 }");
+		RGB defaultBackground = grandChild.getBackground().getRGB();
+
+		WidgetElement.setCSSClass(panel, "special");
+		engine.classChanged(panel, null, "special");
+		engine.flushDirtyStyles();
+		assertEquals(RED, grandChild.getBackground().getRGB());
+
+		WidgetElement.setCSSClass(panel, null);
+		engine.classChanged(panel, "special", null);
+		engine.flushDirtyStyles();
+		assertEquals(defaultBackground, grandChild.getBackground().getRGB());
+	}
+
+	public void testUnusedClassRestylesNothing() throws Exception {
+		createTestWidgets("Composite.special Button { background: #FF0000 }\n"
+				+ "Button { background: #0000FF }");
+		panel.setBackground(white);
+		child.setBackground(white);
+
+		WidgetElement.setCSSClass(panel, "unused");
+		engine.classChanged(panel, null, "unused");
+		engine.flushDirtyStyles();
+		assertEquals(WHITE, panel.getBackground().getRGB());
+		assertEquals(WHITE, child.getBackground().getRGB());
+	}
+
+	public void testClassChangeRestylesFollowingSiblings() throws Exception {
+		createTestWidgets("Button.first + Button { background: #FF0000 }\n"
+				+ "Button { background: #0000FF }");
+		assertEquals(BLUE, siblings[1].getBackground().getRGB());
+
+		WidgetElement.setCSSClass(siblings[0], "first");
+		engine.classChanged(siblings[0], null, "first");
+		engine.flushDirtyStyles();
+		assertEquals(BLUE, siblings[0].getBackground().getRGB());
+		assertEquals(RED, siblings[1].getBackground().getRGB());
+		assertEquals(BLUE, siblings[2].getBackground().getRGB());
+
+		WidgetElement.setCSSClass(siblings[0], null);
+		engine.classChanged(siblings[0], "first", null);
+		engine.flushDirtyStyles();
+		assertEquals(BLUE, siblings[1].getBackground().getRGB());
+	}
+
+	public void testIdChangeRestylesFollowingSiblings() throws Exception {
+		createTestWidgets("#first + Button { background: #FF0000 }\n"
+				+ "Button { background: #0000FF }");
+
+		WidgetElement.setID(siblings[1], "first");
+		engine.idChanged(siblings[1], null, "first");
+		engine.flushDirtyStyles();
+		assertEquals(BLUE, siblings[1].getBackground().getRGB());
+		assertEquals(RED, siblings[2].getBackground().getRGB());
+	}
+
+	public void testPseudoClassChangeRestylesWidget() throws Exception {
+		String dynamic = System.getProperty(DYNAMIC_PROPERTY);
+		// the elements only track their state when dynamic styling is enabled
+		System.setProperty(DYNAMIC_PROPERTY, "true");
+		try {
+			createTestWidgets("Button:checked { background: #FF0000 }\n"
+					+ "Button { background: #0000FF }");
+		} finally {
+			if (dynamic == null) {
+				System.clearProperty(DYNAMIC_PROPERTY);
+			} else {
+				System.setProperty(DYNAMIC_PROPERTY, dynamic);
+			}
+		}
+		grandChild.setBackground(white);
+		assertEquals(BLUE, child.getBackground().getRGB());
+
+		child.setSelection(true);
+		child.notifyListeners(SWT.Selection, new Event());
+		// restyled on the next event loop tick
+		assertEquals(BLUE, child.getBackground().getRGB());
+
+		engine.flushDirtyStyles();
+		assertEquals(RED, child.getBackground().getRGB());
+		// only the checked button is restyled
+		assertEquals(WHITE, grandChild.getBackground().getRGB());
+
+		child.setSelection(false);
+		child.notifyListeners(SWT.Selection, new Event());
+		engine.flushDirtyStyles();
+		assertEquals(BLUE, child.getBackground().getRGB());
+	}
+}
@@ -461,4 +461,39 @@ public class EModelServiceFindTest extends TestCase {
 		assertEquals(1, elements.size());
 		assertEquals(part, elements.get(0));
 	}
+
+	public void testFindAfterModelChanges() {
+		MApplication application = createApplication();
+		MWindow window = application.getChildren().get(0);
+		MPart part = BasicFactoryImpl.eINSTANCE.createPart();
+		part.setElementId("part");
+		window.getChildren().add(part);
+
+		assertEquals(part, modelService.find("part", application));
+
+		part.setElementId("renamed");
+		assertNull(modelService.find("part", application));
+		assertEquals(part, modelService.find("renamed", application));
+
+		part.getTags().add("tag");
+		List<String> tags = new ArrayList<String>();
+		tags.add("tag");
+		assertEquals(1, modelService.findElements(application, null, MPart.class, tags).size());
+		part.getTags().remove("tag");
+		assertEquals(0, modelService.findElements(application, null, MPart.class, tags).size());
+
+		// a part shared through a placeholder is found through it
+		window.getChildren().remove(part);
+		assertNull(modelService.find("renamed", application));
+		window.getSharedElements().add(part);
+		assertNull(modelService.find("renamed", application));
+		MPartStack stack = BasicFactoryImpl.eINSTANCE.createPartStack();
+		window.getChildren().add(stack);
+		MPlaceholder placeholder = modelService.createModelElement(MPlaceholder.class);
+		stack.getChildren().add(placeholder);
+		placeholder.setRef(part);
+		assertEquals(part, modelService.find("renamed", application));
+		placeholder.setRef(null);
+		assertNull(modelService.find("renamed", application));
+	}
 }
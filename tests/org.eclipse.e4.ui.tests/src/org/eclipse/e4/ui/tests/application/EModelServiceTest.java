@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010, 2012 IBM Corporation and others.
+ * Copyright (c) 2010, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,6 +10,10 @@
  ******************************************************************************/
 package org.eclipse.e4.ui.tests.application;
 
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.e4.core.services.events.IEventBroker;
+import org.eclipse.e4.ui.internal.workbench.UIEventPublisher;
 import org.eclipse.e4.ui.model.application.ui.advanced.MPerspective;
 import org.eclipse.e4.ui.model.application.ui.advanced.MPerspectiveStack;
 import org.eclipse.e4.ui.model.application.ui.advanced.MPlaceholder;
@@ -17,9 +21,16 @@ import org.eclipse.e4.ui.model.application.ui.advanced.impl.AdvancedFactoryImpl;
 import org.eclipse.e4.ui.model.application.ui.basic.MPart;
 import org.eclipse.e4.ui.model.application.ui.basic.MPartSashContainer;
 import org.eclipse.e4.ui.model.application.ui.basic.MPartStack;
+import org.eclipse.e4.ui.model.application.ui.basic.MStackElement;
 import org.eclipse.e4.ui.model.application.ui.basic.MWindow;
 import org.eclipse.e4.ui.model.application.ui.basic.impl.BasicFactoryImpl;
+import org.eclipse.e4.ui.workbench.UIEvents;
+import org.eclipse.e4.ui.workbench.UIEvents.EventTags;
 import org.eclipse.e4.ui.workbench.modeling.EModelService;
+import org.eclipse.emf.common.notify.Notifier;
+import org.eclipse.emf.common.util.EList;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventHandler;
 
 public class EModelServiceTest extends UITest {
 
@@ -223,4 +234,135 @@ public class EModelServiceTest extends UITest {
 		assertEquals(EModelService.NOT_IN_UI,
 				modelService.getElementLocation(innerWindow));
 	}
+
+	public void testChangeBatch() {
+		MPart part = BasicFactoryImpl.eINSTANCE.createPart();
+		part.setLabel("initial");
+		UIEventPublisher publisher = new UIEventPublisher(applicationContext);
+		((Notifier) part).eAdapters().add(publisher);
+		applicationContext.set(UIEventPublisher.class, publisher);
+
+		// receives the batch as a whole
+		final List<Event> batches = new ArrayList<Event>();
+		EventHandler batchHandler = new EventHandler() {
+			public void handleEvent(Event event) {
+				batches.add(event);
+			}
+		};
+		// receives the events of the batch one by one
+		final List<Event> events = new ArrayList<Event>();
+		EventHandler handler = new EventHandler() {
+			public void handleEvent(Event event) {
+				events.add(event);
+			}
+		};
+		IEventBroker eventBroker = applicationContext.get(IEventBroker.class);
+		eventBroker.subscribe(UIEvents.UILabel.TOPIC_ALL, batchHandler);
+		eventBroker.subscribe(UIEvents.UILifeCycle.CHANGE_BATCH, batchHandler);
+		eventBroker.subscribe(UIEvents.UILabel.TOPIC_ALL, handler);
+		eventBroker.subscribe(UIEvents.ApplicationElement.TOPIC_TAGS, handler);
+
+		EModelService modelService = applicationContext
+				.get(EModelService.class);
+		modelService.beginChangeBatch();
+		try {
+			part.setLabel("first");
+			modelService.beginChangeBatch();
+			try {
+				part.setLabel("second");
+				part.getTags().add("tag");
+				// restored values are not reported
+				part.setTooltip("tooltip");
+				part.setTooltip(null);
+			} finally {
+				modelService.endChangeBatch();
+			}
+			assertTrue(batches.isEmpty());
+			assertTrue(events.isEmpty());
+		} finally {
+			modelService.endChangeBatch();
+		}
+
+		assertEquals(1, batches.size());
+		Event batch = batches.get(0);
+		assertEquals(UIEvents.UILifeCycle.CHANGE_BATCH, batch.getTopic());
+		List<?> batchEvents = (List<?>) batch.getProperty(EventTags.EVENTS);
+		assertEquals(2, batchEvents.size());
+
+		assertEquals(2, events.size());
+		Event label = events.get(0);
+		assertEquals(UIEvents.UILabel.LABEL, label.getProperty(EventTags.ATTNAME));
+		assertEquals("initial", label.getProperty(EventTags.OLD_VALUE));
+		assertEquals("second", label.getProperty(EventTags.NEW_VALUE));
+		Event tags = events.get(1);
+		assertEquals(UIEvents.ApplicationElement.TAGS, tags.getProperty(EventTags.ATTNAME));
+		assertEquals("tag", tags.getProperty(EventTags.NEW_VALUE));
+		assertSame(label, batchEvents.get(0));
+		assertSame(tags, batchEvents.get(1));
+
+		// changes outside of a batch are delivered immediately
+		events.clear();
+		batches.clear();
+		part.setLabel("third");
+		eventBroker.unsubscribe(handler);
+		eventBroker.unsubscribe(batchHandler);
+		assertEquals(1, events.size());
+		assertEquals(1, batches.size());
+		assertEquals("third", batches.get(0).getProperty(EventTags.NEW_VALUE));
+	}
+
+	public void testChangeBatchCoalescesListChanges() {
+		MPartStack stack = BasicFactoryImpl.eINSTANCE.createPartStack();
+		MPart part1 = BasicFactoryImpl.eINSTANCE.createPart();
+		MPart part2 = BasicFactoryImpl.eINSTANCE.createPart();
+		MPart part3 = BasicFactoryImpl.eINSTANCE.createPart();
+		stack.getChildren().add(part1);
+		stack.getChildren().add(part2);
+		UIEventPublisher publisher = new UIEventPublisher(applicationContext);
+		((Notifier) stack).eAdapters().add(publisher);
+		applicationContext.set(UIEventPublisher.class, publisher);
+
+		final List<Event> events = new ArrayList<Event>();
+		EventHandler handler = new EventHandler() {
+			public void handleEvent(Event event) {
+				events.add(event);
+			}
+		};
+		IEventBroker eventBroker = applicationContext.get(IEventBroker.class);
+		eventBroker.subscribe(UIEvents.ElementContainer.TOPIC_CHILDREN, handler);
+		eventBroker.subscribe(UIEvents.ApplicationElement.TOPIC_TAGS, handler);
+
+		EList<MStackElement> children = (EList<MStackElement>) stack
+				.getChildren();
+		EModelService modelService = applicationContext
+				.get(EModelService.class);
+		modelService.beginChangeBatch();
+		try {
+			// an added value removed again is not reported
+			stack.getTags().add("transient");
+			stack.getTags().remove("transient");
+			// moves of a value are reported as one move
+			children.move(1, part1);
+			children.move(0, part1);
+			children.move(1, part1);
+			// an added value which is then moved is reported once
+			children.add(part3);
+			children.move(0, part3);
+		} finally {
+			modelService.endChangeBatch();
+		}
+		eventBroker.unsubscribe(handler);
+
+		assertEquals(2, events.size());
+		Event move = events.get(0);
+		assertTrue(UIEvents.EventTypes.MOVE.equals(move
+				.getProperty(EventTags.TYPE)));
+		assertSame(part1, move.getProperty(EventTags.NEW_VALUE));
+		assertEquals(Integer.valueOf(0), move.getProperty(EventTags.OLD_VALUE));
+		assertEquals(Integer.valueOf(1), move.getProperty(EventTags.POSITION));
+		Event add = events.get(1);
+		assertTrue(UIEvents.isADD(add));
+		assertSame(part3, add.getProperty(EventTags.NEW_VALUE));
+		assertEquals(Integer.valueOf(0), add.getProperty(EventTags.POSITION));
+	}
 }
@@ -11,10 +11,16 @@
 
 package org.eclipse.e4.ui.tests.application;
 
+import java.util.Dictionary;
+import java.util.Hashtable;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.eclipse.e4.core.contexts.IEclipseContext;
 import org.eclipse.e4.core.services.events.IEventBroker;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.event.Event;
+import org.osgi.service.event.EventConstants;
 import org.osgi.service.event.EventHandler;
 
 /**
@@ -104,4 +110,72 @@ public class EventBrokerTest extends UITest {
 		assertEquals("subscription was not removed", 2, seen.get());
 	}
 
+	public void testWildcardSubscription() {
+		IEventBroker eb = context.get(IEventBroker.class);
+		EventHandler handler = new EventHandler() {
+			public void handleEvent(Event event) {
+				seen.incrementAndGet();
+			}
+		};
+		eb.subscribe(TEST_TOPIC + "/*", handler);
+		eb.send(TEST_TOPIC, new Object());
+		assertEquals("prefix itself should not match", 0, seen.get());
+		eb.send(TEST_TOPIC + "/child", new Object());
+		eb.send(TEST_TOPIC + "/child/grandchild", new Object());
+		assertEquals(2, seen.get());
+		eb.send("test/Other/child", new Object());
+		assertEquals(2, seen.get());
+		eb.unsubscribe(handler);
+	}
+
+	public void testFilteredSubscription() {
+		IEventBroker eb = context.get(IEventBroker.class);
+		EventHandler handler = new EventHandler() {
+			public void handleEvent(Event event) {
+				seen.incrementAndGet();
+			}
+		};
+		assertTrue(eb.subscribe(TEST_TOPIC, "(kind=match)", handler, true));
+		Dictionary<String, Object> data = new Hashtable<String, Object>();
+		data.put("kind", "other");
+		eb.send(TEST_TOPIC, data);
+		assertEquals(0, seen.get());
+		data.put("kind", "match");
+		eb.send(TEST_TOPIC, data);
+		assertEquals(1, seen.get());
+		eb.unsubscribe(handler);
+	}
+
+	/**
+	 * ensure event handler services registered directly with the event admin
+	 * still receive the events sent through the broker, exactly once
+	 */
+	public void testExternalHandler() {
+		IEventBroker eb = context.get(IEventBroker.class);
+		final AtomicInteger external = new AtomicInteger(0);
+		EventHandler handler = new EventHandler() {
+			public void handleEvent(Event event) {
+				seen.incrementAndGet();
+			}
+		};
+		eb.subscribe(TEST_TOPIC, handler);
+		BundleContext bundleContext = FrameworkUtil.getBundle(getClass())
+				.getBundleContext();
+		Dictionary<String, Object> properties = new Hashtable<String, Object>();
+		properties.put(EventConstants.EVENT_TOPIC, TEST_TOPIC);
+		ServiceRegistration<?> registration = bundleContext.registerService(
+				EventHandler.class.getName(), new EventHandler() {
+					public void handleEvent(Event event) {
+						external.incrementAndGet();
+					}
+				}, properties);
+		try {
+			eb.send(TEST_TOPIC, new Object());
+			assertEquals(1, seen.get());
+			assertEquals(1, external.get());
+		} finally {
+			registration.unregister();
+			eb.unsubscribe(handler);
+		}
+	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2008 IBM Corporation and others.
+ * Copyright (c) 2007, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,7 +14,9 @@ package org.eclipse.core.tests.databinding.observable;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import junit.framework.TestCase;
 
@@ -256,6 +258,53 @@ public class Diffs_ListDiffTests extends TestCase {
 				Arrays.asList(new Object[] { "c", "a", "b" }));
 	}
 
+	public void testComputeListDiff_Duplicates() {
+		checkComputedListDiff(Arrays.asList(new Object[] { "a", "b" }), Arrays
+				.asList(new Object[] { "b", "a", "b" }));
+		checkComputedListDiff(Arrays.asList(new Object[] { "a", "a", "b",
+				"a" }), Arrays.asList(new Object[] { "b", "a", "a", "a", "b" }));
+		checkComputedListDiff(Arrays.asList(new Object[] { null, "a", null }),
+				Arrays.asList(new Object[] { "a", null, null, "a" }));
+	}
+
+	public void testComputeListDiff_Random() {
+		Random random = new Random(42);
+		for (int i = 0; i < 200; i++) {
+			List oldList = createRandomList(random);
+			List newList = createRandomList(random);
+			checkComputedListDiff(oldList, newList);
+		}
+	}
+
+	public void testComputeListDiff_Shuffled() {
+		List oldList = new ArrayList();
+		for (int i = 0; i < 1000; i++) {
+			oldList.add(new Integer(i));
+		}
+		List newList = new ArrayList(oldList);
+		Collections.shuffle(newList, new Random(42));
+		checkComputedListDiff(oldList, newList);
+	}
+
+	public void testComputeListDiff_MovesAreMinimal() {
+		List oldList = Arrays.asList(new Object[] { "a", "b", "c", "d", "e",
+				"f" });
+		List newList = Arrays.asList(new Object[] { "b", "c", "a", "d", "f",
+				"e" });
+		// a and e (or f) are moved, each with a removal and an addition
+		assertEquals(4, Diffs.computeListDiff(oldList, newList)
+				.getDifferences().length);
+	}
+
+	private static List createRandomList(Random random) {
+		String[] elements = new String[] { "a", "b", "c", "d", "e", null };
+		List list = new ArrayList();
+		for (int size = random.nextInt(12); size > 0; size--) {
+			list.add(elements[random.nextInt(elements.length)]);
+		}
+		return list;
+	}
+
 	private static void checkComputedListDiff(List oldList, List newList) {
 		ListDiff diff = Diffs.computeListDiff(oldList, newList);
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2007 Brad Reynolds and others.
+ * Copyright (c) 2006, 2014 Brad Reynolds and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,11 +11,32 @@
 
 package org.eclipse.core.tests.databinding.observable;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import junit.framework.TestCase;
 
+import org.eclipse.core.databinding.observable.ChangeEvent;
+import org.eclipse.core.databinding.observable.IChangeListener;
 import org.eclipse.core.databinding.observable.Realm;
+import org.eclipse.core.databinding.observable.list.ListDiffVisitor;
+import org.eclipse.core.databinding.observable.list.WritableList;
+import org.eclipse.core.databinding.observable.map.WritableMap;
+import org.eclipse.core.databinding.observable.set.WritableSet;
+import org.eclipse.core.databinding.observable.value.ComputedValue;
+import org.eclipse.core.databinding.observable.value.IObservableValue;
+import org.eclipse.core.databinding.observable.value.IValueChangeListener;
+import org.eclipse.core.databinding.observable.value.ValueChangeEvent;
+import org.eclipse.core.databinding.observable.value.WritableValue;
+import org.eclipse.jface.databinding.conformance.util.ChangeEventTracker;
 import org.eclipse.jface.databinding.conformance.util.CurrentRealm;
+import org.eclipse.jface.databinding.conformance.util.ListChangeEventTracker;
+import org.eclipse.jface.databinding.conformance.util.MapChangeEventTracker;
 import org.eclipse.jface.databinding.conformance.util.RealmTester;
+import org.eclipse.jface.databinding.conformance.util.SetChangeEventTracker;
+import org.eclipse.jface.databinding.conformance.util.ValueChangeEventTracker;
 
 /**
  * @since 3.2
@@ -34,4 +55,289 @@ public class RealmTest extends TestCase {
 		
 		assertEquals("old realm should have been restored", oldRealm, Realm.getDefault());
 	}
+
+	public void testRunBatchedMergesListChanges() throws Exception {
+		Realm realm = new CurrentRealm(true);
+		RealmTester.setDefault(realm);
+		try {
+			final WritableList list = new WritableList(realm, new ArrayList(
+					Arrays.asList(new Object[] { "a", "b" })), null);
+			final List oldList = new ArrayList(list);
+			ListChangeEventTracker tracker = ListChangeEventTracker
+					.observe(list);
+			realm.runBatched(new Runnable() {
+				public void run() {
+					list.add("c");
+					list.remove("a");
+					list.add(0, "d");
+				}
+			});
+
+			assertEquals(1, tracker.count);
+			final List applied = new ArrayList(oldList);
+			tracker.event.diff.accept(new ListDiffVisitor() {
+				public void handleAdd(int index, Object element) {
+					applied.add(index, element);
+				}
+
+				public void handleRemove(int index, Object element) {
+					assertEquals(element, applied.remove(index));
+				}
+			});
+			assertEquals(list, applied);
+		} finally {
+			RealmTester.setDefault(null);
+		}
+	}
+
+	public void testRunBatchedMergesSetChanges() throws Exception {
+		Realm realm = new CurrentRealm(true);
+		RealmTester.setDefault(realm);
+		try {
+			final WritableSet set = new WritableSet(realm, Arrays
+					.asList(new Object[] { "a", "b" }), null);
+			SetChangeEventTracker tracker = SetChangeEventTracker.observe(set);
+			realm.runBatched(new Runnable() {
+				public void run() {
+					set.add("c");
+					set.remove("a");
+					set.remove("c");
+					set.add("d");
+				}
+			});
+
+			assertEquals(1, tracker.count);
+			assertEquals(Collections.singleton("d"), tracker.event.diff
+					.getAdditions());
+			assertEquals(Collections.singleton("a"), tracker.event.diff
+					.getRemovals());
+		} finally {
+			RealmTester.setDefault(null);
+		}
+	}
+
+	public void testRunBatchedMergesMapChanges() throws Exception {
+		Realm realm = new CurrentRealm(true);
+		RealmTester.setDefault(realm);
+		try {
+			final WritableMap map = new WritableMap(realm);
+			map.put("changed", "old");
+			map.put("removed", "value");
+			MapChangeEventTracker tracker = MapChangeEventTracker.observe(map);
+			realm.runBatched(new Runnable() {
+				public void run() {
+					map.put("changed", "intermediate");
+					map.put("changed", "new");
+					map.remove("removed");
+					map.put("added", "value");
+					map.put("transient", "value");
+					map.remove("transient");
+				}
+			});
+
+			assertEquals(1, tracker.count);
+			assertEquals(Collections.singleton("added"), tracker.event.diff
+					.getAddedKeys());
+			assertEquals(Collections.singleton("removed"), tracker.event.diff
+					.getRemovedKeys());
+			assertEquals(Collections.singleton("changed"), tracker.event.diff
+					.getChangedKeys());
+			assertEquals("old", tracker.event.diff.getOldValue("changed"));
+			assertEquals("new", tracker.event.diff.getNewValue("changed"));
+		} finally {
+			RealmTester.setDefault(null);
+		}
+	}
+
+	public void testRunBatchedMergesValueChanges() throws Exception {
+		Realm realm = new CurrentRealm(true);
+		RealmTester.setDefault(realm);
+		try {
+			final WritableValue value = new WritableValue(realm, "old", null);
+			ValueChangeEventTracker tracker = ValueChangeEventTracker
+					.observe(value);
+			ChangeEventTracker changeTracker = ChangeEventTracker
+					.observe(value);
+			realm.runBatched(new Runnable() {
+				public void run() {
+					value.setValue("intermediate");
+					value.setValue("new");
+				}
+			});
+
+			assertEquals(1, tracker.count);
+			assertEquals("old", tracker.event.diff.getOldValue());
+			assertEquals("new", tracker.event.diff.getNewValue());
+			// generic change events are not deferred
+			assertEquals(2, changeTracker.count);
+		} finally {
+			RealmTester.setDefault(null);
+		}
+	}
+
+	public void testRunBatchedKeepsComputedValuesCurrent() throws Exception {
+		Realm realm = new CurrentRealm(true);
+		RealmTester.setDefault(realm);
+		try {
+			final WritableValue value = new WritableValue(realm, new Integer(1),
+					null);
+			final ComputedValue computed = new ComputedValue(realm) {
+				protected Object calculate() {
+					return new Integer(((Integer) value.getValue()).intValue() * 2);
+				}
+			};
+			ValueChangeEventTracker tracker = ValueChangeEventTracker
+					.observe(computed);
+			final List seen = new ArrayList();
+			realm.runBatched(new Runnable() {
+				public void run() {
+					value.setValue(new Integer(2));
+					seen.add(computed.getValue());
+					value.setValue(new Integer(3));
+					seen.add(computed.getValue());
+				}
+			});
+
+			assertEquals(Arrays.asList(new Object[] { new Integer(4),
+					new Integer(6) }), seen);
+			assertEquals(1, tracker.count);
+			assertEquals(new Integer(2), tracker.event.diff.getOldValue());
+			assertEquals(new Integer(6), tracker.event.diff.getNewValue());
+		} finally {
+			RealmTester.setDefault(null);
+		}
+	}
+
+	public void testRunBatchedFiresEventsAfterException() throws Exception {
+		final Realm realm = new CurrentRealm(true);
+		RealmTester.setDefault(realm);
+		try {
+			final WritableList list = new WritableList(realm);
+			final ListChangeEventTracker tracker = ListChangeEventTracker
+					.observe(list);
+			try {
+				realm.runBatched(new Runnable() {
+					public void run() {
+						list.add("a");
+						// nested batches are part of the enclosing one
+						realm.runBatched(new Runnable() {
+							public void run() {
+								list.add("b");
+							}
+						});
+						assertEquals(0, tracker.count);
+						throw new IllegalStateException();
+					}
+				});
+				fail("the exception should be thrown");
+			} catch (IllegalStateException e) {
+				// expected
+			}
+			assertEquals(1, tracker.count);
+			assertEquals(2, tracker.event.diff.getDifferences().length);
+
+			list.add("c");
+			assertEquals(2, tracker.count);
+		} finally {
+			RealmTester.setDefault(null);
+		}
+	}
+
+	private static class Sum extends ComputedValue {
+		private final IObservableValue[] values;
+		private final int factor;
+		int computations;
+
+		Sum(Realm realm, IObservableValue[] values, int factor) {
+			super(realm, Integer.TYPE);
+			this.values = values;
+			this.factor = factor;
+		}
+
+		protected Object calculate() {
+			computations++;
+			int sum = 0;
+			for (int i = 0; i < values.length; i++) {
+				sum += ((Integer) values[i].getValue()).intValue();
+			}
+			return new Integer(sum * factor);
+		}
+	}
+
+	public void testGlitchFreePropagationComputesDiamondOnce() throws Exception {
+		Realm realm = new CurrentRealm(true);
+		RealmTester.setDefault(realm);
+		try {
+			realm.setGlitchFreePropagation(true);
+			assertTrue(realm.isGlitchFreePropagation());
+			WritableValue value = new WritableValue(realm, new Integer(1),
+					Integer.TYPE);
+			Sum left = new Sum(realm, new IObservableValue[] { value }, 1);
+			Sum right = new Sum(realm, new IObservableValue[] { value }, 2);
+			final Sum sum = new Sum(realm,
+					new IObservableValue[] { left, right }, 1);
+			final List seen = new ArrayList();
+			sum.addValueChangeListener(new IValueChangeListener() {
+				public void handleValueChange(ValueChangeEvent event) {
+					seen.add(event.diff.getNewValue());
+				}
+			});
+			assertEquals(new Integer(3), sum.getValue());
+			assertEquals(1, sum.computations);
+
+			value.setValue(new Integer(2));
+			assertEquals(Collections.singletonList(new Integer(6)), seen);
+			assertEquals(2, left.computations);
+			assertEquals(2, right.computations);
+			assertEquals(2, sum.computations);
+
+			realm.setGlitchFreePropagation(false);
+			assertFalse(realm.isGlitchFreePropagation());
+			seen.clear();
+			value.setValue(new Integer(3));
+			// the sum is first read before the right value knows the change
+			assertEquals(new Integer(7), seen.get(0));
+			assertEquals(new Integer(9), seen.get(seen.size() - 1));
+		} finally {
+			RealmTester.setDefault(null);
+		}
+	}
+
+	public void testGlitchFreePropagationFiresInTopologicalOrder()
+			throws Exception {
+		Realm realm = new CurrentRealm(true);
+		RealmTester.setDefault(realm);
+		try {
+			realm.setGlitchFreePropagation(true);
+			final WritableValue value = new WritableValue(realm,
+					new Integer(1), Integer.TYPE);
+			final List seen = new ArrayList();
+			final Sum[] sums = new Sum[3];
+			// registered before the computed values read the value
+			value.addChangeListener(new IChangeListener() {
+				public void handleChange(ChangeEvent event) {
+					seen.add("value " + sums[2].getValue());
+				}
+			});
+			sums[0] = new Sum(realm, new IObservableValue[] { value }, 1);
+			sums[1] = new Sum(realm, new IObservableValue[] { sums[0] }, 2);
+			sums[2] = new Sum(realm, new IObservableValue[] { value, sums[1] },
+					1);
+			for (int i = sums.length - 1; i >= 0; i--) {
+				final int index = i;
+				sums[i].addValueChangeListener(new IValueChangeListener() {
+					public void handleValueChange(ValueChangeEvent event) {
+						seen.add("sum" + index + " " + event.diff.getNewValue());
+					}
+				});
+			}
+
+			value.setValue(new Integer(2));
+			assertEquals(Arrays.asList(new Object[] { "value 6", "sum0 2",
+					"sum1 4", "sum2 6" }), seen);
+			assertEquals(2, sums[2].computations);
+		} finally {
+			RealmTester.setDefault(null);
+		}
+	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2007 IBM Corporation and others.
+ * Copyright (c) 2006, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -17,8 +17,10 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
+import org.eclipse.core.databinding.observable.IChangeListener;
 import org.eclipse.core.databinding.observable.value.ComputedValue;
 import org.eclipse.core.databinding.observable.value.WritableValue;
+import org.eclipse.jface.databinding.conformance.util.ValueChangeEventTracker;
 import org.eclipse.jface.tests.databinding.AbstractDefaultRealmTestCase;
 
 /**
@@ -74,9 +76,16 @@ public class ComputedValueTest extends AbstractDefaultRealmTestCase {
             super(initialValue, valueType);
         }
 
+        int changeListenersAdded;
+
         public boolean hasListeners() {
             return super.hasListeners();
         }
+
+        public synchronized void addChangeListener(IChangeListener listener) {
+            changeListenersAdded++;
+            super.addChangeListener(listener);
+        }
     }
 
     public void testHookAndUnhookDependantObservables() throws Exception {
@@ -118,6 +127,44 @@ public class ComputedValueTest extends AbstractDefaultRealmTestCase {
         assertFalse("because value2 is not a part of the calculation the listeners should have been removed", value2.hasListeners());
     }
     
+    public void testRecomputeOnlyUpdatesChangedDependencies() throws Exception {
+        final List values = new ArrayList();
+
+        ComputedValue cv = new ComputedValue() {
+            protected Object calculate() {
+                int sum = 0;
+                for (Iterator it = values.iterator(); it.hasNext();) {
+                    WritableValue value = (WritableValue) it.next();
+                    sum += ((Integer) value.getValue()).intValue();
+                }
+                return new Integer(sum);
+            }
+        };
+
+        WritableValueExt value1 = new WritableValueExt(Integer.TYPE, new Integer(1));
+        WritableValueExt value2 = new WritableValueExt(Integer.TYPE, new Integer(1));
+        values.add(value1);
+        values.add(value2);
+
+        ValueChangeEventTracker tracker = ValueChangeEventTracker.observe(cv);
+        assertEquals(1, value1.changeListenersAdded);
+        assertEquals(1, value2.changeListenersAdded);
+
+        value1.setValue(new Integer(2));
+        assertEquals(new Integer(3), cv.getValue());
+        assertEquals(1, tracker.count);
+        assertEquals("the listener of an unchanged dependency should be kept", 1, value1.changeListenersAdded);
+        assertEquals("the listener of an unchanged dependency should be kept", 1, value2.changeListenersAdded);
+
+        value1.setValue(new Integer(3));
+        values.remove(value2);
+        assertEquals(new Integer(3), cv.getValue());
+        assertEquals(2, tracker.count);
+        assertEquals(1, value1.changeListenersAdded);
+        assertTrue(value1.hasListeners());
+        assertFalse(value2.hasListeners());
+    }
+
     public void testSetValueUnsupportedOperationException() throws Exception {
         ComputedValue cv = new ComputedValue() {
             protected Object calculate() {
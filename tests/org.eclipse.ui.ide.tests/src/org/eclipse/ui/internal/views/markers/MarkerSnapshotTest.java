@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.ui.internal.views.markers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.ui.tests.harness.util.FileUtil;
+import org.eclipse.ui.tests.harness.util.UITestCase;
+import org.eclipse.ui.views.markers.MarkerField;
+import org.eclipse.ui.views.markers.MarkerViewUtil;
+import org.eclipse.ui.views.markers.internal.MarkerTypesModel;
+
+/**
+ * Tests that the entries held by a {@link MarkerSnapshot} compare and filter
+ * like the entries reading their marker, from a fragment of the IDE bundle
+ * since both are package-private.
+ */
+public class MarkerSnapshotTest extends UITestCase {
+
+	private static final String[] TYPES = { IMarker.PROBLEM, IMarker.TASK,
+			IMarker.BOOKMARK };
+
+	// null leaves the attribute unset
+	private static final Integer[] SEVERITIES = {
+			Integer.valueOf(IMarker.SEVERITY_ERROR),
+			Integer.valueOf(IMarker.SEVERITY_WARNING), null,
+			Integer.valueOf(IMarker.SEVERITY_INFO) };
+
+	private static final Integer[] PRIORITIES = {
+			Integer.valueOf(IMarker.PRIORITY_HIGH), null,
+			Integer.valueOf(IMarker.PRIORITY_LOW),
+			Integer.valueOf(IMarker.PRIORITY_NORMAL), Integer.valueOf(5) };
+
+	private static final String[] MESSAGES = { "b message", "A message", "",
+			null, "a message", "b message" };
+
+	private static final String[] LOCATIONS = { "Alpha", "", null, "beta",
+			null };
+
+	private static final Integer[] LINE_NUMBERS = { Integer.valueOf(3), null,
+			Integer.valueOf(10), Integer.valueOf(3) };
+
+	private static final String[] PATHS = { null, null, "/custom/path", null,
+			null, "/a" };
+
+	private IProject project;
+
+	private List snapshotEntries;
+
+	private List markerEntries;
+
+	public MarkerSnapshotTest(String testName) {
+		super(testName);
+	}
+
+	protected void doSetUp() throws Exception {
+		super.doSetUp();
+		project = FileUtil.createProject("MarkerSnapshotTest");
+		project.getFolder("a").create(true, true, null);
+		project.getFolder("b").create(true, true, null);
+		IResource[] resources = { project,
+				FileUtil.createFile("a/x.txt", project),
+				FileUtil.createFile("b/y.txt", project),
+				FileUtil.createFile("z.txt", project), project.getFolder("a") };
+
+		MarkerSnapshot snapshot = new MarkerSnapshot();
+		snapshotEntries = new ArrayList();
+		markerEntries = new ArrayList();
+		for (int i = 0; i < 60; i++) {
+			IMarker marker = resources[i % resources.length]
+					.createMarker(TYPES[i % TYPES.length]);
+			Map attributes = new HashMap();
+			put(attributes, IMarker.SEVERITY, SEVERITIES[i % SEVERITIES.length]);
+			put(attributes, IMarker.PRIORITY, PRIORITIES[i % PRIORITIES.length]);
+			put(attributes, IMarker.MESSAGE, MESSAGES[i % MESSAGES.length]);
+			put(attributes, IMarker.LOCATION, LOCATIONS[i % LOCATIONS.length]);
+			put(attributes, IMarker.LINE_NUMBER, LINE_NUMBERS[i
+					% LINE_NUMBERS.length]);
+			put(attributes, MarkerViewUtil.PATH_ATTRIBUTE, PATHS[i
+					% PATHS.length]);
+			marker.setAttributes(attributes);
+			if (i % 7 == 0) {
+				// several markers created in the same millisecond
+				Thread.sleep(2);
+			}
+
+			int row = snapshot.add(marker);
+			assertTrue(row >= 0);
+			snapshotEntries.add(new MarkerEntry(marker, snapshot, row));
+			markerEntries.add(new MarkerEntry(marker));
+		}
+		snapshot.trimToSize();
+	}
+
+	protected void doTearDown() throws Exception {
+		FileUtil.deleteProject(project);
+		super.doTearDown();
+	}
+
+	private static void put(Map attributes, String attribute, Object value) {
+		if (value != null) {
+			attributes.put(attribute, value);
+		}
+	}
+
+	private MarkerEntry snapshotEntry(int i) {
+		return (MarkerEntry) snapshotEntries.get(i);
+	}
+
+	private MarkerEntry markerEntry(int i) {
+		return (MarkerEntry) markerEntries.get(i);
+	}
+
+	/**
+	 * Assert that the snapshot compares all the entries the way the field does.
+	 */
+	private void assertCompareMatches(MarkerField field) {
+		int column = MarkerSnapshot.getColumn(field);
+		assertTrue(column != MarkerSnapshot.NO_COLUMN);
+		for (int i = 0; i < snapshotEntries.size(); i++) {
+			for (int j = 0; j < snapshotEntries.size(); j++) {
+				int expected = field.compare(markerEntry(i), markerEntry(j));
+				int actual = MarkerSnapshot.compare(column, snapshotEntry(i),
+						snapshotEntry(j));
+				assertEquals(i + " to " + j, Integer.signum(expected), Integer
+						.signum(actual));
+			}
+		}
+	}
+
+	public void testCompareSeverity() {
+		assertCompareMatches(new MarkerSeverityField());
+	}
+
+	public void testComparePriority() {
+		assertCompareMatches(new MarkerPriorityField());
+	}
+
+	public void testCompareDescription() {
+		assertCompareMatches(new MarkerDescriptionField());
+	}
+
+	public void testCompareLocation() {
+		assertCompareMatches(new MarkerLocationField());
+	}
+
+	public void testCompareCreationTime() {
+		assertCompareMatches(new MarkerCreationTimeField());
+	}
+
+	public void testComparePath() {
+		assertCompareMatches(new MarkerPathField());
+	}
+
+	public void testOtherFieldsHaveNoColumn() {
+		assertEquals(MarkerSnapshot.NO_COLUMN, MarkerSnapshot
+				.getColumn(new MarkerTypeField()));
+		assertEquals(MarkerSnapshot.NO_COLUMN, MarkerSnapshot.getColumn(null));
+	}
+
+	public void testValues() {
+		for (int i = 0; i < snapshotEntries.size(); i++) {
+			MarkerEntry entry = snapshotEntry(i);
+			MarkerEntry expected = markerEntry(i);
+			assertEquals(expected.getMarkerTypeId(), entry.getMarkerTypeId());
+			assertEquals(expected.getPath(), entry.getPath());
+			assertEquals(expected.getLocation(), entry.getLocation());
+			assertEquals(expected.getCreationTime(), entry.getCreationTime());
+			assertEquals(expected.getAttributeValue(IMarker.MESSAGE), entry
+					.getAttributeValue(IMarker.MESSAGE));
+			assertEquals(expected.getAttributeValue(IMarker.LINE_NUMBER, -1),
+					entry.getAttributeValue(IMarker.LINE_NUMBER, -1));
+		}
+	}
+
+	public void testPriorityFilter() {
+		PriorityMarkerFieldFilter filter = new PriorityMarkerFieldFilter();
+		// every combination of the selected priorities
+		int all = PriorityMarkerFieldFilter.PRIORITY_HIGH
+				| PriorityMarkerFieldFilter.PRIORITY_NORMAL
+				| PriorityMarkerFieldFilter.PRIORITY_LOW;
+		for (int selected = 0; selected <= all; selected++) {
+			filter.selectedPriorities = selected;
+			for (int i = 0; i < snapshotEntries.size(); i++) {
+				assertEquals(selected + " on " + i, filter
+						.select(markerEntry(i)), filter
+						.select(snapshotEntry(i)));
+			}
+		}
+	}
+
+	public void testTypeFilter() {
+		MarkerTypesModel model = MarkerTypesModel.getInstance();
+		MarkerTypeFieldFilter filter = new MarkerTypeFieldFilter();
+		for (int selected = 0; selected < 1 << TYPES.length; selected++) {
+			filter.selectedTypes.clear();
+			for (int i = 0; i < TYPES.length; i++) {
+				if ((selected & 1 << i) != 0) {
+					filter.selectedTypes.add(model.getType(TYPES[i]));
+				}
+			}
+			for (int i = 0; i < snapshotEntries.size(); i++) {
+				assertEquals(selected + " on " + i, filter
+						.select(markerEntry(i)), filter
+						.select(snapshotEntry(i)));
+			}
+		}
+	}
+
+	public void testUnexpectedAttributeType() throws Exception {
+		IMarker marker = project.createMarker(IMarker.PROBLEM);
+		marker.setAttribute(IMarker.SEVERITY, "error");
+		MarkerSnapshot snapshot = new MarkerSnapshot();
+		// read from the marker instead
+		assertEquals(-1, snapshot.add(marker));
+	}
+}
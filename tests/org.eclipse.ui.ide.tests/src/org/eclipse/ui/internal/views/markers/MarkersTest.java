@@ -0,0 +1,575 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.ui.internal.views.markers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.TreeItem;
+import org.eclipse.ui.IPageLayout;
+import org.eclipse.ui.IWorkbenchPage;
+import org.eclipse.ui.tests.harness.util.FileUtil;
+import org.eclipse.ui.tests.harness.util.UITestCase;
+import org.eclipse.ui.views.markers.MarkerItem;
+import org.eclipse.ui.views.markers.internal.MarkerGroup;
+import org.eclipse.ui.views.markers.internal.MarkerSupportRegistry;
+
+/**
+ * Tests applying marker changes to the sorted and grouped markers, from a
+ * fragment of the IDE bundle since the markers of the views are
+ * package-private. The markers are grouped by severity, as the problems are
+ * by default, and are checked against the order and grouping a full update
+ * gives them.
+ */
+public class MarkersTest extends UITestCase {
+
+	private static final long TIMEOUT = 10000;
+
+	private IProject project;
+
+	private IFile file;
+
+	private CachedMarkerBuilder builder;
+
+	private MarkerContentGenerator generator;
+
+	private Markers markers;
+
+	public MarkersTest(String testName) {
+		super(testName);
+	}
+
+	protected void doSetUp() throws Exception {
+		super.doSetUp();
+		project = FileUtil.createProject("MarkersTest");
+		file = FileUtil.createFile("file.txt", project);
+		// the builder is never started, so it schedules no updates
+		builder = new CachedMarkerBuilder(new ExtendedMarkersView(
+				MarkerSupportRegistry.PROBLEMS_GENERATOR));
+		generator = new MarkerContentGenerator(MarkerSupportRegistry
+				.getInstance().getContentGenDescriptor(
+						MarkerSupportRegistry.PROBLEMS_GENERATOR), builder,
+				"org.eclipse.ui.tests.markersTest");
+		generator.setMarkerLimitsEnabled(false);
+		markers = builder.getMarkers();
+		assertNotNull(builder.getCategoryGroup());
+	}
+
+	protected void doTearDown() throws Exception {
+		generator.dispose();
+		FileUtil.deleteProject(project);
+		super.doTearDown();
+	}
+
+	private IMarker createMarker(int severity, String message)
+			throws CoreException {
+		IMarker marker = file.createMarker(IMarker.PROBLEM);
+		marker.setAttribute(IMarker.SEVERITY, severity);
+		marker.setAttribute(IMarker.MESSAGE, message);
+		return marker;
+	}
+
+	private IMarker[] createMarkers(int severity, String[] messages)
+			throws CoreException {
+		IMarker[] result = new IMarker[messages.length];
+		for (int i = 0; i < messages.length; i++) {
+			result[i] = createMarker(severity, messages[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Return new entries for the markers, held by a snapshot as when they are
+	 * gathered.
+	 */
+	private static List createEntries(IMarker[] newMarkers) {
+		MarkerSnapshot snapshot = new MarkerSnapshot();
+		List entries = new ArrayList();
+		for (int i = 0; i < newMarkers.length; i++) {
+			int row = snapshot.add(newMarkers[i]);
+			assertTrue(row >= 0);
+			entries.add(new MarkerEntry(newMarkers[i], snapshot, row));
+		}
+		snapshot.trimToSize();
+		return entries;
+	}
+
+	private static IMarker[] concat(IMarker[] markers1, IMarker[] markers2) {
+		IMarker[] result = new IMarker[markers1.length + markers2.length];
+		System.arraycopy(markers1, 0, result, 0, markers1.length);
+		System.arraycopy(markers2, 0, result, markers1.length,
+				markers2.length);
+		return result;
+	}
+
+	/**
+	 * Gather, sort and group the markers as a full update does.
+	 */
+	private void update(IMarker[] newMarkers) {
+		assertTrue(markers.updateWithNewMarkers(createEntries(newMarkers),
+				true, new NullProgressMonitor()));
+		assertTrue(markers.canApplyChanges());
+	}
+
+	/**
+	 * Apply the changes of the markers as an incremental update does: the
+	 * entries shown for the removed and changed markers are removed, and new
+	 * entries are added for the added and changed ones.
+	 *
+	 * @return the changed categories, or <code>null</code> if all must be
+	 *         refreshed
+	 */
+	private Collection applyChanges(IMarker[] removedMarkers,
+			IMarker[] addedMarkers) {
+		assertTrue(markers.canApplyChanges());
+		List removed = new ArrayList();
+		for (int i = 0; i < removedMarkers.length; i++) {
+			MarkerItem item = markers.getMarkerItem(removedMarkers[i]);
+			assertNotNull(item);
+			removed.add(item);
+		}
+		return markers.applyChanges(removed, createEntries(addedMarkers));
+	}
+
+	private Comparator getComparator() {
+		if (builder.isShowingHierarchy()) {
+			return builder.getComparator().getFieldsComparator();
+		}
+		return builder.getComparator();
+	}
+
+	private int getShownCount(int size) {
+		if (generator.isMarkerLimitsEnabled()
+				&& generator.getMarkerLimits() > 0) {
+			return Math.min(size, generator.getMarkerLimits());
+		}
+		return size;
+	}
+
+	/**
+	 * Assert that the first sortedCount entries of the range are sorted and
+	 * not greater than the other entries of the range, which are all sorted
+	 * if shown.
+	 */
+	private void assertSorted(MarkerEntry[] entries, int start, int end,
+			int sortedCount) {
+		int size = end - start + 1;
+		assertTrue("sorted " + sortedCount + " of " + size,
+				sortedCount >= getShownCount(size) && sortedCount <= size);
+		Comparator comparator = getComparator();
+		int sortedEnd = start + sortedCount;
+		for (int i = start + 1; i < sortedEnd; i++) {
+			assertTrue("sorted at " + i, comparator.compare(entries[i - 1],
+					entries[i]) <= 0);
+		}
+		for (int i = sortedEnd; i < end + 1 && sortedCount > 0; i++) {
+			assertTrue("unsorted at " + i, comparator.compare(
+					entries[sortedEnd - 1], entries[i]) <= 0);
+		}
+	}
+
+	/**
+	 * Assert that the markers hold entries for exactly the expected markers,
+	 * sorted and grouped as a full update would.
+	 */
+	private void assertMarkers(IMarker[] expected) throws CoreException {
+		MarkerEntry[] entries = markers.getMarkerEntryArray();
+		Set expectedMarkers = new HashSet(Arrays.asList(expected));
+		assertEquals(expected.length, entries.length);
+		for (int i = 0; i < entries.length; i++) {
+			assertTrue(entries[i].getMarker().toString(), expectedMarkers
+					.remove(entries[i].getMarker()));
+			assertSame(entries[i], markers.getMarkerItem(entries[i]
+					.getMarker()));
+		}
+		assertTrue(Arrays.equals(Markers.getMarkerCounts(entries), markers
+				.getMarkerCounts()));
+
+		MarkerGroup group = builder.getCategoryGroup();
+		MarkerCategory[] categories = markers.getCategories();
+		if (group == null) {
+			assertEquals(0, categories.length);
+			assertSorted(entries, 0, entries.length - 1,
+					getShownCount(entries.length));
+			return;
+		}
+		int start = 0;
+		for (int i = 0; i < categories.length; i++) {
+			MarkerCategory category = categories[i];
+			assertEquals(start, category.start);
+			assertTrue(category.end >= category.start);
+			if (i > 0) {
+				assertTrue("categories in order", group.getEntriesComparator()
+						.compare(categories[i - 1].groupingEntry,
+								category.groupingEntry) < 0);
+			}
+			assertEquals(group.getMarkerField().getValue(
+					entries[category.start]), category.getName());
+			for (int j = category.start; j <= category.end; j++) {
+				assertSame(category, entries[j].getCategory());
+				assertEquals(category.groupingEntry, group.findGroupValue(
+						entries[j].getMarker().getType(), entries[j]
+								.getMarker()));
+			}
+			assertSorted(entries, category.start, category.end,
+					category.sortedCount);
+			MarkerSupportItem[] children = category.getChildren();
+			assertEquals(category.getChildrenCount(), children.length);
+			for (int j = 0; j < children.length; j++) {
+				assertSame(entries[category.start + j], children[j]);
+			}
+			start = category.end + 1;
+		}
+		assertEquals(entries.length, start);
+	}
+
+	/**
+	 * Return the category of the entry of the marker.
+	 */
+	private MarkerCategory getCategory(IMarker marker) {
+		return ((MarkerEntry) markers.getMarkerItem(marker)).getCategory();
+	}
+
+	public void testChangesWithinCategory() throws CoreException {
+		IMarker[] errors = createMarkers(IMarker.SEVERITY_ERROR, new String[] {
+				"b", "d", "f" });
+		IMarker[] warnings = createMarkers(IMarker.SEVERITY_WARNING,
+				new String[] { "a", "c", "e" });
+		IMarker[] all = concat(errors, warnings);
+		update(all);
+		assertMarkers(all);
+		MarkerCategory warningCategory = getCategory(warnings[0]);
+
+		// add
+		IMarker added = createMarker(IMarker.SEVERITY_ERROR, "c");
+		all = concat(all, new IMarker[] { added });
+		Collection changed = applyChanges(new IMarker[0],
+				new IMarker[] { added });
+		assertMarkers(all);
+		assertEquals(Arrays.asList(new Object[] { getCategory(added) }),
+				new ArrayList(changed));
+		assertEquals(4, getCategory(added).getChildrenCount());
+		assertSame(markers.getMarkerItem(added), getCategory(added)
+				.getChildren()[1]);
+		// the other category is the same
+		assertEquals(warningCategory, getCategory(warnings[0]));
+		assertEquals(3, getCategory(warnings[0]).getChildrenCount());
+
+		// change
+		errors[0].setAttribute(IMarker.MESSAGE, "z");
+		changed = applyChanges(new IMarker[] { errors[0] },
+				new IMarker[] { errors[0] });
+		assertMarkers(all);
+		assertEquals(Arrays.asList(new Object[] { getCategory(errors[0]) }),
+				new ArrayList(changed));
+		MarkerSupportItem[] children = getCategory(errors[0]).getChildren();
+		assertSame(markers.getMarkerItem(errors[0]),
+				children[children.length - 1]);
+
+		// remove
+		MarkerCategory category = getCategory(warnings[1]);
+		warnings[1].delete();
+		changed = applyChanges(new IMarker[] { warnings[1] }, new IMarker[0]);
+		all = new IMarker[] { errors[0], errors[1], errors[2], added,
+				warnings[0], warnings[2] };
+		assertMarkers(all);
+		assertEquals(1, changed.size());
+		assertEquals(category, changed.iterator().next());
+		assertEquals(2, getCategory(warnings[0]).getChildrenCount());
+	}
+
+	public void testChangeBetweenCategories() throws CoreException {
+		IMarker[] errors = createMarkers(IMarker.SEVERITY_ERROR, new String[] {
+				"a", "b" });
+		IMarker[] warnings = createMarkers(IMarker.SEVERITY_WARNING,
+				new String[] { "c", "d" });
+		IMarker[] all = concat(errors, warnings);
+		update(all);
+
+		errors[0].setAttribute(IMarker.SEVERITY, IMarker.SEVERITY_WARNING);
+		Collection changed = applyChanges(new IMarker[] { errors[0] },
+				new IMarker[] { errors[0] });
+		assertMarkers(all);
+		// both categories are still shown, only their children changed
+		assertNotNull(changed);
+		assertEquals(2, changed.size());
+		assertEquals(1, getCategory(errors[1]).getChildrenCount());
+		assertEquals(3, getCategory(errors[0]).getChildrenCount());
+	}
+
+	public void testCategoryCreated() throws CoreException {
+		IMarker[] errors = createMarkers(IMarker.SEVERITY_ERROR, new String[] {
+				"a", "b" });
+		update(errors);
+		assertEquals(1, markers.getCategories().length);
+
+		IMarker warning = createMarker(IMarker.SEVERITY_WARNING, "c");
+		// the new category is a new element of the viewer
+		assertNull(applyChanges(new IMarker[0], new IMarker[] { warning }));
+		assertMarkers(concat(errors, new IMarker[] { warning }));
+		assertEquals(2, markers.getCategories().length);
+
+		IMarker info = createMarker(IMarker.SEVERITY_INFO, "d");
+		errors[1].setAttribute(IMarker.MESSAGE, "e");
+		assertNull(applyChanges(new IMarker[] { errors[1] }, new IMarker[] {
+				info, errors[1] }));
+		assertMarkers(concat(errors, new IMarker[] { warning, info }));
+		assertEquals(3, markers.getCategories().length);
+	}
+
+	public void testCategoryEmptied() throws CoreException {
+		IMarker error = createMarker(IMarker.SEVERITY_ERROR, "a");
+		IMarker[] warnings = createMarkers(IMarker.SEVERITY_WARNING,
+				new String[] { "b", "c" });
+		update(concat(new IMarker[] { error }, warnings));
+		assertEquals(2, markers.getCategories().length);
+
+		error.setAttribute(IMarker.SEVERITY, IMarker.SEVERITY_WARNING);
+		// the emptied category is removed from the viewer
+		assertNull(applyChanges(new IMarker[] { error },
+				new IMarker[] { error }));
+		assertMarkers(concat(new IMarker[] { error }, warnings));
+		assertEquals(1, markers.getCategories().length);
+
+		warnings[0].delete();
+		warnings[1].delete();
+		error.delete();
+		assertNull(applyChanges(new IMarker[] { error, warnings[0],
+				warnings[1] }, new IMarker[0]));
+		assertMarkers(new IMarker[0]);
+		assertEquals(0, markers.getCategories().length);
+	}
+
+	public void testMarkerLimits() throws CoreException {
+		generator.setMarkerLimitsEnabled(true);
+		generator.setMarkerLimits(3);
+		String[] messages = new String[12];
+		for (int i = 0; i < messages.length; i++) {
+			messages[i] = String.valueOf((char) ('b' + i * 2));
+		}
+		IMarker[] errors = createMarkers(IMarker.SEVERITY_ERROR, messages);
+		update(errors);
+		assertMarkers(errors);
+
+		// remove the shown markers, the next ones are sorted to be shown
+		errors[0].delete();
+		errors[1].delete();
+		IMarker[] remaining = new IMarker[errors.length - 2];
+		System.arraycopy(errors, 2, remaining, 0, remaining.length);
+		applyChanges(new IMarker[] { errors[0], errors[1] }, new IMarker[0]);
+		assertMarkers(remaining);
+		MarkerSupportItem[] children = markers.getCategories()[0]
+				.getChildren();
+		assertSame(markers.getMarkerItem(errors[2]), children[0]);
+		assertSame(markers.getMarkerItem(errors[3]), children[1]);
+		assertSame(markers.getMarkerItem(errors[4]), children[2]);
+
+		// an added marker sorting first is shown, one sorting last is not
+		IMarker first = createMarker(IMarker.SEVERITY_ERROR, "a");
+		IMarker last = createMarker(IMarker.SEVERITY_ERROR, "z");
+		applyChanges(new IMarker[0], new IMarker[] { last, first });
+		IMarker[] all = concat(remaining, new IMarker[] { first, last });
+		assertMarkers(all);
+		assertSame(markers.getMarkerItem(first), markers.getCategories()[0]
+				.getChildren()[0]);
+
+		// a marker changed to sort first among the ones not shown
+		errors[11].setAttribute(IMarker.MESSAGE, "c");
+		applyChanges(new IMarker[] { errors[11] }, new IMarker[] { errors[11] });
+		assertMarkers(all);
+		children = markers.getCategories()[0].getChildren();
+		assertSame(markers.getMarkerItem(errors[11]), children[1]);
+	}
+
+	public void testMarkerLimitsFlat() throws CoreException {
+		builder.setCategoryGroup(null);
+		generator.setMarkerLimitsEnabled(true);
+		generator.setMarkerLimits(2);
+		IMarker[] errors = createMarkers(IMarker.SEVERITY_ERROR, new String[] {
+				"b", "d", "f", "h", "j" });
+		update(errors);
+		assertMarkers(errors);
+
+		errors[0].delete();
+		errors[1].delete();
+		// the elements of the flat list are all refreshed
+		assertNull(applyChanges(new IMarker[] { errors[0], errors[1] },
+				new IMarker[0]));
+		assertMarkers(new IMarker[] { errors[2], errors[3], errors[4] });
+		MarkerEntry[] entries = markers.getMarkerEntryArray();
+		assertSame(markers.getMarkerItem(errors[2]), entries[0]);
+		assertSame(markers.getMarkerItem(errors[3]), entries[1]);
+	}
+
+	public void testFlatList() throws CoreException {
+		builder.setCategoryGroup(null);
+		IMarker[] errors = createMarkers(IMarker.SEVERITY_ERROR, new String[] {
+				"b", "d" });
+		IMarker[] warnings = createMarkers(IMarker.SEVERITY_WARNING,
+				new String[] { "a", "c" });
+		update(concat(errors, warnings));
+
+		IMarker added = createMarker(IMarker.SEVERITY_ERROR, "c");
+		warnings[0].setAttribute(IMarker.SEVERITY, IMarker.SEVERITY_ERROR);
+		errors[1].delete();
+		assertNull(applyChanges(new IMarker[] { warnings[0], errors[1] },
+				new IMarker[] { added, warnings[0] }));
+		assertMarkers(new IMarker[] { errors[0], added, warnings[0],
+				warnings[1] });
+	}
+
+	public void testChangesDuringFullUpdate() throws CoreException {
+		IMarker[] errors = createMarkers(IMarker.SEVERITY_ERROR, new String[] {
+				"a", "b" });
+		update(errors);
+
+		// gathered again but not sorted and grouped yet
+		assertTrue(markers.updateWithNewMarkers(createEntries(errors), false,
+				new NullProgressMonitor()));
+		assertFalse(markers.canApplyChanges());
+		IMarker added = createMarker(IMarker.SEVERITY_WARNING, "c");
+		assertTrue(markers.sortAndMakeCategories(new NullProgressMonitor()));
+		assertNull(applyChanges(new IMarker[0], new IMarker[] { added }));
+		assertMarkers(concat(errors, new IMarker[] { added }));
+
+		// grouped differently since sorted
+		builder.setCategoryGroup(null);
+		assertFalse(markers.canApplyChanges());
+		assertTrue(markers.sortAndMakeCategories(new NullProgressMonitor()));
+		assertTrue(markers.canApplyChanges());
+		assertMarkers(concat(errors, new IMarker[] { added }));
+	}
+
+	public void testRemovedUnknownEntry() throws CoreException {
+		IMarker[] errors = createMarkers(IMarker.SEVERITY_ERROR, new String[] {
+				"a", "b" });
+		update(errors);
+
+		// an entry of a marker changed meanwhile, that is not shown
+		List removed = createEntries(new IMarker[] { errors[0] });
+		assertNull(markers.applyChanges(removed, new ArrayList()));
+		assertMarkers(errors);
+		assertTrue(markers.applyChanges(new ArrayList(), new ArrayList())
+				.isEmpty());
+		assertMarkers(errors);
+	}
+
+	public void testCountsWithRemovedDeletedMarker() throws CoreException {
+		IMarker[] errors = createMarkers(IMarker.SEVERITY_ERROR, new String[] {
+				"a", "b" });
+		// entries reading their marker, without a snapshot
+		List entries = new ArrayList();
+		for (int i = 0; i < errors.length; i++) {
+			entries.add(new MarkerEntry(errors[i]));
+		}
+		assertTrue(markers.updateWithNewMarkers(entries, true,
+				new NullProgressMonitor()));
+		assertEquals(2, markers.getMarkerCounts()[0].intValue());
+
+		errors[0].delete();
+		applyChanges(new IMarker[] { errors[0] }, new IMarker[0]);
+		assertEquals(1, markers.getMarkerCounts()[0].intValue());
+		assertEquals(0, markers.getMarkerCounts()[3].intValue());
+		assertMarkers(new IMarker[] { errors[1] });
+	}
+
+	/**
+	 * Wait until the view shows the changes of the markers.
+	 */
+	private void waitForUpdates(ExtendedMarkersView view)
+			throws InterruptedException {
+		Display display = Display.getCurrent();
+		long end = System.currentTimeMillis() + TIMEOUT;
+		do {
+			while (display.readAndDispatch()) {
+			}
+			assertTrue("updating", System.currentTimeMillis() < end);
+			Thread.sleep(20);
+		} while (view.getBuilder().updatesPending());
+		while (display.readAndDispatch()) {
+		}
+	}
+
+	/**
+	 * Return the item showing the marker, or <code>null</code>.
+	 */
+	private TreeItem findItem(TreeItem[] items, IMarker marker) {
+		for (int i = 0; i < items.length; i++) {
+			Object data = items[i].getData();
+			if (data instanceof MarkerEntry
+					&& marker.equals(((MarkerEntry) data).getMarker())) {
+				return items[i];
+			}
+			TreeItem item = findItem(items[i].getItems(), marker);
+			if (item != null) {
+				return item;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Assert that the view shows the marker and the right count of its
+	 * category.
+	 */
+	private void assertShown(ExtendedMarkersView view, IMarker marker,
+			String message) {
+		view.getViewer().expandAll();
+		TreeItem item = findItem(view.getViewer().getTree().getItems(), marker);
+		assertNotNull(message, item);
+		assertEquals(message, item.getText(0));
+		TreeItem categoryItem = item.getParentItem();
+		assertNotNull(categoryItem);
+		MarkerCategory category = (MarkerCategory) categoryItem.getData();
+		assertEquals(category.getDescription(), categoryItem.getText(0));
+		assertEquals(category.getChildren().length, categoryItem
+				.getItemCount());
+	}
+
+	public void testRefreshCategoriesInView() throws Exception {
+		IWorkbenchPage page = fWorkbench.getActiveWorkbenchWindow()
+				.getActivePage();
+		ExtendedMarkersView view = (ExtendedMarkersView) page
+				.showView(IPageLayout.ID_PROBLEM_VIEW);
+		assertTrue(view.getBuilder().isShowingHierarchy());
+		IMarker error = createMarker(IMarker.SEVERITY_ERROR, "first error");
+		IMarker warning = createMarker(IMarker.SEVERITY_WARNING, "warning");
+		waitForUpdates(view);
+		assertShown(view, error, "first error");
+		assertShown(view, warning, "warning");
+
+		// the category of errors is refreshed, with its count
+		IMarker second = createMarker(IMarker.SEVERITY_ERROR, "second error");
+		error.setAttribute(IMarker.MESSAGE, "changed error");
+		waitForUpdates(view);
+		assertShown(view, error, "changed error");
+		assertShown(view, second, "second error");
+		assertShown(view, warning, "warning");
+
+		warning.delete();
+		waitForUpdates(view);
+		assertNull(findItem(view.getViewer().getTree().getItems(), warning));
+		assertShown(view, error, "changed error");
+		page.hideView(view);
+	}
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.tests.performance;
+
+import org.eclipse.ui.tests.performance.TestRunnable;
+
+/**
+ * The ElementMapPerformanceTest measures the map from elements to items used
+ * by viewers with hash lookup enabled: the lookup of the items of the
+ * elements, the removal and addition of the elements, and the time and heap
+ * taken to map the elements when the input is set.
+ */
+public class ElementMapPerformanceTest extends TableViewerRefreshTest {
+
+	public ElementMapPerformanceTest(String testName, int tagging) {
+		super(testName, tagging);
+	}
+
+	public ElementMapPerformanceTest(String testName) {
+		super(testName);
+	}
+
+	/**
+	 * Test the time for finding the items of the elements.
+	 *
+	 * @throws Throwable
+	 */
+	public void testFindItems() throws Throwable {
+		openBrowser();
+
+		exercise(new TestRunnable() {
+			public void run() {
+				TestElement[] elements = RefreshTestContentProvider.allElements;
+				startMeasuring();
+				for (int i = 0; i < 10; i++) {
+					for (int j = 0; j < elements.length; j++) {
+						assertNotNull(viewer.testFindItem(elements[j]));
+						assertEquals(1, viewer.testFindItems(elements[j]).length);
+					}
+				}
+				stopMeasuring();
+			}
+		}, MIN_ITERATIONS, ITERATIONS, JFacePerformanceSuite.MAX_TIME);
+
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	/**
+	 * Test the time for unmapping and mapping the elements when they are
+	 * removed from the viewer and added again.
+	 *
+	 * @throws Throwable
+	 */
+	public void testRemoveAndAddElements() throws Throwable {
+		openBrowser();
+
+		exercise(new TestRunnable() {
+			public void run() {
+				TestElement[] elements = RefreshTestContentProvider.allElements;
+				startMeasuring();
+				viewer.remove(elements);
+				viewer.add(elements);
+				processEvents();
+				stopMeasuring();
+				assertEquals(elements.length, viewer.getTable().getItemCount());
+			}
+		}, MIN_ITERATIONS, slowGTKIterations(),
+				JFacePerformanceSuite.MAX_TIME);
+
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	/**
+	 * Test the time and the heap for mapping the elements when setting the
+	 * input.
+	 *
+	 * @throws Throwable
+	 */
+	public void testMapElements() throws Throwable {
+		openBrowser();
+
+		exercise(new TestRunnable() {
+			public void run() {
+				viewer.setInput(null);
+				processEvents();
+				System.gc();
+				startMeasuring();
+				viewer.setInput(getInitialInput());
+				processEvents();
+				stopMeasuring();
+			}
+		}, MIN_ITERATIONS, slowGTKIterations(),
+				JFacePerformanceSuite.MAX_TIME);
+
+		commitMeasurements();
+		assertPerformance();
+	}
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.tests.performance;
+
+import java.io.StringReader;
+
+import org.eclipse.e4.ui.css.core.engine.CSSEngine;
+import org.eclipse.e4.ui.css.core.impl.dom.ViewCSSImpl;
+import org.eclipse.e4.ui.css.swt.dom.WidgetElement;
+import org.eclipse.e4.ui.css.swt.engine.CSSSWTEngineImpl;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Widget;
+import org.w3c.dom.Element;
+import org.w3c.dom.css.CSSStyleSheet;
+import org.w3c.dom.css.ViewCSS;
+
+/**
+ * Compares computing the styles of many widgets against a large style sheet
+ * using the rule index of the document with the linear scan over all rules.
+ */
+public class CSSComputedStylePerformanceTest extends BasicPerformanceTest {
+
+	private static final int RULE_COUNT = 500;
+
+	private static final int WIDGET_COUNT = 2000;
+
+	private static final int ITERATIONS = 10;
+
+	private Shell shell;
+
+	private CSSEngine engine;
+
+	private CSSStyleSheet styleSheet;
+
+	private Element[] elements;
+
+	/**
+	 * @param testName
+	 */
+	public CSSComputedStylePerformanceTest(String testName) {
+		super(testName);
+	}
+
+	protected void doSetUp() throws Exception {
+		super.doSetUp();
+		Display display = Display.getCurrent();
+		engine = new CSSSWTEngineImpl(display);
+		styleSheet = (CSSStyleSheet) engine.parseStyleSheet(new StringReader(
+				createStyleSheet()));
+
+		shell = new Shell(display);
+		Composite composite = new Composite(shell, SWT.NONE);
+		elements = new Element[WIDGET_COUNT];
+		for (int i = 0; i < WIDGET_COUNT; i++) {
+			Widget widget;
+			if (i % 2 == 0) {
+				widget = new Button(composite, SWT.PUSH);
+			} else {
+				widget = new Label(composite, SWT.NONE);
+			}
+			WidgetElement.setCSSClass(widget, "class" + (i % RULE_COUNT));
+			if (i % 10 == 0) {
+				WidgetElement.setID(widget, "id" + (i % RULE_COUNT));
+			}
+			elements[i] = engine.getElement(widget);
+		}
+	}
+
+	protected void doTearDown() throws Exception {
+		shell.dispose();
+		engine.dispose();
+		super.doTearDown();
+	}
+
+	/**
+	 * Test computing the styles through the rule index.
+	 */
+	public void testIndexedComputedStyle() {
+		ViewCSS viewCSS = engine.getViewCSS();
+		for (int i = 0; i < ITERATIONS; i++) {
+			startMeasuring();
+			for (int j = 0; j < elements.length; j++) {
+				viewCSS.getComputedStyle(elements[j], null);
+			}
+			stopMeasuring();
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	/**
+	 * Test computing the styles by matching every rule of the style sheet.
+	 */
+	public void testLinearComputedStyle() {
+		ViewCSSImpl viewCSS = (ViewCSSImpl) engine.getViewCSS();
+		for (int i = 0; i < ITERATIONS; i++) {
+			startMeasuring();
+			for (int j = 0; j < elements.length; j++) {
+				viewCSS.getComputedStyle(styleSheet, elements[j], null);
+			}
+			stopMeasuring();
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	private static String createStyleSheet() {
+		StringBuffer css = new StringBuffer();
+		css.append("* { font-size: 9; }\n");
+		css.append("Button { color: black; }\n");
+		css.append("Label { color: gray; }\n");
+		css.append("Button:focus { color: blue; }\n");
+		for (int i = 0; i < RULE_COUNT; i++) {
+			css.append(".class" + i + " { background-color: red; }\n");
+			css.append("Button.class" + i + " { color: green; }\n");
+			css.append("Shell > Composite > .class" + i + " { color: white; }\n");
+			css.append("#id" + i + " { font-weight: bold; }\n");
+		}
+		return css.toString();
+	}
+}
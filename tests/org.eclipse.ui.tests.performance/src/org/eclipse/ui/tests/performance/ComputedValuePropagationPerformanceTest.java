@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.tests.performance;
+
+import org.eclipse.core.databinding.observable.Realm;
+import org.eclipse.core.databinding.observable.value.ComputedValue;
+import org.eclipse.core.databinding.observable.value.IObservableValue;
+import org.eclipse.core.databinding.observable.value.IValueChangeListener;
+import org.eclipse.core.databinding.observable.value.ValueChangeEvent;
+import org.eclipse.core.databinding.observable.value.WritableValue;
+
+/**
+ * Measures the propagation of changes through diamond shaped graphs of
+ * <code>ComputedValue</code>s: a writable value feeds a layer of computed
+ * values, each computed value of a layer depending on two values of the
+ * previous one, and the values of the last layer are summed.
+ * <p>
+ * Every graph is measured with and without glitch free propagation. Without
+ * it, the computed values are recomputed and fire events several times per
+ * change; with it, every computed value is recomputed once per change, which
+ * the test checks.
+ * </p>
+ */
+public class ComputedValuePropagationPerformanceTest extends
+		BasicPerformanceTest {
+
+	private static final int ITERATIONS = 10;
+
+	private static final int CHANGES = 20;
+
+	private Realm realm;
+
+	private int computations;
+
+	private int events;
+
+	/**
+	 * @param testName
+	 */
+	public ComputedValuePropagationPerformanceTest(String testName) {
+		super(testName);
+	}
+
+	protected void doSetUp() throws Exception {
+		super.doSetUp();
+		realm = new Realm() {
+			public boolean isCurrent() {
+				return true;
+			}
+		};
+	}
+
+	private class Sum extends ComputedValue {
+		private final IObservableValue[] values;
+
+		Sum(IObservableValue[] values) {
+			super(realm, Integer.TYPE);
+			this.values = values;
+		}
+
+		protected Object calculate() {
+			computations++;
+			int sum = 0;
+			for (int i = 0; i < values.length; i++) {
+				sum += ((Integer) values[i].getValue()).intValue();
+			}
+			return new Integer(sum);
+		}
+	}
+
+	/**
+	 * Creates the graph and returns the number of computed values.
+	 */
+	private int createGraph(WritableValue source, int width, int depth) {
+		IObservableValue[] layer = new IObservableValue[width];
+		for (int i = 0; i < width; i++) {
+			layer[i] = new Sum(new IObservableValue[] { source });
+		}
+		for (int d = 1; d < depth; d++) {
+			IObservableValue[] nextLayer = new IObservableValue[width];
+			for (int i = 0; i < width; i++) {
+				nextLayer[i] = new Sum(new IObservableValue[] { layer[i],
+						layer[(i + 1) % width] });
+			}
+			layer = nextLayer;
+		}
+		final Sum sink = new Sum(layer);
+		sink.addValueChangeListener(new IValueChangeListener() {
+			public void handleValueChange(ValueChangeEvent event) {
+				events++;
+				event.diff.getNewValue();
+			}
+		});
+		sink.getValue();
+		return width * depth + 1;
+	}
+
+	private void measurePropagation(int width, int depth, boolean glitchFree) {
+		realm.setGlitchFreePropagation(glitchFree);
+		WritableValue source = new WritableValue(realm, new Integer(0),
+				Integer.TYPE);
+		int nodes = createGraph(source, width, depth);
+		int value = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			computations = 0;
+			events = 0;
+			startMeasuring();
+			for (int j = 0; j < CHANGES; j++) {
+				source.setValue(new Integer(++value));
+			}
+			stopMeasuring();
+			if (glitchFree) {
+				assertEquals(CHANGES * nodes, computations);
+				assertEquals(CHANGES, events);
+			}
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	/**
+	 * Test a single diamond.
+	 */
+	public void testDiamond() {
+		measurePropagation(2, 1, false);
+	}
+
+	/**
+	 * Test a single diamond with glitch free propagation.
+	 */
+	public void testDiamondGlitchFree() {
+		measurePropagation(2, 1, true);
+	}
+
+	/**
+	 * Test a wide graph of diamonds.
+	 */
+	public void testWideDiamonds() {
+		measurePropagation(50, 2, false);
+	}
+
+	/**
+	 * Test a wide graph of diamonds with glitch free propagation.
+	 */
+	public void testWideDiamondsGlitchFree() {
+		measurePropagation(50, 2, true);
+	}
+
+	/**
+	 * Test a deep graph of diamonds.
+	 */
+	public void testDeepDiamonds() {
+		measurePropagation(4, 8, false);
+	}
+
+	/**
+	 * Test a deep graph of diamonds with glitch free propagation.
+	 */
+	public void testDeepDiamondsGlitchFree() {
+		measurePropagation(4, 8, true);
+	}
+}
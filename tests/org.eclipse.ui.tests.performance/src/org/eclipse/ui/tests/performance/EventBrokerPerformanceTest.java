@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.tests.performance;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.e4.core.services.events.IEventBroker;
+import org.eclipse.ui.PlatformUI;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventHandler;
+
+/**
+ * Measures sending model notifications through the {@link IEventBroker}.
+ * <p>
+ * The test replays a stream of notifications shaped like the ones the model
+ * publishes while switching perspectives: parts and stacks being hidden and
+ * rendered, selected elements changing, widgets being set and tags being
+ * updated. The subscriptions mirror the ones made by the renderers, most of
+ * them using wildcard topics.
+ * </p>
+ */
+public class EventBrokerPerformanceTest extends BasicPerformanceTest {
+
+	private static final String MODEL = "org/eclipse/e4/ui/model/";
+
+	/**
+	 * The topics of the replayed notifications, with the number of times each
+	 * one occurs in a single perspective switch.
+	 */
+	private static final Object[][] STREAM = new Object[][] {
+			{ MODEL + "ui/UIElement/toBeRendered/SET", new Integer(40) },
+			{ MODEL + "ui/UIElement/visible/SET", new Integer(25) },
+			{ MODEL + "ui/UIElement/widget/SET", new Integer(60) },
+			{ MODEL + "ui/UIElement/renderer/SET", new Integer(60) },
+			{ MODEL + "ui/UIElement/parent/SET", new Integer(20) },
+			{ MODEL + "ui/ElementContainer/children/ADD", new Integer(20) },
+			{ MODEL + "ui/ElementContainer/children/REMOVE", new Integer(20) },
+			{ MODEL + "ui/ElementContainer/selectedElement/SET", new Integer(15) },
+			{ MODEL + "ui/ApplicationElement/tags/ADD", new Integer(10) },
+			{ MODEL + "ui/ApplicationElement/tags/REMOVE", new Integer(10) },
+			{ MODEL + "ui/Context/context/SET", new Integer(30) },
+			{ MODEL + "ui/UILabel/label/SET", new Integer(5) },
+			{ MODEL + "basic/Window/mainMenu/SET", new Integer(2) },
+			{ MODEL + "application/ApplicationElement/persistedState/ADD", new Integer(8) } };
+
+	private static final String[] SUBSCRIPTIONS = new String[] {
+			MODEL + "ui/UIElement/toBeRendered/*",
+			MODEL + "ui/UIElement/visible/*",
+			MODEL + "ui/UIElement/widget/*",
+			MODEL + "ui/ElementContainer/children/*",
+			MODEL + "ui/ElementContainer/selectedElement/*",
+			MODEL + "ui/ApplicationElement/tags/*",
+			MODEL + "ui/UILabel/*",
+			MODEL + "ui/UIElement/*",
+			MODEL + "*" };
+
+	private static final int ITERATIONS = 20;
+
+	private static final int SWITCHES = 50;
+
+	private IEventBroker eventBroker;
+
+	private EventHandler[] handlers;
+
+	private int received;
+
+	/**
+	 * @param testName
+	 */
+	public EventBrokerPerformanceTest(String testName) {
+		super(testName);
+	}
+
+	protected void doSetUp() throws Exception {
+		super.doSetUp();
+		eventBroker = (IEventBroker) PlatformUI.getWorkbench().getService(
+				IEventBroker.class);
+		handlers = new EventHandler[SUBSCRIPTIONS.length];
+		for (int i = 0; i < SUBSCRIPTIONS.length; i++) {
+			handlers[i] = new EventHandler() {
+				public void handleEvent(Event event) {
+					received++;
+				}
+			};
+			eventBroker.subscribe(SUBSCRIPTIONS[i], null, handlers[i], true);
+		}
+	}
+
+	protected void doTearDown() throws Exception {
+		for (int i = 0; i < handlers.length; i++) {
+			eventBroker.unsubscribe(handlers[i]);
+		}
+		super.doTearDown();
+	}
+
+	/**
+	 * Test sending the notifications of perspective switches.
+	 */
+	public void testSendModelEvents() {
+		Object element = new Object();
+		for (int i = 0; i < ITERATIONS; i++) {
+			received = 0;
+			startMeasuring();
+			for (int j = 0; j < SWITCHES; j++) {
+				for (int k = 0; k < STREAM.length; k++) {
+					String topic = (String) STREAM[k][0];
+					int count = ((Integer) STREAM[k][1]).intValue();
+					for (int l = 0; l < count; l++) {
+						// argument map shaped like the one of UIEventPublisher
+						Map argMap = new HashMap();
+						argMap.put("ChangedElement", element);
+						argMap.put("AttName", topic);
+						argMap.put("Type", "SET");
+						argMap.put("NewValue", element);
+						eventBroker.send(topic, argMap);
+					}
+				}
+			}
+			stopMeasuring();
+			assertTrue(received > 0);
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+}
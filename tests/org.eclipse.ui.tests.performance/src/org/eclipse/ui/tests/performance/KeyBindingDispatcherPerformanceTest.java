@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.tests.performance;
+
+import java.lang.reflect.Method;
+
+import org.eclipse.e4.core.contexts.IEclipseContext;
+import org.eclipse.e4.ui.bindings.keys.KeyBindingDispatcher;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Text;
+import org.eclipse.ui.PlatformUI;
+
+/**
+ * Measures typing bursts through the {@link KeyBindingDispatcher}.
+ * <p>
+ * The test replays key down events for plain text, most of which are not
+ * bound, mixed with the first stroke of a multi-stroke binding followed by a
+ * stroke that does not complete it. Once the dispatcher is warmed up, matching
+ * these strokes should not allocate: when the virtual machine can count the
+ * bytes allocated by a thread, the test also checks that less than a byte is
+ * allocated per key.
+ * </p>
+ */
+public class KeyBindingDispatcherPerformanceTest extends BasicPerformanceTest {
+
+	private static final String TEXT = "the quick brown fox jumps over the lazy dog 0123456789 ";
+
+	private static final int ITERATIONS = 20;
+
+	private static final int BURSTS = 200;
+
+	private Shell shell;
+
+	private Listener keyDownFilter;
+
+	private Event[] events;
+
+	/**
+	 * @param testName
+	 */
+	public KeyBindingDispatcherPerformanceTest(String testName) {
+		super(testName);
+	}
+
+	protected void doSetUp() throws Exception {
+		super.doSetUp();
+		IEclipseContext context = (IEclipseContext) PlatformUI.getWorkbench()
+				.getService(IEclipseContext.class);
+		KeyBindingDispatcher dispatcher = (KeyBindingDispatcher) context
+				.get(KeyBindingDispatcher.class.getName());
+		keyDownFilter = dispatcher.getKeyDownFilter();
+
+		shell = new Shell(PlatformUI.getWorkbench().getDisplay());
+		Text text = new Text(shell, SWT.SINGLE);
+		events = new Event[TEXT.length() + 2];
+		for (int i = 0; i < TEXT.length(); i++) {
+			events[i] = createEvent(text, TEXT.charAt(i), 0);
+		}
+		// first stroke of the multi-stroke "Show View" bindings
+		events[TEXT.length()] = createEvent(text, 'q', SWT.ALT | SWT.SHIFT);
+		events[TEXT.length() + 1] = createEvent(text, '1', 0);
+	}
+
+	protected void doTearDown() throws Exception {
+		if (shell != null) {
+			shell.dispose();
+			shell = null;
+		}
+		super.doTearDown();
+	}
+
+	private static Event createEvent(Text text, char character, int stateMask) {
+		Event event = new Event();
+		event.widget = text;
+		event.display = text.getDisplay();
+		event.character = character;
+		event.keyCode = Character.toLowerCase(character);
+		event.stateMask = stateMask;
+		return event;
+	}
+
+	private void typeBurst() {
+		for (int i = 0; i < events.length; i++) {
+			Event event = events[i];
+			event.type = SWT.KeyDown;
+			event.doit = true;
+			keyDownFilter.handleEvent(event);
+		}
+	}
+
+	/**
+	 * Test typing bursts of text.
+	 */
+	public void testTypingBursts() throws Exception {
+		Method allocatedBytes = getAllocatedBytesMethod();
+		Object threadBean = null;
+		Long threadId = null;
+		if (allocatedBytes != null) {
+			threadBean = getThreadBean();
+			threadId = (Long) Thread.class.getMethod("getId", new Class[0])
+					.invoke(Thread.currentThread(), new Object[0]);
+		}
+
+		// fill the pools of strokes and sequences and the binding caches
+		for (int i = 0; i < BURSTS; i++) {
+			typeBurst();
+		}
+
+		for (int i = 0; i < ITERATIONS; i++) {
+			long before = allocatedBytes == null ? 0
+					: ((Long) allocatedBytes.invoke(threadBean,
+							new Object[] { threadId })).longValue();
+			startMeasuring();
+			for (int j = 0; j < BURSTS; j++) {
+				typeBurst();
+			}
+			stopMeasuring();
+			if (allocatedBytes != null) {
+				long after = ((Long) allocatedBytes.invoke(threadBean,
+						new Object[] { threadId })).longValue();
+				long keys = (long) BURSTS * events.length;
+				assertTrue("Allocated " + (after - before) + " bytes for "
+						+ keys + " keys", after - before < keys);
+			}
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	/**
+	 * Returns the method counting the bytes allocated by a thread, or
+	 * <code>null</code> if the virtual machine does not support it.
+	 */
+	private static Method getAllocatedBytesMethod() {
+		try {
+			Class beanClass = Class.forName("com.sun.management.ThreadMXBean");
+			Object bean = getThreadBean();
+			if (!beanClass.isInstance(bean)) {
+				return null;
+			}
+			Boolean supported = (Boolean) beanClass.getMethod(
+					"isThreadAllocatedMemorySupported", new Class[0]).invoke(
+					bean, new Object[0]);
+			Boolean enabled = (Boolean) beanClass.getMethod(
+					"isThreadAllocatedMemoryEnabled", new Class[0]).invoke(
+					bean, new Object[0]);
+			if (!supported.booleanValue() || !enabled.booleanValue()) {
+				return null;
+			}
+			return beanClass.getMethod("getThreadAllocatedBytes",
+					new Class[] { long.class });
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	private static Object getThreadBean() throws Exception {
+		Class factoryClass = Class
+				.forName("java.lang.management.ManagementFactory");
+		return factoryClass.getMethod("getThreadMXBean", new Class[0]).invoke(
+				null, new Object[0]);
+	}
+}
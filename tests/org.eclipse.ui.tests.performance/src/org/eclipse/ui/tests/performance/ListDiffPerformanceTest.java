@@ -0,0 +1,245 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.tests.performance;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.core.databinding.observable.Diffs;
+import org.eclipse.core.databinding.observable.list.ListDiffEntry;
+import org.eclipse.core.internal.databinding.observable.ListDiffComputer;
+
+/**
+ * Measures computing the diff between large list states, as done when the
+ * contents of a <code>WritableList</code> are replaced.
+ * <p>
+ * Every scenario is measured with the hash based algorithm used by
+ * <code>Diffs.computeListDiff</code> and with the previous algorithm, which
+ * searches the lists linearly for every element. The previous algorithm is
+ * quadratic, so the shuffled lists are smaller than the other ones.
+ * </p>
+ */
+public class ListDiffPerformanceTest extends BasicPerformanceTest {
+
+	private static final int SIZE = 20000;
+
+	private static final int SHUFFLED_SIZE = 5000;
+
+	private static final int ITERATIONS = 10;
+
+	/**
+	 * @param testName
+	 */
+	public ListDiffPerformanceTest(String testName) {
+		super(testName);
+	}
+
+	private static List createList(int size) {
+		List list = new ArrayList(size);
+		for (int i = 0; i < size; i++) {
+			list.add("row " + i);
+		}
+		return list;
+	}
+
+	private static List shuffle(List list) {
+		List shuffled = new ArrayList(list);
+		Collections.shuffle(shuffled, new Random(42));
+		return shuffled;
+	}
+
+	private static List append(List list) {
+		List appended = new ArrayList(list);
+		for (int i = 0; i < list.size() / 10; i++) {
+			appended.add("appended row " + i);
+		}
+		return appended;
+	}
+
+	private static List changeSomeRows(List list) {
+		List changed = new ArrayList(list);
+		Random random = new Random(42);
+		for (int i = 0; i < 20; i++) {
+			changed.set(random.nextInt(changed.size()), "changed row " + i);
+		}
+		return changed;
+	}
+
+	/**
+	 * Returns the entries of the diff between the given list states, computed
+	 * with the algorithm adapted from EMF's ListDifferenceAnalyzer that
+	 * <code>Diffs.computeListDiff</code> used before. The algorithm searches
+	 * the lists linearly for every element, so its time is quadratic in the
+	 * size of the lists.
+	 *
+	 * @param oldList
+	 *            the old list state
+	 * @param newList
+	 *            the new list state
+	 * @return the entries, to be applied in order
+	 */
+	private static ListDiffEntry[] computeDifferencesByIndexOf(
+			List oldList, List newList) {
+		List listDiffs = new ArrayList();
+		oldList = new ArrayList(oldList);
+		int index = 0;
+		for (Iterator it = newList.iterator(); it.hasNext();) {
+			Object newValue = it.next();
+			if (oldList.size() <= index) {
+				// append newValue to newList
+				listDiffs.add(Diffs.createListDiffEntry(index, true, newValue));
+			} else {
+				boolean done;
+				do {
+					done = true;
+					Object oldValue = oldList.get(index);
+					if (oldValue == null ? newValue != null : !oldValue
+							.equals(newValue)) {
+						int oldIndexOfNewValue = listIndexOf(oldList, newValue,
+								index);
+						if (oldIndexOfNewValue != -1) {
+							int newIndexOfOldValue = listIndexOf(newList,
+									oldValue, index);
+							if (newIndexOfOldValue == -1) {
+								// removing oldValue from list[index]
+								listDiffs.add(Diffs.createListDiffEntry(index,
+										false, oldValue));
+								oldList.remove(index);
+								done = false;
+							} else if (newIndexOfOldValue > oldIndexOfNewValue) {
+								// moving oldValue from list[index] to
+								// [newIndexOfOldValue]
+								if (oldList.size() <= newIndexOfOldValue) {
+									// The element cannot be moved to the
+									// correct index now, however later
+									// iterations will insert elements in front
+									// of it, eventually moving it into the
+									// correct spot.
+									newIndexOfOldValue = oldList.size() - 1;
+								}
+								listDiffs.add(Diffs.createListDiffEntry(index,
+										false, oldValue));
+								oldList.remove(index);
+								listDiffs.add(Diffs.createListDiffEntry(
+										newIndexOfOldValue, true, oldValue));
+								oldList.add(newIndexOfOldValue, oldValue);
+								done = false;
+							} else {
+								// move newValue from list[oldIndexOfNewValue]
+								// to [index]
+								listDiffs.add(Diffs.createListDiffEntry(
+										oldIndexOfNewValue, false, newValue));
+								oldList.remove(oldIndexOfNewValue);
+								listDiffs.add(Diffs.createListDiffEntry(index,
+										true, newValue));
+								oldList.add(index, newValue);
+							}
+						} else {
+							// add newValue at list[index]
+							oldList.add(index, newValue);
+							listDiffs.add(Diffs.createListDiffEntry(index,
+									true, newValue));
+						}
+					}
+				} while (!done);
+			}
+			++index;
+		}
+		for (int i = oldList.size(); i > index;) {
+			// remove excess trailing elements not present in newList
+			listDiffs.add(Diffs.createListDiffEntry(--i, false, oldList.get(i)));
+		}
+		return (ListDiffEntry[]) listDiffs.toArray(new ListDiffEntry[listDiffs
+				.size()]);
+	}
+
+	/**
+	 * @param list
+	 * @param object
+	 * @param index
+	 * @return the index, or -1 if not found
+	 */
+	private static int listIndexOf(List list, Object object, int index) {
+		int size = list.size();
+		for (int i = index; i < size; i++) {
+			Object candidate = list.get(i);
+			if (candidate == null ? object == null : candidate.equals(object)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void measureDiff(List oldList, List newList, boolean byIndexOf) {
+		for (int i = 0; i < ITERATIONS; i++) {
+			startMeasuring();
+			ListDiffEntry[] entries = byIndexOf ? computeDifferencesByIndexOf(
+					oldList, newList) : ListDiffComputer.computeDifferences(
+					oldList, newList);
+			stopMeasuring();
+			assertTrue(entries.length > 0);
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	/**
+	 * Test the diff of a shuffled list.
+	 */
+	public void testShuffled() {
+		List list = createList(SHUFFLED_SIZE);
+		measureDiff(list, shuffle(list), false);
+	}
+
+	/**
+	 * Test the diff of a shuffled list with the previous algorithm.
+	 */
+	public void testShuffledByIndexOf() {
+		List list = createList(SHUFFLED_SIZE);
+		measureDiff(list, shuffle(list), true);
+	}
+
+	/**
+	 * Test the diff of a list with rows appended.
+	 */
+	public void testAppended() {
+		List list = createList(SIZE);
+		measureDiff(list, append(list), false);
+	}
+
+	/**
+	 * Test the diff of a list with rows appended with the previous algorithm.
+	 */
+	public void testAppendedByIndexOf() {
+		List list = createList(SIZE);
+		measureDiff(list, append(list), true);
+	}
+
+	/**
+	 * Test the diff of a list with a few rows changed.
+	 */
+	public void testMostlyUnchanged() {
+		List list = createList(SIZE);
+		measureDiff(list, changeSomeRows(list), false);
+	}
+
+	/**
+	 * Test the diff of a list with a few rows changed with the previous
+	 * algorithm.
+	 */
+	public void testMostlyUnchangedByIndexOf() {
+		List list = createList(SIZE);
+		measureDiff(list, changeSomeRows(list), true);
+	}
+}
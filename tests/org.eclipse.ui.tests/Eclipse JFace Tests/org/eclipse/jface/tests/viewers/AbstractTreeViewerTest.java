@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2006 IBM Corporation and others.
+ * Copyright (c) 2000, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -225,6 +225,23 @@ public abstract class AbstractTreeViewerTest extends StructuredItemViewerTest {
         //        assertFalse(expandedAfter.contains(ab));
     }
 
+    /**
+     * Inserting a child before expanded siblings must neither recreate the
+     * items of the siblings nor collapse them.
+     */
+    public void testRefreshWithInsertedChildKeepsItems() {
+        TestElement first = fRootElement.getFirstChild();
+        fTreeViewer.expandToLevel(first, 1);
+        Widget firstItem = fViewer.testFindItem(first);
+        TestElement added = fRootElement.basicAddChild();
+        fRootElement.fChildren.remove(added);
+        fRootElement.fChildren.insertElementAt(added, 0);
+        fViewer.refresh();
+        assertNotNull("inserted child is visible", fViewer.testFindItem(added));
+        assertSame("item is kept", firstItem, fViewer.testFindItem(first));
+        assertTrue("item stays expanded", fTreeViewer.getExpandedState(first));
+    }
+
     public void testRenameChildElement() {
         TestElement first = fRootElement.getFirstChild();
         TestElement first2 = first.getFirstChild();
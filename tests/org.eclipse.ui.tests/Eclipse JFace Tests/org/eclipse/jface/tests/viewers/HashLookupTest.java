@@ -0,0 +1,286 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.tests.viewers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jface.viewers.ArrayContentProvider;
+import org.eclipse.jface.viewers.IElementComparer;
+import org.eclipse.jface.viewers.ITreeContentProvider;
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.jface.viewers.TreeViewer;
+import org.eclipse.jface.viewers.Viewer;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Item;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.TreeItem;
+import org.eclipse.swt.widgets.Widget;
+
+/**
+ * Tests the mapping from the elements of viewers with hash lookup enabled to
+ * their items, as elements are added, removed and refreshed.
+ */
+public class HashLookupTest extends TestCase {
+
+	private static final IElementComparer IGNORE_CASE = new IElementComparer() {
+		public boolean equals(Object a, Object b) {
+			return ((String) a).equalsIgnoreCase((String) b);
+		}
+
+		public int hashCode(Object element) {
+			return ((String) element).toLowerCase().hashCode();
+		}
+	};
+
+	/**
+	 * Compares the elements by equality but gives them all the same hash
+	 * code, so that they share a single probe sequence.
+	 */
+	private static final IElementComparer COLLIDING = new IElementComparer() {
+		public boolean equals(Object a, Object b) {
+			return a.equals(b);
+		}
+
+		public int hashCode(Object element) {
+			return 0;
+		}
+	};
+
+	/**
+	 * Provides the children of the parents from a map.
+	 */
+	private static class MapContentProvider implements ITreeContentProvider {
+		final Map children = new HashMap();
+
+		public Object[] getElements(Object inputElement) {
+			return ((List) inputElement).toArray();
+		}
+
+		public Object[] getChildren(Object parentElement) {
+			List list = (List) children.get(parentElement);
+			return list == null ? new Object[0] : list.toArray();
+		}
+
+		public Object getParent(Object element) {
+			return null;
+		}
+
+		public boolean hasChildren(Object element) {
+			return children.containsKey(element);
+		}
+
+		public void dispose() {
+		}
+
+		public void inputChanged(Viewer viewer, Object oldInput, Object newInput) {
+		}
+	}
+
+	private Shell shell;
+
+	private TableViewer tableViewer;
+
+	public HashLookupTest(String name) {
+		super(name);
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		shell = new Shell(Display.getDefault());
+		tableViewer = new TableViewer(shell);
+		tableViewer.setContentProvider(new ArrayContentProvider());
+		tableViewer.setLabelProvider(new LabelProvider());
+		tableViewer.setUseHashlookup(true);
+	}
+
+	protected void tearDown() throws Exception {
+		shell.dispose();
+		super.tearDown();
+	}
+
+	private static List createElements(int count) {
+		List elements = new ArrayList();
+		for (int i = 0; i < count; i++) {
+			elements.add("element" + i);
+		}
+		return elements;
+	}
+
+	/**
+	 * Asserts that the table shows exactly the given elements, each found
+	 * through the hash lookup.
+	 */
+	private void assertFound(Set expected, int count) {
+		assertEquals("items", expected.size(), tableViewer.getTable()
+				.getItemCount());
+		for (int i = 0; i < count; i++) {
+			String element = "element" + i;
+			Widget item = tableViewer.testFindItem(element);
+			if (expected.contains(element)) {
+				assertNotNull(element, item);
+				assertEquals(element, item.getData());
+			} else {
+				assertNull(element, item);
+			}
+		}
+	}
+
+	public void testSingleItem() {
+		tableViewer.setInput(new String[] { "a", "b" });
+		Widget item = tableViewer.testFindItem("a");
+		assertNotNull(item);
+		assertEquals("a", item.getData());
+		assertEquals(1, tableViewer.testFindItems("a").length);
+		// equal elements share their item
+		assertSame(item, tableViewer.testFindItem(new String("a")));
+
+		tableViewer.remove("a");
+		assertNull(tableViewer.testFindItem("a"));
+		assertEquals(0, tableViewer.testFindItems("a").length);
+		assertNotNull(tableViewer.testFindItem("b"));
+	}
+
+	public void testEqualElementsInSeveralParents() {
+		TreeViewer treeViewer = new TreeViewer(shell);
+		MapContentProvider contentProvider = new MapContentProvider();
+		List parents = new ArrayList();
+		for (int i = 0; i < 6; i++) {
+			String parent = "parent" + i;
+			parents.add(parent);
+			List children = new ArrayList();
+			children.add(new String("child"));
+			contentProvider.children.put(parent, children);
+		}
+		treeViewer.setContentProvider(contentProvider);
+		treeViewer.setLabelProvider(new LabelProvider());
+		treeViewer.setUseHashlookup(true);
+		treeViewer.setInput(parents);
+		treeViewer.expandAll();
+		assertEquals(6, treeViewer.testFindItems("child").length);
+
+		((List) contentProvider.children.get("parent0")).clear();
+		((List) contentProvider.children.get("parent3")).clear();
+		treeViewer.refresh();
+		Widget[] items = treeViewer.testFindItems("child");
+		Set itemParents = new HashSet();
+		for (int i = 0; i < items.length; i++) {
+			itemParents.add(((TreeItem) items[i]).getParentItem().getData());
+		}
+		assertEquals(4, items.length);
+		assertEquals(4, itemParents.size());
+		assertFalse(itemParents.contains("parent0"));
+		assertFalse(itemParents.contains("parent3"));
+
+		for (int i = 0; i < 6; i++) {
+			((List) contentProvider.children.get("parent" + i)).clear();
+		}
+		treeViewer.refresh();
+		assertNull(treeViewer.testFindItem("child"));
+	}
+
+	public void testAddAndRemoveManyElements() {
+		tableViewer.setInput(new ArrayList());
+		Set expected = new HashSet();
+		for (int i = 0; i < 1000; i++) {
+			String element = "element" + i;
+			tableViewer.add(element);
+			expected.add(element);
+			// remove elements added long before, while the map grows
+			if (i % 3 == 0) {
+				String removed = "element" + i / 2;
+				if (expected.remove(removed)) {
+					tableViewer.remove(removed);
+				}
+			}
+			if (i % 100 == 0) {
+				assertFound(expected, i + 1);
+			}
+		}
+		assertFound(expected, 1000);
+		// add the removed elements again
+		for (int i = 0; i < 1000; i++) {
+			String element = "element" + i;
+			if (expected.add(element)) {
+				tableViewer.add(element);
+			}
+		}
+		assertFound(expected, 1000);
+	}
+
+	public void testCollidingElements() {
+		tableViewer.setComparer(COLLIDING);
+		tableViewer.setInput(new ArrayList());
+		Set expected = new HashSet(createElements(50));
+		tableViewer.add(createElements(50).toArray());
+		assertFound(expected, 50);
+		// removed elements must not end the probe sequence
+		for (int i = 0; i < 50; i += 2) {
+			expected.remove("element" + i);
+			tableViewer.remove("element" + i);
+		}
+		assertFound(expected, 50);
+		for (int i = 0; i < 50; i += 4) {
+			expected.add("element" + i);
+			tableViewer.add("element" + i);
+		}
+		assertFound(expected, 50);
+	}
+
+	public void testComparerChanged() {
+		tableViewer.setInput(new String[] { "a", "b", "B", "c" });
+		assertNull(tableViewer.testFindItem("A"));
+		Widget itemA = tableViewer.testFindItem("a");
+
+		tableViewer.setComparer(IGNORE_CASE);
+		assertSame(itemA, tableViewer.testFindItem("A"));
+		// the elements equal for the new comparer share an item
+		Widget itemB = tableViewer.testFindItem("b");
+		assertNotNull(itemB);
+		assertSame(itemB, tableViewer.testFindItem("B"));
+		assertNotNull(tableViewer.testFindItem("C"));
+
+		tableViewer.setComparer(null);
+		assertNull(tableViewer.testFindItem("A"));
+		assertSame(itemA, tableViewer.testFindItem("a"));
+	}
+
+	public void testRefreshWithEqualElements() {
+		List elements = createElements(500);
+		tableViewer.setInput(elements);
+		Map items = new HashMap();
+		for (Iterator iter = elements.iterator(); iter.hasNext();) {
+			Object element = iter.next();
+			items.put(element, tableViewer.testFindItem(element));
+		}
+
+		// new instances of the same elements keep their items
+		for (int i = 0; i < elements.size(); i++) {
+			elements.set(i, new String((String) elements.get(i)));
+		}
+		tableViewer.refresh();
+		for (Iterator iter = elements.iterator(); iter.hasNext();) {
+			Object element = iter.next();
+			Item item = (Item) tableViewer.testFindItem(element);
+			assertSame(items.get(element), item);
+			assertSame(element, item.getData());
+		}
+		assertEquals(500, tableViewer.getTable().getItemCount());
+	}
+}
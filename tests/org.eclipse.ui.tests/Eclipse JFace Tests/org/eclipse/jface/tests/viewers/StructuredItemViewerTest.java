@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2006 IBM Corporation and others.
+ * Copyright (c) 2000, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,6 +12,8 @@ package org.eclipse.jface.tests.viewers;
 
 import org.eclipse.jface.viewers.AbstractTreeViewer;
 import org.eclipse.jface.viewers.ICheckable;
+import org.eclipse.jface.viewers.StructuredSelection;
+import org.eclipse.swt.widgets.Widget;
 
 public abstract class StructuredItemViewerTest extends StructuredViewerTest {
 
@@ -43,4 +45,83 @@ public abstract class StructuredItemViewerTest extends StructuredViewerTest {
             assertTrue(!ctv.getChecked(first));
         }
     }
+
+    /**
+     * Sets an input with enough elements for their items to be created in
+     * several time slices.
+     */
+    private void setLargeInputInSlices() {
+        fRootElement = TestElement.createModel(1, 10000);
+        fModel = fRootElement.getModel();
+        fViewer.setPopulationTimeSlice(1);
+        fViewer.setInput(fRootElement);
+    }
+
+    public void testPopulationTimeSlice() {
+        setLargeInputInSlices();
+        int count = getItemCount();
+        assertTrue("some items", count > 0);
+        assertTrue("not all items", count < fRootElement.getChildCount());
+        processEvents();
+        assertEquals("all items", fRootElement.getChildCount(), getItemCount());
+        TestElement[] children = fRootElement.getChildren();
+        for (int i = 0; i < children.length; i++) {
+            assertNotNull(children[i].toString(), fViewer
+                    .testFindItem(children[i]));
+        }
+    }
+
+    public void testSelectionWhilePopulating() {
+        setLargeInputInSlices();
+        TestElement last = fRootElement.getLastChild();
+        // selecting an element whose item is not created yet creates it
+        fViewer.setSelection(new StructuredSelection(last));
+        assertNotNull("last is visible", fViewer.testFindItem(last));
+        assertEquals("all items", fRootElement.getChildCount(), getItemCount());
+    }
+
+    public void testRefreshWhilePopulating() {
+        setLargeInputInSlices();
+        TestElement[] children = fRootElement.getChildren();
+        // remove every other element, with or without an item
+        for (int i = 0; i < children.length; i += 2) {
+            fRootElement.basicDeleteChild(children[i]);
+        }
+        // the refresh cancels the creation of the remaining items
+        fViewer.refresh();
+        processEvents();
+        assertEquals("refreshed items", children.length / 2, getItemCount());
+        for (int i = 0; i < children.length; i++) {
+            Widget item = fViewer.testFindItem(children[i]);
+            if (i % 2 == 0) {
+                assertNull(children[i].toString(), item);
+            } else {
+                assertNotNull(children[i].toString(), item);
+            }
+        }
+    }
+
+    public void testAddWhilePopulating() {
+        setLargeInputInSlices();
+        int count = fRootElement.getChildCount();
+        TestElement added = fRootElement.addChild(TestModelChange.INSERT);
+        // the remaining items are created before the element is added
+        assertEquals("all items", count + 1, getItemCount());
+        assertNotNull("added is visible", fViewer.testFindItem(added));
+        processEvents();
+        assertEquals("no further items", count + 1, getItemCount());
+    }
+
+    public void testRemoveWhilePopulating() {
+        setLargeInputInSlices();
+        int count = fRootElement.getChildCount();
+        TestElement last = fRootElement.getLastChild();
+        fRootElement.deleteChild(last);
+        // the remaining items are created before the element is removed
+        assertEquals("all items", count - 1, getItemCount());
+        assertNull("last is removed", fViewer.testFindItem(last));
+        processEvents();
+        assertEquals("no further items", count - 1, getItemCount());
+        assertNull("last is not recreated", fViewer.testFindItem(last));
+    }
 }
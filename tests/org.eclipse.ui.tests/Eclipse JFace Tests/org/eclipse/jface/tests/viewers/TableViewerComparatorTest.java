@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006 IBM Corporation and others.
+ * Copyright (c) 2006, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -16,6 +16,7 @@ import org.eclipse.jface.viewers.ColumnWeightData;
 import org.eclipse.jface.viewers.StructuredViewer;
 import org.eclipse.jface.viewers.TableLayout;
 import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.jface.viewers.ViewerComparator;
 import org.eclipse.jface.viewers.ViewerSorter;
 import org.eclipse.swt.SWT;
@@ -88,6 +89,45 @@ public class TableViewerComparatorTest extends ViewerComparatorTest {
 		assertSortedResult(TEAM1_SORTED_WITH_INSERT);
 	}
 	
+	public void testViewerComparatorComputesLabelsOnce(){
+		final int[] labels = new int[1];
+		fViewer.setLabelProvider(new TeamModelLabelProvider() {
+			public String getText(Object element) {
+				labels[0]++;
+				return super.getText(element);
+			}
+		});
+		Object[] members = team1.members.clone();
+		labels[0] = 0;
+		new ViewerComparator().sort(fViewer, members);
+		assertEquals(members.length, labels[0]);
+		assertSortedMembers(TEAM1_SORTED, members);
+
+		labels[0] = 0;
+		new ViewerSorter().sort(fViewer, members);
+		assertEquals(members.length, labels[0]);
+		assertSortedMembers(TEAM1_SORTED, members);
+	}
+
+	public void testViewerComparatorOverridingCompare(){
+		Object[] members = team1.members.clone();
+		new ViewerComparator() {
+			public int compare(Viewer viewer, Object e1, Object e2) {
+				return -super.compare(viewer, e1, e2);
+			}
+		}.sort(fViewer, members);
+		for (int i = 0; i < members.length; i++) {
+			assertEquals(TEAM1_SORTED[members.length - 1 - i],
+					((TeamMember) members[i]).name);
+		}
+	}
+
+	private void assertSortedMembers(String[] expected, Object[] members){
+		for (int i = 0; i < members.length; i++) {
+			assertEquals(expected[i], ((TeamMember) members[i]).name);
+		}
+	}
+
 	private void assertSortedResult(String[] expected){
 		TableItem[] items = getTableViewer().getTable().getItems();
 		for (int i = 0; i < items.length; i++){
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2006 IBM Corporation and others.
+ * Copyright (c) 2000, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,21 +11,33 @@
 package org.eclipse.jface.tests.viewers;
 
 import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.jface.viewers.ColumnLayoutData;
 import org.eclipse.jface.viewers.ColumnViewer;
 import org.eclipse.jface.viewers.ColumnWeightData;
+import org.eclipse.jface.viewers.DecoratingStyledCellLabelProvider;
+import org.eclipse.jface.viewers.DelegatingStyledCellLabelProvider.IStyledLabelProvider;
 import org.eclipse.jface.viewers.ITableLabelProvider;
+import org.eclipse.jface.viewers.IViewportLabelDecorator;
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.viewers.StyledString;
 import org.eclipse.jface.viewers.StructuredViewer;
 import org.eclipse.jface.viewers.TableLayout;
 import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.jface.viewers.ViewerColumn;
+import org.eclipse.jface.viewers.ViewerFilter;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Table;
 import org.eclipse.swt.widgets.TableColumn;
 import org.eclipse.swt.widgets.TableItem;
+import org.eclipse.swt.widgets.Widget;
 
 public class TableViewerTest extends StructuredItemViewerTest {
 	public static class TableTestLabelProvider extends TestLabelProvider
@@ -183,6 +195,213 @@ public class TableViewerTest extends StructuredItemViewerTest {
 
 	}
 
+	/**
+	 * A thread safe filter holding the background refresh until released.
+	 */
+	static class BlockingFilter extends TestLabelFilter {
+		final CountDownLatch started = new CountDownLatch(1);
+
+		final CountDownLatch released = new CountDownLatch(1);
+
+		final CountDownLatch finished = new CountDownLatch(1);
+
+		final AtomicInteger calls = new AtomicInteger();
+
+		public boolean isThreadSafe() {
+			return true;
+		}
+
+		public Object[] filter(Viewer viewer, Object parent, Object[] elements) {
+			calls.incrementAndGet();
+			started.countDown();
+			try {
+				released.await(10, TimeUnit.SECONDS);
+				return super.filter(viewer, parent, elements);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return elements;
+			} finally {
+				finished.countDown();
+			}
+		}
+	}
+
+	private void waitForItemCount(Table table, int count) {
+		long timeout = System.currentTimeMillis() + 10000;
+		while (table.getItemCount() != count
+				&& System.currentTimeMillis() < timeout) {
+			if (!fDisplay.readAndDispatch()) {
+				Thread.yield();
+			}
+		}
+	}
+
+	public void testBackgroundFiltering() throws InterruptedException {
+		TableViewer tableViewer = (TableViewer) fViewer;
+		tableViewer.setBackgroundFiltering(true);
+		Table table = tableViewer.getTable();
+		int count = table.getItemCount();
+		BlockingFilter filter = new BlockingFilter();
+		try {
+			tableViewer.addFilter(filter);
+			assertTrue("filtering started",
+					filter.started.await(10, TimeUnit.SECONDS));
+			processEvents();
+			// the previous contents stay visible while the elements are filtered
+			assertEquals("unfiltered count", count, table.getItemCount());
+		} finally {
+			filter.released.countDown();
+		}
+		waitForItemCount(table, 5);
+		assertEquals("filtered count", 5, table.getItemCount());
+		// the items of virtual tables have no data until they are shown
+		if ((table.getStyle() & SWT.VIRTUAL) == 0) {
+			assertEquals(fRootElement.getFirstChild(), table.getItem(0).getData());
+		}
+	}
+
+	public void testBackgroundRefreshCancelsRunningRefresh()
+			throws InterruptedException {
+		// enough elements to be filtered in several blocks
+		for (int i = fRootElement.getChildCount(); i < 1000; i++) {
+			fRootElement.basicAddChild();
+		}
+		TableViewer tableViewer = (TableViewer) fViewer;
+		tableViewer.refresh();
+		tableViewer.setBackgroundFiltering(true);
+		Table table = tableViewer.getTable();
+		BlockingFilter filter = new BlockingFilter();
+		try {
+			tableViewer.addFilter(filter);
+			assertTrue("filtering started",
+					filter.started.await(10, TimeUnit.SECONDS));
+			tableViewer.setFilters(new ViewerFilter[] { new TestLabelFilter2() {
+				public boolean isThreadSafe() {
+					return true;
+				}
+			} });
+		} finally {
+			filter.released.countDown();
+		}
+		waitForItemCount(table, 1);
+		assertEquals("filtered count", 1, table.getItemCount());
+
+		assertTrue("cancelled refresh stopped",
+				filter.finished.await(10, TimeUnit.SECONDS));
+		processEvents();
+		// the cancelled refresh filtered no further block, nor was it applied
+		assertEquals("filtered blocks", 1, filter.calls.get());
+		assertEquals("filtered count", 1, table.getItemCount());
+	}
+
+	public void testBackgroundFilterFailureReported() {
+		TableViewer tableViewer = (TableViewer) fViewer;
+		tableViewer.setBackgroundFiltering(true);
+		final boolean[] failing = { true };
+		ViewerFilter filter = new TestLabelFilter() {
+			public boolean isThreadSafe() {
+				return true;
+			}
+
+			public boolean select(Viewer viewer, Object parent, Object element) {
+				if (failing[0]) {
+					throw new IllegalStateException("failing filter");
+				}
+				return super.select(viewer, parent, element);
+			}
+		};
+		RuntimeException reported = null;
+		try {
+			tableViewer.addFilter(filter);
+			long timeout = System.currentTimeMillis() + 10000;
+			while (reported == null && System.currentTimeMillis() < timeout) {
+				try {
+					if (!fDisplay.readAndDispatch()) {
+						Thread.yield();
+					}
+				} catch (IllegalStateException e) {
+					reported = e;
+				}
+			}
+			// reported by the synchronous refresh instead of restarting the
+			// background refresh
+			assertNotNull("failure reported", reported);
+			processEvents();
+		} finally {
+			failing[0] = false;
+			tableViewer.setBackgroundFiltering(false);
+		}
+	}
+
+	public void testRefreshWithInsertedElementKeepsItems() {
+		TestElement first = fRootElement.getFirstChild();
+		Widget firstItem = fViewer.testFindItem(first);
+		TestElement added = fRootElement.basicAddChild();
+		fRootElement.fChildren.remove(added);
+		fRootElement.fChildren.insertElementAt(added, 0);
+		fViewer.refresh();
+		Table table = ((TableViewer) fViewer).getTable();
+		assertEquals(added, table.getItem(0).getData());
+		assertSame("item is kept", firstItem, fViewer.testFindItem(first));
+	}
+
+	public void testViewportDecoration() {
+		class ViewportDecorator extends LabelProvider implements
+				IViewportLabelDecorator {
+			Object[] visibleElements;
+
+			boolean cleared;
+
+			public Image decorateImage(Image image, Object element) {
+				return null;
+			}
+
+			public String decorateText(String text, Object element) {
+				return null;
+			}
+
+			public boolean prepareDecoration(Object element,
+					String originalText) {
+				return true;
+			}
+
+			public void setViewport(Viewer viewer, Object[] visibleElements,
+					Object[] nearElements) {
+				this.visibleElements = visibleElements;
+			}
+
+			public void clearViewport(Viewer viewer) {
+				cleared = true;
+			}
+		}
+		ViewportDecorator decorator = new ViewportDecorator();
+		TableViewer tableViewer = (TableViewer) fViewer;
+		tableViewer.setLabelProvider(new DecoratingStyledCellLabelProvider(
+				new TestStyledLabelProvider(), decorator, null));
+		Table table = tableViewer.getTable();
+		table.redraw();
+		long timeout = System.currentTimeMillis() + 10000;
+		while (decorator.visibleElements == null
+				&& System.currentTimeMillis() < timeout) {
+			if (!fDisplay.readAndDispatch()) {
+				Thread.yield();
+			}
+		}
+		assertNotNull("viewport reported", decorator.visibleElements);
+		assertTrue("first element is visible", Arrays.asList(
+				decorator.visibleElements).contains(
+				table.getItem(table.getTopIndex()).getData()));
+		table.dispose();
+		assertTrue("viewport cleared", decorator.cleared);
+	}
+
+	private static class TestStyledLabelProvider extends LabelProvider
+			implements IStyledLabelProvider {
+		public StyledString getStyledText(Object element) {
+			return new StyledString(getText(element));
+		}
+	}
+
 	
 
 }
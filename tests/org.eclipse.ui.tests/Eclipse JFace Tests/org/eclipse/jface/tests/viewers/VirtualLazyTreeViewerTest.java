@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2011 IBM Corporation and others.
+ * Copyright (c) 2005, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -77,6 +77,30 @@ public class VirtualLazyTreeViewerTest extends TreeViewerTest {
     	// Test leads to infinite loop. Duplicate children are a bad idea in virtual trees.
     }
     
+    public void testRefreshWithInsertedChildKeepsItems() {
+    	// the items of lazy trees are updated by index
+    }
+    
+    public void testPopulationTimeSlice() {
+    	// the items of lazy trees are created when they become visible
+    }
+    
+    public void testSelectionWhilePopulating() {
+    	// the items of lazy trees are created when they become visible
+    }
+    
+    public void testRefreshWhilePopulating() {
+    	// the items of lazy trees are created when they become visible
+    }
+    
+    public void testAddWhilePopulating() {
+    	// the items of lazy trees are created when they become visible
+    }
+    
+    public void testRemoveWhilePopulating() {
+    	// the items of lazy trees are created when they become visible
+    }
+    
     public void testSetExpandedWithCycle() {
     	// Test leads to infinite loop. Cycles are a bad idea in virtual trees.
     }
@@ -146,6 +170,23 @@ public class VirtualLazyTreeViewerTest extends TreeViewerTest {
     	super.testExpandToLevel();
     }
     
+    public void testDeferredExpandAll() {
+    	((TreeViewer) fTreeViewer).setDeferredExpansion(true);
+    	fTreeViewer.expandAll();
+    	processEvents();
+		if (setDataCalls == 0) {
+			System.err.println("SWT.SetData is not received. Cancelled test " + getName());
+			return;
+		}
+		TestElement first = fRootElement.getFirstChild();
+		TestElement first2 = first.getFirstChild();
+		assertNotNull("first2 is visible", fViewer.testFindItem(first2));
+		assertTrue("first is expanded", fTreeViewer.getExpandedState(first));
+		TestElement last3 = fRootElement.getLastChild().getLastChild()
+				.getLastChild();
+		assertNull("last3 is not materialized", fViewer.testFindItem(last3));
+    }
+    
     public void testInsertSibling() {
 		if (disableTestsBug347491)
 			return;
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -191,6 +191,66 @@ public class VirtualTableViewerTest extends TableViewerTest {
 		// are created.
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.jface.tests.viewers.TableViewerTest#testRefreshWithInsertedElementKeepsItems()
+	 */
+	public void testRefreshWithInsertedElementKeepsItems() {
+		// This test is no use here as the items
+		// of virtual tables are updated by index.
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.jface.tests.viewers.StructuredItemViewerTest#testPopulationTimeSlice()
+	 */
+	public void testPopulationTimeSlice() {
+		// This test is no use here as the items
+		// of virtual tables are created when visible.
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.jface.tests.viewers.StructuredItemViewerTest#testSelectionWhilePopulating()
+	 */
+	public void testSelectionWhilePopulating() {
+		// This test is no use here as the items
+		// of virtual tables are created when visible.
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.jface.tests.viewers.StructuredItemViewerTest#testRefreshWhilePopulating()
+	 */
+	public void testRefreshWhilePopulating() {
+		// This test is no use here as the items
+		// of virtual tables are created when visible.
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.jface.tests.viewers.StructuredItemViewerTest#testAddWhilePopulating()
+	 */
+	public void testAddWhilePopulating() {
+		// This test is no use here as the items
+		// of virtual tables are created when visible.
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.jface.tests.viewers.StructuredItemViewerTest#testRemoveWhilePopulating()
+	 */
+	public void testRemoveWhilePopulating() {
+		// This test is no use here as the items
+		// of virtual tables are created when visible.
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
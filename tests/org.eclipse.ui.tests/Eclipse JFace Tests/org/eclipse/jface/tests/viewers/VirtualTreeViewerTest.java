@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2006 IBM Corporation and others.
+ * Copyright (c) 2005, 2014 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -32,4 +32,20 @@ public class VirtualTreeViewerTest extends TreeViewerTest {
 		fTreeViewer.setContentProvider(new TestModelContentProvider());
 		return fTreeViewer;
 	}
+
+	public void testPopulationTimeSlice() {
+		// the items of virtual trees are created when they become visible
+	}
+
+	public void testRefreshWhilePopulating() {
+		// the items of virtual trees are created when they become visible
+	}
+
+	public void testAddWhilePopulating() {
+		// the items of virtual trees are created when they become visible
+	}
+
+	public void testRemoveWhilePopulating() {
+		// the items of virtual trees are created when they become visible
+	}
 }
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.ui.tests.decorators;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.jface.viewers.IViewportLabelDecorator;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.swt.widgets.Shell;
+
+/**
+ * Tests the order in which the elements shown by the viewers are decorated.
+ */
+public class DecorationOrderTest extends RecordingDecoratorTestCase {
+
+	private Shell shell;
+
+	private TableViewer viewer;
+
+	private TableViewer otherViewer;
+
+	/**
+	 * Create a new instance of the receiver.
+	 *
+	 * @param testName
+	 */
+	public DecorationOrderTest(String testName) {
+		super(testName);
+	}
+
+	protected void doSetUp() throws Exception {
+		super.doSetUp();
+		shell = new Shell(getWorkbench().getDisplay());
+		viewer = new TableViewer(shell);
+		otherViewer = new TableViewer(shell);
+	}
+
+	protected void doTearDown() throws Exception {
+		getViewportDecorator().clearViewport(viewer);
+		getViewportDecorator().clearViewport(otherViewer);
+		shell.dispose();
+		super.doTearDown();
+	}
+
+	private IViewportLabelDecorator getViewportDecorator() {
+		return (IViewportLabelDecorator) decorator;
+	}
+
+	private Object[] elements(String[] names) {
+		Object[] elements = new Object[names.length];
+		for (int i = 0; i < names.length; i++) {
+			elements[i] = element(names[i]);
+		}
+		return elements;
+	}
+
+	private void setViewport(TableViewer tableViewer, String[] visible,
+			String[] near) {
+		getViewportDecorator().setViewport(tableViewer, elements(visible),
+				elements(near));
+	}
+
+	/**
+	 * Release the decoration and assert that the elements are decorated in
+	 * the given order, and that no other element is decorated.
+	 *
+	 * @param expected
+	 */
+	private void assertDecorationOrder(String[] expected) {
+		releaseAndWait(expected.length);
+		waitForDecoration();
+		List names = new ArrayList();
+		List decorated = RecordingDecorator.getDecorated();
+		for (int i = 0; i < decorated.size(); i++) {
+			names.add(decorated.get(i).toString());
+		}
+		assertEquals(Arrays.asList(expected), names);
+	}
+
+	public void testQueueOrder() {
+		hold();
+		queue(new String[] { "a", "b", "c" });
+		assertDecorationOrder(new String[] { "a", "b", "c" });
+	}
+
+	public void testShownElementsFirst() {
+		hold();
+		queue(new String[] { "a", "b", "c", "d" });
+		setViewport(viewer, new String[] { "c" }, new String[] { "b" });
+		assertDecorationOrder(new String[] { "c", "b", "a", "d" });
+	}
+
+	public void testQueuedWhileShown() {
+		setViewport(viewer, new String[] { "b" }, new String[] { "c" });
+		hold();
+		queue(new String[] { "a", "b", "c" });
+		assertDecorationOrder(new String[] { "b", "c", "a" });
+	}
+
+	public void testScrolledAwayIsDemoted() {
+		setViewport(viewer, new String[] { "a", "b" }, new String[0]);
+		hold();
+		queue(new String[] { "a", "b", "c" });
+		setViewport(viewer, new String[] { "c" }, new String[0]);
+		// the scrolled away elements are still decorated, after the shown one
+		assertDecorationOrder(new String[] { "c", "a", "b" });
+	}
+
+	public void testScrolledAwayBeforeQueued() {
+		setViewport(viewer, new String[] { "a" }, new String[0]);
+		setViewport(viewer, new String[] { "b" }, new String[0]);
+		hold();
+		queue(new String[] { "a", "b" });
+		assertDecorationOrder(new String[] { "b", "a" });
+	}
+
+	public void testVisibleToNear() {
+		setViewport(viewer, new String[] { "a", "b" }, new String[0]);
+		hold();
+		queue(new String[] { "a", "b", "c" });
+		setViewport(viewer, new String[] { "b" }, new String[] { "a" });
+		assertDecorationOrder(new String[] { "b", "a", "c" });
+	}
+
+	public void testShownAgain() {
+		setViewport(viewer, new String[] { "a" }, new String[0]);
+		hold();
+		queue(new String[] { "b", "a" });
+		setViewport(viewer, new String[] { "b" }, new String[0]);
+		setViewport(viewer, new String[] { "a" }, new String[0]);
+		assertDecorationOrder(new String[] { "a", "b" });
+	}
+
+	public void testShownByAnotherViewer() {
+		setViewport(viewer, new String[] { "a" }, new String[0]);
+		setViewport(otherViewer, new String[0], new String[] { "a" });
+		hold();
+		queue(new String[] { "b", "a" });
+		// still about to be shown by the other viewer
+		setViewport(viewer, new String[] { "c" }, new String[0]);
+		queue(new String[] { "c" });
+		assertDecorationOrder(new String[] { "c", "a", "b" });
+	}
+
+	public void testClearViewportDemotes() {
+		setViewport(viewer, new String[] { "a" }, new String[0]);
+		hold();
+		queue(new String[] { "b", "a" });
+		getViewportDecorator().clearViewport(viewer);
+		// decorated like the elements no viewer shows
+		assertDecorationOrder(new String[] { "b", "a" });
+	}
+
+	public void testClearViewportKeepsOtherViewers() {
+		setViewport(viewer, new String[] { "a", "b" }, new String[0]);
+		setViewport(otherViewer, new String[] { "b" }, new String[0]);
+		hold();
+		queue(new String[] { "c", "a", "b" });
+		getViewportDecorator().clearViewport(viewer);
+		assertDecorationOrder(new String[] { "b", "c", "a" });
+	}
+}
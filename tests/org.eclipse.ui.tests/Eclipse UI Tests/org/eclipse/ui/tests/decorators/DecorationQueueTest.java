@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.ui.tests.decorators;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.jface.viewers.DecorationContext;
+import org.eclipse.jface.viewers.IDecorationContext;
+import org.eclipse.jface.viewers.ILabelProviderListener;
+import org.eclipse.jface.viewers.LabelProviderChangedEvent;
+
+/**
+ * Tests that the requests for the decoration of an element queued several
+ * times are merged, and that the results are kept until the labels are
+ * updated.
+ */
+public class DecorationQueueTest extends RecordingDecoratorTestCase {
+
+	/**
+	 * More elements than the results cached per decoration context once
+	 * delivered.
+	 */
+	private static final int ELEMENT_COUNT = 12000;
+
+	/**
+	 * Create a new instance of the receiver.
+	 *
+	 * @param testName
+	 */
+	public DecorationQueueTest(String testName) {
+		super(testName);
+	}
+
+	public void testQueuedAgainDecoratedOnce() {
+		hold();
+		queue(new String[] { "a", "b", "a" });
+		decorator.prepareDecoration(element("a"), "a",
+				DecorationContext.DEFAULT_CONTEXT);
+		releaseAndWait(2);
+		waitForDecoration();
+		assertEquals(Arrays.asList(new Object[] { element("a"),
+				element("b") }), RecordingDecorator.getDecorated());
+	}
+
+	public void testDecoratedForEachContext() {
+		IDecorationContext context = new DecorationContext();
+		IDecorationContext otherContext = new DecorationContext();
+		Object element = element("a");
+		hold();
+		decorator.decorateText("a", element, context);
+		decorator.decorateText("a", element, otherContext);
+		// forced in a known context
+		decorator.prepareDecoration(element, "a", context);
+		decorator.decorateText("a", element, otherContext);
+		releaseAndWait(2);
+		waitForDecoration();
+		assertEquals(Arrays.asList(new Object[] { context, otherContext }),
+				RecordingDecorator.getContexts(element));
+	}
+
+	public void testUndeliveredResultsAreKept() {
+		final Set queued = new HashSet();
+		String[] names = new String[ELEMENT_COUNT];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = "element" + i;
+			queued.add(element(names[i]));
+		}
+		final Set updated = new HashSet();
+		final List undecorated = new ArrayList();
+		ILabelProviderListener listener = new ILabelProviderListener() {
+			public void labelProviderChanged(LabelProviderChangedEvent event) {
+				Object[] elements = event.getElements();
+				if (elements == null) {
+					return;
+				}
+				for (int i = 0; i < elements.length; i++) {
+					if (queued.contains(elements[i])) {
+						updated.add(elements[i]);
+						String text = decorator.decorateText(elements[i]
+								.toString(), elements[i]);
+						if (!text.endsWith(RecordingDecorator.SUFFIX)) {
+							undecorated.add(elements[i]);
+						}
+					}
+				}
+			}
+		};
+		decorator.addListener(listener);
+		try {
+			hold();
+			queue(names);
+			releaseAndWait(ELEMENT_COUNT);
+			waitForDecoration();
+			assertEquals(ELEMENT_COUNT, updated.size());
+			assertEquals("undecorated labels", 0, undecorated.size());
+		} finally {
+			decorator.removeListener(listener);
+		}
+	}
+}
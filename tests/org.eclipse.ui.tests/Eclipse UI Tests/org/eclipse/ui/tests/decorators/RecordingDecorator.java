@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.ui.tests.decorators;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jface.viewers.IDecoration;
+import org.eclipse.jface.viewers.ILabelProviderListener;
+import org.eclipse.jface.viewers.ILightweightLabelDecorator;
+
+/**
+ * The RecordingDecorator records the elements it decorates, in the order they
+ * are decorated. As it is not declared thread safe the elements are decorated
+ * one at a time. The decoration of a gate element blocks until it is released,
+ * holding back the elements queued meanwhile.
+ */
+public class RecordingDecorator implements ILightweightLabelDecorator {
+
+	public static final String ID = "org.eclipse.ui.tests.decorators.recordingDecorator";
+
+	public static final String SUFFIX = " [recorded]";
+
+	/**
+	 * The elements the decorator is enabled for.
+	 */
+	public static class Element {
+
+		private final String name;
+
+		/**
+		 * Create a new instance of the receiver.
+		 *
+		 * @param name
+		 */
+		public Element(String name) {
+			this.name = name;
+		}
+
+		public String toString() {
+			return name;
+		}
+	}
+
+	private static List elements = new ArrayList();
+
+	private static List contexts = new ArrayList();
+
+	private static volatile Object gate;
+
+	private static volatile CountDownLatch entered = new CountDownLatch(0);
+
+	private static volatile CountDownLatch released = new CountDownLatch(0);
+
+	/**
+	 * Block the decoration when it reaches the gate, until it is released.
+	 *
+	 * @param element
+	 *            the gate
+	 */
+	public static void hold(Object element) {
+		entered = new CountDownLatch(1);
+		released = new CountDownLatch(1);
+		gate = element;
+	}
+
+	/**
+	 * Return whether the decoration is blocked on the gate.
+	 *
+	 * @return boolean
+	 */
+	public static boolean isHeld() {
+		return entered.getCount() == 0 && released.getCount() > 0;
+	}
+
+	/**
+	 * Let the decoration go on.
+	 */
+	public static void release() {
+		released.countDown();
+	}
+
+	/**
+	 * Forget the decorated elements and release the gate.
+	 */
+	public static synchronized void reset() {
+		release();
+		gate = null;
+		elements.clear();
+		contexts.clear();
+	}
+
+	/**
+	 * Return the elements decorated since the last reset, in the order they
+	 * were decorated.
+	 *
+	 * @return List
+	 */
+	public static synchronized List getDecorated() {
+		return new ArrayList(elements);
+	}
+
+	/**
+	 * Return the decoration contexts the element was decorated for, in the
+	 * order it was decorated.
+	 *
+	 * @param element
+	 * @return List
+	 */
+	public static synchronized List getContexts(Object element) {
+		List result = new ArrayList();
+		for (int i = 0; i < elements.size(); i++) {
+			if (elements.get(i) == element) {
+				result.add(contexts.get(i));
+			}
+		}
+		return result;
+	}
+
+	private static synchronized void record(Object element, Object context) {
+		elements.add(element);
+		contexts.add(context);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.jface.viewers.ILightweightLabelDecorator#decorate(java.lang.Object,
+	 *      org.eclipse.jface.viewers.IDecoration)
+	 */
+	public void decorate(Object element, IDecoration decoration) {
+		if (element == gate) {
+			entered.countDown();
+			try {
+				released.await(30, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		} else {
+			record(element, decoration.getDecorationContext());
+		}
+		decoration.addSuffix(SUFFIX);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.jface.viewers.IBaseLabelProvider#addListener(org.eclipse.jface.viewers.ILabelProviderListener)
+	 */
+	public void addListener(ILabelProviderListener listener) {
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.jface.viewers.IBaseLabelProvider#dispose()
+	 */
+	public void dispose() {
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.jface.viewers.IBaseLabelProvider#isLabelProperty(java.lang.Object,
+	 *      java.lang.String)
+	 */
+	public boolean isLabelProperty(Object element, String property) {
+		return false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.jface.viewers.IBaseLabelProvider#removeListener(org.eclipse.jface.viewers.ILabelProviderListener)
+	 */
+	public void removeListener(ILabelProviderListener listener) {
+	}
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.ui.tests.decorators;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.viewers.LabelDecorator;
+import org.eclipse.ui.IDecoratorManager;
+import org.eclipse.ui.PlatformUI;
+import org.eclipse.ui.internal.decorators.DecoratorManager;
+import org.eclipse.ui.tests.harness.util.UITestCase;
+
+/**
+ * RecordingDecoratorTestCase is the abstract class of the tests of the
+ * decoration queue, which hold the queue with the {@link RecordingDecorator}
+ * while they queue the elements through the label decorator of the workbench.
+ */
+public abstract class RecordingDecoratorTestCase extends UITestCase {
+
+	protected static final long TIMEOUT = 10000;
+
+	protected LabelDecorator decorator;
+
+	private Map elements = new HashMap();
+
+	/**
+	 * Create a new instance of the receiver.
+	 *
+	 * @param testName
+	 */
+	public RecordingDecoratorTestCase(String testName) {
+		super(testName);
+	}
+
+	protected void doSetUp() throws Exception {
+		super.doSetUp();
+		RecordingDecorator.reset();
+		IDecoratorManager manager = PlatformUI.getWorkbench()
+				.getDecoratorManager();
+		manager.setEnabled(RecordingDecorator.ID, true);
+		decorator = (LabelDecorator) manager.getLabelDecorator();
+		// Decoration jobs started while the decorators were thread safe
+		// could take the queued elements in parallel
+		waitForDecoration();
+	}
+
+	protected void doTearDown() throws Exception {
+		RecordingDecorator.release();
+		decorator.dispose();
+		PlatformUI.getWorkbench().getDecoratorManager().setEnabled(
+				RecordingDecorator.ID, false);
+		RecordingDecorator.reset();
+		super.doTearDown();
+	}
+
+	/**
+	 * Return the element with the name, the same instance for the same name.
+	 *
+	 * @param name
+	 * @return Object
+	 */
+	protected Object element(String name) {
+		Object element = elements.get(name);
+		if (element == null) {
+			element = new RecordingDecorator.Element(name);
+			elements.put(name, element);
+		}
+		return element;
+	}
+
+	/**
+	 * Queue the decoration of the elements with the names.
+	 *
+	 * @param names
+	 */
+	protected void queue(String[] names) {
+		for (int i = 0; i < names.length; i++) {
+			decorator.decorateText(names[i], element(names[i]));
+		}
+	}
+
+	/**
+	 * Hold the decoration of the elements queued from now on until
+	 * {@link RecordingDecorator#release()}.
+	 */
+	protected void hold() {
+		Object gate = new RecordingDecorator.Element("gate");
+		RecordingDecorator.hold(gate);
+		decorator.decorateText("gate", gate);
+		assertTrue("decoration held", processEventsUntil(new Condition() {
+			public boolean compute() {
+				return RecordingDecorator.isHeld();
+			}
+		}, TIMEOUT));
+	}
+
+	/**
+	 * Release the decoration and wait until the decorator decorated the given
+	 * number of elements.
+	 *
+	 * @param count
+	 */
+	protected void releaseAndWait(final int count) {
+		RecordingDecorator.release();
+		assertTrue("elements decorated", processEventsUntil(new Condition() {
+			public boolean compute() {
+				return RecordingDecorator.getDecorated().size() >= count;
+			}
+		}, TIMEOUT));
+	}
+
+	/**
+	 * Wait until the decoration jobs are done, the labels included.
+	 */
+	protected void waitForDecoration() {
+		assertTrue("decoration done", processEventsUntil(new Condition() {
+			public boolean compute() {
+				return Job.getJobManager().find(
+						DecoratorManager.FAMILY_DECORATE).length == 0;
+			}
+		}, TIMEOUT));
+	}
+}
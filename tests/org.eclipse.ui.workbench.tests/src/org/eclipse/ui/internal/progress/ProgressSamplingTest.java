@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.ui.internal.progress;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * Tests the sampling of the progress reported by the jobs. The listener holds
+ * the sampler in its first refresh of a job info while the test reports more
+ * progress, and the test joins the sampler before counting the refreshes.
+ */
+public class ProgressSamplingTest extends TestCase {
+
+	private static final long TIMEOUT = 5000;
+
+	/**
+	 * Records the job infos refreshed, in order.
+	 */
+	private static class RefreshListener implements IJobProgressManagerListener {
+
+		private final List refreshed = new ArrayList();
+
+		private volatile JobInfo held;
+
+		private final CountDownLatch entered = new CountDownLatch(1);
+
+		private final CountDownLatch released = new CountDownLatch(1);
+
+		public void addJob(JobInfo info) {
+		}
+
+		public void addGroup(GroupInfo info) {
+		}
+
+		public void refreshJobInfo(JobInfo info) {
+			synchronized (this) {
+				refreshed.add(info);
+			}
+			if (info == held && entered.getCount() > 0) {
+				entered.countDown();
+				try {
+					released.await(TIMEOUT, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+
+		public void refreshGroup(GroupInfo info) {
+		}
+
+		public void refreshAll() {
+		}
+
+		public void removeJob(JobInfo info) {
+		}
+
+		public void removeGroup(GroupInfo group) {
+		}
+
+		public boolean showsDebug() {
+			return true;
+		}
+
+		synchronized int refreshCount(JobInfo info) {
+			int count = 0;
+			for (int i = 0; i < refreshed.size(); i++) {
+				if (refreshed.get(i) == info) {
+					count++;
+				}
+			}
+			return count;
+		}
+
+		/**
+		 * Block the sampler in the next refresh of info, until released.
+		 */
+		void hold(JobInfo info) {
+			held = info;
+		}
+
+		/**
+		 * Wait until the sampler is blocked in the refresh of the held info,
+		 * or fail.
+		 */
+		void waitUntilHeld() throws InterruptedException {
+			assertTrue("not sampled", entered.await(TIMEOUT,
+					TimeUnit.MILLISECONDS));
+		}
+
+		void release() {
+			released.countDown();
+		}
+	}
+
+	private ProgressManager manager;
+
+	private RefreshListener listener;
+
+	private List testJobs = new ArrayList();
+
+	public ProgressSamplingTest(String name) {
+		super(name);
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		manager = ProgressManager.getInstance();
+		listener = new RefreshListener();
+		manager.addListener(listener);
+	}
+
+	protected void tearDown() throws Exception {
+		listener.release();
+		manager.removeListener(listener);
+		for (int i = 0; i < testJobs.size(); i++) {
+			Job job = (Job) testJobs.get(i);
+			manager.progressFor(job).done();
+			manager.removeJobInfo(manager.getJobInfo(job));
+		}
+		super.tearDown();
+	}
+
+	/**
+	 * Return the monitor of a new job which has begun its task.
+	 */
+	private IProgressMonitor beginTask(String name) {
+		Job job = new Job(name) {
+			protected IStatus run(IProgressMonitor monitor) {
+				return Status.OK_STATUS;
+			}
+		};
+		testJobs.add(job);
+		IProgressMonitor monitor = manager.progressFor(job);
+		monitor.beginTask(name, 10000);
+		return monitor;
+	}
+
+	private JobInfo getJobInfo(int index) {
+		return manager.getJobInfo((Job) testJobs.get(index));
+	}
+
+	/**
+	 * Wait until the progress reported so far has been sampled.
+	 */
+	private void waitForSample() throws InterruptedException {
+		manager.progressSampler.join();
+	}
+
+	public void testSingleRefreshPerSample() throws Exception {
+		IProgressMonitor monitor = beginTask("sampled");
+		JobInfo info = getJobInfo(0);
+		// the task name is refreshed at once
+		assertEquals(1, listener.refreshCount(info));
+
+		listener.hold(info);
+		monitor.worked(1);
+		listener.waitUntilHeld();
+		for (int i = 0; i < 1000; i++) {
+			monitor.worked(1);
+			if (i % 100 == 0) {
+				monitor.subTask("subtask " + i);
+			}
+		}
+		assertEquals("refreshed before the sample", 2, listener
+				.refreshCount(info));
+		listener.release();
+
+		waitForSample();
+		assertEquals(3, listener.refreshCount(info));
+		assertEquals(1001, (int) info.getTaskInfo().getPreWork());
+	}
+
+	public void testProgressSampledAgain() throws Exception {
+		IProgressMonitor monitor = beginTask("sampled");
+		JobInfo info = getJobInfo(0);
+		monitor.worked(1);
+		waitForSample();
+		assertEquals(2, listener.refreshCount(info));
+
+		// the sampled info is refreshed with the next sample
+		monitor.worked(1);
+		waitForSample();
+		assertEquals(3, listener.refreshCount(info));
+	}
+
+	public void testRemovedJobNotRefreshed() throws Exception {
+		IProgressMonitor heldMonitor = beginTask("held");
+		IProgressMonitor removedMonitor = beginTask("removed");
+		IProgressMonitor keptMonitor = beginTask("kept");
+		JobInfo removed = getJobInfo(1);
+		JobInfo kept = getJobInfo(2);
+
+		listener.hold(getJobInfo(0));
+		heldMonitor.worked(1);
+		listener.waitUntilHeld();
+		for (int i = 0; i < 100; i++) {
+			removedMonitor.worked(1);
+			keptMonitor.worked(1);
+		}
+		manager.removeJobInfo(removed);
+		listener.release();
+
+		// both infos were changed before the sample
+		waitForSample();
+		assertEquals(2, listener.refreshCount(kept));
+		assertEquals(1, listener.refreshCount(removed));
+	}
+}